@@ -23,17 +23,24 @@
  *                                                    (for use by subclasses)
  *    Kai Hudalla (Bosch Software Innovations GmbH) - use Logger's message formatting instead of
  *                                                    explicit String concatenation
+ *    Bosch Software Innovations GmbH - share notifications between observe relations
  ******************************************************************************/
 package org.eclipse.californium.core;
 
 import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -42,6 +49,8 @@ import org.eclipse.californium.core.coap.CoAP;
 import org.eclipse.californium.core.coap.CoAP.Code;
 import org.eclipse.californium.core.coap.CoAP.ResponseCode;
 import org.eclipse.californium.core.coap.CoAP.Type;
+import org.eclipse.californium.core.coap.OptionSet;
+import org.eclipse.californium.core.coap.Request;
 import org.eclipse.californium.core.coap.Response;
 import org.eclipse.californium.core.network.Endpoint;
 import org.eclipse.californium.core.network.Exchange;
@@ -169,6 +178,18 @@ public  class CoapResource implements Resource {
 	/* The notification orderer. */
 	private ObserveNotificationOrderer notificationOrderer;
 	
+	/* Render notifications once per variant instead of once per relation. */
+	private volatile boolean sharedNotifications;
+	
+	/* The maximum number of relations notified by a single task. */
+	private static final int NOTIFICATION_BATCH_SIZE = 64;
+	
+	/* The number of stripes the relations are distributed to by their peer. */
+	private static final int NOTIFICATION_STRIPES = 16;
+	
+	/* The stripes executing the notification batches, created on demand. */
+	private NotificationStripe[] notificationStripes;
+	
 	/**
 	 * Constructs a new resource with the specified name.
 	 *
@@ -680,6 +701,42 @@ public  class CoapResource implements Resource {
 		if (type == Type.ACK || type == Type.RST) throw new IllegalArgumentException("Only CON and NON notifications are allowed or null for no changes by the framework");
 		this.observeType = type;
 	}
+	
+	/**
+	 * Checks if notifications are shared between observe relations.
+	 * 
+	 * @return true if notifications are shared
+	 * @see #setSharedNotifications(boolean)
+	 */
+	public boolean isSharedNotifications() {
+		return sharedNotifications;
+	}
+	
+	/**
+	 * Sets whether notifications are shared between observe relations.
+	 * <p>
+	 * By default, {@link #changed()} reprocesses the request of each observe
+	 * relation. If notifications are shared, the request is processed only
+	 * once for all relations asking for the same variant of the resource,
+	 * i.e. with the same Accept and Uri-Query options, and the resulting
+	 * payload and options are sent to all of them. Only the token, MID,
+	 * Observe number and type differ per relation.
+	 * <p>
+	 * Only enable this, if the handler responds synchronously and its
+	 * response does not depend on the requesting client. If the handler
+	 * responds asynchronously or with an error code, the relations of that
+	 * variant are notified by reprocessing their requests as usual.
+	 * <p>
+	 * The relations are notified in batches, which are executed in parallel
+	 * on the executor of this resource, or, if no ancestor defines an
+	 * executor, on the protocol stage of the endpoint. The notifications of a
+	 * relation are sent in order.
+	 * 
+	 * @param shared true to share notifications
+	 */
+	public void setSharedNotifications(boolean shared) {
+		this.sharedNotifications = shared;
+	}
 
 	/* (non-Javadoc)
 	 * @see org.eclipse.californium.core.server.resources.Resource#addObserveRelation(org.eclipse.californium.core.observe.ObserveRelation)
@@ -762,11 +819,247 @@ public  class CoapResource implements Resource {
 	 *               <code>null</code>, if all clients should be notified.
 	 */
 	protected void notifyObserverRelations(final ObserveRelationFilter filter) {
-		notificationOrderer.getNextObserveNumber();
+		int observe = notificationOrderer.getNextObserveNumber();
+		if (sharedNotifications) {
+			notifySharedObserverRelations(filter, observe);
+			return;
+		}
 		for (ObserveRelation relation:observeRelations) {
 			if (null == filter || filter.accept(relation)) relation.notifyObservers();
 		}
 	}
+	
+	/**
+	 * Notifies the selected observe relations by processing the request once
+	 * per variant and sending the resulting notification to all relations of
+	 * that variant.
+	 * <p>
+	 * The relations are distributed to stripes by their peer and notified in
+	 * batches. The batches of a stripe are executed one after the other, so
+	 * the notifications of a relation are sent in the order they are
+	 * processed. The stripes are executed on the executor of this resource,
+	 * or, if no ancestor defines an executor, on the protocol stage of the
+	 * endpoint of the batch's first relation, see
+	 * {@link Endpoint#execute(Runnable)}.
+	 * 
+	 * @param filter filter to select set of relations. 
+	 *               <code>null</code>, if all clients should be notified.
+	 * @param observe the Observe number of the processed state.
+	 */
+	private void notifySharedObserverRelations(final ObserveRelationFilter filter, final int observe) {
+		Map<String, List<ObserveRelation>> variants = new LinkedHashMap<>();
+		for (ObserveRelation relation:observeRelations) {
+			if (null == filter || filter.accept(relation)) {
+				String variant = getVariant(relation.getExchange().getRequest());
+				List<ObserveRelation> relations = variants.get(variant);
+				if (relations == null) {
+					relations = new ArrayList<>();
+					variants.put(variant, relations);
+				}
+				relations.add(relation);
+			}
+		}
+		NotificationStripe[] stripes = getNotificationStripes();
+		for (List<ObserveRelation> relations:variants.values()) {
+			NotificationExchange exchange = new NotificationExchange(relations.get(0).getExchange().getRequest());
+			handleRequest(exchange);
+			Response notification = exchange.notification;
+			if (notification != null && !CoAP.ResponseCode.isSuccess(notification.getCode())) {
+				// let each relation handle it on its own
+				notification = null;
+			}
+			List<List<ObserveRelation>> striped = new ArrayList<>(NOTIFICATION_STRIPES);
+			for (int stripe = 0; stripe < NOTIFICATION_STRIPES; ++stripe) {
+				striped.add(new ArrayList<ObserveRelation>());
+			}
+			for (ObserveRelation relation:relations) {
+				int stripe = (relation.getSource().hashCode() & Integer.MAX_VALUE) % NOTIFICATION_STRIPES;
+				striped.get(stripe).add(relation);
+			}
+			for (int stripe = 0; stripe < NOTIFICATION_STRIPES; ++stripe) {
+				List<ObserveRelation> stripeRelations = striped.get(stripe);
+				int size = stripeRelations.size();
+				for (int from = 0; from < size; from += NOTIFICATION_BATCH_SIZE) {
+					List<ObserveRelation> batch = stripeRelations.subList(from, Math.min(size, from + NOTIFICATION_BATCH_SIZE));
+					stripes[stripe].execute(new NotificationTask(notification, observe, batch), getBatchExecutor(batch.get(0)));
+				}
+			}
+		}
+	}
+	
+	private synchronized NotificationStripe[] getNotificationStripes() {
+		if (notificationStripes == null) {
+			notificationStripes = new NotificationStripe[NOTIFICATION_STRIPES];
+			for (int stripe = 0; stripe < NOTIFICATION_STRIPES; ++stripe) {
+				notificationStripes[stripe] = new NotificationStripe();
+			}
+		}
+		return notificationStripes;
+	}
+	
+	/**
+	 * Gets the executor for notification batches, which is the executor of
+	 * this resource or the protocol stage of the endpoint of a relation.
+	 * 
+	 * @param relation the relation providing the endpoint
+	 * @return the executor, or {@code null}, if neither is available
+	 */
+	private Executor getBatchExecutor(ObserveRelation relation) {
+		Executor executor = getExecutor();
+		if (executor == null) {
+			final Endpoint endpoint = relation.getExchange().getEndpoint();
+			if (endpoint != null) {
+				executor = new Executor() {
+					@Override
+					public void execute(Runnable command) {
+						endpoint.execute(command);
+					}
+				};
+			}
+		}
+		return executor;
+	}
+	
+	/**
+	 * Gets the variant of this resource requested by an observe request.
+	 * 
+	 * @param request the request that established the relation
+	 * @return the variant key
+	 */
+	private static String getVariant(Request request) {
+		OptionSet options = request.getOptions();
+		return options.getAccept() + "?" + options.getUriQueryString();
+	}
+	
+	/**
+	 * Sends a copy of a shared notification to observe relations.
+	 */
+	private class NotificationTask implements Runnable {
+		
+		private final Response notification;
+		private final int observe;
+		private final List<ObserveRelation> relations;
+		
+		/**
+		 * Creates a task.
+		 * 
+		 * @param notification the shared notification, or {@code null}, to
+		 *            let each relation process its request on its own.
+		 * @param observe the Observe number of the shared notification.
+		 * @param relations the relations to notify.
+		 */
+		private NotificationTask(Response notification, int observe, List<ObserveRelation> relations) {
+			this.notification = notification;
+			this.observe = observe;
+			this.relations = relations;
+		}
+		
+		@Override
+		public void run() {
+			for (ObserveRelation relation:relations) {
+				if (!relation.isEstablished()) {
+					// canceled meanwhile
+					continue;
+				}
+				if (notification == null) {
+					relation.notifyObservers();
+					continue;
+				}
+				Response response = new Response(notification.getCode());
+				response.setType(notification.getType());
+				// the notification carries the same body, so Size2 is kept
+				response.getOptions().setAll(notification.getOptions());
+				// the payload is never modified, so it is shared
+				response.setPayload(notification.getPayload());
+				// the number of the processed state, not of the current one
+				response.getOptions().setObserve(observe);
+				if (observeType != null) {
+					response.setType(observeType);
+				}
+				relation.getExchange().sendResponse(response);
+			}
+		}
+	}
+	
+	/**
+	 * Notification batches of the relations of one stripe.
+	 * <p>
+	 * The batches are executed one after the other in the order they are
+	 * added, even if the executor runs tasks in parallel.
+	 */
+	private static final class NotificationStripe implements Runnable {
+		
+		private final Queue<Runnable> batches = new ArrayDeque<>();
+		private boolean running;
+		
+		/**
+		 * Adds a batch and executes the stripe, unless it is already running.
+		 * 
+		 * @param batch the batch
+		 * @param executor the executor to run the stripe, or {@code null}, to
+		 *            run it by the current thread.
+		 */
+		private void execute(Runnable batch, Executor executor) {
+			synchronized (this) {
+				batches.add(batch);
+				if (running) {
+					return;
+				}
+				running = true;
+			}
+			if (executor == null) {
+				run();
+			} else {
+				try {
+					executor.execute(this);
+				} catch (RejectedExecutionException ex) {
+					LOGGER.log(Level.WARNING, "Notification batches rejected", ex);
+					synchronized (this) {
+						batches.clear();
+						running = false;
+					}
+				}
+			}
+		}
+		
+		@Override
+		public void run() {
+			while (true) {
+				Runnable batch;
+				synchronized (this) {
+					batch = batches.poll();
+					if (batch == null) {
+						running = false;
+						return;
+					}
+				}
+				try {
+					batch.run();
+				} catch (RuntimeException ex) {
+					LOGGER.log(Level.WARNING, "Notification batch failed", ex);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Exchange that keeps the response of a handler instead of sending it.
+	 */
+	private static class NotificationExchange extends Exchange {
+		
+		private Response notification;
+		
+		private NotificationExchange(Request request) {
+			super(request, Origin.REMOTE);
+			setRequest(request);
+		}
+		
+		@Override
+		public void sendResponse(Response response) {
+			setResponse(response);
+			notification = response;
+		}
+	}
 
 	/* (non-Javadoc)
 	 * @see org.eclipse.californium.core.server.resources.Resource#getChildren()
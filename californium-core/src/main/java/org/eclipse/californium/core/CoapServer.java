@@ -18,6 +18,9 @@
  *    Kai Hudalla - logging
  *    Kai Hudalla (Bosch Software Innovations GmbH) - use Logger's message formatting instead of
  *                                                    explicit String concatenation
+ *    Bosch Software Innovations GmbH - configure resource path index
+ *    Bosch Software Innovations GmbH - no central protocol stage pool for
+ *                                      protocol stage striped by peer
  ******************************************************************************/
 package org.eclipse.californium.core;
 
@@ -149,7 +152,8 @@ public class CoapServer implements ServerInterface {
 		
 		// resources
 		this.root = createRoot();
-		this.deliverer = new ServerMessageDeliverer(root);
+		this.deliverer = new ServerMessageDeliverer(root,
+				this.config.getBoolean(NetworkConfig.Keys.USE_RESOURCE_PATH_INDEX));
 		
 		CoapResource wellKnown = new CoapResource(".well-known");
 		wellKnown.setVisible(false);
@@ -158,10 +162,13 @@ public class CoapServer implements ServerInterface {
 		
 		// endpoints
 		this.endpoints = new ArrayList<>();
-		// sets the central thread pool for the protocol stage over all endpoints
-		this.executor = Executors.newScheduledThreadPool(//
-				this.config.getInt(NetworkConfig.Keys.PROTOCOL_STAGE_THREAD_COUNT), //
-				new NamedThreadFactory("CoapServer#")); //$NON-NLS-1$
+		// sets the central thread pool for the protocol stage over all endpoints,
+		// unless the endpoints run their protocol stage striped by peer
+		if (!this.config.getBoolean(NetworkConfig.Keys.PROTOCOL_STAGE_STRIPED_BY_PEER)) {
+			this.executor = Executors.newScheduledThreadPool(//
+					this.config.getInt(NetworkConfig.Keys.PROTOCOL_STAGE_THREAD_COUNT), //
+					new NamedThreadFactory("CoapServer#")); //$NON-NLS-1$
+		}
 		// create endpoint for each port
 		for (int port : ports) {
 			addEndpoint(new CoapEndpoint(port, this.config));
@@ -247,21 +254,23 @@ public class CoapServer implements ServerInterface {
 	public synchronized void destroy() {
 
 		LOGGER.info("Destroying server");
-		// prevent new tasks from being submitted
-		executor.shutdown(); // cannot be started again
 		try {
-			// wait for currently executing tasks to complete
-			if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
-				// cancel still executing tasks
-				// and ignore all remaining tasks scheduled for later
-				List<Runnable> runningTasks = executor.shutdownNow();
-				if (runningTasks.size() > 0) {
-					// this is e.g. the case if we have performed an incomplete blockwise transfer
-					// and the BlockwiseLayer has scheduled a pending BlockCleanupTask for tidying up
-					LOGGER.log(Level.FINE, "Ignoring remaining {0} scheduled task(s)", runningTasks.size());
+			if (executor != null) {
+				// prevent new tasks from being submitted
+				executor.shutdown(); // cannot be started again
+				// wait for currently executing tasks to complete
+				if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+					// cancel still executing tasks
+					// and ignore all remaining tasks scheduled for later
+					List<Runnable> runningTasks = executor.shutdownNow();
+					if (runningTasks.size() > 0) {
+						// this is e.g. the case if we have performed an incomplete blockwise transfer
+						// and the BlockwiseLayer has scheduled a pending BlockCleanupTask for tidying up
+						LOGGER.log(Level.FINE, "Ignoring remaining {0} scheduled task(s)", runningTasks.size());
+					}
+					// wait for executing tasks to respond to being cancelled
+					executor.awaitTermination(1, TimeUnit.SECONDS);
 				}
-				// wait for executing tasks to respond to being cancelled
-				executor.awaitTermination(1, TimeUnit.SECONDS);
 			}
 		} catch (InterruptedException e) {
 			executor.shutdownNow();
@@ -18,13 +18,19 @@
  *    Kai Hudalla - logging
  *    Achim Kraus (Bosch Software Innovations GmbH) - make getOthers() public.
  *                                                    issue #286
+ *    Bosch Software Innovations GmbH - decode options received in encoded
+ *                                      form on first access
+ *    Bosch Software Innovations GmbH - keep all options in a compact,
+ *                                      array-backed representation
+ *    Bosch Software Innovations GmbH - search Uri-Path segments without
+ *                                      decoding them
  ******************************************************************************/
 package org.eclipse.californium.core.coap;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 
 import org.eclipse.californium.core.Utils;
@@ -35,92 +41,381 @@ import org.eclipse.californium.core.Utils;
  * the CoAP, blockwise CoAP, observing CoAP and supports arbitrary defined
  * options.
  * <p>
+ * The options are kept in their encoded form in a single byte array, indexed
+ * by an array of (number, offset, length) entries sorted by option number.
+ * Option values are decoded on access. The lists returned for repeatable
+ * options are views backed by this option set.
+ * <p>
+ * An option set may also be created from the encoded options of a received
+ * message using {@link #OptionSet(byte[], int, int)}, which only needs to
+ * parse the option headers. An option set filled using
+ * {@link #decode(byte[], int)} only checks the option headers and keeps the
+ * copied options unindexed until they are accessed. Observe, Block1 and Block2
+ * are then read by scanning the encoded options, so matching a received
+ * message does not index its options.
+ * <p>
  * Notice that this class is not entirely thread-safe: hasObserve =&gt; (int) getObserve()
  */
 public final class OptionSet {
 
 	private static final int MAX_OBSERVE_NO = (1 << 24) - 1;
+	/**
+	 * Number of ints per option entry: the option number and the offset and
+	 * length of the option's value.
+	 */
+	private static final int ENTRY_SIZE = 3;
+	private static final int MIN_VALUES_CAPACITY = 16;
+	private static final int MIN_ENTRIES_CAPACITY = 4 * ENTRY_SIZE;
+	private static final int[] NO_ENTRIES = new int[0];
+	private static final byte[] NO_VALUES = new byte[0];
+
 	/*
-	 * Options defined by the CoAP protocol
-	 */
-	private List<byte[]> if_match_list;
-	private String       uri_host;
-	private List<byte[]> etag_list;
-	private boolean      if_none_match; // true if option is set
-	private Integer      uri_port; // null if no port is explicitly defined
-	private List<String> location_path_list;
-	private List<String> uri_path_list;
-	private Integer      content_format;
-	private Long         max_age; // (0-4 bytes)
-	private List<String> uri_query_list;
-	private Integer      accept;
-	private List<String> location_query_list;
-	private String       proxy_uri;
-	private String       proxy_scheme;
-	private BlockOption  block1;
-	private BlockOption  block2;
-	private Integer      size1;
-	private Integer      size2;
-	private Integer      observe;
-	
-	// Arbitrary options
-	private List<Option> others;
-	
-	// TODO: When receiving, uri_host/port should be those from the sender 
+	 * Options sorted by option number. Options with the same number are kept
+	 * in the order they have been added, so serializing the options never
+	 * requires sorting.
+	 */
+	private int[] entries;
+	private int size; // number of options
 	/*
-	 * Once a list is touched and constructed it must never become null again.
-	 * Non-lists can be null though.
+	 * Values of all options. The bytes of removed or replaced values are
+	 * only reclaimed when the array needs to grow.
 	 */
+	private byte[] values;
+	private int valuesLength; // used bytes, including unused values
+	private int unusedValues;
+	/*
+	 * Indicates, that the values contain the encoded options, which are not
+	 * indexed yet. Reading options may index them concurrently, so the index
+	 * is published by clearing this flag.
+	 */
+	private volatile boolean deferred;
+	
+	// TODO: When receiving, uri_host/port should be those from the sender 
 	public OptionSet() {
-		if_match_list       = null; // new LinkedList<byte[]>();
-		uri_host            = null; // from sender
-		etag_list           = null; // new LinkedList<byte[]>();
-		if_none_match       = false;
-		uri_port            = null; // from sender
-		location_path_list  = null; // new LinkedList<String>();
-		uri_path_list       = null; // new LinkedList<String>();
-		content_format      = null;
-		max_age             = null;
-		uri_query_list      = null; // new LinkedList<String>();
-		accept              = null;
-		location_query_list = null; // new LinkedList<String>();
-		proxy_uri           = null;
-		proxy_scheme        = null;
-		block1              = null;
-		block2              = null;
-		size1               = null;
-		size2               = null;
-		observe             = null;
-		
-		others              = null; // new LinkedList<>();
+		entries = NO_ENTRIES;
+		values = NO_VALUES;
+	}
+
+	/**
+	 * Instantiates a new option set for encoded options.
+	 * <p>
+	 * The encoded options are copied, so that the option set does not retain
+	 * the received message. Only the option headers are parsed, the option
+	 * values are decoded on access. The values of the known options are
+	 * checked against the lengths the options support.
+	 * 
+	 * @param encoded the array containing the encoded options.
+	 * @param offset the index of the first option header.
+	 * @param length the number of bytes of the encoded options, excluding
+	 *            the payload marker.
+	 * @throws NullPointerException if the array is {@code null}.
+	 * @throws IllegalArgumentException if offset and length do not fit the
+	 *             array, if the options are malformed or if the value of a
+	 *             known option is invalid.
+	 */
+	public OptionSet(byte[] encoded, int offset, int length) {
+		this();
+		if (encoded == null) {
+			throw new NullPointerException("encoded options must not be null");
+		} else if (offset < 0 || length < 0 || offset + length > encoded.length) {
+			throw new IllegalArgumentException("offset and length exceed encoded options");
+		}
+		if (decode(encoded, offset, offset + length) != offset + length) {
+			throw new IllegalArgumentException("Illegal option delta/length: 15");
+		}
+	}
+
+	/**
+	 * Replaces the options of this set with encoded options.
+	 * <p>
+	 * The option headers are checked up to the payload marker or the end of
+	 * the array and the encoded options are copied once. The options are
+	 * indexed on first access, except for reading Observe, Block1 and Block2,
+	 * which scans the encoded options. Unlike
+	 * {@link Message#setOptions(OptionSet)}, the options are neither copied
+	 * into another option set nor are Size1 and Size2 dropped.
+	 * 
+	 * @param encoded the array containing the encoded options.
+	 * @param offset the index of the first option header.
+	 * @return the index of the payload marker, or the length of the array, if
+	 *         there is no payload marker.
+	 * @throws NullPointerException if the array is {@code null}.
+	 * @throws IllegalArgumentException if offset exceeds the array, if the
+	 *             options are malformed or if the value of a known option is
+	 *             invalid. The option set is cleared then.
+	 */
+	public int decode(byte[] encoded, int offset) {
+		if (encoded == null) {
+			throw new NullPointerException("encoded options must not be null");
+		} else if (offset < 0 || offset > encoded.length) {
+			throw new IllegalArgumentException("offset exceeds encoded options");
+		}
+		clear();
+		try {
+			int end = parse(encoded, offset, encoded.length, false);
+			if (end > offset) {
+				values = Arrays.copyOfRange(encoded, offset, end);
+				valuesLength = end - offset;
+				deferred = true;
+			}
+			return end;
+		} catch (IllegalArgumentException ex) {
+			clear();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Reads encoded options into this empty option set.
+	 * 
+	 * @param encoded the array containing the encoded options.
+	 * @param offset the index of the first option header.
+	 * @param end the index after the last byte to read.
+	 * @return the index of the payload marker, or end, if there is no payload
+	 *         marker.
+	 * @throws IllegalArgumentException if the options are malformed or if
+	 *             the value of a known option is invalid.
+	 */
+	private int decode(final byte[] encoded, final int offset, final int end) {
+		int index = parse(encoded, offset, end, true);
+		if (index > offset) {
+			// the entries already refer to the copied range
+			values = Arrays.copyOfRange(encoded, offset, index);
+			valuesLength = index - offset;
+			// option headers are never referenced
+			unusedValues += valuesLength;
+		}
+		return index;
+	}
+
+	/**
+	 * Reads the headers of encoded options.
+	 * 
+	 * @param encoded the array containing the encoded options.
+	 * @param offset the index of the first option header.
+	 * @param end the index after the last byte to read.
+	 * @param add {@code true}, to add the options to this empty option set,
+	 *            {@code false}, to only check them.
+	 * @return the index of the payload marker, or end, if there is no payload
+	 *         marker.
+	 * @throws IllegalArgumentException if the options are malformed or if
+	 *             the value of a known option is invalid.
+	 */
+	private int parse(final byte[] encoded, final int offset, final int end, final boolean add) {
+		int index = offset;
+		int number = 0;
+		while (index < end && encoded[index] != CoAP.MessageFormat.PAYLOAD_MARKER) {
+			int header = encoded[index++] & 0xFF;
+			number += getExtendedValue(encoded, index, end, header >> 4);
+			index += getExtendedLength(header >> 4);
+			int valueLength = getExtendedValue(encoded, index, end, header & 0x0F);
+			index += getExtendedLength(header & 0x0F);
+			if (index + valueLength > end) {
+				throw new IllegalArgumentException("Option value exceeds encoded options");
+			}
+			if (add) {
+				addEncoded(encoded, offset, number, index, valueLength);
+			} else {
+				checkEncodedLength(number, getNormalizedLength(encoded, number, index, valueLength));
+			}
+			index += valueLength;
+		}
+		return index;
+	}
+
+	/**
+	 * Indexes the encoded options kept by {@link #decode(byte[], int)}.
+	 */
+	private void index() {
+		if (deferred) {
+			OptionSet indexed = new OptionSet();
+			indexed.parse(values, 0, valuesLength, true);
+			entries = indexed.entries;
+			size = indexed.size;
+			// option headers are never referenced
+			unusedValues = valuesLength + indexed.unusedValues;
+			deferred = false;
+		}
+	}
+
+	/**
+	 * Gets the value of an integer option of the encoded options kept by
+	 * {@link #decode(byte[], int)} without indexing them.
+	 * <p>
+	 * Intended for the options read when matching a received message, i.e.
+	 * Observe, Block1 and Block2, whose values are checked to fit into 3
+	 * bytes.
+	 * 
+	 * @param number the option number.
+	 * @return the value of the last option with the number, or {@code -1}, if
+	 *         not contained.
+	 */
+	private int scan(final int number) {
+		byte[] encoded = values;
+		int end = valuesLength;
+		int index = 0;
+		int current = 0;
+		int value = -1;
+		while (index < end) {
+			int header = encoded[index++] & 0xFF;
+			current += getExtendedValue(encoded, index, end, header >> 4);
+			if (current > number) {
+				break;
+			}
+			index += getExtendedLength(header >> 4);
+			int valueLength = getExtendedValue(encoded, index, end, header & 0x0F);
+			index += getExtendedLength(header & 0x0F);
+			if (current == number) {
+				value = 0;
+				for (int last = index + valueLength; index < last; ++index) {
+					value = value << 8 | (encoded[index] & 0xFF);
+				}
+			} else {
+				index += valueLength;
+			}
+		}
+		return value;
+	}
+
+	private static BlockOption toBlockOption(final int value) {
+		return new BlockOption(value & 0x07, (value & 0x08) != 0, value >> 4);
+	}
+
+	/**
+	 * Gets the length of an option value without the bytes, which are not
+	 * part of the value.
+	 * <p>
+	 * Values of integer and block options are normalized by skipping leading
+	 * zeros. The value of If-None-Match is ignored.
+	 * 
+	 * @param encoded the array containing the encoded options.
+	 * @param number the option number.
+	 * @param offset the index of the option value.
+	 * @param length the length of the option value.
+	 * @return the length of the normalized value, which ends with the option
+	 *         value.
+	 */
+	private static int getNormalizedLength(final byte[] encoded, final int number, int offset, int length) {
+		switch (number) {
+		case OptionNumberRegistry.IF_NONE_MATCH:
+			return 0;
+		case OptionNumberRegistry.URI_PORT:
+		case OptionNumberRegistry.CONTENT_FORMAT:
+		case OptionNumberRegistry.MAX_AGE:
+		case OptionNumberRegistry.ACCEPT:
+		case OptionNumberRegistry.OBSERVE:
+		case OptionNumberRegistry.BLOCK1:
+		case OptionNumberRegistry.BLOCK2:
+		case OptionNumberRegistry.SIZE1:
+		case OptionNumberRegistry.SIZE2:
+			while (length > 0 && encoded[offset] == 0) {
+				++offset;
+				--length;
+			}
+			return length;
+		default:
+			return length;
+		}
+	}
+
+	/**
+	 * Adds an option of the encoded options.
+	 * <p>
+	 * The value is normalized, see
+	 * {@link #getNormalizedLength(byte[], int, int, int)}. If a single value
+	 * option is contained more than once, the last one is used.
+	 * 
+	 * @param encoded the array containing the encoded options.
+	 * @param base the index of the first option header. The entry refers to
+	 *            the option value relative to it.
+	 * @param number the option number.
+	 * @param offset the index of the option value.
+	 * @param length the length of the option value.
+	 * @throws IllegalArgumentException if the value of a known option is
+	 *             invalid.
+	 */
+	private void addEncoded(final byte[] encoded, final int base, final int number, int offset, int length) {
+		int normalized = getNormalizedLength(encoded, number, offset, length);
+		offset += length - normalized;
+		length = normalized;
+		checkEncodedLength(number, length);
+		int index = size * ENTRY_SIZE;
+		if (size > 0 && entries[index - ENTRY_SIZE] == number && isSingleValue(number)) {
+			index -= ENTRY_SIZE;
+			unusedValues += entries[index + 2];
+		} else {
+			if (index == entries.length) {
+				entries = Arrays.copyOf(entries, Math.max(MIN_ENTRIES_CAPACITY, entries.length * 2));
+			}
+			++size;
+		}
+		entries[index] = number;
+		entries[index + 1] = offset - base;
+		entries[index + 2] = length;
+		unusedValues -= length;
+	}
+
+	/**
+	 * Checks the length of an encoded value of a known option.
+	 * 
+	 * @param number the option number.
+	 * @param length the length of the (normalized) option value.
+	 * @throws IllegalArgumentException if the length is not supported by the
+	 *             option.
+	 */
+	private static void checkEncodedLength(final int number, final int length) {
+		int min = 0;
+		int max;
+		switch (number) {
+		case OptionNumberRegistry.IF_MATCH:
+			max = 8;
+			break;
+		case OptionNumberRegistry.URI_HOST:
+		case OptionNumberRegistry.PROXY_SCHEME:
+			min = 1;
+			max = 255;
+			break;
+		case OptionNumberRegistry.PROXY_URI:
+			min = 1;
+			max = 1034;
+			break;
+		case OptionNumberRegistry.LOCATION_PATH:
+		case OptionNumberRegistry.URI_PATH:
+		case OptionNumberRegistry.URI_QUERY:
+		case OptionNumberRegistry.LOCATION_QUERY:
+			max = 255;
+			break;
+		case OptionNumberRegistry.URI_PORT:
+		case OptionNumberRegistry.ACCEPT:
+			max = 2;
+			break;
+		case OptionNumberRegistry.OBSERVE:
+		case OptionNumberRegistry.BLOCK1:
+		case OptionNumberRegistry.BLOCK2:
+			max = 3;
+			break;
+		case OptionNumberRegistry.CONTENT_FORMAT:
+		case OptionNumberRegistry.MAX_AGE:
+		case OptionNumberRegistry.SIZE1:
+		case OptionNumberRegistry.SIZE2:
+			max = 4;
+			break;
+		default:
+			return;
+		}
+		if (length < min || max < length) {
+			throw new IllegalArgumentException(OptionNumberRegistry.toString(number) + " option must be between " + min
+					+ " and " + max + " bytes inclusive but was " + length);
+		}
 	}
 
 	public void clear() {
-		if (if_match_list != null)
-			if_match_list.clear();
-		uri_host = null;
-		if (etag_list != null)
-			etag_list.clear();
-		if_none_match = false;
-		uri_port = null;
-		if (location_path_list != null)
-			location_path_list.clear();
-		if (uri_path_list != null)
-			uri_path_list.clear();
-		content_format = null;
-		max_age = null;
-		if (uri_query_list != null)
-			uri_query_list.clear();
-		accept = null;
-		if (location_query_list != null)
-			location_path_list.clear();
-		proxy_uri = null;
-		proxy_scheme = null;
-		block1 = null;
-		block2 = null;
-		observe = null;
-		if (others != null)
-			others.clear();
+		entries = NO_ENTRIES;
+		size = 0;
+		values = NO_VALUES;
+		valuesLength = 0;
+		unusedValues = 0;
+		deferred = false;
 	}
 
 	/**
@@ -128,56 +423,471 @@ public final class OptionSet {
 	 * @param origin the origin to be copied
 	 */
 	public OptionSet(OptionSet origin) {
+		this();
 		if (origin == null) throw new NullPointerException();
-		if_match_list       = copyList(origin.if_match_list);
-		uri_host            = origin.uri_host;
-		etag_list           = copyList(origin.etag_list);
-		if_none_match       = origin.if_none_match;
-		uri_port            = origin.uri_port;
-		location_path_list  = copyList(origin.location_path_list);
-		uri_path_list       = copyList(origin.uri_path_list);
-		content_format      = origin.content_format;
-		max_age             = origin.max_age;
-		uri_query_list      = copyList(origin.uri_query_list);
-		accept              = origin.accept;
-		location_query_list = copyList(origin.location_query_list);
-		proxy_uri           = origin.proxy_uri;
-		proxy_scheme        = origin.proxy_scheme;
-		
-		if (origin.block1 != null)
-			block1          = new BlockOption(origin.block1);
-		if (origin.block2 != null)
-			block2          = new BlockOption(origin.block2);
-		
-		observe = origin.observe;
-		
-		others              = copyList(origin.others);
+		copy(origin, false);
+	}
+
+	/**
+	 * Replaces the options of this set with a copy of all options of another
+	 * set.
+	 * <p>
+	 * Unlike {@link #OptionSet(OptionSet)}, the Size1 and Size2 options are
+	 * copied as well. Intended for messages carrying the same body as the
+	 * message of the other set.
+	 * 
+	 * @param origin the option set to copy.
+	 * @return this OptionSet for a fluent API.
+	 * @throws NullPointerException if the origin is {@code null}.
+	 */
+	public OptionSet setAll(OptionSet origin) {
+		if (origin == null) throw new NullPointerException();
+		if (origin != this) {
+			clear();
+			copy(origin, true);
+		}
+		return this;
+	}
+
+	/**
+	 * Copies the options of another set into this empty option set.
+	 * 
+	 * @param origin the option set to copy.
+	 * @param all {@code true} to copy all options, {@code false} to skip the
+	 *            options not copied by {@link #OptionSet(OptionSet)}.
+	 */
+	private void copy(final OptionSet origin, final boolean all) {
+		origin.index();
+		int length = 0;
+		for (int index = 0; index < origin.size * ENTRY_SIZE; index += ENTRY_SIZE) {
+			if (all || isCopied(origin.entries[index])) {
+				length += origin.entries[index + 2];
+				++size;
+			}
+		}
+		if (size > 0) {
+			entries = new int[size * ENTRY_SIZE];
+			values = new byte[length];
+			int entry = 0;
+			for (int index = 0; index < origin.size * ENTRY_SIZE; index += ENTRY_SIZE) {
+				int number = origin.entries[index];
+				if (all || isCopied(number)) {
+					int valueLength = origin.entries[index + 2];
+					System.arraycopy(origin.values, origin.entries[index + 1], values, valuesLength, valueLength);
+					entries[entry] = number;
+					entries[entry + 1] = valuesLength;
+					entries[entry + 2] = valueLength;
+					valuesLength += valueLength;
+					entry += ENTRY_SIZE;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks if an option is copied by {@link #OptionSet(OptionSet)}.
+	 * <p>
+	 * The Size1 and Size2 options refer to the body of the origin's message
+	 * only and are therefore not copied.
+	 * 
+	 * @param number the option number.
+	 * @return {@code true} if the option is copied.
+	 */
+	private static boolean isCopied(final int number) {
+		return number != OptionNumberRegistry.SIZE1 && number != OptionNumberRegistry.SIZE2;
+	}
+
+	/**
+	 * Checks if an option must not be contained more than once.
+	 * <p>
+	 * Unknown options may be repeated.
+	 * 
+	 * @param number the option number.
+	 * @return {@code true} if the option is a known single value option.
+	 */
+	private static boolean isSingleValue(final int number) {
+		return !isOther(number) && OptionNumberRegistry.isSingleValue(number);
+	}
+
+	/**
+	 * Checks if an option is not supported by the getters and setters of this
+	 * class.
+	 * 
+	 * @param number the option number.
+	 * @return {@code true} if the option is an unknown option.
+	 */
+	private static boolean isOther(final int number) {
+		switch (number) {
+		case OptionNumberRegistry.IF_MATCH:
+		case OptionNumberRegistry.URI_HOST:
+		case OptionNumberRegistry.ETAG:
+		case OptionNumberRegistry.IF_NONE_MATCH:
+		case OptionNumberRegistry.URI_PORT:
+		case OptionNumberRegistry.LOCATION_PATH:
+		case OptionNumberRegistry.URI_PATH:
+		case OptionNumberRegistry.CONTENT_FORMAT:
+		case OptionNumberRegistry.MAX_AGE:
+		case OptionNumberRegistry.URI_QUERY:
+		case OptionNumberRegistry.ACCEPT:
+		case OptionNumberRegistry.LOCATION_QUERY:
+		case OptionNumberRegistry.PROXY_URI:
+		case OptionNumberRegistry.PROXY_SCHEME:
+		case OptionNumberRegistry.BLOCK1:
+		case OptionNumberRegistry.BLOCK2:
+		case OptionNumberRegistry.SIZE1:
+		case OptionNumberRegistry.SIZE2:
+		case OptionNumberRegistry.OBSERVE:
+			return false;
+		default:
+			return true;
+		}
+	}
+
+	/////////////////////// Backing store ///////////////////////
+
+	/**
+	 * Gets the index of the first option with a number greater than or equal
+	 * to the given number.
+	 * 
+	 * @param number the option number.
+	 * @return the index of the option, or the number of options, if all
+	 *         options have smaller numbers.
+	 */
+	private int indexOf(final int number) {
+		index();
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (entries[mid * ENTRY_SIZE] < number) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
 	}
 
 	/**
-	 * Copy the specified list.
-	 * @param <T> the generic type
-	 * @param list the list
-	 * @return a copy of the list
+	 * Gets the index of the first option with the given number.
+	 * 
+	 * @param number the option number.
+	 * @return the index of the option, or {@code -1}, if not contained.
 	 */
-	private <T> List<T> copyList(List<T> list) {
-		if (list == null) return null;
-		else return new LinkedList<T>(list);
+	private int find(final int number) {
+		int index = indexOf(number);
+		return index < size && entries[index * ENTRY_SIZE] == number ? index : -1;
+	}
+
+	private int count(final int number) {
+		return indexOf(number + 1) - indexOf(number);
+	}
+
+	/**
+	 * Reserves room for a value at the end of the values.
+	 * <p>
+	 * If the values need to grow, the values of all options are compacted
+	 * into the new array, which changes their offsets.
+	 * 
+	 * @param length the length of the value.
+	 * @return the offset of the value.
+	 */
+	private int allocate(final int length) {
+		if (valuesLength + length > values.length) {
+			int required = valuesLength - unusedValues + length;
+			byte[] compacted = new byte[Math.max(MIN_VALUES_CAPACITY, required + (required >> 1))];
+			int position = 0;
+			for (int index = 0; index < size * ENTRY_SIZE; index += ENTRY_SIZE) {
+				int valueLength = entries[index + 2];
+				System.arraycopy(values, entries[index + 1], compacted, position, valueLength);
+				entries[index + 1] = position;
+				position += valueLength;
+			}
+			values = compacted;
+			valuesLength = position;
+			unusedValues = 0;
+		}
+		int offset = valuesLength;
+		valuesLength += length;
+		return offset;
+	}
+
+	/**
+	 * Inserts an option.
+	 * 
+	 * @param index the index of the option.
+	 * @param number the option number.
+	 * @param length the length of the option value.
+	 * @return the offset to write the option value to.
+	 */
+	private int insert(final int index, final int number, final int length) {
+		int offset = allocate(length);
+		int position = index * ENTRY_SIZE;
+		if (size * ENTRY_SIZE == entries.length) {
+			entries = Arrays.copyOf(entries, Math.max(MIN_ENTRIES_CAPACITY, entries.length * 2));
+		}
+		System.arraycopy(entries, position, entries, position + ENTRY_SIZE, (size - index) * ENTRY_SIZE);
+		entries[position] = number;
+		entries[position + 1] = offset;
+		entries[position + 2] = length;
+		++size;
+		return offset;
+	}
+
+	/**
+	 * Replaces the value of an option.
+	 * 
+	 * @param index the index of the option.
+	 * @param length the length of the new option value.
+	 * @return the offset to write the new option value to.
+	 */
+	private int replace(final int index, final int length) {
+		// allocate first, compacting may move the replaced value
+		int offset = allocate(length);
+		int position = index * ENTRY_SIZE;
+		unusedValues += entries[position + 2];
+		entries[position + 1] = offset;
+		entries[position + 2] = length;
+		return offset;
+	}
+
+	private void remove(final int from, final int to) {
+		if (from < to) {
+			for (int index = from; index < to; ++index) {
+				unusedValues += entries[index * ENTRY_SIZE + 2];
+			}
+			System.arraycopy(entries, to * ENTRY_SIZE, entries, from * ENTRY_SIZE, (size - to) * ENTRY_SIZE);
+			size -= to - from;
+			if (size == 0) {
+				valuesLength = 0;
+				unusedValues = 0;
+			}
+		}
+	}
+
+	private void removeAll(final int number) {
+		remove(indexOf(number), indexOf(number + 1));
+	}
+
+	/**
+	 * Sets a single value option.
+	 * 
+	 * @param number the option number.
+	 * @param length the length of the option value.
+	 * @return the offset to write the option value to.
+	 */
+	private int set(final int number, final int length) {
+		removeAll(number);
+		return insert(indexOf(number), number, length);
+	}
+
+	private void setBytes(final int number, final byte[] value) {
+		int offset = set(number, value.length);
+		System.arraycopy(value, 0, values, offset, value.length);
+	}
+
+	private void addBytes(final int number, final byte[] value) {
+		int offset = insert(indexOf(number + 1), number, value.length);
+		System.arraycopy(value, 0, values, offset, value.length);
+	}
+
+	/**
+	 * Sets a single value option to an unsigned integer value.
+	 * <p>
+	 * The value is encoded using the minimum number of bytes. Negative values
+	 * are encoded using 4 bytes.
+	 * 
+	 * @param number the option number.
+	 * @param value the value.
+	 */
+	private void setInteger(final int number, int value) {
+		int length = 0;
+		for (int rest = value; rest != 0; rest >>>= 8) {
+			++length;
+		}
+		int offset = set(number, length);
+		for (int index = offset + length - 1; index >= offset; --index) {
+			values[index] = (byte) value;
+			value >>= 8;
+		}
+	}
+
+	private int getInteger(final int index) {
+		int position = index * ENTRY_SIZE;
+		int offset = entries[position + 1];
+		int end = offset + entries[position + 2];
+		int value = 0;
+		for (; offset < end; ++offset) {
+			value = value << 8 | (values[offset] & 0xFF);
+		}
+		return value;
+	}
+
+	private long getLong(final int index) {
+		int position = index * ENTRY_SIZE;
+		int offset = entries[position + 1];
+		int end = offset + entries[position + 2];
+		long value = 0;
+		for (; offset < end; ++offset) {
+			value = value << 8 | (values[offset] & 0xFF);
+		}
+		return value;
+	}
+
+	private String getString(final int index) {
+		int position = index * ENTRY_SIZE;
+		return new String(values, entries[position + 1], entries[position + 2], CoAP.UTF8_CHARSET);
+	}
+
+	private byte[] getBytes(final int index) {
+		int position = index * ENTRY_SIZE;
+		int offset = entries[position + 1];
+		return Arrays.copyOfRange(values, offset, offset + entries[position + 2]);
+	}
+
+	private boolean equalsValue(final int index, final byte[] value) {
+		int position = index * ENTRY_SIZE;
+		int length = entries[position + 2];
+		if (value == null || value.length != length) {
+			return false;
+		}
+		int offset = entries[position + 1];
+		for (int i = 0; i < length; ++i) {
+			if (values[offset + i] != value[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the index of the first option with the given number and value.
+	 * 
+	 * @param number the option number.
+	 * @param value the option value.
+	 * @return the index of the option, or {@code -1}, if not contained.
+	 */
+	private int find(final int number, final byte[] value) {
+		for (int index = indexOf(number); index < size && entries[index * ENTRY_SIZE] == number; ++index) {
+			if (equalsValue(index, value)) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Live view of the values of a repeatable option.
+	 * 
+	 * @param <T> the type of the values.
+	 */
+	private abstract class OptionValues<T> extends AbstractList<T> {
+
+		private final int number;
+
+		private OptionValues(final int number) {
+			this.number = number;
+		}
+
+		protected abstract T decode(int index);
+
+		protected abstract byte[] encode(T element);
+
+		private int toOptionIndex(final int index, final int size) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			return OptionSet.this.indexOf(number) + index;
+		}
+
+		@Override
+		public int size() {
+			return count(number);
+		}
+
+		@Override
+		public T get(final int index) {
+			return decode(toOptionIndex(index, size()));
+		}
+
+		@Override
+		public T set(final int index, final T element) {
+			byte[] value = encode(element);
+			int position = toOptionIndex(index, size());
+			T previous = decode(position);
+			int offset = replace(position, value.length);
+			System.arraycopy(value, 0, values, offset, value.length);
+			return previous;
+		}
+
+		@Override
+		public void add(final int index, final T element) {
+			byte[] value = encode(element);
+			int position = toOptionIndex(index, size() + 1);
+			int offset = insert(position, number, value.length);
+			System.arraycopy(value, 0, values, offset, value.length);
+			++modCount;
+		}
+
+		@Override
+		public T remove(final int index) {
+			int position = toOptionIndex(index, size());
+			T previous = decode(position);
+			OptionSet.this.remove(position, position + 1);
+			++modCount;
+			return previous;
+		}
+
+		@Override
+		public void clear() {
+			OptionSet.this.removeAll(number);
+			++modCount;
+		}
+	}
+
+	private final class OpaqueValues extends OptionValues<byte[]> {
+
+		private OpaqueValues(final int number) {
+			super(number);
+		}
+
+		@Override
+		protected byte[] decode(final int index) {
+			return getBytes(index);
+		}
+
+		@Override
+		protected byte[] encode(final byte[] element) {
+			return element;
+		}
+	}
+
+	private final class StringValues extends OptionValues<String> {
+
+		private StringValues(final int number) {
+			super(number);
+		}
+
+		@Override
+		protected String decode(final int index) {
+			return getString(index);
+		}
+
+		@Override
+		protected byte[] encode(final String element) {
+			return element.getBytes(CoAP.UTF8_CHARSET);
+		}
 	}
 
 	/////////////////////// Getter and Setter ///////////////////////
 
 	/**
 	 * Returns the list of If-Match ETags.
-	 * The OptionSet uses lazy initialization for this list.
+	 * The list is a view backed by this OptionSet.
 	 * @return the list of If-Match ETags
 	 */
 	public List<byte[]> getIfMatch() {
-		synchronized (this) {
-			if (if_match_list == null)
-				if_match_list = new LinkedList<byte[]>();
-		}
-		return if_match_list;
+		return new OpaqueValues(OptionNumberRegistry.IF_MATCH);
 	}
 
 	/**
@@ -185,7 +895,7 @@ public final class OptionSet {
 	 * @return the count
 	 */
 	public int getIfMatchCount() {
-		return getIfMatch().size();
+		return count(OptionNumberRegistry.IF_MATCH);
 	}
 
 	/**
@@ -197,14 +907,15 @@ public final class OptionSet {
 	 * @return true if ETag matches or message contains an empty If-Match option
 	 */
 	public boolean isIfMatch(byte[] check) {
+		int index = indexOf(OptionNumberRegistry.IF_MATCH);
 		
 		// if no If-Match option is present, conditional update is allowed
-		if (if_match_list==null) return true;
+		if (index == size || entries[index * ENTRY_SIZE] != OptionNumberRegistry.IF_MATCH) return true;
 		
-		for (byte[] etag:if_match_list) {
+		for (; index < size && entries[index * ENTRY_SIZE] == OptionNumberRegistry.IF_MATCH; ++index) {
 			// an empty If-Match option checks for existence of the resource
-			if (etag.length==0) return true;
-			if (Arrays.equals(etag, check)) return true;
+			if (entries[index * ENTRY_SIZE + 2] == 0) return true;
+			if (equalsValue(index, check)) return true;
 		}
 		return false;
 	}
@@ -222,7 +933,7 @@ public final class OptionSet {
 			throw new IllegalArgumentException("If-Match option must not be null");
 		if (etag.length > 8)
 			throw new IllegalArgumentException("If-Match option must be smaller or equal to 8 bytes: "+Utils.toHexString(etag));
-		getIfMatch().add(etag);
+		addBytes(OptionNumberRegistry.IF_MATCH, etag);
 		return this;
 	}
 
@@ -233,7 +944,8 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet removeIfMatch(byte[] etag) {
-		getIfMatch().remove(etag);
+		int index = find(OptionNumberRegistry.IF_MATCH, etag);
+		if (index >= 0) remove(index, index + 1);
 		return this;
 	}
 
@@ -243,7 +955,7 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet clearIfMatchs() {
-		getIfMatch().clear();
+		removeAll(OptionNumberRegistry.IF_MATCH);
 		return this;
 	}
 
@@ -252,7 +964,8 @@ public final class OptionSet {
 	 * @return the Uri-Host or null if the option is not present
 	 */
 	public String getUriHost() {
-		return uri_host;
+		int index = find(OptionNumberRegistry.URI_HOST);
+		return index < 0 ? null : getString(index);
 	}
 
 	/**
@@ -260,7 +973,7 @@ public final class OptionSet {
 	 * @return true if present
 	 */
 	public boolean hasUriHost() {
-		return uri_host != null;
+		return find(OptionNumberRegistry.URI_HOST) >= 0;
 	}
 
 	/**
@@ -274,7 +987,7 @@ public final class OptionSet {
 			throw new NullPointerException("URI-Host must not be null");
 		if (host.length() < 1 || 255 < host.length())
 			throw new IllegalArgumentException("URI-Host option's length must be between 1 and 255 inclusive");
-		this.uri_host = host;
+		setBytes(OptionNumberRegistry.URI_HOST, host.getBytes(CoAP.UTF8_CHARSET));
 		return this;
 	}
 
@@ -284,7 +997,7 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet removeUriHost() {
-		this.uri_host = null;
+		removeAll(OptionNumberRegistry.URI_HOST);
 		return this;
 	}
 
@@ -293,15 +1006,11 @@ public final class OptionSet {
 	 * In a response, there MUST only be one ETag that defines the
 	 * payload or the resource given through the Location-* options.
 	 * In a request, there can be multiple ETags for validation.
-	 * The OptionSet uses lazy initialization for this list.
+	 * The list is a view backed by this OptionSet.
 	 * @return the list of ETags
 	 */
 	public List<byte[]> getETags() {
-		synchronized (this) {
-			if (etag_list == null)
-				etag_list = new LinkedList<byte[]>();
-		}
-		return etag_list;
+		return new OpaqueValues(OptionNumberRegistry.ETAG);
 	}
 
 	/**
@@ -309,7 +1018,7 @@ public final class OptionSet {
 	 * @return the count
 	 */
 	public int getETagCount() {
-		return getETags().size();
+		return count(OptionNumberRegistry.ETAG);
 	}
 
 	/**
@@ -320,11 +1029,7 @@ public final class OptionSet {
 	 * @return true if ETag is included
 	 */
 	public boolean containsETag(byte[] check) {
-		if (etag_list==null) return false;
-		for (byte[] etag:etag_list) {
-			if (Arrays.equals(etag, check)) return true;
-		}
-		return false;
+		return find(OptionNumberRegistry.ETAG, check) >= 0;
 	}
 
 	/**
@@ -339,7 +1044,7 @@ public final class OptionSet {
 		// TODO: ProxyHttp uses ETags that are larger than 8 bytes (20).
 //		if (opaque.length < 1 || 8 < opaque.length)
 //			throw new IllegalArgumentException("ETag option's length must be between 1 and 8 inclusive but was "+opaque.length);
-		getETags().add(etag);
+		addBytes(OptionNumberRegistry.ETAG, etag);
 		return this;
 	}
 
@@ -350,7 +1055,8 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet removeETag(byte[] etag) {
-		getETags().remove(etag);
+		int index = find(OptionNumberRegistry.ETAG, etag);
+		if (index >= 0) remove(index, index + 1);
 		return this;
 	}
 
@@ -360,7 +1066,7 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet clearETags() {
-		getETags().clear();
+		removeAll(OptionNumberRegistry.ETAG);
 		return this;
 	}
 
@@ -369,7 +1075,7 @@ public final class OptionSet {
 	 * @return true if present
 	 */
 	public boolean hasIfNoneMatch() {
-		return if_none_match;
+		return find(OptionNumberRegistry.IF_NONE_MATCH) >= 0;
 	}
 
 	/**
@@ -379,7 +1085,8 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet setIfNoneMatch(boolean present) {
-		if_none_match = present;
+		if (present) set(OptionNumberRegistry.IF_NONE_MATCH, 0);
+		else removeAll(OptionNumberRegistry.IF_NONE_MATCH);
 		return this;
 	}
 
@@ -388,7 +1095,8 @@ public final class OptionSet {
 	 * @return the Uri-Port value or null if the option is not present
 	 */
 	public Integer getUriPort() {
-		return uri_port;
+		int index = find(OptionNumberRegistry.URI_PORT);
+		return index < 0 ? null : getInteger(index);
 	}
 
 	/**
@@ -396,7 +1104,7 @@ public final class OptionSet {
 	 * @return true if present
 	 */
 	public boolean hasUriPort() {
-		return uri_port != null;
+		return find(OptionNumberRegistry.URI_PORT) >= 0;
 	}
 
 	/**
@@ -408,7 +1116,7 @@ public final class OptionSet {
 	public OptionSet setUriPort(int port) {
 		if (port < 0 || (1<<16)-1 < port)
 			throw new IllegalArgumentException("URI port option must be between 0 and "+((1<<16)-1)+" (2 bytes) inclusive but was "+port);
-		uri_port = port;
+		setInteger(OptionNumberRegistry.URI_PORT, port);
 		return this;
 	}
 
@@ -418,21 +1126,17 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet removeUriPort() {
-		uri_port = null;
+		removeAll(OptionNumberRegistry.URI_PORT);
 		return this;
 	}
 
 	/**
 	 * Returns the list of Location-Path segment strings.
-	 * The OptionSet uses lazy initialization for this list.
+	 * The list is a view backed by this OptionSet.
 	 * @return the list of Location-Path segments
 	 */
 	public List<String> getLocationPath() {
-		synchronized (this) {
-			if (location_path_list == null)
-				location_path_list = new LinkedList<String>();
-		}
-		return location_path_list;
+		return new StringValues(OptionNumberRegistry.LOCATION_PATH);
 	}
 
 	/**
@@ -455,12 +1159,7 @@ public final class OptionSet {
 	 * @return the Location-Path as string
 	 */
 	public String getLocationPathString() {
-		StringBuilder builder = new StringBuilder();
-		for (String segment:getLocationPath())
-			builder.append(segment).append("/");
-		if (builder.length() > 0)
-			builder.delete(builder.length() - 1, builder.length());
-		return builder.toString();
+		return join(OptionNumberRegistry.LOCATION_PATH, '/');
 	}
 
 	/**
@@ -468,7 +1167,7 @@ public final class OptionSet {
 	 * @return the count
 	 */
 	public int getLocationPathCount() {
-		return getLocationPath().size();
+		return count(OptionNumberRegistry.LOCATION_PATH);
 	}
 
 	/**
@@ -480,9 +1179,10 @@ public final class OptionSet {
 	public OptionSet addLocationPath(String segment) {
 		if (segment == null)
 			throw new IllegalArgumentException("Location-Path option must not be null");
-		if (segment.getBytes(CoAP.UTF8_CHARSET).length > 255)
+		byte[] value = segment.getBytes(CoAP.UTF8_CHARSET);
+		if (value.length > 255)
 			throw new IllegalArgumentException("Location-Path option must be smaller or euqal to 255 bytes (UTF-8 encoded): " + segment);
-		getLocationPath().add(segment);
+		addBytes(OptionNumberRegistry.LOCATION_PATH, value);
 		return this;
 	}
 
@@ -492,7 +1192,7 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet clearLocationPath() {
-		getLocationPath().clear();
+		removeAll(OptionNumberRegistry.LOCATION_PATH);
 		return this;
 	}
 
@@ -521,15 +1221,11 @@ public final class OptionSet {
 
 	/**
 	 * Returns the list of Uri-Path segment strings.
-	 * The OptionSet uses lazy initialization for this list.
+	 * The list is a view backed by this OptionSet.
 	 * @return the list of Uri-Path segments
 	 */
 	public List<String> getUriPath() {
-		synchronized (this) {
-			if (uri_path_list == null)
-				uri_path_list = new LinkedList<String>();
-		}
-		return uri_path_list;
+		return new StringValues(OptionNumberRegistry.URI_PATH);
 	}
 
 	/**
@@ -538,11 +1234,7 @@ public final class OptionSet {
 	 * @return the Uri-Path as string
 	 */
 	public String getUriPathString() {
-		StringBuilder buffer = new StringBuilder();
-		for (String element:getUriPath())
-			buffer.append(element).append("/");
-		if (buffer.length()==0) return "";
-		else return buffer.substring(0, buffer.length()-1);
+		return join(OptionNumberRegistry.URI_PATH, '/');
 	}
 	
 	/**
@@ -550,7 +1242,53 @@ public final class OptionSet {
 	 * @return the count
 	 */
 	public int getURIPathCount() {
-		return getUriPath().size();
+		return count(OptionNumberRegistry.URI_PATH);
+	}
+
+	/**
+	 * Searches a Uri-Path segment in a sorted array of UTF-8 encoded segments
+	 * without decoding the Uri-Path option.
+	 * <p>
+	 * The segments must be sorted by comparing their bytes as unsigned
+	 * values, a segment being smaller than the segments it is a prefix of.
+	 *
+	 * @param index the index of the Uri-Path segment.
+	 * @param segments the sorted UTF-8 encoded segments to search in.
+	 * @return the index of the matching segment, or {@code -1}, if none
+	 *         matches.
+	 * @throws IndexOutOfBoundsException if the index is not a valid index of
+	 *             the Uri-Path segments.
+	 */
+	public int binarySearchUriPath(int index, byte[][] segments) {
+		int position = (indexOf(OptionNumberRegistry.URI_PATH) + index) * ENTRY_SIZE;
+		if (index < 0 || position >= size * ENTRY_SIZE || entries[position] != OptionNumberRegistry.URI_PATH) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + getURIPathCount());
+		}
+		int offset = entries[position + 1];
+		int length = entries[position + 2];
+		int low = 0;
+		int high = segments.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			byte[] segment = segments[mid];
+			int common = Math.min(length, segment.length);
+			int comparison = length - segment.length;
+			for (int i = 0; i < common; ++i) {
+				int difference = (values[offset + i] & 0xFF) - (segment[i] & 0xFF);
+				if (difference != 0) {
+					comparison = difference;
+					break;
+				}
+			}
+			if (comparison > 0) {
+				low = mid + 1;
+			} else if (comparison < 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
 	}
 	
 	/**
@@ -585,9 +1323,10 @@ public final class OptionSet {
 	public OptionSet addUriPath(String segment) {
 		if (segment == null)
 			throw new IllegalArgumentException("URI path option must not be null");
-		if (segment.getBytes(CoAP.UTF8_CHARSET).length > 255)
+		byte[] value = segment.getBytes(CoAP.UTF8_CHARSET);
+		if (value.length > 255)
 			throw new IllegalArgumentException("Uri-Path option must be smaller or euqal to 255 bytes (UTF-8 encoded): " + segment);
-		getUriPath().add(segment);
+		addBytes(OptionNumberRegistry.URI_PATH, value);
 		return this;
 	}
 
@@ -597,7 +1336,7 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet clearUriPath() {
-		getUriPath().clear();
+		removeAll(OptionNumberRegistry.URI_PATH);
 		return this;
 	}
 
@@ -607,7 +1346,8 @@ public final class OptionSet {
 	 * @return the ID as int or -1 if undefined
 	 */
 	public int getContentFormat() {
-		return hasContentFormat() ? content_format : MediaTypeRegistry.UNDEFINED;
+		int index = find(OptionNumberRegistry.CONTENT_FORMAT);
+		return index < 0 ? MediaTypeRegistry.UNDEFINED : getInteger(index);
 	}
 
 	/**
@@ -615,7 +1355,7 @@ public final class OptionSet {
 	 * @return true if present
 	 */
 	public boolean hasContentFormat() {
-		return content_format != null;
+		return find(OptionNumberRegistry.CONTENT_FORMAT) >= 0;
 	}
 
 	/**
@@ -627,7 +1367,7 @@ public final class OptionSet {
 	 * @see MediaTypeRegistry
 	 */
 	public boolean isContentFormat(int format) {
-		return content_format != null && content_format == format;
+		return hasContentFormat() && getContentFormat() == format;
 	}
 
 	/**
@@ -639,8 +1379,8 @@ public final class OptionSet {
 	 * @see MediaTypeRegistry
 	 */
 	public OptionSet setContentFormat(int format) {
-		if (format > MediaTypeRegistry.UNDEFINED) content_format = format;
-		else content_format = null;
+		if (format > MediaTypeRegistry.UNDEFINED) setInteger(OptionNumberRegistry.CONTENT_FORMAT, format);
+		else removeAll(OptionNumberRegistry.CONTENT_FORMAT);
 		return this;
 	}
 
@@ -650,7 +1390,7 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet removeContentFormat() {
-		content_format = null;
+		removeAll(OptionNumberRegistry.CONTENT_FORMAT);
 		return this;
 	}
 	
@@ -659,8 +1399,8 @@ public final class OptionSet {
 	 * @return the Max-Age in seconds
 	 */
 	public Long getMaxAge() {
-		Long m = max_age;
-		return m != null ? m : OptionNumberRegistry.Defaults.MAX_AGE;
+		int index = find(OptionNumberRegistry.MAX_AGE);
+		return index < 0 ? OptionNumberRegistry.Defaults.MAX_AGE : getLong(index);
 	}
 	
 	/**
@@ -669,7 +1409,7 @@ public final class OptionSet {
 	 * @return true if present
 	 */
 	public boolean hasMaxAge() {
-		return max_age != null;
+		return find(OptionNumberRegistry.MAX_AGE) >= 0;
 	}
 	
 	/**
@@ -681,7 +1421,8 @@ public final class OptionSet {
 	public OptionSet setMaxAge(long age) {
 		if (age < 0 || ((1L<<32)-1) < age)
 			throw new IllegalArgumentException("Max-Age option must be between 0 and "+((1L<<32)-1)+" (4 bytes) inclusive");
-		max_age = age;
+		// the 4 least significant bytes encode the same value
+		setInteger(OptionNumberRegistry.MAX_AGE, (int) age);
 		return this;
 	}
 	
@@ -691,21 +1432,17 @@ public final class OptionSet {
 	 * @return this Optionset
 	 */
 	public OptionSet removeMaxAge() {
-		max_age = null;
+		removeAll(OptionNumberRegistry.MAX_AGE);
 		return this;
 	}
 
 	/**
 	 * Returns the list of Uri-Query arguments.
-	 * The OptionSet uses lazy initialization for this list.
+	 * The list is a view backed by this OptionSet.
 	 * @return the list of query arguments
 	 */
 	public List<String> getUriQuery() {
-		synchronized (this) {
-			if (uri_query_list == null)
-				uri_query_list = new LinkedList<String>();
-		}
-		return uri_query_list;
+		return new StringValues(OptionNumberRegistry.URI_QUERY);
 	}
 
 	/**
@@ -713,7 +1450,7 @@ public final class OptionSet {
 	 * @return the count
 	 */
 	public int getURIQueryCount() {
-		return getUriQuery().size();
+		return count(OptionNumberRegistry.URI_QUERY);
 	}
 
 	/**
@@ -721,12 +1458,7 @@ public final class OptionSet {
 	 * @return the Uri-Query as string
 	 */
 	public String getUriQueryString() {
-		StringBuilder builder = new StringBuilder();
-		for (String query:getUriQuery())
-			builder.append(query).append("&");
-		if (builder.length() > 0)
-			builder.delete(builder.length() - 1, builder.length());
-		return builder.toString();
+		return join(OptionNumberRegistry.URI_QUERY, '&');
 	}
 	
 	/**
@@ -758,9 +1490,10 @@ public final class OptionSet {
 	public OptionSet addUriQuery(String argument) {
 		if (argument == null)
 			throw new NullPointerException("Uri-Query option must not be null");
-		if (argument.getBytes(CoAP.UTF8_CHARSET).length > 255)
+		byte[] value = argument.getBytes(CoAP.UTF8_CHARSET);
+		if (value.length > 255)
 			throw new IllegalArgumentException("Uri-Query option must be smaller or euqal to 255 bytes (UTF-8 encoded): " + argument);
-		getUriQuery().add(argument);
+		addBytes(OptionNumberRegistry.URI_QUERY, value);
 		return this;
 	}
 	
@@ -781,7 +1514,7 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet clearUriQuery() {
-		getUriQuery().clear();
+		removeAll(OptionNumberRegistry.URI_QUERY);
 		return this;
 	}
 	
@@ -791,7 +1524,8 @@ public final class OptionSet {
 	 * @return the ID as int or -1 if undefined
 	 */
 	public int getAccept() {
-		return hasAccept() ? accept : MediaTypeRegistry.UNDEFINED;
+		int index = find(OptionNumberRegistry.ACCEPT);
+		return index < 0 ? MediaTypeRegistry.UNDEFINED : getInteger(index);
 	}
 
 	/**
@@ -799,7 +1533,7 @@ public final class OptionSet {
 	 * @return true if present
 	 */
 	public boolean hasAccept() {
-		return accept != null;
+		return find(OptionNumberRegistry.ACCEPT) >= 0;
 	}
 
 	/**
@@ -808,7 +1542,7 @@ public final class OptionSet {
 	 * @return true if equal
 	 */
 	public boolean isAccept(int format) {
-		return accept != null && accept == format;
+		return hasAccept() && getAccept() == format;
 	}
 
 	/**
@@ -822,7 +1556,7 @@ public final class OptionSet {
 	public OptionSet setAccept(int format) {
 		if (format < 0 || format > ((1<<16)-1))
 			throw new IllegalArgumentException("Accept option must be between 0 and "+((1<<16)-1)+" (2 bytes) inclusive");
-		accept = format;
+		setInteger(OptionNumberRegistry.ACCEPT, format);
 		return this;
 	}
 
@@ -832,21 +1566,17 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet removeAccept() {
-		accept = null;
+		removeAll(OptionNumberRegistry.ACCEPT);
 		return this;
 	}
 
 	/**
 	 * Returns the list of Location-Query arguments.
-	 * The OptionSet uses lazy initialization for this list.
+	 * The list is a view backed by this OptionSet.
 	 * @return the list of query arguments
 	 */
 	public List<String> getLocationQuery() {
-		synchronized (this) {
-			if (location_query_list == null)
-				location_query_list = new LinkedList<String>();
-		}
-		return location_query_list;
+		return new StringValues(OptionNumberRegistry.LOCATION_QUERY);
 	}
 
 	/**
@@ -854,7 +1584,7 @@ public final class OptionSet {
 	 * @return the count
 	 */
 	public int getLocationQueryCount() {
-		return getLocationQuery().size();
+		return count(OptionNumberRegistry.LOCATION_QUERY);
 	}
 
 	/**
@@ -862,12 +1592,7 @@ public final class OptionSet {
 	 * @return the Location-Query as string
 	 */
 	public String getLocationQueryString() {
-		StringBuilder builder = new StringBuilder();
-		for (String query:getLocationQuery())
-			builder.append(query).append("&");
-		if (builder.length() > 0)
-			builder.delete(builder.length() - 1, builder.length());
-		return builder.toString();
+		return join(OptionNumberRegistry.LOCATION_QUERY, '&');
 	}
 
 	/**
@@ -898,9 +1623,10 @@ public final class OptionSet {
 	public OptionSet addLocationQuery(String argument) {
 		if (argument == null)
 			throw new NullPointerException("Location-Query option must not be null");
-		if (argument.getBytes(CoAP.UTF8_CHARSET).length > 255)
+		byte[] value = argument.getBytes(CoAP.UTF8_CHARSET);
+		if (value.length > 255)
 			throw new IllegalArgumentException("Location-Query option must be smaller or euqal to 255 bytes (UTF-8 encoded): " + argument);
-		getLocationQuery().add(argument);
+		addBytes(OptionNumberRegistry.LOCATION_QUERY, value);
 		return this;
 	}
 	
@@ -921,16 +1647,36 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet clearLocationQuery() {
-		getLocationQuery().clear();
+		removeAll(OptionNumberRegistry.LOCATION_QUERY);
 		return this;
 	}
 
+	/**
+	 * Joins the string values of a repeatable option.
+	 * 
+	 * @param number the option number.
+	 * @param separator the separator to put between the values.
+	 * @return the joined values.
+	 */
+	private String join(final int number, final char separator) {
+		StringBuilder builder = new StringBuilder();
+		int first = indexOf(number);
+		for (int index = first; index < size && entries[index * ENTRY_SIZE] == number; ++index) {
+			if (index > first) {
+				builder.append(separator);
+			}
+			builder.append(getString(index));
+		}
+		return builder.toString();
+	}
+
 	/**
 	 * Returns the string value of the Proxy-Uri option.
 	 * @return the Proxy-Uri or null if the option is not present
 	 */
 	public String getProxyUri() {
-		return proxy_uri;
+		int index = find(OptionNumberRegistry.PROXY_URI);
+		return index < 0 ? null : getString(index);
 	}
 
 	/**
@@ -938,7 +1684,7 @@ public final class OptionSet {
 	 * @return true if present
 	 */
 	public boolean hasProxyUri() {
-		return proxy_uri != null;
+		return find(OptionNumberRegistry.PROXY_URI) >= 0;
 	}
 
 	/**
@@ -950,9 +1696,10 @@ public final class OptionSet {
 	public OptionSet setProxyUri(String uri) {
 		if (uri == null)
 			throw new NullPointerException("Proxy-Uri option must not be null");
-		if (uri.getBytes(CoAP.UTF8_CHARSET).length < 1 || 1034 < uri.getBytes(CoAP.UTF8_CHARSET).length)
+		byte[] value = uri.getBytes(CoAP.UTF8_CHARSET);
+		if (value.length < 1 || 1034 < value.length)
 			throw new IllegalArgumentException("Proxy-Uri option must be between 1 and 1034 bytes inclusive (UTF-8 encoded): " + uri);
-		proxy_uri = uri;
+		setBytes(OptionNumberRegistry.PROXY_URI, value);
 		return this;
 	}
 
@@ -962,7 +1709,7 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet removeProxyUri() {
-		proxy_uri = null;
+		removeAll(OptionNumberRegistry.PROXY_URI);
 		return this;
 	}
 
@@ -971,7 +1718,8 @@ public final class OptionSet {
 	 * @return the Proxy-Scheme or null if the option is not present
 	 */
 	public String getProxyScheme() {
-		return proxy_scheme;
+		int index = find(OptionNumberRegistry.PROXY_SCHEME);
+		return index < 0 ? null : getString(index);
 	}
 
 	/**
@@ -979,7 +1727,7 @@ public final class OptionSet {
 	 * @return true if present
 	 */
 	public boolean hasProxyScheme() {
-		return proxy_scheme != null;
+		return find(OptionNumberRegistry.PROXY_SCHEME) >= 0;
 	}
 
 	/**
@@ -991,9 +1739,10 @@ public final class OptionSet {
 	public OptionSet setProxyScheme(String scheme) {
 		if (scheme == null)
 			throw new NullPointerException("Proxy-Scheme option must not be null");
-		if (scheme.getBytes(CoAP.UTF8_CHARSET).length < 1 || 255 < scheme.getBytes(CoAP.UTF8_CHARSET).length)
+		byte[] value = scheme.getBytes(CoAP.UTF8_CHARSET);
+		if (value.length < 1 || 255 < value.length)
 			throw new IllegalArgumentException("Proxy-Scheme option must be between 1 and 255 bytes inclusive (UTF-8 encoded): " + scheme);
-		proxy_scheme = scheme;
+		setBytes(OptionNumberRegistry.PROXY_SCHEME, value);
 		return this;
 	}
 
@@ -1003,7 +1752,7 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet removeProxyScheme() {
-		proxy_scheme = null;
+		removeAll(OptionNumberRegistry.PROXY_SCHEME);
 		return this;
 	}
 
@@ -1012,7 +1761,12 @@ public final class OptionSet {
 	 * @return the BlockOption
 	 */
 	public BlockOption getBlock1() {
-		return block1;
+		if (deferred) {
+			int value = scan(OptionNumberRegistry.BLOCK1);
+			return value < 0 ? null : toBlockOption(value);
+		}
+		int index = find(OptionNumberRegistry.BLOCK1);
+		return index < 0 ? null : new BlockOption(getBytes(index));
 	}
 
 	/**
@@ -1020,7 +1774,10 @@ public final class OptionSet {
 	 * @return true if present
 	 */
 	public boolean hasBlock1() {
-		return block1 != null;
+		if (deferred) {
+			return scan(OptionNumberRegistry.BLOCK1) >= 0;
+		}
+		return find(OptionNumberRegistry.BLOCK1) >= 0;
 	}
 
 	/**
@@ -1032,8 +1789,7 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet setBlock1(int szx, boolean m, int num) {
-		this.block1 = new BlockOption(szx, m, num);
-		return this;
+		return setBlock1(new BlockOption(szx, m, num));
 	}
 
 	/**
@@ -1043,8 +1799,7 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet setBlock1(byte[] value) {
-		this.block1 = new BlockOption(value);
-		return this;
+		return setBlock1(new BlockOption(value));
 	}
 
 	/**
@@ -1054,7 +1809,8 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet setBlock1(BlockOption block) {
-		this.block1 = block;
+		if (block != null) setBytes(OptionNumberRegistry.BLOCK1, block.getValue());
+		else removeAll(OptionNumberRegistry.BLOCK1);
 		return this;
 	}
 
@@ -1064,7 +1820,7 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet removeBlock1() {
-		this.block1 = null;
+		removeAll(OptionNumberRegistry.BLOCK1);
 		return this;
 	}
 
@@ -1073,7 +1829,12 @@ public final class OptionSet {
 	 * @return the BlockOption
 	 */
 	public BlockOption getBlock2() {
-		return block2;
+		if (deferred) {
+			int value = scan(OptionNumberRegistry.BLOCK2);
+			return value < 0 ? null : toBlockOption(value);
+		}
+		int index = find(OptionNumberRegistry.BLOCK2);
+		return index < 0 ? null : new BlockOption(getBytes(index));
 	}
 
 	/**
@@ -1081,7 +1842,10 @@ public final class OptionSet {
 	 * @return true if present
 	 */
 	public boolean hasBlock2() {
-		return block2 != null;
+		if (deferred) {
+			return scan(OptionNumberRegistry.BLOCK2) >= 0;
+		}
+		return find(OptionNumberRegistry.BLOCK2) >= 0;
 	}
 
 	/**
@@ -1093,8 +1857,7 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet setBlock2(int szx, boolean m, int num) {
-		this.block2 = new BlockOption(szx, m, num);
-		return this;
+		return setBlock2(new BlockOption(szx, m, num));
 	}
 
 	/**
@@ -1105,8 +1868,7 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet setBlock2(byte[] value) {
-		this.block2 = new BlockOption(value);
-		return this;
+		return setBlock2(new BlockOption(value));
 	}
 
 	/**
@@ -1116,7 +1878,8 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet setBlock2(BlockOption block) {
-		this.block2 = block;
+		if (block != null) setBytes(OptionNumberRegistry.BLOCK2, block.getValue());
+		else removeAll(OptionNumberRegistry.BLOCK2);
 		return this;
 	}
 
@@ -1126,7 +1889,7 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet removeBlock2() {
-		this.block2 = null;
+		removeAll(OptionNumberRegistry.BLOCK2);
 		return this;
 	}
 
@@ -1135,7 +1898,8 @@ public final class OptionSet {
 	 * @return the Size1 value or null if the option is not present
 	 */
 	public Integer getSize1() {
-		return size1;
+		int index = find(OptionNumberRegistry.SIZE1);
+		return index < 0 ? null : getInteger(index);
 	}
 
 	/**
@@ -1143,7 +1907,7 @@ public final class OptionSet {
 	 * @return true if present
 	 */
 	public boolean hasSize1() {
-		return size1 != null;
+		return find(OptionNumberRegistry.SIZE1) >= 0;
 	}
 
 	/**
@@ -1153,7 +1917,7 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet setSize1(int size) {
-		this.size1 = size;
+		setInteger(OptionNumberRegistry.SIZE1, size);
 		return this;
 	}
 
@@ -1163,7 +1927,7 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet removeSize1() {
-		this.size1 = null;
+		removeAll(OptionNumberRegistry.SIZE1);
 		return this;
 	}
 
@@ -1172,7 +1936,8 @@ public final class OptionSet {
 	 * @return the Size2 value or null if the option is not present
 	 */
 	public Integer getSize2() {
-		return size2;
+		int index = find(OptionNumberRegistry.SIZE2);
+		return index < 0 ? null : getInteger(index);
 	}
 
 	/**
@@ -1180,7 +1945,7 @@ public final class OptionSet {
 	 * @return true if present
 	 */
 	public boolean hasSize2() {
-		return size2 != null;
+		return find(OptionNumberRegistry.SIZE2) >= 0;
 	}
 
 	/**
@@ -1190,7 +1955,7 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet setSize2(int size) {
-		this.size2 = size;
+		setInteger(OptionNumberRegistry.SIZE2, size);
 		return this;
 	}
 
@@ -1200,7 +1965,7 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet removeSize2() {
-		this.size2 = null;
+		removeAll(OptionNumberRegistry.SIZE2);
 		return this;
 	}
 
@@ -1209,7 +1974,12 @@ public final class OptionSet {
 	 * @return the Observe value or null if the option is not present
 	 */
 	public Integer getObserve() {
-		return observe;
+		if (deferred) {
+			int value = scan(OptionNumberRegistry.OBSERVE);
+			return value < 0 ? null : value;
+		}
+		int index = find(OptionNumberRegistry.OBSERVE);
+		return index < 0 ? null : getInteger(index);
 	}
 
 	/**
@@ -1217,7 +1987,10 @@ public final class OptionSet {
 	 * @return true if present
 	 */
 	public boolean hasObserve() {
-		return observe != null;
+		if (deferred) {
+			return scan(OptionNumberRegistry.OBSERVE) >= 0;
+		}
+		return find(OptionNumberRegistry.OBSERVE) >= 0;
 	}
 
 	/**
@@ -1229,11 +2002,10 @@ public final class OptionSet {
 	 * @throws IllegalArgumentException if the given number is &lt; 0 or &gt; 2^24 - 1
 	 */
 	public OptionSet setObserve(final int seqnum) {
-
 		if (!isValidObserveOption(seqnum)) {
 			throw new IllegalArgumentException("Observe option must be between 0 and " + MAX_OBSERVE_NO + " (3 bytes) inclusive");
 		} else {
-			this.observe = seqnum;
+			setInteger(OptionNumberRegistry.OBSERVE, seqnum);
 			return this;
 		}
 	}
@@ -1244,7 +2016,7 @@ public final class OptionSet {
 	 * @return this OptionSet
 	 */
 	public OptionSet removeObserve() {
-		observe = null;
+		removeAll(OptionNumberRegistry.OBSERVE);
 		return this;
 	}
 
@@ -1264,15 +2036,7 @@ public final class OptionSet {
 	 * @return true if present
 	 */
 	public boolean hasOption(int number) {
-		return Collections.binarySearch(asSortedList(), new Option(number)) >= 0;
-	}
-
-	private List<Option> getOthersInternal() {
-		synchronized (this) {
-			if (others == null)
-				others = new LinkedList<Option>();
-		}
-		return others;
+		return find(number) >= 0;
 	}
 
 	/**
@@ -1283,7 +2047,17 @@ public final class OptionSet {
 	 * @return list of other options.
 	 */
 	public List<Option> getOthers() {
-		List<Option> others = this.others;
+		index();
+		List<Option> others = null;
+		for (int index = 0; index < size; ++index) {
+			int number = entries[index * ENTRY_SIZE];
+			if (isOther(number)) {
+				if (others == null) {
+					others = new ArrayList<Option>();
+				}
+				others.add(new Option(number, getBytes(index)));
+			}
+		}
 		if (others == null) {
 			return Collections.emptyList();
 		} else {
@@ -1297,54 +2071,128 @@ public final class OptionSet {
 	 * @return the sorted list (a copy)
 	 */
 	public List<Option> asSortedList() {
-		ArrayList<Option> options = new ArrayList<Option>();
+		index();
+		// the options are kept sorted
+		ArrayList<Option> options = new ArrayList<Option>(size);
+		for (int index = 0; index < size; ++index) {
+			options.add(new Option(entries[index * ENTRY_SIZE], getBytes(index)));
+		}
+		return options;
+	}
 		
-		if (if_match_list != null) for (byte[] value:if_match_list)
-			options.add(new Option(OptionNumberRegistry.IF_MATCH, value));
-		if (hasUriHost())
-			options.add(new Option(OptionNumberRegistry.URI_HOST, getUriHost()));
-		if (etag_list != null) for (byte[] value:etag_list)
-			options.add(new Option(OptionNumberRegistry.ETAG, value));
-		if (hasIfNoneMatch())
-			options.add(new Option(OptionNumberRegistry.IF_NONE_MATCH));
-		if (hasUriPort())
-			options.add(new Option(OptionNumberRegistry.URI_PORT, getUriPort()));
-		if (location_path_list != null) for (String str:location_path_list)
-			options.add(new Option(OptionNumberRegistry.LOCATION_PATH, str));
-		if (uri_path_list != null) for (String str:uri_path_list)
-			options.add(new Option(OptionNumberRegistry.URI_PATH, str));
-		if (hasContentFormat())
-			options.add(new Option(OptionNumberRegistry.CONTENT_FORMAT, getContentFormat()));
-		if (hasMaxAge())
-			options.add(new Option(OptionNumberRegistry.MAX_AGE, getMaxAge()));
-		if (uri_query_list != null) for (String str:uri_query_list)
-			options.add(new Option(OptionNumberRegistry.URI_QUERY, str));
-		if (hasAccept())
-			options.add(new Option(OptionNumberRegistry.ACCEPT, getAccept()));
-		if (location_query_list != null) for (String str:location_query_list)
-			options.add(new Option(OptionNumberRegistry.LOCATION_QUERY, str));
-		if (hasProxyUri())
-			options.add(new Option(OptionNumberRegistry.PROXY_URI, getProxyUri()));
-		if (hasProxyScheme())
-			options.add(new Option(OptionNumberRegistry.PROXY_SCHEME, getProxyScheme()));
+	/**
+	 * Gets the length of the options encoded in the CoAP wire format.
+	 * 
+	 * @return the number of bytes, excluding the payload marker.
+	 * @throws IllegalArgumentException if an option delta or length exceeds
+	 *             65535 + 269.
+	 */
+	public int getEncodedLength() {
+		index();
+		int length = 0;
+		int lastNumber = 0;
+		for (int index = 0; index < size * ENTRY_SIZE; index += ENTRY_SIZE) {
+			int valueLength = entries[index + 2];
+			length += 1 + getExtendedLength(getNibble(entries[index] - lastNumber))
+					+ getExtendedLength(getNibble(valueLength)) + valueLength;
+			lastNumber = entries[index];
+		}
+		return length;
+	}
 		
-		if (hasObserve())
-			options.add(new Option(OptionNumberRegistry.OBSERVE, getObserve()));
+	/**
+	 * Encodes the options in the CoAP wire format.
+	 * 
+	 * @param buffer the array to write to. It must have room for
+	 *            {@link #getEncodedLength()} bytes starting at the offset.
+	 * @param offset the index to start writing at.
+	 * @return the index following the last byte written.
+	 * @throws IllegalArgumentException if an option delta or length exceeds
+	 *             65535 + 269.
+	 */
+	public int encode(byte[] buffer, int offset) {
+		index();
+		int lastNumber = 0;
+		for (int index = 0; index < size * ENTRY_SIZE; index += ENTRY_SIZE) {
+			int delta = entries[index] - lastNumber;
+			int valueLength = entries[index + 2];
+			int deltaNibble = getNibble(delta);
+			int lengthNibble = getNibble(valueLength);
+			// 4-bit option delta followed by 4-bit option length
+			buffer[offset++] = (byte) (deltaNibble << 4 | lengthNibble);
+			// extended option delta and length fields (0 - 2 bytes each)
+			offset = writeExtendedValue(buffer, offset, deltaNibble, delta);
+			offset = writeExtendedValue(buffer, offset, lengthNibble, valueLength);
+			System.arraycopy(values, entries[index + 1], buffer, offset, valueLength);
+			offset += valueLength;
+			lastNumber = entries[index];
+		}
+		return offset;
+	}
 		
-		if (hasBlock1())
-			options.add(new Option(OptionNumberRegistry.BLOCK1, getBlock1().getValue()));
-		if (hasBlock2())
-			options.add(new Option(OptionNumberRegistry.BLOCK2, getBlock2().getValue()));
-		if (hasSize1())
-			options.add(new Option(OptionNumberRegistry.SIZE1, getSize1()));
-		if (hasSize2())
-			options.add(new Option(OptionNumberRegistry.SIZE2, getSize2()));
+	/**
+	 * Gets an option delta or length.
+	 * 
+	 * @param bytes the encoded options.
+	 * @param index the index of the extended field.
+	 * @param end the index following the encoded options.
+	 * @param nibble the 4-bit option header value.
+	 * @return the option delta or length.
+	 * @throws IllegalArgumentException if the nibble is 15 or the extended
+	 *             field exceeds the encoded options.
+	 */
+	private static int getExtendedValue(final byte[] bytes, final int index, final int end, final int nibble) {
+		if (nibble == 15) {
+			throw new IllegalArgumentException("Illegal option delta/length: " + nibble);
+		} else if (index + getExtendedLength(nibble) > end) {
+			throw new IllegalArgumentException("Option delta/length exceeds encoded options");
+		} else if (nibble <= 12) {
+			return nibble;
+		} else if (nibble == 13) {
+			return (bytes[index] & 0xFF) + 13;
+		} else {
+			return ((bytes[index] & 0xFF) << 8 | (bytes[index + 1] & 0xFF)) + 269;
+		}
+	}
 		
-		if (others != null)
-			options.addAll(others);
+	private static int writeExtendedValue(final byte[] buffer, int index, final int nibble, final int value) {
+		if (nibble == 13) {
+			buffer[index++] = (byte) (value - 13);
+		} else if (nibble == 14) {
+			int extended = value - 269;
+			buffer[index++] = (byte) (extended >> 8);
+			buffer[index++] = (byte) extended;
+		}
+		return index;
+	}
 		
-		Collections.sort(options);
-		return options;
+	/**
+	 * Gets the number of bytes of the extended option delta or length field.
+	 * 
+	 * @param nibble the 4-bit option header value.
+	 * @return the number of bytes (0 - 2).
+	 */
+	private static int getExtendedLength(final int nibble) {
+		return nibble <= 12 ? 0 : nibble - 12;
+	}
+
+	/**
+	 * Gets the 4-bit option header value.
+	 * 
+	 * @param value the option delta or length to be encoded.
+	 * @return the 4-bit option header value.
+	 * @throws IllegalArgumentException if the value is &gt; 65535 + 269.
+	 */
+	private static int getNibble(final int value) {
+		if (value <= 12) {
+			return value;
+		} else if (value <= 255 + 13) {
+			return 13;
+		} else if (value <= 65535 + 269) {
+			return 14;
+		} else {
+			throw new IllegalArgumentException("Unsupported option delta " + value);
+		}
 	}
 
 	/**
@@ -1373,7 +2221,7 @@ public final class OptionSet {
 			case OptionNumberRegistry.SIZE1:          setSize1(option.getIntegerValue()); break;
 			case OptionNumberRegistry.SIZE2:          setSize2(option.getIntegerValue()); break;
 			case OptionNumberRegistry.OBSERVE:        setObserve(option.getIntegerValue()); break;
-			default: getOthersInternal().add(option);
+			default: addBytes(option.getNumber(), option.getValue());
 		}
 		return this;
 	}
@@ -1413,8 +2261,8 @@ public final class OptionSet {
 		}
 		if (list) sbv.append(']');
 		sb.append(sbv.toString());
+
 		sb.append('}');
-		
 		return sb.toString();
 	}
 }
@@ -29,6 +29,12 @@
  *                                                    BaseMatcher final
  *    Achim Kraus (Bosch Software Innovations GmbH) - call Exchange.setComplete() for all
  *                                                    canceled messages
+ *    Bosch Software Innovations GmbH - add peer-striped protocol stage execution
+ *    Bosch Software Innovations GmbH - answer duplicates of completed exchanges
+ *                                      from compact deduplicator entries
+ *    Bosch Software Innovations GmbH - support lazy option parsing
+ *    Bosch Software Innovations GmbH - execute tasks for many peers in the protocol stage
+ *    Bosch Software Innovations GmbH - support timer wheel for striped protocol stage
  ******************************************************************************/
 package org.eclipse.californium.core.network;
 
@@ -39,6 +45,7 @@ import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -51,7 +58,9 @@ import org.eclipse.californium.core.coap.MessageFormatException;
 import org.eclipse.californium.core.coap.Request;
 import org.eclipse.californium.core.coap.Response;
 import org.eclipse.californium.core.network.EndpointManager.ClientMessageDeliverer;
+import org.eclipse.californium.core.network.Exchange.KeyMID;
 import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.eclipse.californium.core.network.deduplication.CompletedExchange;
 import org.eclipse.californium.core.network.interceptors.MessageInterceptor;
 import org.eclipse.californium.core.network.serialization.DataParser;
 import org.eclipse.californium.core.network.serialization.DataSerializer;
@@ -74,6 +83,10 @@ import org.eclipse.californium.elements.RawDataChannel;
 import org.eclipse.californium.elements.UDPConnector;
 import org.eclipse.californium.elements.tcp.TcpConnector;
 import org.eclipse.californium.elements.util.DaemonThreadFactory;
+import org.eclipse.californium.elements.util.HashedWheelTimer;
+
+import eu.javaspecialists.tjsn.concurrency.stripedexecutor.StripedExecutorService;
+import eu.javaspecialists.tjsn.concurrency.stripedexecutor.StripedRunnable;
 
 /**
  * Endpoint encapsulates the stack that executes the CoAP protocol. Endpoint
@@ -131,11 +144,27 @@ import org.eclipse.californium.elements.util.DaemonThreadFactory;
  * <p>
  * The endpoint and its layers use an {@link ScheduledExecutorService} to
  * execute tasks, e.g., when a request arrives.
+ * <p>
+ * Alternatively the protocol stage may be executed by a
+ * {@link StripedExecutorService}, see {@link #setStripedExecutor(StripedExecutorService)}.
+ * The tasks are then striped by the peer's address, which keeps the order of
+ * the messages of one peer, while the messages of different peers are
+ * processed in parallel. The {@link ScheduledExecutorService} is then only
+ * used for timers, e.g. retransmissions, and may be a {@link HashedWheelTimer}
+ * without task executor, see
+ * {@link NetworkConfig.Keys#PROTOCOL_STAGE_TIMER_WHEEL_TICK}. Such a timer is
+ * rejected, if it would also execute the protocol stage.
  */
 public class CoapEndpoint implements Endpoint {
 	
 	/** the logger. */
 	private static final Logger LOGGER = Logger.getLogger(CoapEndpoint.class.getCanonicalName());
+
+	/**
+	 * Number of buckets of the timer wheel installed by
+	 * {@link NetworkConfig.Keys#PROTOCOL_STAGE_TIMER_WHEEL_TICK}.
+	 */
+	private static final int TIMER_WHEEL_SIZE = 512;
 	
 	/** The stack of layers that make up the CoAP protocol */
 	private final CoapStack coapstack;
@@ -155,8 +184,20 @@ public class CoapEndpoint implements Endpoint {
 	/** Parser to convert datagrams to messages. */
 	private final DataParser parser;
 
+	/**
+	 * The store to replace completed exchanges with compact entries. If
+	 * {@code null}, completed exchanges are kept by the deduplicator.
+	 */
+	private final InMemoryMessageExchangeStore compactingExchangeStore;
+
 	/** The executor to run tasks for this endpoint and its layers */
 	private ScheduledExecutorService executor;
+
+	/**
+	 * The executor to run the protocol stage striped by peer. If
+	 * {@code null}, the protocol stage is run by {@link #executor}.
+	 */
+	private StripedExecutorService stripedExecutor;
 	
 	/** Indicates if the endpoint has been started */
 	private boolean started;
@@ -274,12 +315,19 @@ public class CoapEndpoint implements Endpoint {
 			this.matcher = new TcpMatcher(config, localExchangeStore);
 			this.coapstack = new CoapTcpStack(config, new OutboxImpl());
 			this.serializer = new TcpDataSerializer();
-			this.parser = new TcpDataParser();
+			this.parser = new TcpDataParser(config.getBoolean(NetworkConfig.Keys.USE_LAZY_OPTION_PARSING));
+			this.compactingExchangeStore = null;
 		} else {
 			this.matcher = new UdpMatcher(config, localExchangeStore);
 			this.coapstack = new CoapUdpStack(config, new OutboxImpl());
 			this.serializer = new UdpDataSerializer();
-			this.parser = new UdpDataParser();
+			this.parser = new UdpDataParser(config.getBoolean(NetworkConfig.Keys.USE_LAZY_OPTION_PARSING));
+			if (localExchangeStore instanceof InMemoryMessageExchangeStore
+					&& config.getBoolean(NetworkConfig.Keys.DEDUPLICATOR_COMPACT_EXCHANGES)) {
+				this.compactingExchangeStore = (InMemoryMessageExchangeStore) localExchangeStore;
+			} else {
+				this.compactingExchangeStore = null;
+			}
 		}
 	}
 
@@ -299,6 +347,11 @@ public class CoapEndpoint implements Endpoint {
 		c.setReceiveBufferSize(config.getInt(NetworkConfig.Keys.UDP_CONNECTOR_RECEIVE_BUFFER));
 		c.setSendBufferSize(config.getInt(NetworkConfig.Keys.UDP_CONNECTOR_SEND_BUFFER));
 		c.setReceiverPacketSize(config.getInt(NetworkConfig.Keys.UDP_CONNECTOR_DATAGRAM_SIZE));
+		c.setUseDatagramChannel(config.getBoolean(NetworkConfig.Keys.UDP_CONNECTOR_USE_DATAGRAM_CHANNEL));
+		c.setReusePortSocketCount(config.getInt(NetworkConfig.Keys.UDP_CONNECTOR_REUSE_PORT_SOCKET_COUNT));
+		c.setOutboundCapacity(config.getInt(NetworkConfig.Keys.UDP_CONNECTOR_OUT_CAPACITY));
+		c.setOverflowPolicy(UDPConnector.OverflowPolicy.valueOf(config.getString(NetworkConfig.Keys.UDP_CONNECTOR_OUT_OVERFLOW_POLICY)));
+		c.setSenderBatchSize(config.getInt(NetworkConfig.Keys.UDP_CONNECTOR_SENDER_BATCH_SIZE));
 
 		return c;
 	}
@@ -314,13 +367,31 @@ public class CoapEndpoint implements Endpoint {
 			setMessageDeliverer(new ClientMessageDeliverer());
 		}
 
+		boolean striped = this.stripedExecutor != null || config.getBoolean(NetworkConfig.Keys.PROTOCOL_STAGE_STRIPED_BY_PEER);
+		int timerWheelTick = config.getInt(NetworkConfig.Keys.PROTOCOL_STAGE_TIMER_WHEEL_TICK);
+		if (!striped) {
+			// without striped executor, the executor also runs the protocol stage
+			if (this.executor == null ? timerWheelTick > 0
+					: this.executor instanceof HashedWheelTimer && !((HashedWheelTimer) this.executor).hasTaskExecutor()) {
+				throw new IllegalStateException(
+						"timer wheel without task executor requires the protocol stage striped by peer");
+			}
+		}
+
 		if (this.executor == null) {
-			LOGGER.log(Level.CONFIG, "Endpoint [{0}] requires an executor to start, using default single-threaded daemon executor", getAddress());
+			if (timerWheelTick > 0) {
+				LOGGER.log(Level.CONFIG, "Endpoint [{0}] uses timer wheel with {1}ms ticks",
+						new Object[] { getAddress(), timerWheelTick });
+				setExecutor(new HashedWheelTimer("CoapEndpoint-" + connector.getAddress() + "-timer", timerWheelTick, //$NON-NLS-1$
+						TimeUnit.MILLISECONDS, TIMER_WHEEL_SIZE, null));
+			} else {
+				LOGGER.log(Level.CONFIG, "Endpoint [{0}] requires an executor to start, using default single-threaded daemon executor", getAddress());
 
-			// in production environments the executor should be set to a multi threaded version
-			// in order to utilize all cores of the processor
-			setExecutor(Executors.newSingleThreadScheduledExecutor(
-					new DaemonThreadFactory("CoapEndpoint-" + connector.getAddress() + '#'))); //$NON-NLS-1$
+				// in production environments the executor should be set to a multi threaded version
+				// in order to utilize all cores of the processor
+				setExecutor(Executors.newSingleThreadScheduledExecutor(
+						new DaemonThreadFactory("CoapEndpoint-" + connector.getAddress() + '#'))); //$NON-NLS-1$
+			}
 			addObserver(new EndpointObserver() {
 				@Override
 				public void started(final Endpoint endpoint) {
@@ -337,6 +408,25 @@ public class CoapEndpoint implements Endpoint {
 			});
 		}
 
+		if (this.stripedExecutor == null && config.getBoolean(NetworkConfig.Keys.PROTOCOL_STAGE_STRIPED_BY_PEER)) {
+			LOGGER.log(Level.CONFIG, "Endpoint [{0}] uses protocol stage striped by peer", getAddress());
+			setStripedExecutor(new StripedExecutorService(config.getInt(NetworkConfig.Keys.PROTOCOL_STAGE_THREAD_COUNT)));
+			addObserver(new EndpointObserver() {
+				@Override
+				public void started(final Endpoint endpoint) {
+					// do nothing
+				}
+				@Override
+				public void stopped(final Endpoint endpoint) {
+					// do nothing
+				}
+				@Override
+				public void destroyed(final Endpoint endpoint) {
+					stripedExecutor.shutdown();
+				}
+			});
+		}
+
 		try {
 			LOGGER.log(Level.INFO, "Starting endpoint at {0}", getAddress());
 
@@ -417,6 +507,37 @@ public class CoapEndpoint implements Endpoint {
 		this.coapstack.setExecutor(executor);
 	}
 
+	/**
+	 * Sets the executor to run the protocol stage striped by peer.
+	 * <p>
+	 * All tasks processing messages received from or sent to the same peer
+	 * are executed consecutively, tasks for different peers are executed in
+	 * parallel. The executor set by {@link #setExecutor(ScheduledExecutorService)}
+	 * is then only used by the layers for timers.
+	 * <p>
+	 * If this property is not set before the endpoint is started and
+	 * {@link NetworkConfig.Keys#PROTOCOL_STAGE_STRIPED_BY_PEER} is enabled,
+	 * a striped executor with
+	 * {@link NetworkConfig.Keys#PROTOCOL_STAGE_THREAD_COUNT} threads is
+	 * created and shut down, when the endpoint is destroyed. An executor set
+	 * by this method is <em>not</em> shut down by the endpoint.
+	 * 
+	 * @param stripedExecutor the striped executor, or {@code null}, to run
+	 *            the protocol stage by the scheduled executor.
+	 * @throws IllegalStateException if this endpoint is running.
+	 */
+	public synchronized void setStripedExecutor(final StripedExecutorService stripedExecutor) {
+		if (started) {
+			throw new IllegalStateException("cannot set striped executor while endpoint is running");
+		}
+		this.stripedExecutor = stripedExecutor;
+	}
+
+	@Override
+	public void execute(final Runnable task) {
+		runInProtocolStage(null, task);
+	}
+
 	@Override
 	public void addObserver(final EndpointObserver observer) {
 		observers.add(observer);
@@ -445,7 +566,7 @@ public class CoapEndpoint implements Endpoint {
 	@Override
 	public void sendRequest(final Request request) {
 		// always use endpoint executor
-		runInProtocolStage(new Runnable() {
+		runInProtocolStage(getDestination(request), new Runnable() {
 			@Override
 			public void run() {
 				coapstack.sendRequest(request);
@@ -457,7 +578,7 @@ public class CoapEndpoint implements Endpoint {
 	public void sendResponse(final Exchange exchange, final Response response) {
 		if (exchange.hasCustomExecutor()) {
 			// handle sending by protocol stage instead of business logic stage
-			runInProtocolStage(new Runnable() {
+			runInProtocolStage(getDestination(response), new Runnable() {
 				@Override
 				public void run() {
 					coapstack.sendResponse(exchange, response);
@@ -580,6 +701,11 @@ public class CoapEndpoint implements Endpoint {
 			}
 			else {
 				connector.send(serializer.serializeResponse(response));
+				if (compactingExchangeStore != null && exchange != null && exchange.isComplete()) {
+					// piggy-backed and NON responses complete the exchange
+					// before they are serialized
+					compactingExchangeStore.replaceCompleted(exchange);
+				}
 			}
 		}
 
@@ -636,7 +762,7 @@ public class CoapEndpoint implements Endpoint {
 			} else {
 
 				// Create a new task to process this message
-				runInProtocolStage(new Runnable() {
+				runInProtocolStage(raw.getInetSocketAddress(), new Runnable() {
 					@Override
 					public void run() {
 						receiveMessage(raw);
@@ -730,6 +856,14 @@ public class CoapEndpoint implements Endpoint {
 
 			// MessageInterceptor might have canceled
 			if (!request.isCanceled()) {
+				if (compactingExchangeStore != null) {
+					CompletedExchange completed = compactingExchangeStore
+							.findCompleted(KeyMID.fromInboundMessage(request));
+					if (completed != null) {
+						respondToDuplicate(completed, request);
+						return;
+					}
+				}
 				Exchange exchange = matcher.receiveRequest(request);
 				if (exchange != null) {
 					exchange.setEndpoint(CoapEndpoint.this);
@@ -738,6 +872,22 @@ public class CoapEndpoint implements Endpoint {
 			}
 		}
 
+		/**
+		 * Answers a duplicate of a request of an already completed exchange.
+		 * 
+		 * @param exchange the completed exchange.
+		 * @param request the duplicate request.
+		 */
+		private void respondToDuplicate(final CompletedExchange exchange, final Request request) {
+			byte[] reply = exchange.getReply();
+			if (reply != null) {
+				LOGGER.fine("Respond with the reply of the completed exchange to the duplicate request");
+				connector.send(new RawData(reply, request.getSource(), request.getSourcePort()));
+			} else {
+				LOGGER.fine("Ignore the duplicate request of the completed exchange");
+			}
+		}
+
 		private void receiveResponse(final Response response, final RawData raw) {
 
 			/* 
@@ -797,15 +947,56 @@ public class CoapEndpoint implements Endpoint {
 	 * @param task the task
 	 */
 	private void runInProtocolStage(final Runnable task) {
-		executor.execute(new Runnable() {
-			@Override
-			public void run() {
-				try {
-					task.run();
-				} catch (final Throwable t) {
-					LOGGER.log(Level.SEVERE, String.format("Exception in protocol stage thread: %s", t.getMessage()), t);
+		runInProtocolStage(null, task);
+	}
+
+	/**
+	 * Execute the specified task on the endpoint's executor (protocol stage).
+	 * <p>
+	 * If a striped executor is used, the task is executed in order with all
+	 * other tasks for the same peer.
+	 *
+	 * @param peer the peer the task is executed for. May be {@code null}, if
+	 *            the task is not related to a peer.
+	 * @param task the task
+	 */
+	private void runInProtocolStage(final InetSocketAddress peer, final Runnable task) {
+		final StripedExecutorService striped = stripedExecutor;
+		if (striped != null) {
+			striped.execute(new StripedRunnable() {
+
+				@Override
+				public Object getStripe() {
+					return peer;
 				}
-			}
-		});
+
+				@Override
+				public void run() {
+					runProtocolStageTask(task);
+				}
+			});
+		} else {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					runProtocolStageTask(task);
+				}
+			});
+		}
+	}
+
+	private static void runProtocolStageTask(final Runnable task) {
+		try {
+			task.run();
+		} catch (final Throwable t) {
+			LOGGER.log(Level.SEVERE, String.format("Exception in protocol stage thread: %s", t.getMessage()), t);
+		}
+	}
+
+	private static InetSocketAddress getDestination(final Message message) {
+		if (message.getDestination() == null) {
+			return null;
+		}
+		return new InetSocketAddress(message.getDestination(), message.getDestinationPort());
 	}
 }
@@ -16,6 +16,7 @@
  *    Dominique Im Obersteg - parsers and initial implementation
  *    Daniel Pauli - parsers and initial implementation
  *    Kai Hudalla - logging
+ *    Bosch Software Innovations GmbH - execute tasks in the protocol stage
  ******************************************************************************/
 package org.eclipse.californium.core.network;
 
@@ -84,6 +85,17 @@ public interface Endpoint {
 	 */
 	void setExecutor(ScheduledExecutorService executor);
 
+	/**
+	 * Executes a task on the protocol stage of this endpoint.
+	 * <p>
+	 * Intended for tasks, which send messages to many peers, e.g. notifying
+	 * the observe relations of a resource, which has no executor of its own.
+	 * The task is not ordered with the tasks of any peer.
+	 *
+	 * @param task the task
+	 */
+	void execute(Runnable task);
+
 	/**
 	 * Adds the observer to the list of observers. This has nothing to do with
 	 * CoAP observe relations.
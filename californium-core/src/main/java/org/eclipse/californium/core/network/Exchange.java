@@ -25,9 +25,11 @@
  *    Achim Kraus (Bosch Software Innovations GmbH) - don't pass CorrelationContext to
  *                                                    ExchangeObserver.
  *                                                    issue #311
+ *    Bosch Software Innovations GmbH - expose KeyMID fields to packed key stores
  ******************************************************************************/
 package org.eclipse.californium.core.network;
 
+import java.net.InetAddress;
 import java.util.Arrays;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicReference;
@@ -612,6 +614,7 @@ public class Exchange {
 		private static final int MAX_PORT_NO = (1 << 16) - 1;
 		private final int MID;
 		private final byte[] address;
+		private final InetAddress inetAddress;
 		private final int port;
 		private final int hash;
 
@@ -625,7 +628,7 @@ public class Exchange {
 		 * @throws IllegalArgumentException if mid or port &lt; 0 or &gt; 65535.
 		 * 
 		 */
-		private KeyMID(final int mid, final byte[] address, final int port) {
+		KeyMID(final int mid, final InetAddress address, final int port) {
 			if (mid < 0 || mid > 1 << 16) {
 				throw new IllegalArgumentException("MID must be a 16 bit unsigned int: " + mid);
 			} else if (address == null) {
@@ -634,12 +637,40 @@ public class Exchange {
 				throw new IllegalArgumentException("Port must be a 16 bit unsigned int");
 			} else {
 				this.MID = mid;
-				this.address = address;
+				this.address = address.getAddress();
+				this.inetAddress = address;
 				this.port = port;
 				this.hash = createHashCode();
 			}
 		}
 
+		/**
+		 * Gets the message ID.
+		 * 
+		 * @return the message ID.
+		 */
+		int getMID() {
+			return MID;
+		}
+
+		/**
+		 * Gets the IP address of the remote endpoint.
+		 * 
+		 * @return the address.
+		 */
+		InetAddress getInetAddress() {
+			return inetAddress;
+		}
+
+		/**
+		 * Gets the port of the remote endpoint.
+		 * 
+		 * @return the port.
+		 */
+		int getPort() {
+			return port;
+		}
+
 		@Override
 		public int hashCode() {
 			return hash;
@@ -686,7 +717,7 @@ public class Exchange {
 		 *         scoped to the message's source address and port.
 		 */
 		public static KeyMID fromInboundMessage(Message message) {
-			return new KeyMID(message.getMID(), message.getSource().getAddress(), message.getSourcePort());
+			return new KeyMID(message.getMID(), message.getSource(), message.getSourcePort());
 		}
 
 		/**
@@ -697,7 +728,7 @@ public class Exchange {
 		 *         scoped to the message's destination address and port.
 		 */
 		public static KeyMID fromOutboundMessage(Message message) {
-			return new KeyMID(message.getMID(), message.getDestination().getAddress(), message.getDestinationPort());
+			return new KeyMID(message.getMID(), message.getDestination(), message.getDestinationPort());
 		}
 	}
 
@@ -24,9 +24,13 @@
  *                                                    integrate clear() into stop()
  *    Achim Kraus (Bosch Software Innovations GmbH) - remove setContext().
  *                                                    issue #311
+ *    Bosch Software Innovations GmbH - make index of exchanges by MID exchangeable
+ *    Bosch Software Innovations GmbH - replace completed exchanges by compact entries
+ *    Bosch Software Innovations GmbH - add lookup by address, port and MID
  ******************************************************************************/
 package org.eclipse.californium.core.network;
 
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -37,14 +41,21 @@ import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.eclipse.californium.core.coap.EmptyMessage;
 import org.eclipse.californium.core.coap.Message;
 import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.coap.Response;
 import org.eclipse.californium.core.network.Exchange.KeyMID;
 import org.eclipse.californium.core.network.Exchange.KeyToken;
 import org.eclipse.californium.core.network.Exchange.KeyUri;
 import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.eclipse.californium.core.network.Exchange.Origin;
+import org.eclipse.californium.core.network.deduplication.BaseDeduplicator;
+import org.eclipse.californium.core.network.deduplication.CompletedExchange;
 import org.eclipse.californium.core.network.deduplication.Deduplicator;
 import org.eclipse.californium.core.network.deduplication.DeduplicatorFactory;
+import org.eclipse.californium.core.network.serialization.DataSerializer;
+import org.eclipse.californium.core.network.serialization.UdpDataSerializer;
 import org.eclipse.californium.elements.util.DaemonThreadFactory;
 
 
@@ -55,7 +66,12 @@ import org.eclipse.californium.elements.util.DaemonThreadFactory;
 public class InMemoryMessageExchangeStore implements MessageExchangeStore {
 
 	private static final Logger LOGGER = Logger.getLogger(InMemoryMessageExchangeStore.class.getName());
-	private final ConcurrentMap<KeyMID, Exchange> exchangesByMID = new ConcurrentHashMap<>(); // for all
+	/**
+	 * Serializer for the empty ACKs and RSTs of completed exchanges. Only
+	 * exchanges of UDP endpoints are replaced by completed exchanges.
+	 */
+	private static final DataSerializer EMPTY_MESSAGE_SERIALIZER = new UdpDataSerializer();
+	private final MidExchangeIndex exchangesByMID; // for all
 	private final ConcurrentMap<KeyToken, Exchange> exchangesByToken = new ConcurrentHashMap<>(); // for outgoing
 	private final ConcurrentMap<KeyUri, Exchange> ongoingExchanges = new ConcurrentHashMap<>();
 
@@ -87,6 +103,20 @@ public class InMemoryMessageExchangeStore implements MessageExchangeStore {
 	 * 
 	 */
 	public InMemoryMessageExchangeStore(final NetworkConfig config, TokenProvider tokenProvider) {
+		this(config, tokenProvider, new MapBasedMidExchangeIndex());
+	}
+
+	/**
+	 * Creates a new store for configuration values using a given index for the
+	 * exchanges by MID.
+	 * 
+	 * @param config the configuration to use.
+	 * @param tokenProvider the TokenProvider which provides CoAP tokens that
+	 *            are guaranteed to be not in use.
+	 * @param exchangesByMID the index to use for the exchanges by MID.
+	 */
+	InMemoryMessageExchangeStore(final NetworkConfig config, final TokenProvider tokenProvider,
+			final MidExchangeIndex exchangesByMID) {
 		if (config == null) {
 			throw new NullPointerException("Configuration must not be null");
 		}
@@ -95,6 +125,7 @@ public class InMemoryMessageExchangeStore implements MessageExchangeStore {
 		}
 		this.tokenProvider = tokenProvider;
 		this.config = config;
+		this.exchangesByMID = exchangesByMID;
 	}
 
 	private void startStatusLogging() {
@@ -183,14 +214,15 @@ public class InMemoryMessageExchangeStore implements MessageExchangeStore {
 		if (Message.NONE == mid) {
 			mid = assignMessageId(message);
 			if (Message.NONE != mid) {
-				KeyMID key = KeyMID.fromOutboundMessage(message);
-				if (exchangesByMID.putIfAbsent(key, exchange) != null) {
+				if (exchangesByMID.putIfAbsent(message.getDestination(), message.getDestinationPort(), mid,
+						exchange) != null) {
 					LOGGER.log(Level.WARNING,
 							"newly generated MID [{0}] already in use, overwriting already registered exchange", mid);
 				}
 			}
 		} else {
-			Exchange existingExchange = exchangesByMID.putIfAbsent(KeyMID.fromOutboundMessage(message), exchange);
+			Exchange existingExchange = exchangesByMID.putIfAbsent(message.getDestination(),
+					message.getDestinationPort(), mid, exchange);
 			if (existingExchange != null) {
 				if (existingExchange != exchange) {
 					throw new IllegalArgumentException(String
@@ -277,6 +309,27 @@ public class InMemoryMessageExchangeStore implements MessageExchangeStore {
 		return removedExchange;
 	}
 
+	/**
+	 * Removes an exchange registered under the message ID of a peer.
+	 * <p>
+	 * Same as {@link #remove(KeyMID, Exchange)}, but doesn't require to create
+	 * a {@link KeyMID} for the lookup.
+	 * 
+	 * @param address the IP address of the peer.
+	 * @param port the port of the peer.
+	 * @param mid the message ID.
+	 * @param exchange the exchange to remove, or {@code null} to remove any
+	 *            exchange registered for the message ID.
+	 * @return the removed exchange, or {@code null}, if none was removed.
+	 */
+	public Exchange remove(final InetAddress address, final int port, final int mid, final Exchange exchange) {
+		Exchange removedExchange = exchangesByMID.remove(address, port, mid, exchange);
+		if (null != removedExchange && LOGGER.isLoggable(Level.FINE)) {
+			LOGGER.log(Level.FINE, "removing exchange for MID {0} of {1}:{2}", new Object[] { mid, address, port });
+		}
+		return removedExchange;
+	}
+
 	@Override
 	public Exchange get(final KeyToken token) {
 		if (token == null) {
@@ -295,6 +348,21 @@ public class InMemoryMessageExchangeStore implements MessageExchangeStore {
 		}
 	}
 
+	/**
+	 * Gets the exchange registered under the message ID of a peer.
+	 * <p>
+	 * Same as {@link #get(KeyMID)}, but doesn't require to create a
+	 * {@link KeyMID} for the lookup.
+	 * 
+	 * @param address the IP address of the peer.
+	 * @param port the port of the peer.
+	 * @param mid the message ID.
+	 * @return the exchange, or {@code null}, if none is registered.
+	 */
+	public Exchange get(final InetAddress address, final int port, final int mid) {
+		return exchangesByMID.get(address, port, mid);
+	}
+
 	@Override
 	public boolean registerOutboundResponse(final Exchange exchange) {
 		if (exchange == null) {
@@ -366,6 +434,64 @@ public class InMemoryMessageExchangeStore implements MessageExchangeStore {
 		return deduplicator.findPrevious(messageId, exchange);
 	}
 
+	/**
+	 * Replaces a completed exchange kept by the deduplicator with a
+	 * {@link CompletedExchange}, which keeps only the serialized reply.
+	 * <p>
+	 * Exchanges of observe relations and blockwise transfers, and exchanges
+	 * with a not yet serialized response are not replaced. Only deduplicators
+	 * extending {@link BaseDeduplicator} support the replacement. The method
+	 * may be called several times for the same exchange.
+	 * 
+	 * @param exchange the exchange.
+	 * @return {@code true}, if the exchange has been replaced.
+	 */
+	public boolean replaceCompleted(final Exchange exchange) {
+		Deduplicator deduplicator = this.deduplicator;
+		if (!(deduplicator instanceof BaseDeduplicator)) {
+			return false;
+		} else if (exchange.getOrigin() != Origin.REMOTE || !exchange.isComplete() || exchange.getRelation() != null) {
+			return false;
+		}
+		Request request = exchange.getCurrentRequest();
+		Response response = exchange.getCurrentResponse();
+		if (request == null || request.getOptions().hasBlock1()) {
+			return false;
+		}
+		byte[] reply;
+		if (response != null) {
+			if (response.getBytes() == null || response.getOptions().hasBlock2()) {
+				return false;
+			}
+			reply = response.getBytes();
+		} else if (request.isRejected()) {
+			reply = EMPTY_MESSAGE_SERIALIZER.serializeEmptyMessage(EmptyMessage.newRST(request)).getBytes();
+		} else if (request.isAcknowledged()) {
+			reply = EMPTY_MESSAGE_SERIALIZER.serializeEmptyMessage(EmptyMessage.newACK(request)).getBytes();
+		} else {
+			reply = null;
+		}
+		KeyMID key = KeyMID.fromInboundMessage(request);
+		return ((BaseDeduplicator) deduplicator).replace(new CompletedExchange(key, reply, exchange.getTimestamp()),
+				exchange);
+	}
+
+	/**
+	 * Gets the completed exchange kept by the deduplicator for a message ID.
+	 * 
+	 * @param messageId the message ID of the request.
+	 * @return the completed exchange, or {@code null}, if the deduplicator
+	 *         keeps none for the message ID.
+	 * @see #replaceCompleted(Exchange)
+	 */
+	public CompletedExchange findCompleted(final KeyMID messageId) {
+		Deduplicator deduplicator = this.deduplicator;
+		if (deduplicator instanceof BaseDeduplicator) {
+			return ((BaseDeduplicator) deduplicator).findCompleted(messageId);
+		}
+		return null;
+	}
+
 	@Override
 	public Exchange find(final KeyMID messageId) {
 		return deduplicator.find(messageId);
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ * 
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ * 
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.core.network;
+
+import java.net.InetAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.californium.core.network.Exchange.KeyMID;
+
+/**
+ * A message ID index based on a {@link ConcurrentHashMap} using the
+ * {@link KeyMID}s as keys.
+ */
+final class MapBasedMidExchangeIndex implements MidExchangeIndex {
+
+	private final ConcurrentMap<KeyMID, Exchange> exchanges = new ConcurrentHashMap<>();
+
+	@Override
+	public Exchange get(KeyMID key) {
+		return exchanges.get(key);
+	}
+
+	@Override
+	public Exchange putIfAbsent(KeyMID key, Exchange exchange) {
+		return exchanges.putIfAbsent(key, exchange);
+	}
+
+	@Override
+	public Exchange remove(KeyMID key) {
+		return exchanges.remove(key);
+	}
+
+	@Override
+	public boolean remove(KeyMID key, Exchange exchange) {
+		return exchanges.remove(key, exchange);
+	}
+
+	@Override
+	public Exchange get(InetAddress address, int port, int mid) {
+		return exchanges.get(new KeyMID(mid, address, port));
+	}
+
+	@Override
+	public Exchange putIfAbsent(InetAddress address, int port, int mid, Exchange exchange) {
+		return exchanges.putIfAbsent(new KeyMID(mid, address, port), exchange);
+	}
+
+	@Override
+	public Exchange remove(InetAddress address, int port, int mid, Exchange exchange) {
+		KeyMID key = new KeyMID(mid, address, port);
+		if (exchange == null) {
+			return exchanges.remove(key);
+		}
+		return exchanges.remove(key, exchange) ? exchange : null;
+	}
+
+	@Override
+	public int size() {
+		return exchanges.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return exchanges.isEmpty();
+	}
+
+	@Override
+	public void clear() {
+		exchanges.clear();
+	}
+}
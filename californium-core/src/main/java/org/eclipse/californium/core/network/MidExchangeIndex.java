@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ * 
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ * 
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.core.network;
+
+import java.net.InetAddress;
+
+import org.eclipse.californium.core.network.Exchange.KeyMID;
+
+/**
+ * The index of exchanges by message ID used by the
+ * {@link InMemoryMessageExchangeStore}.
+ * <p>
+ * Implementations must be thread safe.
+ */
+interface MidExchangeIndex {
+
+	/**
+	 * Gets the exchange registered under a given message ID.
+	 * 
+	 * @param key the message ID.
+	 * @return the exchange, or {@code null}, if none is registered.
+	 */
+	Exchange get(KeyMID key);
+
+	/**
+	 * Registers an exchange under a given message ID, if no other exchange is
+	 * registered for it.
+	 * 
+	 * @param key the message ID.
+	 * @param exchange the exchange.
+	 * @return the exchange already registered, or {@code null}, if the
+	 *         provided exchange has been registered.
+	 */
+	Exchange putIfAbsent(KeyMID key, Exchange exchange);
+
+	/**
+	 * Removes the exchange registered under a given message ID.
+	 * 
+	 * @param key the message ID.
+	 * @return the removed exchange, or {@code null}, if none was registered.
+	 */
+	Exchange remove(KeyMID key);
+
+	/**
+	 * Removes an exchange, if it's registered under a given message ID.
+	 * 
+	 * @param key the message ID.
+	 * @param exchange the exchange.
+	 * @return {@code true}, if the exchange was removed.
+	 */
+	boolean remove(KeyMID key, Exchange exchange);
+
+	/**
+	 * Gets the exchange registered under a given message ID of a peer.
+	 * 
+	 * @param address the IP address of the peer.
+	 * @param port the port of the peer.
+	 * @param mid the message ID.
+	 * @return the exchange, or {@code null}, if none is registered.
+	 */
+	Exchange get(InetAddress address, int port, int mid);
+
+	/**
+	 * Registers an exchange under a given message ID of a peer, if no other
+	 * exchange is registered for it.
+	 * 
+	 * @param address the IP address of the peer.
+	 * @param port the port of the peer.
+	 * @param mid the message ID.
+	 * @param exchange the exchange.
+	 * @return the exchange already registered, or {@code null}, if the
+	 *         provided exchange has been registered.
+	 */
+	Exchange putIfAbsent(InetAddress address, int port, int mid, Exchange exchange);
+
+	/**
+	 * Removes the exchange registered under a given message ID of a peer.
+	 * 
+	 * @param address the IP address of the peer.
+	 * @param port the port of the peer.
+	 * @param mid the message ID.
+	 * @param exchange the exchange to remove, or {@code null} to remove any
+	 *            exchange registered for the message ID.
+	 * @return the removed exchange, or {@code null}, if none was removed.
+	 */
+	Exchange remove(InetAddress address, int port, int mid, Exchange exchange);
+
+	/**
+	 * Gets the number of registered exchanges.
+	 * 
+	 * @return the number of exchanges.
+	 */
+	int size();
+
+	/**
+	 * Checks, if no exchange is registered.
+	 * 
+	 * @return {@code true}, if no exchange is registered.
+	 */
+	boolean isEmpty();
+
+	/**
+	 * Removes all registered exchanges.
+	 */
+	void clear();
+}
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ * 
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ * 
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.core.network;
+
+import org.eclipse.californium.core.network.config.NetworkConfig;
+
+/**
+ * A {@code MessageExchangeStore} that manages all exchanges in local memory
+ * and keeps the exchanges by MID in an index using packed primitive keys.
+ * <p>
+ * Compared to the {@link InMemoryMessageExchangeStore}, the index neither
+ * allocates a map entry per exchange nor retains the {@code KeyMID}s and their
+ * address copies. Each peer is interned once and the exchanges are stored in
+ * an open addressing table keyed by the peer's ID and the message ID. This
+ * reduces the memory footprint per tracked exchange. The matcher looks up the
+ * exchanges by the peer's address, port and MID, so no {@code KeyMID} is
+ * created for incoming ACKs and RSTs. The index is split into segments by
+ * peer, each guarded by its own lock, so only threads processing messages of
+ * peers of the same segment contend.
+ */
+public class PackedKeyMessageExchangeStore extends InMemoryMessageExchangeStore {
+
+	/**
+	 * Creates a new store for configuration values.
+	 * 
+	 * @param config the configuration to use.
+	 */
+	public PackedKeyMessageExchangeStore(final NetworkConfig config) {
+		this(config, new InMemoryRandomTokenProvider(config));
+	}
+
+	/**
+	 * Creates a new store for configuration values.
+	 * 
+	 * @param config the configuration to use.
+	 * @param tokenProvider the TokenProvider which provides CoAP tokens that
+	 *            are guaranteed to be not in use.
+	 */
+	public PackedKeyMessageExchangeStore(final NetworkConfig config, final TokenProvider tokenProvider) {
+		super(config, tokenProvider, new PackedMidExchangeIndex());
+	}
+}
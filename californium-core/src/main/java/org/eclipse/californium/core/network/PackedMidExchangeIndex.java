@@ -0,0 +1,419 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.core.network;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+
+import org.eclipse.californium.core.network.Exchange.KeyMID;
+
+/**
+ * A message ID index using packed primitive keys.
+ * <p>
+ * The index is split into segments by peer (IP address and port), each
+ * guarded by its own lock, so that only operations on peers of the same
+ * segment contend.
+ * <p>
+ * Within a segment each peer is interned once in a peer table and gets a peer
+ * ID assigned. The exchanges are then kept in an open addressing table using
+ * linear probing, keyed by a {@code long} packing the peer ID and the message
+ * ID. Neither lookups nor registrations allocate objects, except when a new
+ * peer is interned or a table needs to grow. Peers are compared using their
+ * {@link InetAddress}, so lookups by address, port and message ID don't need
+ * a {@link KeyMID} nor a copy of the address bytes. A peer is removed from the
+ * peer table together with its last exchange and its ID is reused.
+ * <p>
+ * Removal uses backward shifting, so the tables never contain tombstones.
+ * <p>
+ * This class is thread safe.
+ */
+final class PackedMidExchangeIndex implements MidExchangeIndex {
+
+	private static final int SEGMENT_BITS = 4;
+	private static final int INITIAL_CAPACITY = 16;
+	private static final int INITIAL_PEER_CAPACITY = 4;
+
+	private final Segment[] segments;
+
+	/**
+	 * Creates a new, empty index.
+	 */
+	PackedMidExchangeIndex() {
+		segments = new Segment[1 << SEGMENT_BITS];
+		for (int index = 0; index < segments.length; ++index) {
+			segments[index] = new Segment();
+		}
+	}
+
+	@Override
+	public Exchange get(final KeyMID key) {
+		return get(key.getInetAddress(), key.getPort(), key.getMID());
+	}
+
+	@Override
+	public Exchange putIfAbsent(final KeyMID key, final Exchange exchange) {
+		return putIfAbsent(key.getInetAddress(), key.getPort(), key.getMID(), exchange);
+	}
+
+	@Override
+	public Exchange remove(final KeyMID key) {
+		return remove(key.getInetAddress(), key.getPort(), key.getMID(), null);
+	}
+
+	@Override
+	public boolean remove(final KeyMID key, final Exchange exchange) {
+		return exchange != null && remove(key.getInetAddress(), key.getPort(), key.getMID(), exchange) != null;
+	}
+
+	@Override
+	public Exchange get(final InetAddress address, final int port, final int mid) {
+		int hash = hash(address, port);
+		return segmentFor(hash).get(address, port, hash, mid);
+	}
+
+	@Override
+	public Exchange putIfAbsent(final InetAddress address, final int port, final int mid, final Exchange exchange) {
+		if (exchange == null) {
+			throw new NullPointerException("exchange must not be null");
+		}
+		int hash = hash(address, port);
+		return segmentFor(hash).putIfAbsent(address, port, hash, mid, exchange);
+	}
+
+	@Override
+	public Exchange remove(final InetAddress address, final int port, final int mid, final Exchange exchange) {
+		int hash = hash(address, port);
+		return segmentFor(hash).remove(address, port, hash, mid, exchange);
+	}
+
+	@Override
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		for (Segment segment : segments) {
+			if (segment.size() > 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the number of currently interned peers.
+	 *
+	 * @return the number of peers.
+	 */
+	int getPeerCount() {
+		int count = 0;
+		for (Segment segment : segments) {
+			count += segment.getPeerCount();
+		}
+		return count;
+	}
+
+	@Override
+	public void clear() {
+		for (Segment segment : segments) {
+			segment.clear();
+		}
+	}
+
+	private Segment segmentFor(final int hash) {
+		// the low bits select the slots within the segment
+		return segments[hash >>> (32 - SEGMENT_BITS)];
+	}
+
+	private static long pack(final int peerId, final int mid) {
+		return ((long) peerId << 32) | (mid & 0xFFFFFFFFL);
+	}
+
+	private static int hash(final long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private static int hash(final InetAddress address, final int port) {
+		// the hash code of an IPv4 address is the address itself, so
+		// consecutive addresses must be spread
+		int h = address.hashCode() * 31 + port;
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * A segment of the index. All operations are synchronized on the segment.
+	 */
+	private static final class Segment {
+
+		/**
+		 * Packed peer IDs and message IDs. A slot is only valid, if the slot
+		 * of {@link #exchanges} with the same index is not {@code null}.
+		 */
+		private long[] keys;
+		private Exchange[] exchanges;
+		private int size;
+
+		/**
+		 * Hash table of the peers. Contains the peer IDs incremented by 1, 0
+		 * marks an unused slot.
+		 */
+		private int[] peerSlots;
+		private InetAddress[] peerAddresses;
+		private int[] peerPorts;
+		private int[] peerHashes;
+		/**
+		 * Number of exchanges registered per peer ID.
+		 */
+		private int[] peerUsage;
+		private int[] freePeerIds;
+		private int freePeerIdCount;
+		private int nextPeerId;
+		private int peerCount;
+
+		private Segment() {
+			init();
+		}
+
+		private void init() {
+			keys = new long[INITIAL_CAPACITY];
+			exchanges = new Exchange[INITIAL_CAPACITY];
+			size = 0;
+			peerSlots = new int[INITIAL_PEER_CAPACITY * 2];
+			peerAddresses = new InetAddress[INITIAL_PEER_CAPACITY];
+			peerPorts = new int[INITIAL_PEER_CAPACITY];
+			peerHashes = new int[INITIAL_PEER_CAPACITY];
+			peerUsage = new int[INITIAL_PEER_CAPACITY];
+			freePeerIds = new int[INITIAL_PEER_CAPACITY];
+			freePeerIdCount = 0;
+			nextPeerId = 0;
+			peerCount = 0;
+		}
+
+		private synchronized Exchange get(final InetAddress address, final int port, final int peerHash,
+				final int mid) {
+			int peerId = findPeer(address, port, peerHash);
+			if (peerId < 0) {
+				return null;
+			}
+			int slot = findSlot(pack(peerId, mid));
+			return slot < 0 ? null : exchanges[slot];
+		}
+
+		private synchronized Exchange putIfAbsent(final InetAddress address, final int port, final int peerHash,
+				final int mid, final Exchange exchange) {
+			int peerId = findPeer(address, port, peerHash);
+			if (peerId < 0) {
+				peerId = addPeer(address, port, peerHash);
+			}
+			long packedKey = pack(peerId, mid);
+			int mask = keys.length - 1;
+			int slot = hash(packedKey) & mask;
+			while (exchanges[slot] != null) {
+				if (keys[slot] == packedKey) {
+					return exchanges[slot];
+				}
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = packedKey;
+			exchanges[slot] = exchange;
+			++peerUsage[peerId];
+			if (++size * 2 > keys.length) {
+				resize(keys.length * 2);
+			}
+			return null;
+		}
+
+		private synchronized Exchange remove(final InetAddress address, final int port, final int peerHash,
+				final int mid, final Exchange exchange) {
+			int peerId = findPeer(address, port, peerHash);
+			if (peerId < 0) {
+				return null;
+			}
+			int slot = findSlot(pack(peerId, mid));
+			if (slot < 0) {
+				return null;
+			}
+			Exchange removed = exchanges[slot];
+			if (exchange != null && removed != exchange) {
+				return null;
+			}
+			removeSlot(slot, peerId);
+			return removed;
+		}
+
+		private synchronized int size() {
+			return size;
+		}
+
+		private synchronized int getPeerCount() {
+			return peerCount;
+		}
+
+		private synchronized void clear() {
+			init();
+		}
+
+		private int findSlot(final long packedKey) {
+			int mask = keys.length - 1;
+			int slot = hash(packedKey) & mask;
+			while (exchanges[slot] != null) {
+				if (keys[slot] == packedKey) {
+					return slot;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return -1;
+		}
+
+		private void removeSlot(final int slot, final int peerId) {
+			int mask = keys.length - 1;
+			int hole = slot;
+			int index = slot;
+			while (true) {
+				index = (index + 1) & mask;
+				if (exchanges[index] == null) {
+					break;
+				}
+				int home = hash(keys[index]) & mask;
+				// move entry, if its home slot is not in the cyclic range (hole, index]
+				if (index > hole ? (home <= hole || home > index) : (home <= hole && home > index)) {
+					keys[hole] = keys[index];
+					exchanges[hole] = exchanges[index];
+					hole = index;
+				}
+			}
+			exchanges[hole] = null;
+			--size;
+			if (--peerUsage[peerId] == 0) {
+				removePeer(peerId);
+			}
+		}
+
+		private void resize(final int capacity) {
+			long[] oldKeys = keys;
+			Exchange[] oldExchanges = exchanges;
+			keys = new long[capacity];
+			exchanges = new Exchange[capacity];
+			int mask = capacity - 1;
+			for (int index = 0; index < oldKeys.length; ++index) {
+				if (oldExchanges[index] != null) {
+					int slot = hash(oldKeys[index]) & mask;
+					while (exchanges[slot] != null) {
+						slot = (slot + 1) & mask;
+					}
+					keys[slot] = oldKeys[index];
+					exchanges[slot] = oldExchanges[index];
+				}
+			}
+		}
+
+		private int findPeer(final InetAddress address, final int port, final int peerHash) {
+			int mask = peerSlots.length - 1;
+			int slot = peerHash & mask;
+			int entry;
+			while ((entry = peerSlots[slot]) != 0) {
+				int peerId = entry - 1;
+				if (peerHashes[peerId] == peerHash && peerPorts[peerId] == port
+						&& peerAddresses[peerId].equals(address)) {
+					return peerId;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return -1;
+		}
+
+		private int addPeer(final InetAddress address, final int port, final int peerHash) {
+			int peerId;
+			if (freePeerIdCount > 0) {
+				peerId = freePeerIds[--freePeerIdCount];
+			} else {
+				peerId = nextPeerId++;
+				if (peerId == peerAddresses.length) {
+					int capacity = peerAddresses.length * 2;
+					peerAddresses = Arrays.copyOf(peerAddresses, capacity);
+					peerPorts = Arrays.copyOf(peerPorts, capacity);
+					peerHashes = Arrays.copyOf(peerHashes, capacity);
+					peerUsage = Arrays.copyOf(peerUsage, capacity);
+					freePeerIds = Arrays.copyOf(freePeerIds, capacity);
+				}
+			}
+			peerAddresses[peerId] = address;
+			peerPorts[peerId] = port;
+			peerHashes[peerId] = peerHash;
+			peerUsage[peerId] = 0;
+			if (++peerCount * 2 > peerSlots.length) {
+				resizePeers(peerSlots.length * 2);
+			}
+			insertPeer(peerId);
+			return peerId;
+		}
+
+		private void insertPeer(final int peerId) {
+			int mask = peerSlots.length - 1;
+			int slot = peerHashes[peerId] & mask;
+			while (peerSlots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			peerSlots[slot] = peerId + 1;
+		}
+
+		private void resizePeers(final int capacity) {
+			int[] oldSlots = peerSlots;
+			peerSlots = new int[capacity];
+			for (int entry : oldSlots) {
+				if (entry != 0) {
+					insertPeer(entry - 1);
+				}
+			}
+		}
+
+		private void removePeer(final int peerId) {
+			int mask = peerSlots.length - 1;
+			int slot = peerHashes[peerId] & mask;
+			while (peerSlots[slot] != peerId + 1) {
+				slot = (slot + 1) & mask;
+			}
+			int hole = slot;
+			int index = slot;
+			while (true) {
+				index = (index + 1) & mask;
+				int entry = peerSlots[index];
+				if (entry == 0) {
+					break;
+				}
+				int home = peerHashes[entry - 1] & mask;
+				if (index > hole ? (home <= hole || home > index) : (home <= hole && home > index)) {
+					peerSlots[hole] = entry;
+					hole = index;
+				}
+			}
+			peerSlots[hole] = 0;
+			peerAddresses[peerId] = null;
+			freePeerIds[freePeerIdCount++] = peerId;
+			--peerCount;
+		}
+	}
+}
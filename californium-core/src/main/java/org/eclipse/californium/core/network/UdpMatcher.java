@@ -33,9 +33,13 @@
  *                                                 Proactive observe cancellation may cause
  *                                                 errors, if they cancel not completely 
  *                                                 created notifies (before the MID is assigned).
+ * Bosch Software Innovations GmbH - replace completed exchanges in deduplicator
+ *                                   with compact entries
+ * Bosch Software Innovations GmbH - remove exchanges by address, port and MID
  ******************************************************************************/
 package org.eclipse.californium.core.network;
 
+import java.net.InetAddress;
 import java.util.Iterator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -63,6 +67,8 @@ public final class UdpMatcher extends BaseMatcher {
 	private final ExchangeObserver exchangeObserver = new ExchangeObserverImpl();
 	// TODO: Multicast Exchanges: should not be removed from deduplicator
 	private final boolean useStrictResponseMatching;
+	private final boolean compactExchanges;
+	private final InMemoryMessageExchangeStore inMemoryExchangeStore;
 
 	/**
 	 * Creates a new matcher for running CoAP over UDP.
@@ -73,6 +79,13 @@ public final class UdpMatcher extends BaseMatcher {
 	public UdpMatcher(final NetworkConfig config, final MessageExchangeStore exchangeStore) {
 		super(config, exchangeStore);
 		useStrictResponseMatching = config.getBoolean(NetworkConfig.Keys.USE_STRICT_RESPONSE_MATCHING);
+		if (exchangeStore instanceof InMemoryMessageExchangeStore) {
+			inMemoryExchangeStore = (InMemoryMessageExchangeStore) exchangeStore;
+		} else {
+			inMemoryExchangeStore = null;
+		}
+		compactExchanges = inMemoryExchangeStore != null
+				&& config.getBoolean(NetworkConfig.Keys.DEDUPLICATOR_COMPACT_EXCHANGES);
 
 		if (LOGGER.isLoggable(Level.CONFIG)) {
 			String msg = new StringBuilder("UdpMatcher uses ").append(NetworkConfig.Keys.USE_STRICT_RESPONSE_MATCHING)
@@ -232,9 +245,11 @@ public final class UdpMatcher extends BaseMatcher {
 					// check for null, in case no response was created (e.g., because the resource handler crashed...)
 					if (ongoing.getCurrentResponse() != null && ongoing.getCurrentResponse().getType() != Type.ACK
 							&& !ongoing.getCurrentResponse().getOptions().hasObserve()) {
-						idByMID = KeyMID.fromOutboundMessage(ongoing.getCurrentResponse());
-						LOGGER.log(Level.FINE, "Ongoing exchange got new request, cleaning up {0}", idByMID);
-						exchangeStore.remove(idByMID, ongoing);
+						Response previousResponse = ongoing.getCurrentResponse();
+						LOGGER.log(Level.FINE, "Ongoing exchange got new request, cleaning up MID {0}",
+								previousResponse.getMID());
+						removeByMID(previousResponse.getDestination(), previousResponse.getDestinationPort(),
+								previousResponse.getMID(), ongoing);
 					}
 				}
 				return ongoing;
@@ -325,9 +340,10 @@ public final class UdpMatcher extends BaseMatcher {
 				response.setDuplicate(true);
 			} else {
 				// we have received the expected response for the original request
-				idByMID = KeyMID.fromOutboundMessage(exchange.getCurrentRequest());
-				if (exchangeStore.remove(idByMID, exchange) != null) {
-					LOGGER.log(Level.FINE, "Closed open request [{0}]", idByMID);
+				Request request = exchange.getCurrentRequest();
+				if (removeByMID(request.getDestination(), request.getDestinationPort(), request.getMID(),
+						exchange) != null) {
+					LOGGER.log(Level.FINE, "Closed open request [MID: {0}]", request.getMID());
 				}
 			}
 
@@ -390,11 +406,10 @@ public final class UdpMatcher extends BaseMatcher {
 		// an empty ACK or RST always is received as a reply to a message
 		// exchange originating locally, i.e. the message will echo an MID
 		// that has been created here
-		KeyMID idByMID = KeyMID.fromInboundMessage(message);
-		Exchange exchange = exchangeStore.remove(idByMID, null);
+		Exchange exchange = removeByMID(message.getSource(), message.getSourcePort(), message.getMID(), null);
 
 		if (exchange != null) {
-			LOGGER.log(Level.FINE, "Received expected reply for message exchange {0}", idByMID);
+			LOGGER.log(Level.FINE, "Received expected reply for message exchange [MID: {0}]", message.getMID());
 		} else {
 			LOGGER.log(Level.FINER, "Ignoring non-matchable empty message from {0}:{1}: {2}",
 					new Object[] {message.getSource(), message.getSourcePort(), message});
@@ -402,6 +417,28 @@ public final class UdpMatcher extends BaseMatcher {
 		return exchange;
 	}
 
+	/**
+	 * Removes an exchange registered under the message ID of a peer.
+	 * <p>
+	 * Uses the lookup by address, port and MID of the
+	 * {@link InMemoryMessageExchangeStore}, if available, to not create a
+	 * {@link KeyMID} for every incoming ACK and RST and every completed
+	 * exchange.
+	 * 
+	 * @param address the IP address of the peer.
+	 * @param port the port of the peer.
+	 * @param mid the message ID.
+	 * @param exchange the exchange to remove, or {@code null} to remove any
+	 *            exchange registered for the message ID.
+	 * @return the removed exchange, or {@code null}, if none was removed.
+	 */
+	private Exchange removeByMID(final InetAddress address, final int port, final int mid, final Exchange exchange) {
+		if (inMemoryExchangeStore != null) {
+			return inMemoryExchangeStore.remove(address, port, mid, exchange);
+		}
+		return exchangeStore.remove(new KeyMID(mid, address, port), exchange);
+	}
+
 	private void removeNotificationsOf(final ObserveRelation relation) {
 		LOGGER.log(Level.FINE, "Removing all remaining NON-notifications of observe relation with {0}",
 				relation.getSource());
@@ -409,8 +446,8 @@ public final class UdpMatcher extends BaseMatcher {
 			Response previous = iterator.next();
 			// notifications are local MID namespace
 			if (previous.hasMID()) {
-				KeyMID idByMID = KeyMID.fromOutboundMessage(previous);
-				exchangeStore.remove(idByMID, relation.getExchange());
+				removeByMID(previous.getDestination(), previous.getDestinationPort(), previous.getMID(),
+						relation.getExchange());
 			}
 			else {
 				previous.cancel();
@@ -450,8 +487,8 @@ public final class UdpMatcher extends BaseMatcher {
 					// need to try to remove its corresponding exchange from the store.
 				} else {
 					// in case an empty ACK was lost
-					KeyMID idByMID = KeyMID.fromOutboundMessage(originRequest);
-					exchangeStore.remove(idByMID, exchange);
+					removeByMID(originRequest.getDestination(), originRequest.getDestinationPort(),
+							originRequest.getMID(), exchange);
 				}
 
 				if (originRequest.getToken() == null) {
@@ -484,10 +521,11 @@ public final class UdpMatcher extends BaseMatcher {
 
 					// first remove the entry for the (separate) response's MID
 					if (response.hasMID()) {
-						KeyMID midKey = KeyMID.fromOutboundMessage(response);
-						exchangeStore.remove(midKey, exchange);
+						removeByMID(response.getDestination(), response.getDestinationPort(), response.getMID(),
+								exchange);
 
-						LOGGER.log(Level.FINER, "Exchange [{0}, {1}] completed", new Object[]{midKey, exchange.getOrigin()});
+						LOGGER.log(Level.FINER, "Exchange [MID: {0}, {1}] completed",
+								new Object[]{response.getMID(), exchange.getOrigin()});
 					}
 					else {
 						// sometime proactive cancel requests and notifies are overlapping
@@ -506,6 +544,11 @@ public final class UdpMatcher extends BaseMatcher {
 				ObserveRelation relation = exchange.getRelation();
 				if (relation != null) {
 					removeNotificationsOf(relation);
+				} else if (compactExchanges) {
+					// keep only the response bytes for answering duplicates.
+					// piggy-backed responses are serialized after completion,
+					// the endpoint replaces their exchanges afterwards.
+					inMemoryExchangeStore.replaceCompleted(exchange);
 				}
 			}
 		}
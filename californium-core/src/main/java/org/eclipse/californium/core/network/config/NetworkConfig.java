@@ -161,13 +161,58 @@ public final class NetworkConfig {
 		public static final String CONGESTION_CONTROL_ALGORITHM = "CONGESTION_CONTROL_ALGORITHM";
 
 		public static final String PROTOCOL_STAGE_THREAD_COUNT = "PROTOCOL_STAGE_THREAD_COUNT";
+		/**
+		 * Execute the protocol stage of an endpoint striped by the peer's
+		 * address. Keeps the order of the messages of a peer and processes
+		 * messages of different peers in parallel using
+		 * {@link #PROTOCOL_STAGE_THREAD_COUNT} threads. Timers are then
+		 * executed by the endpoint's scheduled executor and a
+		 * {@code CoapServer} does not create its central protocol stage pool.
+		 */
+		public static final String PROTOCOL_STAGE_STRIPED_BY_PEER = "PROTOCOL_STAGE_STRIPED_BY_PEER";
+		/**
+		 * The tick duration (in MILLISECONDS) of a hashed wheel timer, which
+		 * an endpoint uses for its timers, e.g. retransmissions, instead of
+		 * a scheduled thread pool. {@code 0} disables the timer wheel.
+		 * <p>
+		 * The timer wheel runs expired tasks on its single worker thread and
+		 * is therefore only installed, if the protocol stage is executed
+		 * {@link #PROTOCOL_STAGE_STRIPED_BY_PEER}. An endpoint rejects to
+		 * start with this property set otherwise.
+		 */
+		public static final String PROTOCOL_STAGE_TIMER_WHEEL_TICK = "PROTOCOL_STAGE_TIMER_WHEEL_TICK";
 		public static final String NETWORK_STAGE_RECEIVER_THREAD_COUNT = "NETWORK_STAGE_RECEIVER_THREAD_COUNT";
 		public static final String NETWORK_STAGE_SENDER_THREAD_COUNT = "NETWORK_STAGE_SENDER_THREAD_COUNT";
 
 		public static final String UDP_CONNECTOR_DATAGRAM_SIZE = "UDP_CONNECTOR_DATAGRAM_SIZE";
 		public static final String UDP_CONNECTOR_RECEIVE_BUFFER = "UDP_CONNECTOR_RECEIVE_BUFFER";
 		public static final String UDP_CONNECTOR_SEND_BUFFER = "UDP_CONNECTOR_SEND_BUFFER";
+		/**
+		 * The capacity of the outbound message queue of the UDP connector.
+		 */
 		public static final String UDP_CONNECTOR_OUT_CAPACITY = "UDP_CONNECTOR_OUT_CAPACITY";
+		/**
+		 * The policy for outbound messages, when the queue of the UDP
+		 * connector is full. Supported values are {@code DROP} and
+		 * {@code BLOCK}.
+		 */
+		public static final String UDP_CONNECTOR_OUT_OVERFLOW_POLICY = "UDP_CONNECTOR_OUT_OVERFLOW_POLICY";
+		/**
+		 * The maximum number of outbound messages a sender thread of the UDP
+		 * connector sends in one batch.
+		 */
+		public static final String UDP_CONNECTOR_SENDER_BATCH_SIZE = "UDP_CONNECTOR_SENDER_BATCH_SIZE";
+		/**
+		 * Use a NIO datagram channel with pooled direct receive buffers
+		 * instead of a datagram socket for the UDP connector.
+		 */
+		public static final String UDP_CONNECTOR_USE_DATAGRAM_CHANNEL = "UDP_CONNECTOR_USE_DATAGRAM_CHANNEL";
+		/**
+		 * The number of datagram channels the UDP connector binds to the same
+		 * port using SO_REUSEPORT. Each channel is served by its own receiver
+		 * thread. A value of {@code 1} disables the SO_REUSEPORT mode.
+		 */
+		public static final String UDP_CONNECTOR_REUSE_PORT_SOCKET_COUNT = "UDP_CONNECTOR_REUSE_PORT_SOCKET_COUNT";
 
 		public static final String DEDUPLICATOR = "DEDUPLICATOR";
 		public static final String DEDUPLICATOR_MARK_AND_SWEEP = "DEDUPLICATOR_MARK_AND_SWEEP";
@@ -178,8 +223,43 @@ public final class NetworkConfig {
 		public static final String MARK_AND_SWEEP_INTERVAL = "MARK_AND_SWEEP_INTERVAL";
 		public static final String DEDUPLICATOR_CROP_ROTATION = "DEDUPLICATOR_CROP_ROTATION";
 		public static final String CROP_ROTATION_PERIOD = "CROP_ROTATION_PERIOD";
+		/**
+		 * Deduplicator keeping the exchanges in a ring of time buckets, which
+		 * are expired one at a time.
+		 */
+		public static final String DEDUPLICATOR_TIME_BUCKETS = "DEDUPLICATOR_TIME_BUCKETS";
+		/**
+		 * The number of time buckets the {@code EXCHANGE_LIFETIME} is split
+		 * into by the time bucket deduplicator.
+		 */
+		public static final String TIME_BUCKET_COUNT = "TIME_BUCKET_COUNT";
 		public static final String NO_DEDUPLICATOR = "NO_DEDUPLICATOR";
+		/**
+		 * Replace completed exchanges kept by the deduplicator with compact
+		 * entries holding only the serialized response, empty ACK or RST.
+		 * Duplicates are then answered from these bytes without passing the
+		 * stack and the message interceptors. Requires an
+		 * {@code InMemoryMessageExchangeStore} and one of the built-in
+		 * deduplicators extending {@code BaseDeduplicator}.
+		 */
+		public static final String DEDUPLICATOR_COMPACT_EXCHANGES = "DEDUPLICATOR_COMPACT_EXCHANGES";
 		public static final String USE_STRICT_RESPONSE_MATCHING = "USE_STRICT_RESPONSE_MATCHING";
+		/**
+		 * Keep the options of received messages encoded until they are
+		 * accessed. The option headers are only checked while parsing and the
+		 * option bytes are copied once. Observe, Block1 and Block2 are read
+		 * from the encoded options, so duplicates, ACKs and RSTs are matched
+		 * without indexing the options or creating an {@code Option} object
+		 * per option.
+		 */
+		public static final String USE_LAZY_OPTION_PARSING = "USE_LAZY_OPTION_PARSING";
+		/**
+		 * Look up the resources of requests in an index of the resource tree,
+		 * which matches the encoded Uri-Path options without decoding them.
+		 * The index is rebuilt on the first request after the resource tree
+		 * has changed.
+		 */
+		public static final String USE_RESOURCE_PATH_INDEX = "USE_RESOURCE_PATH_INDEX";
 
 		public static final String HTTP_PORT = "HTTP_PORT";
 		public static final String HTTP_SERVER_SOCKET_TIMEOUT = "HTTP_SERVER_SOCKET_TIMEOUT";
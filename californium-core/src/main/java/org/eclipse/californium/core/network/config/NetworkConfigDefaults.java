@@ -127,6 +127,8 @@ public class NetworkConfigDefaults {
 		config.setString(NetworkConfig.Keys.CONGESTION_CONTROL_ALGORITHM, "Cocoa"); // see org.eclipse.californium.core.network.stack.congestioncontrol
 
 		config.setInt(NetworkConfig.Keys.PROTOCOL_STAGE_THREAD_COUNT, CORES);
+		config.setBoolean(NetworkConfig.Keys.PROTOCOL_STAGE_STRIPED_BY_PEER, false);
+		config.setInt(NetworkConfig.Keys.PROTOCOL_STAGE_TIMER_WHEEL_TICK, 0); // ms, disabled
 		config.setInt(NetworkConfig.Keys.NETWORK_STAGE_RECEIVER_THREAD_COUNT, WINDOWS ? CORES : 1);
 		config.setInt(NetworkConfig.Keys.NETWORK_STAGE_SENDER_THREAD_COUNT, WINDOWS ? CORES : 1);
 
@@ -134,11 +136,19 @@ public class NetworkConfigDefaults {
 		config.setInt(NetworkConfig.Keys.UDP_CONNECTOR_RECEIVE_BUFFER, UDPConnector.UNDEFINED);
 		config.setInt(NetworkConfig.Keys.UDP_CONNECTOR_SEND_BUFFER, UDPConnector.UNDEFINED);
 		config.setInt(NetworkConfig.Keys.UDP_CONNECTOR_OUT_CAPACITY, Integer.MAX_VALUE); // unbounded
+		config.setString(NetworkConfig.Keys.UDP_CONNECTOR_OUT_OVERFLOW_POLICY, UDPConnector.OverflowPolicy.DROP.name());
+		config.setInt(NetworkConfig.Keys.UDP_CONNECTOR_SENDER_BATCH_SIZE, UDPConnector.DEFAULT_SENDER_BATCH_SIZE);
+		config.setBoolean(NetworkConfig.Keys.UDP_CONNECTOR_USE_DATAGRAM_CHANNEL, false);
+		config.setInt(NetworkConfig.Keys.UDP_CONNECTOR_REUSE_PORT_SOCKET_COUNT, 1);
 
 		config.setString(NetworkConfig.Keys.DEDUPLICATOR, NetworkConfig.Keys.DEDUPLICATOR_MARK_AND_SWEEP);
 		config.setLong(NetworkConfig.Keys.MARK_AND_SWEEP_INTERVAL, 10 * 1000); // 10 secs
 		config.setInt(NetworkConfig.Keys.CROP_ROTATION_PERIOD, 2000);
+		config.setInt(NetworkConfig.Keys.TIME_BUCKET_COUNT, 32);
+		config.setBoolean(NetworkConfig.Keys.DEDUPLICATOR_COMPACT_EXCHANGES, false);
 		config.setBoolean(NetworkConfig.Keys.USE_STRICT_RESPONSE_MATCHING, false);
+		config.setBoolean(NetworkConfig.Keys.USE_LAZY_OPTION_PARSING, false);
+		config.setBoolean(NetworkConfig.Keys.USE_RESOURCE_PATH_INDEX, false);
 
 		config.setInt(NetworkConfig.Keys.HTTP_PORT, 8080);
 		config.setInt(NetworkConfig.Keys.HTTP_SERVER_SOCKET_TIMEOUT, 100000);
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.core.network.deduplication;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.californium.core.network.Exchange;
+import org.eclipse.californium.core.network.Exchange.KeyMID;
+
+/**
+ * Base class of the deduplicators, which keep completed exchanges as
+ * {@link CompletedExchange}s.
+ * <p>
+ * A completed exchange replaces the exchange kept for its message ID, so the
+ * exchange and its messages are no longer retained. Implementations provide
+ * the access to the kept exchanges and remove expired completed exchanges
+ * together with the exchanges.
+ */
+public abstract class BaseDeduplicator implements Deduplicator {
+
+	private final ConcurrentMap<KeyMID, CompletedExchange> completedExchanges = new ConcurrentHashMap<>();
+
+	/**
+	 * Associates the key with the exchange, if the key is not already
+	 * associated with an exchange.
+	 * 
+	 * @param key the key.
+	 * @param exchange the exchange.
+	 * @return the exchange already associated with the key, or {@code null},
+	 *         if the key has been associated with the provided exchange.
+	 */
+	protected abstract Exchange putIfAbsent(KeyMID key, Exchange exchange);
+
+	/**
+	 * Removes the association of the key, if it's associated with the
+	 * exchange.
+	 * 
+	 * @param key the key.
+	 * @param exchange the exchange.
+	 * @return {@code true}, if the association has been removed.
+	 */
+	protected abstract boolean remove(KeyMID key, Exchange exchange);
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * If the previous exchange has been completed in the meantime, the
+	 * provided exchange itself is returned, so that the request is handled as
+	 * duplicate. Callers are expected to check {@link #findCompleted(KeyMID)}
+	 * before.
+	 */
+	@Override
+	public Exchange findPrevious(final KeyMID key, final Exchange exchange) {
+		Exchange previous = putIfAbsent(key, exchange);
+		if (previous == null && completedExchanges.containsKey(key)) {
+			// the previous exchange has been completed concurrently
+			remove(key, exchange);
+			return exchange;
+		}
+		return previous;
+	}
+
+	/**
+	 * Replaces an exchange by its completed exchange.
+	 * 
+	 * @param completed the completed exchange.
+	 * @param exchange the exchange currently associated with the key of the
+	 *            completed exchange.
+	 * @return {@code true}, if the exchange has been replaced, {@code false},
+	 *         if the key is not associated with the exchange or is already
+	 *         associated with a completed exchange.
+	 */
+	public boolean replace(final CompletedExchange completed, final Exchange exchange) {
+		KeyMID key = completed.getKey();
+		if (completedExchanges.putIfAbsent(key, completed) != null) {
+			return false;
+		}
+		if (remove(key, exchange)) {
+			return true;
+		}
+		completedExchanges.remove(key, completed);
+		return false;
+	}
+
+	/**
+	 * Gets the completed exchange associated with a key.
+	 * 
+	 * @param key the key.
+	 * @return the completed exchange, or {@code null}, if none is associated
+	 *         with the key.
+	 */
+	public CompletedExchange findCompleted(final KeyMID key) {
+		return completedExchanges.get(key);
+	}
+
+	/**
+	 * Removes the completed exchange associated with a key.
+	 * 
+	 * @param key the key.
+	 * @return {@code true}, if a completed exchange has been removed.
+	 */
+	protected boolean removeCompleted(final KeyMID key) {
+		return completedExchanges.remove(key) != null;
+	}
+
+	/**
+	 * Removes the completed exchanges with a timestamp before the given one.
+	 * 
+	 * @param oldestAllowed the timestamp of the oldest completed exchange to
+	 *            keep in milliseconds.
+	 * @return the number of removed completed exchanges.
+	 */
+	protected int removeCompletedBefore(final long oldestAllowed) {
+		int count = 0;
+		Iterator<CompletedExchange> iterator = completedExchanges.values().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().getTimestamp() < oldestAllowed) {
+				iterator.remove();
+				++count;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return completedExchanges.isEmpty();
+	}
+
+	@Override
+	public void clear() {
+		completedExchanges.clear();
+	}
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.core.network.deduplication;
+
+import org.eclipse.californium.core.network.Exchange.KeyMID;
+
+/**
+ * A completed exchange kept by a {@link BaseDeduplicator}.
+ * <p>
+ * Only the message ID of the request and the serialized message sent in reply
+ * to it are kept. Neither the exchange nor its request and response are
+ * retained, so duplicates of the request are answered directly from the
+ * serialized reply.
+ */
+public final class CompletedExchange {
+
+	private final KeyMID key;
+	private final byte[] reply;
+	private final long timestamp;
+
+	/**
+	 * Creates a completed exchange.
+	 * 
+	 * @param key the message ID of the request.
+	 * @param reply the serialized response, empty ACK or RST sent in reply
+	 *            to the request. {@code null}, if no reply has been sent.
+	 * @param timestamp the timestamp of the exchange in milliseconds.
+	 * @throws NullPointerException if the key is {@code null}.
+	 */
+	public CompletedExchange(final KeyMID key, final byte[] reply, final long timestamp) {
+		if (key == null) {
+			throw new NullPointerException("key must not be null");
+		}
+		this.key = key;
+		this.reply = reply;
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * Gets the message ID of the request.
+	 * 
+	 * @return the message ID.
+	 */
+	public KeyMID getKey() {
+		return key;
+	}
+
+	/**
+	 * Gets the serialized reply to be sent again for duplicates.
+	 * <p>
+	 * The returned array is not copied and must not be modified.
+	 * 
+	 * @return the serialized response, empty ACK or RST, or {@code null}, if
+	 *         duplicates are to be ignored.
+	 */
+	public byte[] getReply() {
+		return reply;
+	}
+
+	/**
+	 * Gets the timestamp of the exchange.
+	 * 
+	 * @return the timestamp in milliseconds.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+}
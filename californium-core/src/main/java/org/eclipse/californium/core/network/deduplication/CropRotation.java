@@ -18,6 +18,7 @@
  *    Kai Hudalla - logging
  *    Achim Kraus (Bosch Software Innovations GmbH) - make first and second
  *                                                    volatile
+ *    Bosch Software Innovations GmbH - keep completed exchanges
  ******************************************************************************/
 package org.eclipse.californium.core.network.deduplication;
 
@@ -46,7 +47,7 @@ import org.eclipse.californium.elements.util.DaemonThreadFactory;
  * remove them one-by-one. Instead, it clears all entries of the passive
  * hash map at once.
  */
-public class CropRotation implements Deduplicator {
+public class CropRotation extends BaseDeduplicator {
 
 	private final static Logger LOGGER = Logger.getLogger(CropRotation.class.getCanonicalName());
 	private boolean running = false;
@@ -100,7 +101,7 @@ public class CropRotation implements Deduplicator {
 	}
 
 	@Override
-	public Exchange findPrevious(KeyMID key, Exchange exchange) {
+	protected Exchange putIfAbsent(KeyMID key, Exchange exchange) {
 		int f = first;
 		int s = second;
 		Exchange prev = maps[f].putIfAbsent(key, exchange);
@@ -110,6 +111,15 @@ public class CropRotation implements Deduplicator {
 		return prev;
 	}
 
+	@Override
+	protected boolean remove(KeyMID key, Exchange exchange) {
+		boolean removed = false;
+		for (ExchangeMap map : maps) {
+			removed |= map.remove(key, exchange);
+		}
+		return removed;
+	}
+
 	@Override
 	public Exchange find(KeyMID key) {
 		int f = first;
@@ -127,6 +137,7 @@ public class CropRotation implements Deduplicator {
 			maps[0].clear();
 			maps[1].clear();
 			maps[2].clear();
+			super.clear();
 		}
 	}
 
@@ -137,7 +148,7 @@ public class CropRotation implements Deduplicator {
 				return false;
 			}
 		}
-		return true;
+		return super.isEmpty();
 	}
 
 	private class Rotation implements Runnable {
@@ -165,6 +176,8 @@ public class CropRotation implements Deduplicator {
 				first = second;
 				second = (second+1)%3;
 				maps[third].clear();
+				// exchanges are remembered for at least one period
+				removeCompletedBefore(System.currentTimeMillis() - period);
 			}
 		}
 		
@@ -16,6 +16,7 @@
  *    Dominique Im Obersteg - parsers and initial implementation
  *    Daniel Pauli - parsers and initial implementation
  *    Kai Hudalla - logging
+ *    Bosch Software Innovations GmbH - add time bucket deduplicator
  ******************************************************************************/
 package org.eclipse.californium.core.network.deduplication;
 
@@ -27,7 +28,7 @@ import org.eclipse.californium.core.network.config.NetworkConfig;
 
 /**
  * The deduplication factory creates the deduplicator for a {@link Matcher}. If
- * a server wants to use another deduplicator than the three standard
+ * a server wants to use another deduplicator than the four standard
  * deduplicators, it can create its own factory and install it with
  * {@link #setDeduplicatorFactory(DeduplicatorFactory)}.
  */
@@ -74,6 +75,8 @@ public class DeduplicatorFactory {
 			return new SweepDeduplicator(config);
 		case NetworkConfig.Keys.DEDUPLICATOR_CROP_ROTATION:
 			return new CropRotation(config);
+		case NetworkConfig.Keys.DEDUPLICATOR_TIME_BUCKETS:
+			return new TimeBucketDeduplicator(config);
 		case NetworkConfig.Keys.NO_DEDUPLICATOR:
 			return new NoDeduplicator();
 		default:
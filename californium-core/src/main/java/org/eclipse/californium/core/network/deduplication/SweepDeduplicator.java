@@ -18,6 +18,7 @@
  *    Kai Hudalla - logging
  *    Kai Hudalla (Bosch Software Innovations GmbH) - use Logger's message formatting instead of
  *                                                    explicit String concatenation
+ *    Bosch Software Innovations GmbH - keep completed exchanges
  ******************************************************************************/
 package org.eclipse.californium.core.network.deduplication;
 
@@ -44,7 +45,7 @@ import org.eclipse.californium.elements.util.DaemonThreadFactory;
  * messages (exchanges) that have been received before EXCHANGE_LIFETIME seconds.
  * </p>
  */
-public final class SweepDeduplicator implements Deduplicator {
+public final class SweepDeduplicator extends BaseDeduplicator {
 
 	private final static Logger LOGGER = Logger.getLogger(SweepDeduplicator.class.getName());
 
@@ -94,18 +95,16 @@ public final class SweepDeduplicator implements Deduplicator {
 		}
 	}
 
-	/**
-	 * If the message with the specified {@link KeyMID} has already arrived
-	 * before, this method returns the corresponding exchange. If this
-	 * KeyMID has not yet arrived, this method returns null, indicating that
-	 * the message with the KeyMID is not a duplicate. In this case, the
-	 * exchange is added to the deduplicator.
-	 */
 	@Override
-	public Exchange findPrevious(final KeyMID key, final Exchange exchange) {
+	protected Exchange putIfAbsent(final KeyMID key, final Exchange exchange) {
 		return incomingMessages.putIfAbsent(key, exchange);
 	}
 
+	@Override
+	protected boolean remove(final KeyMID key, final Exchange exchange) {
+		return incomingMessages.remove(key, exchange);
+	}
+
 	@Override
 	public Exchange find(KeyMID key) {
 		return incomingMessages.get(key);
@@ -114,11 +113,12 @@ public final class SweepDeduplicator implements Deduplicator {
 	@Override
 	public void clear() {
 		incomingMessages.clear();
+		super.clear();
 	}
 
 	@Override
 	public boolean isEmpty() {
-		return incomingMessages.isEmpty();
+		return incomingMessages.isEmpty() && super.isEmpty();
 	}
 
 	/**
@@ -177,6 +177,7 @@ public final class SweepDeduplicator implements Deduplicator {
 					incomingMessages.remove(entry.getKey());
 				}
 			}
+			removeCompletedBefore(oldestAllowed);
 			LOGGER.log(Level.FINE, "Sweep run took {0}ms", System.currentTimeMillis() - start);
 		}
 
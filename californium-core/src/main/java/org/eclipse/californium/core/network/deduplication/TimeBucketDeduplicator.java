@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.core.network.deduplication;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.californium.core.network.Exchange;
+import org.eclipse.californium.core.network.Exchange.KeyMID;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.eclipse.californium.elements.util.DaemonThreadFactory;
+
+/**
+ * This deduplicator keeps the incoming messages in a map and additionally
+ * records each new entry in the current bucket of a ring of time buckets.
+ * <p>
+ * The EXCHANGE_LIFETIME is split into a number of buckets. Whenever the time
+ * of one bucket has passed, the ring advances and only the entries of the
+ * oldest bucket are removed from the map. Expiry therefore takes time
+ * proportional to the number of messages received during one bucket period
+ * instead of iterating over all entries, as the {@link SweepDeduplicator}
+ * does. A message is remembered for at least EXCHANGE_LIFETIME and at most for
+ * the EXCHANGE_LIFETIME plus one bucket period.
+ */
+public final class TimeBucketDeduplicator extends BaseDeduplicator {
+
+	private final static Logger LOGGER = Logger.getLogger(TimeBucketDeduplicator.class.getName());
+
+	/** The hash map with all incoming messages. */
+	private final ConcurrentMap<KeyMID, Exchange> incomingMessages = new ConcurrentHashMap<>();
+	/**
+	 * The ring of buckets. Each bucket is a stack of the entries added during
+	 * its period.
+	 */
+	private final AtomicReferenceArray<Entry> buckets;
+	private final long bucketPeriod;
+	private final Expiry expiry = new Expiry();
+	private volatile int current;
+	private boolean running = false;
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * Creates a new deduplicator from configuration values.
+	 * <p>
+	 * The following configuration values are used:
+	 * <ul>
+	 * <li>{@link org.eclipse.californium.core.network.config.NetworkConfig.Keys#EXCHANGE_LIFETIME} -
+	 * an exchange is removed from this deduplicator, if no messages have been
+	 * received for this number of milliseconds</li>
+	 * <li>{@link org.eclipse.californium.core.network.config.NetworkConfig.Keys#TIME_BUCKET_COUNT} -
+	 * the number of buckets the exchange lifetime is split into</li>
+	 * </ul>
+	 *
+	 * @param config the configuration to use.
+	 * @throws IllegalArgumentException if the bucket count is less than 1.
+	 */
+	public TimeBucketDeduplicator(final NetworkConfig config) {
+		long exchangeLifetime = config.getLong(NetworkConfig.Keys.EXCHANGE_LIFETIME);
+		int bucketCount = config.getInt(NetworkConfig.Keys.TIME_BUCKET_COUNT);
+		if (bucketCount < 1) {
+			throw new IllegalArgumentException("bucket count must be at least 1");
+		}
+		// round up, so that the buckets cover at least the exchange lifetime
+		this.bucketPeriod = Math.max(1, (exchangeLifetime + bucketCount - 1) / bucketCount);
+		// one additional bucket for the entries of the current period
+		this.buckets = new AtomicReferenceArray<>(bucketCount + 1);
+	}
+
+	@Override
+	public synchronized void start() {
+		if (!running) {
+			if (scheduler == null || scheduler.isShutdown()) {
+				scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("Deduplicator"));
+			}
+			expiry.schedule();
+			running = true;
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (running) {
+			expiry.cancel();
+			scheduler.shutdown();
+			clear();
+			running = false;
+		}
+	}
+
+	@Override
+	protected Exchange putIfAbsent(final KeyMID key, final Exchange exchange) {
+		Exchange previous = incomingMessages.putIfAbsent(key, exchange);
+		if (previous == null) {
+			int bucket = current;
+			Entry entry = new Entry(key);
+			do {
+				entry.next = buckets.get(bucket);
+			} while (!buckets.compareAndSet(bucket, entry.next, entry));
+		}
+		return previous;
+	}
+
+	@Override
+	protected boolean remove(final KeyMID key, final Exchange exchange) {
+		return incomingMessages.remove(key, exchange);
+	}
+
+	@Override
+	public Exchange find(final KeyMID key) {
+		return incomingMessages.get(key);
+	}
+
+	@Override
+	public void clear() {
+		for (int index = 0; index < buckets.length(); ++index) {
+			buckets.set(index, null);
+		}
+		incomingMessages.clear();
+		super.clear();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return incomingMessages.isEmpty() && super.isEmpty();
+	}
+
+	/**
+	 * Advances the ring by one bucket and removes the entries of the oldest
+	 * bucket.
+	 *
+	 * @return the number of removed entries.
+	 */
+	int expire() {
+		int next = (current + 1) % buckets.length();
+		// drain the oldest bucket before new entries are added to it
+		Entry entry = buckets.getAndSet(next, null);
+		current = next;
+		int count = 0;
+		while (entry != null) {
+			// a key is only added to a bucket, if it was absent, and is only
+			// removed on expiry of that bucket. So the key must be removed
+			// regardless of the exchange, which may have been replaced by a
+			// completed exchange.
+			boolean removed = incomingMessages.remove(entry.key) != null;
+			if (removeCompleted(entry.key) || removed) {
+				LOGGER.log(Level.FINER, "Time bucket expiry removes {0}", entry.key);
+				++count;
+			}
+			entry = entry.next;
+		}
+		return count;
+	}
+
+	/**
+	 * Entry of a bucket.
+	 */
+	private static final class Entry {
+
+		private final KeyMID key;
+		private Entry next;
+
+		private Entry(final KeyMID key) {
+			this.key = key;
+		}
+	}
+
+	/**
+	 * Periodically expires the oldest bucket.
+	 */
+	private class Expiry implements Runnable {
+
+		private ScheduledFuture<?> future;
+
+		@Override
+		public void run() {
+			try {
+				final long start = System.currentTimeMillis();
+				int count = expire();
+				LOGGER.log(Level.FINE, "Time bucket expiry removed {0} entries in {1}ms",
+						new Object[] { count, System.currentTimeMillis() - start });
+			} catch (Throwable t) {
+				LOGGER.log(Level.WARNING, "Exception in time bucket expiry", t);
+			} finally {
+				try {
+					schedule();
+				} catch (Throwable t) {
+					LOGGER.log(Level.WARNING, "Exception while scheduling time bucket expiry", t);
+				}
+			}
+		}
+
+		private void schedule() {
+			if (!scheduler.isShutdown()) {
+				future = scheduler.schedule(this, bucketPeriod, TimeUnit.MILLISECONDS);
+			}
+		}
+
+		private void cancel() {
+			if (future != null) {
+				future.cancel(false);
+			}
+		}
+	}
+}
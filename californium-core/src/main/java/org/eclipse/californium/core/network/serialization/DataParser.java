@@ -20,6 +20,8 @@
  * Joe Magerramov (Amazon Web Services) - CoAP over TCP support.
  * Achim Kraus (Bosch Software Innovations GmbH) - add CoAP detail information 
  *                                                 to MessageFormatException
+ * Bosch Software Innovations GmbH - read RawData bytes without copying
+ * Bosch Software Innovations GmbH - add lazy option parsing
  ******************************************************************************/
 package org.eclipse.californium.core.network.serialization;
 
@@ -27,6 +29,8 @@ import org.eclipse.californium.core.coap.*;
 import org.eclipse.californium.elements.RawData;
 import org.eclipse.californium.elements.util.DatagramReader;
 
+import java.util.Arrays;
+
 import static org.eclipse.californium.core.coap.CoAP.MessageFormat.PAYLOAD_MARKER;
 
 /**
@@ -34,6 +38,31 @@ import static org.eclipse.californium.core.coap.CoAP.MessageFormat.PAYLOAD_MARKE
  */
 public abstract class DataParser {
 
+	private final boolean lazyOptionParsing;
+
+	/**
+	 * Creates a parser which decodes all options while parsing a message.
+	 */
+	protected DataParser() {
+		this(false);
+	}
+
+	/**
+	 * Creates a parser.
+	 * <p>
+	 * With lazy option parsing, the parser only checks the option headers and
+	 * copies the encoded options into the message's {@link OptionSet}, see
+	 * {@link OptionSet#decode(byte[], int)}, which indexes them on first
+	 * access and reads Observe, Block1 and Block2 without indexing them. No
+	 * {@link Option} object is created for the options.
+	 * 
+	 * @param lazyOptionParsing {@code true}, to decode options on first access,
+	 *                          {@code false}, to decode all options while parsing.
+	 */
+	protected DataParser(final boolean lazyOptionParsing) {
+		this.lazyOptionParsing = lazyOptionParsing;
+	}
+
 	/**
 	 * Parses a byte array into a CoAP Message.
 	 * 
@@ -43,7 +72,9 @@ public abstract class DataParser {
 	 */
 	public final Message parseMessage(final RawData raw) {
 
-		return parseMessage(raw.getBytes());
+		// the raw data is owned by the connector and not modified afterwards,
+		// so it's read directly
+		return parse(raw.bytes);
 	}
 
 	/**
@@ -55,16 +86,23 @@ public abstract class DataParser {
 	 */
 	public final Message parseMessage(final byte[] msg) {
 
+		// the options and the payload are copied from the array, so it's
+		// read directly
+		return parse(msg);
+	}
+
+	private Message parse(final byte[] bytes) {
+
+		DatagramReader reader = new DatagramReader(bytes, false);
 		String message = "illegal message code";
-		DatagramReader reader = new DatagramReader(msg);
 		MessageHeader header = parseHeader(reader);
 		try {
 			if (CoAP.isRequest(header.getCode())) {
-				return parseMessage(reader, header, new Request(CoAP.Code.valueOf(header.getCode())));
+				return parseMessage(bytes, reader, header, new Request(CoAP.Code.valueOf(header.getCode())));
 			} else if (CoAP.isResponse(header.getCode())) {
-				return parseMessage(reader, header, new Response(CoAP.ResponseCode.valueOf(header.getCode())));
+				return parseMessage(bytes, reader, header, new Response(CoAP.ResponseCode.valueOf(header.getCode())));
 			} else if (CoAP.isEmptyMessage(header.getCode())) {
-				return parseMessage(reader, header, new EmptyMessage(header.getType()));
+				return parseMessage(bytes, reader, header, new EmptyMessage(header.getType()));
 			}
 		} catch (MessageFormatException e) {
 			/** use message to add CoAP message specific information */
@@ -73,12 +111,17 @@ public abstract class DataParser {
 		throw new CoAPMessageFormatException(message, header.getMID(), header.getCode(), CoAP.Type.CON == header.getType());
 	}
 
-	private static Message parseMessage(final DatagramReader source, final MessageHeader header, final Message target) {
+	private Message parseMessage(final byte[] bytes, final DatagramReader source, final MessageHeader header,
+			final Message target) {
 		target.setMID(header.getMID());
 		target.setType(header.getType());
 		target.setToken(header.getToken());
 
-		parseOptionsAndPayload(source, target);
+		if (lazyOptionParsing) {
+			parseOptionsLazilyAndPayload(bytes, source, target);
+		} else {
+			parseOptionsAndPayload(source, target);
+		}
 		return target;
 	}
 
@@ -90,7 +133,7 @@ public abstract class DataParser {
 	 * @throws MessageFormatException if the array cannot be parsed into a message header.
 	 */
 	public final MessageHeader parseHeader(RawData raw) {
-		DatagramReader reader = new DatagramReader(raw.getBytes());
+		DatagramReader reader = new DatagramReader(raw.bytes, false);
 		return parseHeader(reader);
 	}
 
@@ -167,6 +210,31 @@ public abstract class DataParser {
 		}
 	}
 
+	private static void parseOptionsLazilyAndPayload(byte[] bytes, DatagramReader reader, Message message) {
+		// the option headers are checked and the encoded options are copied
+		// into the message's option set, which indexes them on first access
+		int index;
+		try {
+			index = message.getOptions().decode(bytes, bytes.length - reader.bitsLeft() / Byte.SIZE);
+		} catch (IllegalArgumentException ex) {
+			throw new CoAPMessageFormatException(ex.getMessage(), message.getMID(), message.getRawCode(),
+					message.isConfirmable());
+		}
+		if (index < bytes.length) {
+			// the presence of a marker followed by a zero-length payload must be processed as a message format error
+			if (index + 1 == bytes.length) {
+				throw new CoAPMessageFormatException(
+						"Found payload marker (0xFF) but message contains no payload",
+						message.getMID(), message.getRawCode(), message.isConfirmable());
+			} else {
+				// get payload
+				message.setPayload(Arrays.copyOfRange(bytes, index + 1, bytes.length));
+			}
+		} else {
+			message.setPayload((String) null);
+		}
+	}
+
 	/**
 	 * Calculates the next option number based on the current option number and the option delta as specified in
 	 * RFC 7252, Section 3.1
@@ -187,6 +255,10 @@ public abstract class DataParser {
 	private static int determineValueFromNibble(final DatagramReader reader, final int delta, final Message message) {
 		if (delta <= 12) {
 			return delta;
+		} else if (delta < 15 && !reader.bytesAvailable(delta - 12)) {
+			throw new CoAPMessageFormatException(
+					"Message contains truncated option delta/length: " + delta,
+					message.getMID(), message.getRawCode(), message.isConfirmable());
 		} else if (delta == 13) {
 			return reader.read(8) + 13;
 		} else if (delta == 14) {
@@ -18,6 +18,8 @@
  * Kai Hudalla - logging
  * Bosch Software Innovations GmbH - turn into utility class with static methods only
  * Joe Magerramov (Amazon Web Services) - CoAP over TCP support.
+ * Bosch Software Innovations GmbH - serialize messages in a single pass
+ *                                   into an exactly sized byte array
  ******************************************************************************/
 package org.eclipse.californium.core.network.serialization;
 
@@ -27,7 +29,6 @@ import org.eclipse.californium.elements.RawData;
 import org.eclipse.californium.elements.util.DatagramWriter;
 
 import java.net.InetSocketAddress;
-import java.util.List;
 
 import static org.eclipse.californium.core.coap.CoAP.MessageFormat.*;
 
@@ -89,15 +90,7 @@ public abstract class DataSerializer {
 	 */
 	public final byte[] getByteArray(final Request request) {
 
-		DatagramWriter writer = new DatagramWriter();
-		byte[] body = serializeOptionsAndPayload(request);
-
-		MessageHeader header = new MessageHeader(CoAP.VERSION, request.getType(), request.getToken(),
-				request.getRawCode(), request.getMID(), body.length);
-		serializeHeader(writer, header);
-		writer.writeBytes(body);
-
-		return writer.toByteArray();
+		return serialize(request, request.getRawCode());
 	}
 
 	/**
@@ -108,16 +101,7 @@ public abstract class DataSerializer {
 	 */
 	public final RawData serializeResponse(final Response response) {
 		if (response.getBytes() == null) {
-			DatagramWriter writer = new DatagramWriter();
-			byte[] body = serializeOptionsAndPayload(response);
-
-			MessageHeader header = new MessageHeader(CoAP.VERSION, response.getType(), response.getToken(),
-					response.getCode().value, response.getMID(), body.length);
-			serializeHeader(writer, header);
-			writer.writeBytes(body);
-
-			byte[] bytes = writer.toByteArray();
-			response.setBytes(bytes);
+			response.setBytes(serialize(response, response.getCode().value));
 		}
 		return new RawData(response.getBytes(), response.getDestination(), response.getDestinationPort());
 	}
@@ -130,16 +114,7 @@ public abstract class DataSerializer {
 	 */
 	public final RawData serializeEmptyMessage(final EmptyMessage emptyMessage) {
 		if (emptyMessage.getBytes() == null) {
-			DatagramWriter writer = new DatagramWriter();
-			byte[] body = serializeOptionsAndPayload(emptyMessage);
-
-			MessageHeader header = new MessageHeader(CoAP.VERSION, emptyMessage.getType(), emptyMessage.getToken(), 0,
-					emptyMessage.getMID(), body.length);
-			serializeHeader(writer, header);
-			writer.writeBytes(body);
-
-			byte[] bytes = writer.toByteArray();
-			emptyMessage.setBytes(bytes);
+			emptyMessage.setBytes(serialize(emptyMessage, 0));
 		}
 		return new RawData(emptyMessage.getBytes(), emptyMessage.getDestination(), emptyMessage.getDestinationPort());
 	}
@@ -152,70 +127,80 @@ public abstract class DataSerializer {
 	 */
 	protected abstract void serializeHeader(DatagramWriter writer, MessageHeader header);
 
-	private static byte[] serializeOptionsAndPayload(final Message message) {
+	/**
+	 * Gets the number of bytes required for encoding a message's <em>header</em>
+	 * values, including the token.
+	 * <p>
+	 * This default implementation encodes the header using
+	 * {@link #serializeHeader(DatagramWriter, MessageHeader)}. Subclasses should
+	 * override this method together with {@link #writeHeader(byte[], int, MessageHeader)}
+	 * in order to avoid the bit-wise encoding.
+	 * 
+	 * @param header The header values.
+	 * @return The number of bytes.
+	 */
+	protected int getHeaderLength(final MessageHeader header) {
 		DatagramWriter writer = new DatagramWriter();
-		List<Option> options = message.getOptions().asSortedList(); // already
-		// sorted
-		int lastOptionNumber = 0;
-		for (Option option : options) {
-			// write 4-bit option delta
-			int optionDelta = option.getNumber() - lastOptionNumber;
-			int optionDeltaNibble = getOptionNibble(optionDelta);
-			writer.write(optionDeltaNibble, OPTION_DELTA_BITS);
-
-			// write 4-bit option length
-			int optionLength = option.getLength();
-			int optionLengthNibble = getOptionNibble(optionLength);
-			writer.write(optionLengthNibble, OPTION_LENGTH_BITS);
-
-			// write extended option delta field (0 - 2 bytes)
-			if (optionDeltaNibble == 13) {
-				writer.write(optionDelta - 13, Byte.SIZE);
-			} else if (optionDeltaNibble == 14) {
-				writer.write(optionDelta - 269, 2 * Byte.SIZE);
-			}
-
-			// write extended option length field (0 - 2 bytes)
-			if (optionLengthNibble == 13) {
-				writer.write(optionLength - 13, Byte.SIZE);
-			} else if (optionLengthNibble == 14) {
-				writer.write(optionLength - 269, 2 * Byte.SIZE);
-			}
-
-			// write option value
-			writer.writeBytes(option.getValue());
-
-			// update last option number
-			lastOptionNumber = option.getNumber();
-		}
+		serializeHeader(writer, header);
+		return writer.toByteArray().length;
+	}
 
-		byte[] payload = message.getPayload();
-		if (payload != null && payload.length > 0) {
-			// if payload is present and of non-zero length, it is prefixed by
-			// an one-byte Payload Marker (0xFF) which indicates the end of
-			// options and the start of the payload
-			writer.writeByte(PAYLOAD_MARKER);
-			writer.writeBytes(payload);
-		}
-		return writer.toByteArray();
+	/**
+	 * Writes a message's <em>header</em> values, including the token, to a byte array.
+	 * <p>
+	 * This default implementation encodes the header using
+	 * {@link #serializeHeader(DatagramWriter, MessageHeader)}.
+	 * 
+	 * @param buffer The array to write to. It has room for at least
+	 *               {@link #getHeaderLength(MessageHeader)} bytes starting at the offset.
+	 * @param offset The index to start writing at.
+	 * @param header The header values.
+	 * @return The index following the last byte written.
+	 */
+	protected int writeHeader(final byte[] buffer, final int offset, final MessageHeader header) {
+		DatagramWriter writer = new DatagramWriter();
+		serializeHeader(writer, header);
+		byte[] encodedHeader = writer.toByteArray();
+		System.arraycopy(encodedHeader, 0, buffer, offset, encodedHeader.length);
+		return offset + encodedHeader.length;
 	}
 
 	/**
-	 * Returns the 4-bit option header value.
-	 *
-	 * @param optionValue the option value (delta or length) to be encoded.
-	 * @return the 4-bit option header value.
-	 * @throws IllegalArgumentException if the option value is &gt; 65535 + 269.
+	 * Serializes a message in a single pass.
+	 * <p>
+	 * The length of the encoded options and payload is determined up front so that
+	 * header, token, options and payload can be written directly into a byte array
+	 * of the exact size without any intermediary buffers.
+	 * 
+	 * @param message The message to serialize.
+	 * @param code The code to put into the header.
+	 * @return The encoded message.
 	 */
-	private static int getOptionNibble(final int optionValue) {
-		if (optionValue <= 12) {
-			return optionValue;
-		} else if (optionValue <= 255 + 13) {
-			return 13;
-		} else if (optionValue <= 65535 + 269) {
-			return 14;
-		} else {
-			throw new IllegalArgumentException("Unsupported option delta " + optionValue);
+	private byte[] serialize(final Message message, final int code) {
+
+		OptionSet options = message.getOptions();
+		byte[] payload = message.getPayload();
+		boolean hasPayload = payload != null && payload.length > 0;
+
+		int bodyLength = options.getEncodedLength();
+		if (hasPayload) {
+			bodyLength += 1 + payload.length;
+		}
+
+		MessageHeader header = new MessageHeader(CoAP.VERSION, message.getType(), message.getToken(), code,
+				message.getMID(), bodyLength);
+		byte[] bytes = new byte[getHeaderLength(header) + bodyLength];
+		int index = writeHeader(bytes, 0, header);
+		// options are kept sorted and encoded
+		index = options.encode(bytes, index);
+
+		if (hasPayload) {
+			// if payload is present and of non-zero length, it is prefixed by
+			// an one-byte Payload Marker (0xFF) which indicates the end of
+			// options and the start of the payload
+			bytes[index++] = PAYLOAD_MARKER;
+			System.arraycopy(payload, 0, bytes, index, payload.length);
 		}
+		return bytes;
 	}
 }
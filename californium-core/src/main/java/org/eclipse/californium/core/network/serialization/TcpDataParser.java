@@ -19,6 +19,7 @@
  * Bosch Software Innovations GmbH - introduce dedicated MessageFormatException
  * Joe Magerramov (Amazon Web Services) - CoAP over TCP support.
  * Achim Kraus (Bosch Software Innovations GmbH) - use Message.NONE as mid
+ * Bosch Software Innovations GmbH - add lazy option parsing
  ******************************************************************************/
 package org.eclipse.californium.core.network.serialization;
 
@@ -35,6 +36,24 @@ import static org.eclipse.californium.core.coap.CoAP.MessageFormat.*;
  */
 public final class TcpDataParser extends DataParser {
 
+	/**
+	 * Creates a parser which decodes all options while parsing a message.
+	 */
+	public TcpDataParser() {
+		super();
+	}
+
+	/**
+	 * Creates a parser.
+	 * 
+	 * @param lazyOptionParsing {@code true}, to decode options on first access,
+	 *                          {@code false}, to decode all options while parsing.
+	 * @see DataParser#DataParser(boolean)
+	 */
+	public TcpDataParser(final boolean lazyOptionParsing) {
+		super(lazyOptionParsing);
+	}
+
 	@Override
 	public MessageHeader parseHeader(final DatagramReader reader) {
 
@@ -18,6 +18,7 @@
  * Kai Hudalla - logging
  * Bosch Software Innovations GmbH - turn into utility class with static methods only
  * Joe Magerramov (Amazon Web Services) - CoAP over TCP support.
+ * Bosch Software Innovations GmbH - add byte-aligned header encoding
  ******************************************************************************/
 package org.eclipse.californium.core.network.serialization;
 
@@ -53,4 +54,47 @@ public final class TcpDataSerializer extends DataSerializer {
 		writer.write(header.getCode(), CODE_BITS);
 		writer.writeBytes(header.getToken());
 	}
+
+	@Override protected int getHeaderLength(final MessageHeader header) {
+		int bodyLength = header.getBodyLength();
+		int extendedLength;
+		if (bodyLength < 13) {
+			extendedLength = 0;
+		} else if (bodyLength < (1 << 8) + 13) {
+			extendedLength = 1;
+		} else if (bodyLength < (1 << 16) + 269) {
+			extendedLength = 2;
+		} else {
+			extendedLength = 4;
+		}
+		return 2 + extendedLength + header.getToken().length;
+	}
+
+	@Override protected int writeHeader(final byte[] buffer, int offset, final MessageHeader header) {
+		// Variable length encoding per: https://tools.ietf.org/html/draft-ietf-core-coap-tcp-tls-02
+		byte[] token = header.getToken();
+		int bodyLength = header.getBodyLength();
+		if (bodyLength < 13) {
+			buffer[offset++] = (byte) (bodyLength << TOKEN_LENGTH_BITS | token.length);
+		} else if (bodyLength < (1 << 8) + 13) {
+			buffer[offset++] = (byte) (13 << TOKEN_LENGTH_BITS | token.length);
+			buffer[offset++] = (byte) (bodyLength - 13);
+		} else if (bodyLength < (1 << 16) + 269) {
+			int extendedLength = bodyLength - 269;
+			buffer[offset++] = (byte) (14 << TOKEN_LENGTH_BITS | token.length);
+			buffer[offset++] = (byte) (extendedLength >> Byte.SIZE);
+			buffer[offset++] = (byte) extendedLength;
+		} else {
+			int extendedLength = bodyLength - 65805;
+			buffer[offset++] = (byte) (15 << TOKEN_LENGTH_BITS | token.length);
+			buffer[offset++] = (byte) (extendedLength >> 24);
+			buffer[offset++] = (byte) (extendedLength >> 16);
+			buffer[offset++] = (byte) (extendedLength >> Byte.SIZE);
+			buffer[offset++] = (byte) extendedLength;
+		}
+
+		buffer[offset++] = (byte) header.getCode();
+		System.arraycopy(token, 0, buffer, offset, token.length);
+		return offset + token.length;
+	}
 }
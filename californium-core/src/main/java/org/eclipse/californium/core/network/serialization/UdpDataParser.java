@@ -18,6 +18,7 @@
  * Kai Hudalla - logging
  * Bosch Software Innovations GmbH - introduce dedicated MessageFormatException
  * Joe Magerramov (Amazon Web Services) - CoAP over TCP support.
+ * Bosch Software Innovations GmbH - add lazy option parsing
  ******************************************************************************/
 package org.eclipse.californium.core.network.serialization;
 
@@ -32,6 +33,24 @@ import static org.eclipse.californium.core.coap.CoAP.MessageFormat.*;
  */
 public final class UdpDataParser extends DataParser {
 
+	/**
+	 * Creates a parser which decodes all options while parsing a message.
+	 */
+	public UdpDataParser() {
+		super();
+	}
+
+	/**
+	 * Creates a parser.
+	 * 
+	 * @param lazyOptionParsing {@code true}, to decode options on first access,
+	 *                          {@code false}, to decode all options while parsing.
+	 * @see DataParser#DataParser(boolean)
+	 */
+	public UdpDataParser(final boolean lazyOptionParsing) {
+		super(lazyOptionParsing);
+	}
+
 	@Override
 	protected MessageHeader parseHeader(final DatagramReader reader) {
 		int version = reader.read(VERSION_BITS);
@@ -18,6 +18,7 @@
  * Kai Hudalla - logging
  * Bosch Software Innovations GmbH - turn into utility class with static methods only
  * Joe Magerramov (Amazon Web Services) - CoAP over TCP support.
+ * Bosch Software Innovations GmbH - add byte-aligned header encoding
  ******************************************************************************/
 package org.eclipse.californium.core.network.serialization;
 
@@ -38,4 +39,19 @@ public final class UdpDataSerializer extends DataSerializer {
 		writer.write(header.getMID(), MESSAGE_ID_BITS);
 		writer.writeBytes(header.getToken());
 	}
+
+	@Override protected int getHeaderLength(final MessageHeader header) {
+		return 4 + header.getToken().length;
+	}
+
+	@Override protected int writeHeader(final byte[] buffer, int offset, final MessageHeader header) {
+		byte[] token = header.getToken();
+		buffer[offset++] = (byte) (VERSION << (TYPE_BITS + TOKEN_LENGTH_BITS)
+				| header.getType().value << TOKEN_LENGTH_BITS | token.length);
+		buffer[offset++] = (byte) header.getCode();
+		buffer[offset++] = (byte) (header.getMID() >> Byte.SIZE);
+		buffer[offset++] = (byte) header.getMID();
+		System.arraycopy(token, 0, buffer, offset, token.length);
+		return offset + token.length;
+	}
 }
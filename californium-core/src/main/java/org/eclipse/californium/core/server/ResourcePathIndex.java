@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.core.server;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.californium.core.CoapResource;
+import org.eclipse.californium.core.coap.CoAP;
+import org.eclipse.californium.core.coap.OptionSet;
+import org.eclipse.californium.core.observe.ObserveRelation;
+import org.eclipse.californium.core.server.resources.Resource;
+import org.eclipse.californium.core.server.resources.ResourceObserver;
+
+/**
+ * An index of a resource tree for looking up the resource targeted by a
+ * request.
+ * <p>
+ * The index is an immutable trie of the UTF-8 encoded resource names. A
+ * lookup searches the encoded Uri-Path options of a request in these names
+ * using {@link OptionSet#binarySearchUriPath(int, byte[][])}, so no strings
+ * or collections are created for it. The children of a resource are kept
+ * sorted, so large trees, e.g. of LwM2M objects and their instances, are
+ * looked up using binary search.
+ * <p>
+ * The index observes the resources of the tree. If a resource is added,
+ * deleted or renamed, the index is replaced by a new one, which is built on
+ * the next lookup.
+ * <p>
+ * A resource overriding {@link Resource#getChild(String)}, e.g. a wildcard
+ * or catch-all resource accepting requests for any sub-resource, or a
+ * resource not extending {@link CoapResource}, is not indexed below. The
+ * remaining path segments are then looked up using its
+ * {@link Resource#getChild(String)} method, as
+ * {@link ServerMessageDeliverer#findResource(List)} does.
+ */
+public final class ResourcePathIndex {
+
+	private static final Node[] NO_CHILDREN = new Node[0];
+	private static final byte[][] NO_NAMES = new byte[0][];
+
+	private static final Comparator<Node> NAME_ORDER = new Comparator<Node>() {
+
+		@Override
+		public int compare(final Node node1, final Node node2) {
+			byte[] name1 = node1.name;
+			byte[] name2 = node2.name;
+			int common = Math.min(name1.length, name2.length);
+			for (int i = 0; i < common; ++i) {
+				int difference = (name1[i] & 0xFF) - (name2[i] & 0xFF);
+				if (difference != 0) {
+					return difference;
+				}
+			}
+			return name1.length - name2.length;
+		}
+	};
+
+	private final Resource root;
+	private final ResourceObserver observer = new TreeObserver();
+	/* Number of changes of the resource tree. */
+	private final AtomicInteger changes = new AtomicInteger();
+	/* Resources observed for changes, guarded by this */
+	private final Set<Resource> observed = newIdentitySet();
+	/* Whether the resources of a class are indexed, guarded by this */
+	private final Map<Class<?>, Boolean> indexedClasses = new HashMap<>();
+	private volatile Node index;
+
+	/**
+	 * Creates an index for a resource tree.
+	 * <p>
+	 * The index is built on the first lookup.
+	 *
+	 * @param root the root of the resource tree.
+	 * @throws NullPointerException if the root is {@code null}.
+	 */
+	public ResourcePathIndex(final Resource root) {
+		if (root == null) {
+			throw new NullPointerException("root must not be null");
+		}
+		this.root = root;
+	}
+
+	/**
+	 * Looks up the resource targeted by the Uri-Path options of a request.
+	 *
+	 * @param options the options of the request.
+	 * @return the resource, or {@code null}, if no resource matches.
+	 */
+	public Resource findResource(final OptionSet options) {
+		Node node = getIndex();
+		int count = options.getURIPathCount();
+		for (int segment = 0; segment < count; ++segment) {
+			if (node.children == null) {
+				return findChild(node.resource, options.getUriPath(), segment);
+			}
+			int child = options.binarySearchUriPath(segment, node.names);
+			if (child < 0) {
+				return null;
+			}
+			node = node.children[child];
+		}
+		return node.resource;
+	}
+
+	/**
+	 * Looks up the remaining path segments using
+	 * {@link Resource#getChild(String)}.
+	 */
+	private static Resource findChild(Resource resource, final List<String> path, int segment) {
+		for (int count = path.size(); segment < count && resource != null; ++segment) {
+			resource = resource.getChild(path.get(segment));
+		}
+		return resource;
+	}
+
+	private Node getIndex() {
+		Node current = index;
+		if (current == null || current.version != changes.get()) {
+			synchronized (this) {
+				current = index;
+				int version = changes.get();
+				if (current == null || current.version != version) {
+					Set<Resource> indexed = newIdentitySet();
+					current = build(root, null, version, indexed);
+					// stop observing resources no longer in the tree
+					for (Resource resource : observed) {
+						if (!indexed.contains(resource)) {
+							resource.removeObserver(observer);
+						}
+					}
+					observed.retainAll(indexed);
+					index = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	private Node build(final Resource resource, final byte[] name, final int version, final Set<Resource> indexed) {
+		if (!isIndexed(resource)) {
+			return new Node(name, resource, null, null, version);
+		}
+		// observe before reading the children, so that no change is missed
+		indexed.add(resource);
+		if (observed.add(resource)) {
+			resource.addObserver(observer);
+		}
+		Collection<Resource> children = resource.getChildren();
+		Node[] nodes = NO_CHILDREN;
+		byte[][] names = NO_NAMES;
+		if (!children.isEmpty()) {
+			Resource[] resources = children.toArray(new Resource[children.size()]);
+			nodes = new Node[resources.length];
+			names = new byte[resources.length][];
+			for (int i = 0; i < resources.length; ++i) {
+				nodes[i] = build(resources[i], resources[i].getName().getBytes(CoAP.UTF8_CHARSET), version, indexed);
+			}
+			Arrays.sort(nodes, NAME_ORDER);
+			for (int i = 0; i < nodes.length; ++i) {
+				names[i] = nodes[i].name;
+			}
+		}
+		return new Node(name, resource, names, nodes, version);
+	}
+
+	/**
+	 * Checks if the children of a resource can be indexed.
+	 *
+	 * @param resource the resource.
+	 * @return {@code true} if the resource is a {@link CoapResource} not
+	 *         overriding {@link CoapResource#getChild(String)}.
+	 */
+	private boolean isIndexed(final Resource resource) {
+		if (!(resource instanceof CoapResource)) {
+			return false;
+		}
+		Class<?> type = resource.getClass();
+		Boolean indexed = indexedClasses.get(type);
+		if (indexed == null) {
+			try {
+				indexed = type.getMethod("getChild", String.class).getDeclaringClass() == CoapResource.class;
+			} catch (NoSuchMethodException e) {
+				indexed = Boolean.FALSE;
+			}
+			indexedClasses.put(type, indexed);
+		}
+		return indexed;
+	}
+
+	private static Set<Resource> newIdentitySet() {
+		return Collections.newSetFromMap(new IdentityHashMap<Resource, Boolean>());
+	}
+
+	/**
+	 * A node of the trie.
+	 */
+	private static final class Node {
+
+		private final byte[] name;
+		private final Resource resource;
+		/* Sorted names of the children, null if the resource is not indexed below */
+		private final byte[][] names;
+		/* The children in the order of their names */
+		private final Node[] children;
+		/* Number of changes of the resource tree the node has been built for */
+		private final int version;
+
+		private Node(final byte[] name, final Resource resource, final byte[][] names, final Node[] children,
+				final int version) {
+			this.name = name;
+			this.resource = resource;
+			this.names = names;
+			this.children = children;
+			this.version = version;
+		}
+	}
+
+	/**
+	 * Invalidates the index, when the resource tree changes.
+	 */
+	private final class TreeObserver implements ResourceObserver {
+
+		@Override
+		public void changedName(final String old) {
+			changes.incrementAndGet();
+		}
+
+		@Override
+		public void changedPath(final String old) {
+			// a path only changes along with a name or a parent
+		}
+
+		@Override
+		public void addedChild(final Resource child) {
+			changes.incrementAndGet();
+		}
+
+		@Override
+		public void removedChild(final Resource child) {
+			changes.incrementAndGet();
+		}
+
+		@Override
+		public void addedObserveRelation(final ObserveRelation relation) {
+		}
+
+		@Override
+		public void removedObserveRelation(final ObserveRelation relation) {
+		}
+	}
+}
@@ -18,12 +18,12 @@
  *    Kai Hudalla - logging
  *    Kai Hudalla (Bosch Software Innovations GmbH) - use Logger's message formatting instead of
  *                                                    explicit String concatenation
+ *    Bosch Software Innovations GmbH - look up resources in a path index
  ******************************************************************************/
 package org.eclipse.californium.core.server;
 
 import java.net.InetSocketAddress;
-import java.util.Deque;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.logging.Level;
@@ -50,6 +50,9 @@ public class ServerMessageDeliverer implements MessageDeliverer {
 	/* The root of all resources */
 	private final Resource root;
 
+	/* The index of the resources, null if resources are looked up by findResource */
+	private final ResourcePathIndex pathIndex;
+
 	/* The manager of the observe mechanism for this server */
 	private final ObserveManager observeManager = new ObserveManager();
 
@@ -60,7 +63,21 @@ public class ServerMessageDeliverer implements MessageDeliverer {
 	 * @param root the root resource
 	 */
 	public ServerMessageDeliverer(final Resource root) {
+		this(root, false);
+	}
+
+	/**
+	 * Constructs a message deliverer that delivers requests to the resources
+	 * rooted at the specified root.
+	 * 
+	 * @param root the root resource
+	 * @param usePathIndex {@code true}, to look up resources in a
+	 *            {@link ResourcePathIndex}, {@code false}, to look them up
+	 *            using {@link #findResource(List)}.
+	 */
+	public ServerMessageDeliverer(final Resource root, final boolean usePathIndex) {
 		this.root = root;
+		this.pathIndex = usePathIndex ? new ResourcePathIndex(root) : null;
 	}
 
 	/**
@@ -72,7 +89,8 @@ public class ServerMessageDeliverer implements MessageDeliverer {
 	 * <p>
 	 * Otherwise, this method
 	 * <ol>
-	 * <li>tries to {@linkplain #findResource(List) find a matching resource},</li>
+	 * <li>tries to {@linkplain #findResource(List) find a matching resource},
+	 * using the {@link ResourcePathIndex}, if enabled,</li>
 	 * <li>handle a GET request's observe option and </li>
 	 * <li>deliver the request to the resource for processing.</li>
 	 * </ol>
@@ -88,8 +106,8 @@ public class ServerMessageDeliverer implements MessageDeliverer {
 		boolean processed = preDeliverRequest(exchange);
 		if (!processed) {
 			Request request = exchange.getRequest();
-			List<String> path = request.getOptions().getUriPath();
-			final Resource resource = findResource(path);
+			final Resource resource = pathIndex != null ? pathIndex.findResource(request.getOptions())
+					: findResource(request.getOptions().getUriPath());
 			if (resource != null) {
 				checkForObserveOption(exchange, resource);
 
@@ -106,7 +124,7 @@ public class ServerMessageDeliverer implements MessageDeliverer {
 				}
 			} else {
 				LOGGER.log(Level.INFO, "Did not find resource {0} requested by {1}:{2}",
-						new Object[]{path, request.getSource(), request.getSourcePort()});
+						new Object[]{request.getOptions().getUriPath(), request.getSource(), request.getSourcePort()});
 				exchange.sendResponse(new Response(ResponseCode.NOT_FOUND));
 			}
 		}
@@ -180,10 +198,10 @@ public class ServerMessageDeliverer implements MessageDeliverer {
 	 * @return the resource or null if not found
 	 */
 	protected final Resource findResource(final List<String> list) {
-		Deque<String> path = new LinkedList<String>(list);
+		Iterator<String> path = list.iterator();
 		Resource current = root;
-		while (!path.isEmpty() && current != null) {
-			String name = path.removeFirst();
+		while (path.hasNext() && current != null) {
+			String name = path.next();
 			current = current.getChild(name);
 		}
 		return current;
@@ -13,10 +13,16 @@
  * Contributors:
  *    Kai Hudalla (Bosch Software Innovations GmbH) - initial creation (465073)
  *    Bosch Software Innovations GmbH - add test case for GitHub issue #1
+ *    Bosch Software Innovations GmbH - add test case for striped protocol stage
+ *    Bosch Software Innovations GmbH - add test case for compact deduplication
+ *    Bosch Software Innovations GmbH - add test cases for timer wheel
  ******************************************************************************/
 package org.eclipse.californium.core.network;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -26,13 +32,16 @@ import java.net.InetSocketAddress;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.californium.category.Small;
 import org.eclipse.californium.core.coap.CoAP;
+import org.eclipse.californium.core.coap.CoAP.ResponseCode;
 import org.eclipse.californium.core.coap.Request;
 import org.eclipse.californium.core.coap.Response;
+import org.eclipse.californium.core.network.Exchange.KeyMID;
 import org.eclipse.californium.core.network.config.NetworkConfig;
 import org.eclipse.californium.core.server.MessageDeliverer;
 import org.eclipse.californium.elements.Connector;
@@ -41,11 +50,14 @@ import org.eclipse.californium.elements.DtlsCorrelationContext;
 import org.eclipse.californium.elements.MapBasedCorrelationContext;
 import org.eclipse.californium.elements.RawData;
 import org.eclipse.californium.elements.RawDataChannel;
+import org.eclipse.californium.elements.util.HashedWheelTimer;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import eu.javaspecialists.tjsn.concurrency.stripedexecutor.StripedExecutorService;
+
 @Category(Small.class)
 public class CoapEndpointTest {
 
@@ -59,6 +71,7 @@ public class CoapEndpointTest {
 	CountDownLatch latch;
 	CountDownLatch sentLatch;
 	CorrelationContext context;
+	MessageDeliverer deliverer;
 
 	@Before
 	public void setUp() throws Exception {
@@ -67,7 +80,7 @@ public class CoapEndpointTest {
 		connector = new SimpleConnector();
 		endpoint = new CoapEndpoint(connector, CONFIG);
 		sentLatch = new CountDownLatch(1);
-		MessageDeliverer deliverer = new MessageDeliverer() {
+		deliverer = new MessageDeliverer() {
 
 			@Override
 			public void deliverResponse(Exchange exchange, Response response) {
@@ -163,10 +176,117 @@ public class CoapEndpointTest {
 		assertTrue(receivedRequests.isEmpty());
 	}
 
+	@Test
+	public void testStripedExecutorKeepsOrderOfPeer() throws Exception {
+		int count = 50;
+		StripedExecutorService stripedExecutor = new StripedExecutorService(4);
+		endpoint.stop();
+		endpoint.setStripedExecutor(stripedExecutor);
+		endpoint.start();
+		try {
+			latch = new CountDownLatch(count);
+			for (int mid = 0; mid < count; mid++) {
+				connector.receiveMessage(RawData.inbound(getSerializedRequest(mid), SOURCE_ADDRESS, null, null, false));
+			}
+			assertTrue(latch.await(2, TimeUnit.SECONDS));
+			for (int mid = 0; mid < count; mid++) {
+				assertThat(receivedRequests.get(mid).getMID(), is(mid));
+			}
+		} finally {
+			stripedExecutor.shutdown();
+		}
+	}
+
+	@Test
+	public void testTimerWheelIsUsedWithStripedExecutor() throws Exception {
+		NetworkConfig config = NetworkConfig.createStandardWithoutFile();
+		config.setBoolean(NetworkConfig.Keys.PROTOCOL_STAGE_STRIPED_BY_PEER, true);
+		config.setInt(NetworkConfig.Keys.PROTOCOL_STAGE_TIMER_WHEEL_TICK, 10);
+		SimpleConnector wheelConnector = new SimpleConnector();
+		CoapEndpoint wheelEndpoint = new CoapEndpoint(wheelConnector, config);
+		wheelEndpoint.setMessageDeliverer(deliverer);
+		wheelEndpoint.start();
+		try {
+			latch = new CountDownLatch(1);
+			wheelConnector.receiveMessage(RawData.inbound(getSerializedRequest(), SOURCE_ADDRESS, null, null, false));
+			assertTrue(latch.await(2, TimeUnit.SECONDS));
+		} finally {
+			wheelEndpoint.destroy();
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testTimerWheelIsRejectedWithoutStripedExecutor() throws Exception {
+		NetworkConfig config = NetworkConfig.createStandardWithoutFile();
+		config.setInt(NetworkConfig.Keys.PROTOCOL_STAGE_TIMER_WHEEL_TICK, 10);
+		CoapEndpoint wheelEndpoint = new CoapEndpoint(new SimpleConnector(), config);
+		wheelEndpoint.start();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testTimerWheelWithoutTaskExecutorIsRejectedAsExecutor() throws Exception {
+		HashedWheelTimer timer = new HashedWheelTimer("test", 10, TimeUnit.MILLISECONDS, 64, null);
+		CoapEndpoint wheelEndpoint = new CoapEndpoint(new SimpleConnector(), CONFIG);
+		wheelEndpoint.setExecutor(timer);
+		try {
+			wheelEndpoint.start();
+		} finally {
+			timer.shutdown();
+		}
+	}
+
+	@Test
+	public void testDuplicateOfCompletedExchangeIsAnsweredFromResponseBytes() throws Exception {
+		NetworkConfig config = NetworkConfig.createStandardWithoutFile();
+		config.setBoolean(NetworkConfig.Keys.DEDUPLICATOR_COMPACT_EXCHANGES, true);
+		SimpleConnector compactConnector = new SimpleConnector();
+		InMemoryMessageExchangeStore store = new InMemoryMessageExchangeStore(config);
+		CoapEndpoint compactEndpoint = new CoapEndpoint(compactConnector, config, store);
+		final CountDownLatch delivered = new CountDownLatch(1);
+		compactEndpoint.setMessageDeliverer(new MessageDeliverer() {
+
+			@Override
+			public void deliverResponse(Exchange exchange, Response response) {
+			}
+
+			@Override
+			public void deliverRequest(Exchange exchange) {
+				exchange.sendResponse(new Response(ResponseCode.CONTENT));
+				delivered.countDown();
+			}
+		});
+		compactEndpoint.start();
+		try {
+			sentLatch = new CountDownLatch(2);
+			compactConnector.receiveMessage(RawData.inbound(getSerializedRequest(), SOURCE_ADDRESS, null, null, false));
+			assertTrue(delivered.await(2, TimeUnit.SECONDS));
+			Request request = Request.newGet();
+			request.setMID(0x10);
+			request.setSource(SOURCE_ADDRESS.getAddress());
+			request.setSourcePort(SOURCE_ADDRESS.getPort());
+			KeyMID key = KeyMID.fromInboundMessage(request);
+			assertThat(store.find(key), is(nullValue()));
+			assertThat(store.findCompleted(key), is(notNullValue()));
+			// WHEN the request is received again after the exchange has completed
+			compactConnector.receiveMessage(RawData.inbound(getSerializedRequest(), SOURCE_ADDRESS, null, null, false));
+			// THEN the piggy-backed response is sent again without delivering the request
+			assertTrue(sentLatch.await(2, TimeUnit.SECONDS));
+			assertThat(compactConnector.sent.size(), is(2));
+			assertArrayEquals(compactConnector.sent.get(0).getBytes(), compactConnector.sent.get(1).getBytes());
+			assertThat(compactConnector.sent.get(1).getInetSocketAddress(), is(SOURCE_ADDRESS));
+		} finally {
+			compactEndpoint.destroy();
+		}
+	}
+
 	private byte[] getSerializedRequest() {
+		return getSerializedRequest(0x10);
+	}
+
+	private byte[] getSerializedRequest(int mid) {
 		return new byte[] { 0b01000011, // ver 1, CON, token length: 3
 				0b00000001, // code: 0.01 (GET request)
-				0x00, 0x10, // message ID
+				(byte) (mid >> 8), (byte) mid, // message ID
 				0x01, 0x02, 0x03 // three byte token
 		};
 	}
@@ -174,6 +294,7 @@ public class CoapEndpointTest {
 	private class SimpleConnector implements Connector {
 
 		RawDataChannel receiver;
+		List<RawData> sent = new CopyOnWriteArrayList<>();
 
 		public SimpleConnector() {
 		}
@@ -198,6 +319,7 @@ public class CoapEndpointTest {
 
 		@Override
 		public void send(RawData msg) {
+			sent.add(msg);
 			if (msg.getMessageCallback() != null) {
 				msg.getMessageCallback().onContextEstablished(context);
 				latch.countDown();
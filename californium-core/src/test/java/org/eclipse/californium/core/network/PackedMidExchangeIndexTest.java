@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.core.network;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.californium.category.Small;
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.network.Exchange.KeyMID;
+import org.eclipse.californium.core.network.Exchange.Origin;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies behavior of the {@link PackedMidExchangeIndex} class.
+ *
+ */
+@Category(Small.class)
+public class PackedMidExchangeIndexTest {
+
+	PackedMidExchangeIndex index;
+
+	@Before
+	public void setUp() {
+		index = new PackedMidExchangeIndex();
+	}
+
+	@Test
+	public void testPutIfAbsentKeepsRegisteredExchange() throws Exception {
+		KeyMID key = newKey(1, 5683, 100);
+		Exchange exchange = newExchange();
+		assertThat(index.putIfAbsent(key, exchange), is(nullValue()));
+		assertThat(index.putIfAbsent(newKey(1, 5683, 100), newExchange()), is(exchange));
+		assertThat(index.get(newKey(1, 5683, 100)), is(exchange));
+		assertThat(index.size(), is(1));
+	}
+
+	@Test
+	public void testGetDistinguishesPeersAndMids() throws Exception {
+		Exchange exchange = newExchange();
+		index.putIfAbsent(newKey(1, 5683, 100), exchange);
+		assertThat(index.get(newKey(1, 5683, 101)), is(nullValue()));
+		assertThat(index.get(newKey(1, 5684, 100)), is(nullValue()));
+		assertThat(index.get(newKey(2, 5683, 100)), is(nullValue()));
+	}
+
+	@Test
+	public void testRemoveOnlyProvidedExchange() throws Exception {
+		Exchange exchange = newExchange();
+		index.putIfAbsent(newKey(1, 5683, 100), exchange);
+		assertFalse(index.remove(newKey(1, 5683, 100), newExchange()));
+		assertTrue(index.remove(newKey(1, 5683, 100), exchange));
+		assertTrue(index.isEmpty());
+	}
+
+	@Test
+	public void testRemoveReleasesPeer() throws Exception {
+		Exchange exchange1 = newExchange();
+		Exchange exchange2 = newExchange();
+		index.putIfAbsent(newKey(1, 5683, 100), exchange1);
+		index.putIfAbsent(newKey(1, 5683, 200), exchange2);
+		assertThat(index.getPeerCount(), is(1));
+		assertThat(index.remove(newKey(1, 5683, 100)), is(exchange1));
+		assertThat(index.getPeerCount(), is(1));
+		assertThat(index.remove(newKey(1, 5683, 200)), is(exchange2));
+		assertThat(index.getPeerCount(), is(0));
+		assertThat(index.remove(newKey(1, 5683, 200)), is(nullValue()));
+	}
+
+	@Test
+	public void testLookupByAddressMatchesLookupByKey() throws Exception {
+		Exchange exchange1 = newExchange();
+		Exchange exchange2 = newExchange();
+		InetAddress address = newAddress(1);
+		assertThat(index.putIfAbsent(address, 5683, 100, exchange1), is(nullValue()));
+		index.putIfAbsent(newKey(1, 5683, 200), exchange2);
+		assertThat(index.get(newKey(1, 5683, 100)), is(exchange1));
+		assertThat(index.get(newAddress(1), 5683, 200), is(exchange2));
+		assertThat(index.get(newAddress(1), 5684, 200), is(nullValue()));
+		assertThat(index.putIfAbsent(newAddress(1), 5683, 200, newExchange()), is(exchange2));
+	}
+
+	@Test
+	public void testRemoveByAddressOnlyProvidedExchange() throws Exception {
+		Exchange exchange1 = newExchange();
+		Exchange exchange2 = newExchange();
+		index.putIfAbsent(newAddress(1), 5683, 100, exchange1);
+		index.putIfAbsent(newAddress(1), 5683, 200, exchange2);
+		assertThat(index.remove(newAddress(1), 5683, 100, newExchange()), is(nullValue()));
+		assertThat(index.remove(newAddress(1), 5683, 100, exchange1), is(exchange1));
+		assertThat(index.remove(newAddress(1), 5683, 200, null), is(exchange2));
+		assertTrue(index.isEmpty());
+		assertThat(index.getPeerCount(), is(0));
+	}
+
+	@Test
+	public void testConcurrentAccessOfManyPeers() throws Exception {
+		final int threadCount = 8;
+		final CountDownLatch done = new CountDownLatch(threadCount);
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		for (int t = 0; t < threadCount; ++t) {
+			final int thread = t;
+			new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						for (int round = 0; round < 100; ++round) {
+							for (int host = 0; host < 16; ++host) {
+								InetAddress address = newAddress(host);
+								int port = 5683 + thread;
+								Exchange exchange = newExchange();
+								int mid = round * 16 + host;
+								if (index.putIfAbsent(address, port, mid, exchange) != null
+										|| index.get(address, port, mid) != exchange
+										|| index.remove(address, port, mid, exchange) != exchange) {
+									throw new AssertionError("exchange of " + address + ":" + port + " lost");
+								}
+							}
+						}
+					} catch (Throwable e) {
+						failure.compareAndSet(null, e);
+					} finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertThat(failure.get(), is(nullValue()));
+		assertTrue(index.isEmpty());
+		assertThat(index.getPeerCount(), is(0));
+	}
+
+	@Test
+	public void testIndexMatchesMapForRandomOperations() throws Exception {
+		Random random = new Random(4711);
+		Map<KeyMID, Exchange> expected = new HashMap<>();
+		for (int i = 0; i < 20000; ++i) {
+			KeyMID key = newKey(random.nextInt(50), 5683 + random.nextInt(2), random.nextInt(200));
+			if (random.nextInt(3) == 0) {
+				assertThat(index.remove(key), is(expected.remove(key)));
+			} else {
+				Exchange exchange = newExchange();
+				Exchange previous = expected.get(key);
+				if (previous == null) {
+					expected.put(key, exchange);
+				}
+				assertThat(index.putIfAbsent(key, exchange), is(previous));
+			}
+			assertThat(index.size(), is(expected.size()));
+		}
+		for (Map.Entry<KeyMID, Exchange> entry : expected.entrySet()) {
+			assertThat(index.get(entry.getKey()), is(entry.getValue()));
+		}
+		index.clear();
+		assertTrue(index.isEmpty());
+		assertThat(index.getPeerCount(), is(0));
+	}
+
+	private static InetAddress newAddress(int host) throws Exception {
+		return InetAddress.getByAddress(new byte[] { 10, 0, 0, (byte) host });
+	}
+
+	private static KeyMID newKey(int host, int port, int mid) throws Exception {
+		Request request = Request.newGet();
+		request.setSource(newAddress(host));
+		request.setSourcePort(port);
+		request.setMID(mid);
+		return KeyMID.fromInboundMessage(request);
+	}
+
+	private static Exchange newExchange() {
+		return new Exchange(Request.newGet(), Origin.REMOTE);
+	}
+}
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ * 
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ * 
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.core.network.deduplication;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+
+import org.eclipse.californium.category.Small;
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.network.Exchange;
+import org.eclipse.californium.core.network.Exchange.KeyMID;
+import org.eclipse.californium.core.network.Exchange.Origin;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies behavior of the {@link TimeBucketDeduplicator}.
+ *
+ */
+@Category(Small.class)
+public class TimeBucketDeduplicatorTest {
+
+	private static final int BUCKETS = 4;
+
+	NetworkConfig config;
+	TimeBucketDeduplicator deduplicator;
+
+	@Before
+	public void setUp() {
+		config = NetworkConfig.createStandardWithoutFile();
+		config.setLong(NetworkConfig.Keys.EXCHANGE_LIFETIME, 4000);
+		config.setInt(NetworkConfig.Keys.TIME_BUCKET_COUNT, BUCKETS);
+		deduplicator = new TimeBucketDeduplicator(config);
+	}
+
+	@Test
+	public void testFindPreviousReturnsFirstExchange() throws Exception {
+		Exchange exchange = newExchange(1);
+		assertThat(deduplicator.findPrevious(newKey(1), exchange), is(nullValue()));
+		assertThat(deduplicator.findPrevious(newKey(1), newExchange(1)), is(exchange));
+		assertThat(deduplicator.find(newKey(1)), is(exchange));
+		assertThat(deduplicator.find(newKey(2)), is(nullValue()));
+	}
+
+	@Test
+	public void testExchangeExpiresAfterAllBuckets() throws Exception {
+		Exchange exchange = newExchange(1);
+		deduplicator.findPrevious(newKey(1), exchange);
+		for (int tick = 0; tick < BUCKETS; ++tick) {
+			assertThat(deduplicator.expire(), is(0));
+			assertThat(deduplicator.find(newKey(1)), is(exchange));
+		}
+		assertThat(deduplicator.expire(), is(1));
+		assertThat(deduplicator.find(newKey(1)), is(nullValue()));
+		assertTrue(deduplicator.isEmpty());
+	}
+
+	@Test
+	public void testExpiryRemovesOnlyOldestBucket() throws Exception {
+		deduplicator.findPrevious(newKey(1), newExchange(1));
+		deduplicator.expire();
+		Exchange exchange = newExchange(2);
+		deduplicator.findPrevious(newKey(2), exchange);
+		for (int tick = 1; tick < BUCKETS; ++tick) {
+			deduplicator.expire();
+		}
+		assertThat(deduplicator.expire(), is(1));
+		assertThat(deduplicator.find(newKey(1)), is(nullValue()));
+		assertThat(deduplicator.find(newKey(2)), is(exchange));
+	}
+
+	@Test
+	public void testCompletedExchangeReplacesExchange() throws Exception {
+		Exchange exchange = newExchange(1);
+		deduplicator.findPrevious(newKey(1), exchange);
+		CompletedExchange completed = new CompletedExchange(newKey(1), new byte[] { 0x60, 0, 0, 1 },
+				exchange.getTimestamp());
+		assertFalse(deduplicator.replace(completed, newExchange(1)));
+		assertTrue(deduplicator.replace(completed, exchange));
+		assertFalse(deduplicator.replace(completed, exchange));
+		assertThat(deduplicator.find(newKey(1)), is(nullValue()));
+		assertThat(deduplicator.findCompleted(newKey(1)), is(completed));
+		// a duplicate is not added again
+		Exchange duplicate = newExchange(1);
+		assertThat(deduplicator.findPrevious(newKey(1), duplicate), is(duplicate));
+		assertThat(deduplicator.find(newKey(1)), is(nullValue()));
+	}
+
+	@Test
+	public void testCompletedExchangeExpiresWithBucket() throws Exception {
+		Exchange exchange = newExchange(1);
+		deduplicator.findPrevious(newKey(1), exchange);
+		deduplicator.replace(new CompletedExchange(newKey(1), null, exchange.getTimestamp()), exchange);
+		for (int tick = 0; tick < BUCKETS; ++tick) {
+			assertThat(deduplicator.expire(), is(0));
+		}
+		assertThat(deduplicator.expire(), is(1));
+		assertThat(deduplicator.findCompleted(newKey(1)), is(nullValue()));
+		assertTrue(deduplicator.isEmpty());
+	}
+
+	@Test
+	public void testFactoryCreatesTimeBucketDeduplicator() {
+		config.setString(NetworkConfig.Keys.DEDUPLICATOR, NetworkConfig.Keys.DEDUPLICATOR_TIME_BUCKETS);
+		Deduplicator created = DeduplicatorFactory.getDeduplicatorFactory().createDeduplicator(config);
+		assertThat(created, is(instanceOf(TimeBucketDeduplicator.class)));
+	}
+
+	private static KeyMID newKey(int mid) throws Exception {
+		Request request = Request.newGet();
+		request.setSource(InetAddress.getLoopbackAddress());
+		request.setSourcePort(5683);
+		request.setMID(mid);
+		return KeyMID.fromInboundMessage(request);
+	}
+
+	private static Exchange newExchange(int mid) {
+		Request request = Request.newGet();
+		request.setMID(mid);
+		return new Exchange(request, Origin.REMOTE);
+	}
+}
@@ -19,6 +19,7 @@
  * Bosch Software Innovations GmbH - add test cases
  * Achim Kraus (Bosch Software Innovations GmbH) - add test for CoAP specific 
  *                                                 exception information
+ * Bosch Software Innovations GmbH - run tests with lazy option parsing
  ******************************************************************************/
 package org.eclipse.californium.core.network.serialization;
 
@@ -66,6 +67,8 @@ import org.junit.runners.Parameterized;
 		List<Object[]> parameters = new ArrayList<>();
 		parameters.add(new Object[] { new UdpDataSerializer(), new UdpDataParser(), 7 });
 		parameters.add(new Object[] { new TcpDataSerializer(), new TcpDataParser(), Message.NONE });
+		parameters.add(new Object[] { new UdpDataSerializer(), new UdpDataParser(true), 7 });
+		parameters.add(new Object[] { new TcpDataSerializer(), new TcpDataParser(true), Message.NONE });
 		return parameters;
 	}
 
@@ -150,6 +153,27 @@ import org.junit.runners.Parameterized;
 		}
 	}
 
+	@Test public void testParseMessageDetectsTruncatedOptionLength() {
+		// GIVEN a request with an extended option length field missing
+		byte[] malformedGetRequest = new byte[] { 0b01000000, // ver 1, CON, token length: 0
+				0b00000001, // code: 0.01 (GET request)
+				0x00, 0x10, // message ID
+				0x0D // option number 0, length: extended by one byte, which is missing
+		};
+
+		RawData rawData = new RawData(malformedGetRequest, new InetSocketAddress(0));
+
+		// WHEN parsing the request
+		try {
+			parser.parseMessage(rawData);
+			fail("Parser should have detected malformed options");
+		} catch (CoAPMessageFormatException e) {
+			// THEN an exception is thrown by the parser
+			assertEquals(0b00000001, e.getCode());
+			assertEquals(true, e.isConfirmable());
+		}
+	}
+
 	@Test public void testParseMessageDetectsMissingPayload() {
 		// GIVEN a request with a payload delimiter but empty payload
 		byte[] malformedGetRequest = new byte[] { 0b01000000, // ver 1, CON, token length: 0
@@ -188,6 +212,25 @@ import org.junit.runners.Parameterized;
 		assertEquals(response.getOptions().asSortedList(), result.getOptions().asSortedList());
 	}
 
+	@Test public void testObserveAndBlockOptionParsing() {
+		Response response = new Response(ResponseCode.CONTENT);
+		response.setType(Type.NON);
+		response.setMID(expectedMid);
+		response.setToken(new byte[] { 1, 2 });
+		response.getOptions().setObserve(300).setContentFormat(50).setBlock2(2, true, 40)
+				.addLocationPath("path").setMaxAge(60);
+		response.setPayload("payload");
+
+		RawData rawData = serializer.serializeResponse(response);
+
+		Response result = (Response) parser.parseMessage(rawData);
+		assertEquals(Integer.valueOf(300), result.getOptions().getObserve());
+		assertEquals(false, result.getOptions().hasBlock1());
+		assertEquals(response.getOptions().getBlock2(), result.getOptions().getBlock2());
+		assertEquals(response.getOptions().asSortedList(), result.getOptions().asSortedList());
+		assertEquals("payload", result.getPayloadString());
+	}
+
 	@Test public void testUTF8Encoding() {
 		Response response = new Response(ResponseCode.CONTENT);
 		response.setType(Type.NON);
@@ -12,17 +12,29 @@
  * 
  * Contributors:
  *    Bosch Software Innovations - initial creation
+ *    Bosch Software Innovations GmbH - verify single pass serialization
  ******************************************************************************/
 package org.eclipse.californium.core.network.serialization;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
 
+import static org.eclipse.californium.core.coap.CoAP.MessageFormat.*;
+
 import java.net.InetAddress;
+import java.util.Arrays;
 
 import org.eclipse.californium.category.Small;
+import org.eclipse.californium.core.coap.CoAP;
+import org.eclipse.californium.core.coap.CoAP.ResponseCode;
+import org.eclipse.californium.core.coap.CoAP.Type;
+import org.eclipse.californium.core.coap.EmptyMessage;
+import org.eclipse.californium.core.coap.Message;
+import org.eclipse.californium.core.coap.Option;
 import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.coap.Response;
 import org.eclipse.californium.elements.RawData;
+import org.eclipse.californium.elements.util.DatagramWriter;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.junit.runner.RunWith;
@@ -92,4 +104,115 @@ public class DataSerializerTest {
 		assertNotNull(req.getBytes());
 		assertThat(raw.getBytes(), is(req.getBytes()));
 	}
+
+	/**
+	 * Verifies that requests with options requiring extended delta and length
+	 * fields are encoded exactly like the bit-wise header and option encoding does.
+	 */
+	@Test
+	public void testGetByteArrayMatchesBitwiseEncoding() {
+
+		// GIVEN a request with short, 1 byte extended and 2 bytes extended option deltas and lengths
+		Request req = Request.newPost();
+		req.setToken(new byte[]{0x01, 0x02, 0x03, 0x04});
+		req.setMID(0xABCD);
+		req.getOptions().setUriHost("californium.eclipse.org");
+		req.getOptions().addUriPath("sensors").addUriPath("temp");
+		req.getOptions().setContentFormat(50);
+		req.getOptions().addOption(new Option(2048, new byte[300]));
+		req.getOptions().addOption(new Option(65000, new byte[]{0x11}));
+		req.setPayload("{\"temp\":21.5}");
+
+		// WHEN serializing the request
+		byte[] bytes = serializer.getByteArray(req);
+
+		// THEN the result is the same as the bit-wise encoding
+		assertArrayEquals(encodeBitwise(req, req.getRawCode()), bytes);
+	}
+
+	/**
+	 * Verifies that responses are encoded exactly like the bit-wise encoding does for
+	 * body lengths on both sides of each TCP length nibble boundary.
+	 */
+	@Test
+	public void testSerializeResponseMatchesBitwiseEncoding() {
+
+		int[] bodyLengths = {0, 12, 13, 268, 269, 65804, 65805, 70000};
+		for (int bodyLength : bodyLengths) {
+
+			// GIVEN a response with a body of the given length
+			Response response = new Response(ResponseCode.CONTENT);
+			response.setType(Type.ACK);
+			response.setToken(new byte[]{0x7F});
+			response.setMID(12);
+			if (bodyLength > 0) {
+				byte[] payload = new byte[bodyLength - 1];
+				Arrays.fill(payload, (byte) 'a');
+				response.setPayload(payload);
+			}
+
+			// WHEN serializing the response
+			serializer.serializeResponse(response);
+
+			// THEN the result is the same as the bit-wise encoding
+			assertArrayEquals("body length " + bodyLength, encodeBitwise(response, response.getCode().value),
+					response.getBytes());
+		}
+	}
+
+	/**
+	 * Verifies that empty messages are encoded exactly like the bit-wise encoding does.
+	 */
+	@Test
+	public void testSerializeEmptyMessageMatchesBitwiseEncoding() {
+
+		// GIVEN an empty RST without MID
+		EmptyMessage rst = new EmptyMessage(Type.RST);
+		rst.setToken(new byte[0]);
+
+		// WHEN serializing the message
+		serializer.serializeEmptyMessage(rst);
+
+		// THEN the result is the same as the bit-wise encoding
+		assertArrayEquals(encodeBitwise(rst, 0), rst.getBytes());
+	}
+
+	private byte[] encodeBitwise(final Message message, final int code) {
+
+		DatagramWriter body = new DatagramWriter();
+		int lastOptionNumber = 0;
+		for (Option option : message.getOptions().asSortedList()) {
+			int delta = option.getNumber() - lastOptionNumber;
+			int length = option.getLength();
+			body.write(nibble(delta), OPTION_DELTA_BITS);
+			body.write(nibble(length), OPTION_LENGTH_BITS);
+			writeExtension(body, delta);
+			writeExtension(body, length);
+			body.writeBytes(option.getValue());
+			lastOptionNumber = option.getNumber();
+		}
+		if (message.getPayloadSize() > 0) {
+			body.writeByte(PAYLOAD_MARKER);
+			body.writeBytes(message.getPayload());
+		}
+		byte[] bodyBytes = body.toByteArray();
+
+		DatagramWriter writer = new DatagramWriter();
+		serializer.serializeHeader(writer, new MessageHeader(CoAP.VERSION, message.getType(), message.getToken(),
+				code, message.getMID(), bodyBytes.length));
+		writer.writeBytes(bodyBytes);
+		return writer.toByteArray();
+	}
+
+	private static int nibble(final int value) {
+		return value <= 12 ? value : value <= 268 ? 13 : 14;
+	}
+
+	private static void writeExtension(final DatagramWriter writer, final int value) {
+		if (value > 268) {
+			writer.write(value - 269, 16);
+		} else if (value > 12) {
+			writer.write(value - 13, 8);
+		}
+	}
 }
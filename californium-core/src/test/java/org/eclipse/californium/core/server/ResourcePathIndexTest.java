@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.core.server;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.eclipse.californium.category.Small;
+import org.eclipse.californium.core.CoapResource;
+import org.eclipse.californium.core.coap.OptionSet;
+import org.eclipse.californium.core.server.resources.Resource;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies behavior of {@link ResourcePathIndex}.
+ */
+@Category(Small.class)
+public class ResourcePathIndexTest {
+
+	private CoapResource root;
+	private ResourcePathIndex index;
+
+	/**
+	 * Sets up a resource tree of LwM2M objects and instances.
+	 */
+	@Before
+	public void setUp() {
+		root = new CoapResource("");
+		for (int object = 3300; object < 3310; object++) {
+			CoapResource objectResource = new CoapResource(Integer.toString(object));
+			for (int instance = 0; instance < 50; instance++) {
+				objectResource.add(new CoapResource(Integer.toString(instance))
+						.add(new CoapResource("5700"), new CoapResource("5701")));
+			}
+			root.add(objectResource);
+		}
+		index = new ResourcePathIndex(root);
+	}
+
+	/**
+	 * Verifies that the index finds the same resources as the
+	 * {@link ServerMessageDeliverer}.
+	 */
+	@Test
+	public void testFindResourceMatchesDeliverer() {
+		ServerMessageDeliverer deliverer = new ServerMessageDeliverer(root);
+		String[] paths = { "", "3303", "3303/0", "3303/49/5700", "3309/17/5701", "3303/50", "3303/0/5702",
+				"3310", "3303/0/5700/1", "330", "3303/" };
+		for (String path : paths) {
+			OptionSet options = new OptionSet().setUriPath(path);
+			assertSame(path, deliverer.findResource(options.getUriPath()), index.findResource(options));
+		}
+	}
+
+	/**
+	 * Verifies that resource names are matched by their UTF-8 encoding.
+	 */
+	@Test
+	public void testFindResourceMatchesNonAsciiNames() {
+		CoapResource resource = new CoapResource("témpérature");
+		root.add(new CoapResource("ü").add(resource));
+
+		assertSame(resource, index.findResource(new OptionSet().setUriPath("ü/témpérature")));
+		assertNull(index.findResource(new OptionSet().setUriPath("u/temperature")));
+	}
+
+	/**
+	 * Verifies that the index follows resources being added, deleted and
+	 * renamed after it has been built.
+	 */
+	@Test
+	public void testFindResourceFollowsChangesOfTree() {
+		// GIVEN an index which has already been built
+		assertNull(index.findResource(new OptionSet().setUriPath("3303/0/new")));
+		Resource instance = root.getChild("3303").getChild("0");
+
+		// WHEN a resource is added below an indexed resource
+		CoapResource added = new CoapResource("new");
+		instance.add(added);
+		// THEN it is found
+		assertSame(added, index.findResource(new OptionSet().setUriPath("3303/0/new")));
+
+		// WHEN the resource is renamed
+		added.setName("renamed");
+		// THEN it is found by its new name only
+		assertNull(index.findResource(new OptionSet().setUriPath("3303/0/new")));
+		assertSame(added, index.findResource(new OptionSet().setUriPath("3303/0/renamed")));
+
+		// WHEN the resource is deleted
+		added.delete();
+		// THEN it is not found anymore
+		assertNull(index.findResource(new OptionSet().setUriPath("3303/0/renamed")));
+
+		// WHEN a deleted resource gets a new child
+		added.add(new CoapResource("child"));
+		// THEN the index is still valid
+		assertSame(instance, index.findResource(new OptionSet().setUriPath("3303/0")));
+	}
+
+	/**
+	 * Verifies that requests for sub-resources of a catch-all resource are
+	 * delivered to the resource returned by its getChild method.
+	 */
+	@Test
+	public void testFindResourceDelegatesToCatchAllResource() {
+		// GIVEN a resource accepting requests for all its sub-resources
+		CoapResource devices = new CoapResource("devices") {
+
+			@Override
+			public Resource getChild(String name) {
+				return this;
+			}
+		};
+		root.add(devices);
+
+		// THEN requests for its sub-resources are delivered to it
+		assertSame(devices, index.findResource(new OptionSet().setUriPath("devices")));
+		assertSame(devices, index.findResource(new OptionSet().setUriPath("devices/a/b")));
+		// and a child added to it doesn't change that
+		devices.add(new CoapResource("a"));
+		assertSame(devices, index.findResource(new OptionSet().setUriPath("devices/a")));
+	}
+}
@@ -25,6 +25,7 @@
  *                                                    use expected= annotation for
  *                                                    expected exceptions
  *    Achim Kraus (Bosch Software Innovations GmbH) - use MessageInterceptorAdapter
+ *    Bosch Software Innovations GmbH - add test for shared notifications
  ******************************************************************************/
 package org.eclipse.californium.core.test;
 
@@ -36,10 +37,16 @@ import static org.junit.Assert.assertTrue;
 
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.eclipse.californium.CheckCondition;
 import org.eclipse.californium.category.Medium;
 import org.eclipse.californium.core.CoapClient;
 import org.eclipse.californium.core.CoapHandler;
@@ -50,6 +57,7 @@ import org.eclipse.californium.core.CoapServer;
 import org.eclipse.californium.core.coap.CoAP.ResponseCode;
 import org.eclipse.californium.core.coap.CoAP.Type;
 import org.eclipse.californium.core.coap.EmptyMessage;
+import org.eclipse.californium.core.coap.MediaTypeRegistry;
 import org.eclipse.californium.core.coap.Request;
 import org.eclipse.californium.core.coap.Response;
 import org.eclipse.californium.core.network.CoapEndpoint;
@@ -254,6 +262,94 @@ public class ObserveTest {
 		assertEquals(1, resourceX.getObserverCount());
 	}
 
+	@Test
+	public void testObserveSharedNotifications() throws Exception {
+		resourceX.setSharedNotifications(true);
+
+		CountingHandler handlerA = new CountingHandler();
+		CountingHandler handlerB = new CountingHandler();
+		CountingHandler handlerC = new CountingHandler();
+		CoapObserveRelation relA = new CoapClient(uriX).observeAndWait(handlerA);
+		CoapObserveRelation relB = new CoapClient(uriX).observeAndWait(handlerB);
+		CoapObserveRelation relC = new CoapClient(uriX).observeAndWait(handlerC, MediaTypeRegistry.TEXT_PLAIN);
+		assertTrue(handlerA.waitForLoadCalls(1, 1000, TimeUnit.MILLISECONDS));
+		assertTrue(handlerB.waitForLoadCalls(1, 1000, TimeUnit.MILLISECONDS));
+		assertTrue(handlerC.waitForLoadCalls(1, 1000, TimeUnit.MILLISECONDS));
+		assertEquals(3, resourceX.getObserverCount());
+		int gets = resourceX.getCounter.get();
+
+		resourceX.changed("shared");
+
+		assertTrue(handlerA.waitForLoadCalls(2, 1000, TimeUnit.MILLISECONDS));
+		assertTrue(handlerB.waitForLoadCalls(2, 1000, TimeUnit.MILLISECONDS));
+		assertTrue(handlerC.waitForLoadCalls(2, 1000, TimeUnit.MILLISECONDS));
+		String expected = "\"resX says shared for the 2 time\"";
+		assertEquals(expected, relA.getCurrent().getResponseText());
+		assertEquals(expected, relB.getCurrent().getResponseText());
+		assertEquals(expected, relC.getCurrent().getResponseText());
+		// the request is processed once per variant (with and without Accept)
+		assertEquals(gets + 2, resourceX.getCounter.get());
+		assertEquals(relA.getCurrent().getOptions().getObserve(), relB.getCurrent().getOptions().getObserve());
+		assertEquals(relA.getCurrent().getOptions().getObserve(), relC.getCurrent().getOptions().getObserve());
+	}
+
+	@Test
+	public void testObserveSharedNotificationsAreBatchedInOrder() throws Exception {
+		// GIVEN more relations than notified by a single batch and no resource executor
+		resourceX.setSharedNotifications(true);
+		int relations = 70;
+		final List<CoapObserveRelation> observeRelations = new ArrayList<>();
+		for (int index = 0; index < relations; ++index) {
+			CountingHandler handler = new CountingHandler();
+			observeRelations.add(new CoapClient(uriX).observeAndWait(handler));
+			assertTrue(handler.waitForLoadCalls(1, 1000, TimeUnit.MILLISECONDS));
+		}
+		assertEquals(relations, resourceX.getObserverCount());
+		final Thread caller = Thread.currentThread();
+		final AtomicInteger sentByCaller = new AtomicInteger();
+		final ConcurrentMap<String, List<Integer>> sentObserveNumbers = new ConcurrentHashMap<>();
+		server.getEndpoints().get(0).addInterceptor(new MessageInterceptorAdapter() {
+
+			@Override
+			public void sendResponse(Response response) {
+				if (Thread.currentThread() == caller) {
+					sentByCaller.incrementAndGet();
+				}
+				List<Integer> numbers = new CopyOnWriteArrayList<>();
+				List<Integer> previous = sentObserveNumbers.putIfAbsent(response.getTokenString(), numbers);
+				(previous == null ? numbers : previous).add(response.getOptions().getObserve());
+			}
+		});
+
+		// WHEN the resource changes twice
+		resourceX.changed("first");
+		resourceX.changed("second");
+		final String expected = resourceX.currentResponse;
+
+		// THEN all relations are notified with the latest state
+		assertTrue(waitForCondition(2000, 10, TimeUnit.MILLISECONDS, new CheckCondition() {
+
+			@Override
+			public boolean isFulFilled() throws IllegalStateException {
+				for (CoapObserveRelation relation : observeRelations) {
+					if (!expected.equals(relation.getCurrent().getResponseText())) {
+						return false;
+					}
+				}
+				return true;
+			}
+		}));
+		// the notifications of each relation are sent in order
+		assertEquals(relations, sentObserveNumbers.size());
+		for (List<Integer> numbers : sentObserveNumbers.values()) {
+			for (int index = 1; index < numbers.size(); ++index) {
+				assertTrue(numbers.toString(), numbers.get(index - 1) < numbers.get(index));
+			}
+		}
+		// and the batches are executed by the endpoint
+		assertEquals(0, sentByCaller.get());
+	}
+
 	@Test(expected = IllegalStateException.class)
 	public void testObserveClientReregisterAfterReject() throws Exception {
 		resourceX.setObserveType(Type.NON);
@@ -466,6 +562,7 @@ public class ObserveTest {
 		private AtomicBoolean reject = new AtomicBoolean();
 		private AtomicInteger counter = new AtomicInteger();
 		private AtomicInteger delay = new AtomicInteger();
+		private AtomicInteger getCounter = new AtomicInteger();
 
 		public MyResource(String name) {
 			super(name);
@@ -475,6 +572,7 @@ public class ObserveTest {
 
 		@Override
 		public void handleGET(CoapExchange exchange) {
+			getCounter.incrementAndGet();
 			int delay = this.delay.getAndSet(0);
 			if (0 < delay) {
 				try {
@@ -16,6 +16,7 @@
  *    Dominique Im Obersteg - parsers and initial implementation
  *    Daniel Pauli - parsers and initial implementation
  *    Kai Hudalla - logging
+ *    Bosch Software Innovations GmbH - add tests for encoded options
  ******************************************************************************/
 package org.eclipse.californium.core.test;
 
@@ -24,8 +25,13 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.Assert;
 import org.eclipse.californium.category.Small;
+import org.eclipse.californium.core.coap.BlockOption;
+import org.eclipse.californium.core.coap.MediaTypeRegistry;
 import org.eclipse.californium.core.coap.Option;
 import org.eclipse.californium.core.coap.OptionSet;
 import org.eclipse.californium.core.coap.OptionNumberRegistry;
@@ -438,4 +444,160 @@ public class OptionTest {
 		
 		Assert.assertEquals("{\"ETag\":[0x010203,0xbeef], \"Location-Path\":\"abc\", \"Uri-Path\":[\"this\",\"is\",\"a\",\"test\"], \"Max-Age\":77}", options.toString());
 	}
+
+	@Test
+	public void testEncodedOptionsAreDecodedOnFirstAccess() {
+		byte[] encoded = new byte[] {
+				0x00, // not part of the options
+				0x61, 0x05, // Observe: 5
+				0x12, 0x16, 0x33, // Uri-Port: 5683
+				0x41, 'a', // Uri-Path: "a"
+				(byte) 0xC1, 0x16 // Block2: num 1, no more, szx 6
+		};
+		OptionSet options = new OptionSet(encoded, 1, encoded.length - 1);
+
+		OptionSet expected = new OptionSet();
+		expected.setObserve(5);
+		expected.setUriPort(5683);
+		expected.addUriPath("a");
+		expected.setBlock2(6, false, 1);
+
+		Assert.assertEquals(expected.asSortedList(), options.asSortedList());
+		Assert.assertEquals(expected.asSortedList(), new OptionSet(options).asSortedList());
+	}
+
+	@Test
+	public void testEncodedOptionsAreValidated() {
+		byte[] encoded = new byte[] {
+				0x61, 0x05, // Observe: 5
+				0x13, 0x01, 0x00, 0x00, // Uri-Port: 65536, invalid
+				0x41, 'a' // Uri-Path: "a"
+		};
+		try {
+			new OptionSet(encoded, 0, encoded.length);
+			Assert.fail("invalid Uri-Port should have been detected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		// leading zeros are not part of the value
+		encoded = new byte[] { 0x73, 0x00, 0x16, 0x33 }; // Uri-Port: 5683
+		OptionSet options = new OptionSet(encoded, 0, encoded.length);
+		Assert.assertEquals(Integer.valueOf(5683), options.getUriPort());
+		Assert.assertEquals(new Option(OptionNumberRegistry.URI_PORT, 5683), options.asSortedList().get(0));
+	}
+
+	@Test
+	public void testDecodeStopsAtPayloadMarkerAndKeepsSizeOptions() {
+		byte[] encoded = new byte[] {
+				0x00, // not part of the options
+				(byte) 0xB1, 'a', // Uri-Path: "a"
+				(byte) 0xD1, 0x04, 0x40, // Size2: 64
+				(byte) 0xFF, 0x01 // payload
+		};
+		OptionSet options = new OptionSet();
+		options.setMaxAge(10);
+
+		Assert.assertEquals(6, options.decode(encoded, 1));
+		Assert.assertEquals("a", options.getUriPathString());
+		Assert.assertEquals(Integer.valueOf(64), options.getSize2());
+		Assert.assertFalse(options.hasMaxAge());
+
+		// without payload marker, the options end with the array
+		Assert.assertEquals(6, options.decode(Arrays.copyOf(encoded, 6), 1));
+		Assert.assertEquals(Integer.valueOf(64), options.getSize2());
+
+		try {
+			options.decode(new byte[] { 0x73, 0x01, 0x00, 0x00 }, 0); // Uri-Port: 65536, invalid
+			Assert.fail("invalid Uri-Port should have been detected");
+		} catch (IllegalArgumentException e) {
+			Assert.assertEquals(0, options.asSortedList().size());
+		}
+	}
+
+	@Test
+	public void testDecodedOptionsAreReadBeforeAndAfterIndexing() {
+		byte[] encoded = new byte[] {
+				0x61, 0x04, // Observe: 4
+				0x02, 0x00, 0x05, // Observe: 5, with leading zero
+				0x51, 'a', // Uri-Path: "a"
+				(byte) 0xC1, 0x16, // Block2: num 1, no more, szx 6
+				0x41, 0x2E, // Block1: num 2, more, szx 6
+				(byte) 0xFF, 0x01 // payload
+		};
+		OptionSet options = new OptionSet();
+		Assert.assertEquals(11, options.decode(encoded, 0));
+
+		// read without indexing the options
+		Assert.assertTrue(options.hasObserve());
+		Assert.assertEquals(Integer.valueOf(5), options.getObserve());
+		Assert.assertEquals(new BlockOption(6, true, 2), options.getBlock1());
+		Assert.assertEquals(new BlockOption(6, false, 1), options.getBlock2());
+
+		// index the options
+		Assert.assertEquals("a", options.getUriPathString());
+		Assert.assertEquals(Integer.valueOf(5), options.getObserve());
+		Assert.assertEquals(new BlockOption(6, true, 2), options.getBlock1());
+		Assert.assertEquals(new BlockOption(6, false, 1), options.getBlock2());
+
+		options.decode(new byte[] { (byte) 0xB1, 'a' }, 0); // Uri-Path: "a"
+		Assert.assertFalse(options.hasObserve());
+		Assert.assertNull(options.getBlock1());
+		Assert.assertFalse(options.hasBlock2());
+		Assert.assertEquals(1, new OptionSet(options).getURIPathCount());
+	}
+
+	@Test
+	public void testSetAllCopiesSizeOptions() {
+		OptionSet origin = new OptionSet();
+		origin.setContentFormat(MediaTypeRegistry.TEXT_PLAIN);
+		origin.setSize2(1024);
+		OptionSet options = new OptionSet();
+		options.setMaxAge(10);
+
+		options.setAll(origin);
+		origin.setContentFormat(MediaTypeRegistry.APPLICATION_JSON);
+
+		Assert.assertEquals(MediaTypeRegistry.TEXT_PLAIN, options.getContentFormat());
+		Assert.assertEquals(Integer.valueOf(1024), options.getSize2());
+		Assert.assertFalse(options.hasMaxAge());
+		Assert.assertFalse(new OptionSet(options).hasSize2());
+	}
+
+	@Test
+	public void testOptionListsAreBackedByOptionSet() {
+		OptionSet options = new OptionSet();
+		options.setUriPath("/a/b");
+		options.setContentFormat(MediaTypeRegistry.TEXT_PLAIN);
+		options.addUriQuery("x=1");
+		options.setUriHost("localhost");
+
+		List<String> path = options.getUriPath();
+		path.add("c");
+		path.set(0, "z");
+		path.remove(1);
+		Assert.assertEquals("z/c", options.getUriPathString());
+		Assert.assertEquals(Arrays.asList("z", "c"), options.getUriPath());
+
+		options.getETags().add(new byte[] { 1, 2 });
+		options.addETag(new byte[] { 3 });
+		options.removeETag(new byte[] { 1, 2 });
+		Assert.assertEquals(1, options.getETagCount());
+		Assert.assertTrue(options.containsETag(new byte[] { 3 }));
+
+		// the options stay sorted by number, the values of the others are kept
+		List<Option> list = options.asSortedList();
+		Assert.assertEquals(OptionNumberRegistry.URI_HOST, list.get(0).getNumber());
+		Assert.assertEquals(OptionNumberRegistry.ETAG, list.get(1).getNumber());
+		Assert.assertEquals("z", list.get(2).getStringValue());
+		Assert.assertEquals("c", list.get(3).getStringValue());
+		Assert.assertEquals(OptionNumberRegistry.CONTENT_FORMAT, list.get(4).getNumber());
+		Assert.assertEquals("x=1", list.get(5).getStringValue());
+		Assert.assertEquals("localhost", options.getUriHost());
+		Assert.assertEquals(MediaTypeRegistry.TEXT_PLAIN, options.getContentFormat());
+
+		path.clear();
+		Assert.assertEquals(0, options.getURIPathCount());
+		Assert.assertEquals("x=1", options.getUriQueryString());
+	}
 }
@@ -17,6 +17,7 @@
  *    Daniel Pauli - parsers and initial implementation
  *    Kai Hudalla - logging
  *    Achim Kraus (Bosch Software Innovations GmbH) - test limited search to 1 query.
+ *    Bosch Software Innovations GmbH - execute tasks by dummy endpoint
  ******************************************************************************/
 package org.eclipse.californium.core.test;
 
@@ -149,6 +150,11 @@ public class ResourceAttributesTest {
 		public void setExecutor(ScheduledExecutorService executor) {
 		}
 
+		@Override
+		public void execute(Runnable task) {
+			task.run();
+		}
+
 		@Override
 		public void addObserver(EndpointObserver obs) {
 		}
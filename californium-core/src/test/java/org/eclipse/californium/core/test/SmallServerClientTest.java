@@ -18,6 +18,7 @@
  *    Kai Hudalla - logging
  *    Achim Kraus (Bosch Software Innovations GmbH) - use CoapNetworkRule for
  *                                                    setup of test-network
+ *    Bosch Software Innovations GmbH - add test for protocol stage striped by peer
  ******************************************************************************/
 package org.eclipse.californium.core.test;
 
@@ -36,6 +37,7 @@ import org.eclipse.californium.core.coap.CoAP.ResponseCode;
 import org.eclipse.californium.core.network.CoapEndpoint;
 import org.eclipse.californium.core.network.EndpointManager;
 import org.eclipse.californium.core.network.Exchange;
+import org.eclipse.californium.core.network.config.NetworkConfig;
 import org.eclipse.californium.core.server.MessageDeliverer;
 import org.eclipse.californium.rule.CoapNetworkRule;
 import org.junit.After;
@@ -70,8 +72,22 @@ public class SmallServerClientTest {
 
 	@Test
 	public void testNonconfirmable() throws Exception {
-		createSimpleServer();
+		createSimpleServer(network.createTestConfig());
+		sendNonconfirmableRequest();
+	}
+
+	@Test
+	public void testNonconfirmableStripedByPeer() throws Exception {
+		CoapServer server = createSimpleServer(
+				network.createTestConfig().setBoolean(NetworkConfig.Keys.PROTOCOL_STAGE_STRIPED_BY_PEER, true));
+		try {
+			sendNonconfirmableRequest();
+		} finally {
+			server.destroy();
+		}
+	}
 
+	private void sendNonconfirmableRequest() throws Exception {
 		// send request
 		Request request = new Request(CoAP.Code.POST);
 		request.setConfirmable(false);
@@ -88,9 +104,9 @@ public class SmallServerClientTest {
 		assertEquals(response.getPayloadString(), SERVER_RESPONSE);
 	}
 
-	private void createSimpleServer() {
-		CoapEndpoint endpoint = new CoapEndpoint(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
-		CoapServer server = new CoapServer();
+	private CoapServer createSimpleServer(NetworkConfig config) {
+		CoapEndpoint endpoint = new CoapEndpoint(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), config);
+		CoapServer server = new CoapServer(config);
 		server.addEndpoint(endpoint);
 		server.setMessageDeliverer(new MessageDeliverer() {
 			@Override
@@ -108,5 +124,6 @@ public class SmallServerClientTest {
 		});
 		server.start();
 		serverPort = endpoint.getAddress().getPort();
+		return server;
 	}
 }
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.jmh;
+
+import java.security.GeneralSecurityException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.eclipse.californium.scandium.dtls.cipher.CCMBlockCipher;
+import org.eclipse.californium.scandium.dtls.cipher.CcmCipher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the {@link CCMBlockCipher} with the {@link CcmCipher} engine for
+ * the AES_128_CCM_8 record protection.
+ * <p>
+ * The record sizes cover small CoAP messages, typical payloads, and records
+ * filling an ethernet MTU. Run with {@code -prof gc} to compare the allocation
+ * rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CcmCipherBenchmark {
+
+	private static final int MAC_LENGTH = 8;
+
+	@Param({ "64", "512", "1400" })
+	public int recordSize;
+
+	private byte[] key;
+	private byte[] nonce;
+	private byte[] additionalData;
+	private byte[] plaintext;
+	private byte[] ciphertext;
+	private byte[] buffer;
+	private CcmCipher engine;
+
+	@Setup
+	public void setup() throws GeneralSecurityException {
+		Random random = new Random(recordSize);
+		key = new byte[16];
+		random.nextBytes(key);
+		// 4 bytes implicit and 8 bytes explicit nonce
+		nonce = new byte[12];
+		random.nextBytes(nonce);
+		// epoch, sequence number, type, version and length
+		additionalData = new byte[13];
+		random.nextBytes(additionalData);
+		plaintext = new byte[recordSize];
+		random.nextBytes(plaintext);
+		engine = new CcmCipher(new SecretKeySpec(key, "AES"), MAC_LENGTH);
+		ciphertext = CCMBlockCipher.encrypt(key, nonce, additionalData, plaintext, MAC_LENGTH);
+		buffer = new byte[recordSize + MAC_LENGTH];
+	}
+
+	@Benchmark
+	public byte[] blockCipherEncrypt() throws GeneralSecurityException {
+		return CCMBlockCipher.encrypt(key, nonce, additionalData, plaintext, MAC_LENGTH);
+	}
+
+	@Benchmark
+	public byte[] blockCipherDecrypt() throws GeneralSecurityException {
+		return CCMBlockCipher.decrypt(key, nonce, additionalData, ciphertext, MAC_LENGTH);
+	}
+
+	@Benchmark
+	public byte[] engineEncrypt() throws GeneralSecurityException {
+		engine.encrypt(nonce, additionalData, plaintext, 0, plaintext.length, buffer, 0);
+		return buffer;
+	}
+
+	@Benchmark
+	public byte[] engineDecrypt() throws GeneralSecurityException {
+		engine.decrypt(nonce, additionalData, ciphertext, 0, ciphertext.length, buffer, 0);
+		return buffer;
+	}
+}
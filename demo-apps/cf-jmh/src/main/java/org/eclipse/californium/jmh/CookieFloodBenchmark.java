@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.jmh;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.eclipse.californium.scandium.dtls.CertificateTypeExtension.CertificateType;
+import org.eclipse.californium.scandium.dtls.ClientHello;
+import org.eclipse.californium.scandium.dtls.CompressionMethod;
+import org.eclipse.californium.scandium.dtls.CookieGenerator;
+import org.eclipse.californium.scandium.dtls.ProtocolVersion;
+import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how many <em>CLIENT_HELLO</em>s from spoofed peers can be rejected
+ * per millisecond on a single core.
+ * <p>
+ * The hellos either carry no cookie, as sent by peers which never received a
+ * <em>HELLO_VERIFY_REQUEST</em>, or a forged one.
+ * <p>
+ * Each operation verifies the cookie and computes the cookie for the
+ * <em>HELLO_VERIFY_REQUEST</em>, like the connector does for every hello
+ * failing verification. The legacy benchmark emulates the former processing,
+ * which looked up and initialized a new {@link Mac} and formatted the peer
+ * address for every hello.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(1)
+@Fork(1)
+public class CookieFloodBenchmark {
+
+	private static final int PEERS = 256;
+
+	@Param({ "false", "true" })
+	public boolean forgedCookie;
+
+	private ClientHello[] hellos;
+	private int index;
+	private CookieGenerator generator;
+	private SecretKey legacySecret;
+
+	@Setup
+	public void setup() throws Exception {
+		SecureRandom random = new SecureRandom();
+		byte[] cookie = new byte[32];
+		random.nextBytes(cookie);
+		InetAddress address = InetAddress.getByName("192.168.0.1");
+		hellos = new ClientHello[PEERS];
+		for (int i = 0; i < PEERS; ++i) {
+			ClientHello hello = new ClientHello(new ProtocolVersion(), random,
+					Collections.<CertificateType> emptyList(), Collections.<CertificateType> emptyList(),
+					new InetSocketAddress(address, 10000 + i));
+			hello.addCipherSuite(CipherSuite.TLS_PSK_WITH_AES_128_CCM_8);
+			hello.addCipherSuite(CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_CCM_8);
+			hello.addCompressionMethod(CompressionMethod.NULL);
+			if (forgedCookie) {
+				hello.setCookie(cookie);
+			}
+			hellos[i] = hello;
+		}
+		generator = new CookieGenerator();
+		byte[] secret = new byte[32];
+		random.nextBytes(secret);
+		legacySecret = new SecretKeySpec(secret, "MAC");
+	}
+
+	private ClientHello nextHello() {
+		index = (index + 1) % PEERS;
+		return hellos[index];
+	}
+
+	@Benchmark
+	public byte[] rejectClientHello() {
+		ClientHello hello = nextHello();
+		if (generator.isValidCookie(hello)) {
+			throw new IllegalStateException("forged cookie accepted");
+		}
+		return generator.generateCookie(hello);
+	}
+
+	@Benchmark
+	public byte[] rejectClientHelloLegacy() throws GeneralSecurityException {
+		ClientHello hello = nextHello();
+		Mac hmac = Mac.getInstance("HmacSHA256");
+		hmac.init(legacySecret);
+		hmac.update(hello.getPeer().toString().getBytes());
+		hmac.update((byte) hello.getClientVersion().getMajor());
+		hmac.update((byte) hello.getClientVersion().getMinor());
+		hmac.update(hello.getRandom().getRandomBytes());
+		hmac.update(hello.getSessionId().getId());
+		hmac.update(CipherSuite.listToByteArray(hello.getCipherSuites()));
+		hmac.update(CompressionMethod.listToByteArray(hello.getCompressionMethods()));
+		byte[] cookie = hmac.doFinal();
+		if (Arrays.equals(cookie, hello.getCookie())) {
+			throw new IllegalStateException("forged cookie accepted");
+		}
+		return cookie;
+	}
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.jmh;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import org.eclipse.californium.scandium.dtls.ECDHServerKeyExchange;
+import org.eclipse.californium.scandium.dtls.Random;
+import org.eclipse.californium.scandium.dtls.SignatureAndHashAlgorithm;
+import org.eclipse.californium.scandium.dtls.SignatureAndHashAlgorithm.HashAlgorithm;
+import org.eclipse.californium.scandium.dtls.SignatureAndHashAlgorithm.SignatureAlgorithm;
+import org.eclipse.californium.scandium.dtls.cipher.ECDHECryptography;
+import org.eclipse.californium.scandium.dtls.cipher.ECDHECryptography.SupportedGroup;
+import org.eclipse.californium.scandium.dtls.cipher.EphemeralKeyPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the ECDHE processing of a server during a full handshake with and
+ * without an {@link EphemeralKeyPool}.
+ * <p>
+ * Each operation obtains the ephemeral key pair, signs the
+ * <em>SERVER_KEY_EXCHANGE</em> and computes the premaster secret from the
+ * client's public key. The throughput corresponds to the handshakes per
+ * millisecond a single handshake thread can perform, the average time to the
+ * latency added to each handshake. With the pool, the key pairs are generated
+ * by a background thread, so the pool only helps if spare cores are
+ * available. Once the pool runs empty, the key pairs are generated inline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(1)
+@Fork(1)
+public class EphemeralKeyBenchmark {
+
+	private static final SupportedGroup GROUP = SupportedGroup.secp256r1;
+
+	@Param({ "0", "64" })
+	public int poolDepth;
+
+	private EphemeralKeyPool pool;
+	private PrivateKey serverKey;
+	private ECDHECryptography client;
+	private SignatureAndHashAlgorithm signatureAndHashAlgorithm;
+	private Random clientRandom;
+	private Random serverRandom;
+	private InetSocketAddress peer;
+
+	@Setup
+	public void setup() throws GeneralSecurityException {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+		generator.initialize(GROUP.getEcParams(), new SecureRandom());
+		serverKey = generator.generateKeyPair().getPrivate();
+		client = new ECDHECryptography(GROUP.getEcParams());
+		signatureAndHashAlgorithm = new SignatureAndHashAlgorithm(HashAlgorithm.SHA256, SignatureAlgorithm.ECDSA);
+		clientRandom = new Random(new SecureRandom());
+		serverRandom = new Random(new SecureRandom());
+		peer = new InetSocketAddress(InetAddress.getLoopbackAddress(), 5684);
+		if (poolDepth > 0) {
+			pool = new EphemeralKeyPool(Collections.singleton(GROUP), poolDepth, 1);
+			pool.start();
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (pool != null) {
+			pool.stop();
+		}
+	}
+
+	@Benchmark
+	public SecretKey serverEcdhe() throws GeneralSecurityException {
+		KeyPair ephemeralKeys = pool == null ? null : pool.poll(GROUP);
+		ECDHECryptography ecdhe = ephemeralKeys == null ? new ECDHECryptography(GROUP.getEcParams())
+				: new ECDHECryptography(ephemeralKeys);
+		new ECDHServerKeyExchange(signatureAndHashAlgorithm, ecdhe, serverKey, clientRandom, serverRandom,
+				GROUP.getId(), peer);
+		return ecdhe.getSecret(client.getPublicKey());
+	}
+}
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.jmh;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.scandium.dtls.Random;
+import org.eclipse.californium.scandium.dtls.SessionId;
+import org.eclipse.californium.scandium.util.SecureRandomProvider;
+import org.eclipse.californium.scandium.util.ThreadLocalSecureRandomProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the creation of the random values a server needs for the
+ * <em>SERVER_HELLO</em> of a full handshake, i.e. the server
+ * <em>Random</em> and the session identifier.
+ * <p>
+ * {@link #newSecureRandomPerValue()} creates a new <code>SecureRandom</code>
+ * for each value, as the handshakers did before using a
+ * {@link SecureRandomProvider}. {@link #threadLocalProvider()} takes the
+ * generator of the calling thread from a {@link ThreadLocalSecureRandomProvider}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(1)
+@Fork(1)
+public class HandshakeRandomBenchmark {
+
+	private final SecureRandomProvider provider = new ThreadLocalSecureRandomProvider();
+
+	@Benchmark
+	public SessionId newSecureRandomPerValue() {
+		new Random(new SecureRandom());
+		return new SessionId(new SecureRandom());
+	}
+
+	@Benchmark
+	public SessionId threadLocalProvider() {
+		new Random(provider.getSecureRandom());
+		return new SessionId(provider.getSecureRandom());
+	}
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ * 
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ * 
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.jmh;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.core.coap.CoAP.ResponseCode;
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.coap.Response;
+import org.eclipse.californium.core.network.Exchange;
+import org.eclipse.californium.core.network.Exchange.KeyMID;
+import org.eclipse.californium.core.network.Exchange.Origin;
+import org.eclipse.californium.core.network.InMemoryMessageExchangeStore;
+import org.eclipse.californium.core.network.PackedKeyMessageExchangeStore;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the {@link InMemoryMessageExchangeStore} with the
+ * {@link PackedKeyMessageExchangeStore}.
+ * <p>
+ * The stores are filled with outbound requests for a number of peers.
+ * {@link #lookup()} looks up an exchange by a {@link KeyMID} and
+ * {@link #lookupByAddress()} by the peer's address, port and MID, as the
+ * matcher does for inbound ACKs and RSTs. {@link #registerAndRemove()}
+ * registers and removes an outbound response by MID, as the matcher does for
+ * completed exchanges. Run with {@code -prof gc} to compare the allocation
+ * rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageExchangeStoreBenchmark {
+
+	private static final int PEER_PORT = 5683;
+
+	@Param({ "InMemory", "PackedKey" })
+	public String store;
+
+	@Param({ "1000" })
+	public int peers;
+
+	@Param({ "10" })
+	public int exchangesPerPeer;
+
+	private InMemoryMessageExchangeStore exchangeStore;
+	private Request[] inbound;
+	private Exchange[] responses;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() throws UnknownHostException {
+		NetworkConfig config = NetworkConfig.createStandardWithoutFile();
+		if ("PackedKey".equals(store)) {
+			exchangeStore = new PackedKeyMessageExchangeStore(config);
+		} else {
+			exchangeStore = new InMemoryMessageExchangeStore(config);
+		}
+		exchangeStore.start();
+		int count = peers * exchangesPerPeer;
+		inbound = new Request[count];
+		responses = new Exchange[count];
+		for (int index = 0; index < count; ++index) {
+			InetAddress address = getAddress(index % peers);
+			Request request = Request.newGet();
+			request.setDestination(address);
+			request.setDestinationPort(PEER_PORT);
+			Exchange exchange = new Exchange(request, Origin.LOCAL);
+			exchangeStore.registerOutboundRequest(exchange);
+			// the ACK as received from the peer
+			Request ack = Request.newGet();
+			ack.setSource(address);
+			ack.setSourcePort(PEER_PORT);
+			ack.setMID(request.getMID());
+			inbound[index] = ack;
+			// a response to a request of the peer, not registered
+			Request remoteRequest = Request.newGet();
+			remoteRequest.setSource(address);
+			remoteRequest.setSourcePort(PEER_PORT);
+			Response response = new Response(ResponseCode.CONTENT);
+			response.setDestination(address);
+			response.setDestinationPort(PEER_PORT);
+			response.setMID(request.getMID() ^ 0x8000);
+			responses[index] = new Exchange(remoteRequest, Origin.REMOTE);
+			responses[index].setCurrentResponse(response);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		exchangeStore.stop();
+	}
+
+	@Benchmark
+	public Exchange lookup() {
+		int index = next++ % inbound.length;
+		return exchangeStore.get(KeyMID.fromInboundMessage(inbound[index]));
+	}
+
+	@Benchmark
+	public Exchange lookupByAddress() {
+		int index = next++ % inbound.length;
+		Request ack = inbound[index];
+		return exchangeStore.get(ack.getSource(), ack.getSourcePort(), ack.getMID());
+	}
+
+	@Benchmark
+	public Exchange registerAndRemove() {
+		int index = next++ % responses.length;
+		Exchange exchange = responses[index];
+		exchangeStore.registerOutboundResponse(exchange);
+		Response response = exchange.getCurrentResponse();
+		return exchangeStore.remove(response.getDestination(), response.getDestinationPort(), response.getMID(),
+				exchange);
+	}
+
+	private static InetAddress getAddress(int peer) throws UnknownHostException {
+		return InetAddress.getByAddress(new byte[] { 10, (byte) (peer >> 16), (byte) (peer >> 8), (byte) peer });
+	}
+}
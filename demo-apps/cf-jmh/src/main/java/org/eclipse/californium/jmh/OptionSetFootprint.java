@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.jmh;
+
+import java.net.InetSocketAddress;
+
+import org.eclipse.californium.core.coap.MediaTypeRegistry;
+import org.eclipse.californium.core.coap.OptionSet;
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.network.serialization.UdpDataParser;
+import org.eclipse.californium.core.network.serialization.UdpDataSerializer;
+import org.eclipse.californium.elements.RawData;
+
+/**
+ * Measures the heap retained by the options of one million messages.
+ * <p>
+ * The footprint of heap objects cannot be measured by JMH, so this is a
+ * plain program. Run it with a heap large enough for the messages, e.g.
+ * 
+ * <pre>
+ * java -Xmx3g -cp cf-jmh.jar org.eclipse.californium.jmh.OptionSetFootprint [count]
+ * </pre>
+ * 
+ * Each message is a GET request with two Uri-Path options, a Uri-Query,
+ * an Accept and an ETag option. The program reports the bytes retained
+ * per message for requests built using the option setters and for
+ * requests parsed from their serialized form, both including and
+ * excluding the message itself.
+ */
+public final class OptionSetFootprint {
+
+	private static final int DEFAULT_COUNT = 1000000;
+
+	private OptionSetFootprint() {
+	}
+
+	public static void main(final String[] args) throws InterruptedException {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_COUNT;
+		UdpDataParser parser = new UdpDataParser();
+		RawData raw = new RawData(new UdpDataSerializer().getByteArray(newRequest(0)), new InetSocketAddress(0));
+
+		Object[] retained = new Object[count];
+		long used = usedHeap();
+		for (int i = 0; i < count; i++) {
+			retained[i] = newRequest(i);
+		}
+		report("built requests", usedHeap() - used, count);
+
+		for (int i = 0; i < count; i++) {
+			retained[i] = newRequest(i).getOptions();
+		}
+		report("built options", usedHeap() - used, count);
+
+		for (int i = 0; i < count; i++) {
+			retained[i] = parser.parseMessage(raw);
+		}
+		report("parsed requests", usedHeap() - used, count);
+
+		for (int i = 0; i < count; i++) {
+			retained[i] = parser.parseMessage(raw).getOptions();
+		}
+		report("parsed options", usedHeap() - used, count);
+	}
+
+	private static Request newRequest(final int index) {
+		Request request = Request.newGet();
+		request.setMID(index & 0xFFFF);
+		request.setToken(new byte[] { (byte) (index >> 24), (byte) (index >> 16), (byte) (index >> 8), (byte) index });
+		OptionSet options = request.getOptions();
+		options.addUriPath("sensors").addUriPath("temperature").addUriQuery("unit=C");
+		options.setAccept(MediaTypeRegistry.APPLICATION_JSON);
+		options.addETag(new byte[] { 0x01, 0x02, 0x03, 0x04 });
+		return request;
+	}
+
+	private static long usedHeap() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+			Thread.sleep(100);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static void report(final String name, final long bytes, final int count) {
+		System.out.println(String.format("%-16s %6d bytes per message, %8.1f MiB per 1M messages", name + ":",
+				bytes / count, bytes * 1000000.0 / count / (1024 * 1024)));
+	}
+}
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.jmh;
+
+import java.security.GeneralSecurityException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.eclipse.californium.scandium.dtls.cipher.CcmCipher;
+import org.eclipse.californium.scandium.dtls.cipher.GcmCipher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the record protection of the AES_128_CBC_SHA256, AES_128_CCM_8 and
+ * AES_128_GCM_SHA256 cipher suites on a single core.
+ * <p>
+ * The CBC benchmarks emulate the MAC-then-encrypt processing of the
+ * {@code Record} with reused JCE instances, so they show the lower bound of
+ * that suite. The AEAD benchmarks use the engines of the connection state.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(1)
+@Fork(1)
+public class RecordProtectionBenchmark {
+
+	private static final int BLOCK_SIZE = 16;
+
+	@Param({ "64", "512", "1400" })
+	public int recordSize;
+
+	private byte[] nonce;
+	private byte[] encryptionNonce;
+	private byte[] additionalData;
+	private byte[] plaintext;
+	private byte[] buffer;
+	private byte[] cbcCiphertext;
+	private byte[] ccmCiphertext;
+	private byte[] gcmCiphertext;
+	private SecretKeySpec key;
+	private IvParameterSpec iv;
+	private Cipher cbc;
+	private Mac hmac;
+	private CcmCipher ccm;
+	private GcmCipher gcm;
+
+	@Setup
+	public void setup() throws GeneralSecurityException {
+		Random random = new Random(recordSize);
+		byte[] secret = new byte[16];
+		random.nextBytes(secret);
+		key = new SecretKeySpec(secret, "AES");
+		byte[] macSecret = new byte[32];
+		random.nextBytes(macSecret);
+		byte[] initVector = new byte[BLOCK_SIZE];
+		random.nextBytes(initVector);
+		iv = new IvParameterSpec(initVector);
+		// 4 bytes implicit and 8 bytes explicit nonce
+		nonce = new byte[12];
+		random.nextBytes(nonce);
+		encryptionNonce = nonce.clone();
+		// epoch, sequence number, type, version and length
+		additionalData = new byte[13];
+		random.nextBytes(additionalData);
+		plaintext = new byte[recordSize];
+		random.nextBytes(plaintext);
+		buffer = new byte[recordSize + 2 * BLOCK_SIZE + 32];
+
+		cbc = Cipher.getInstance("AES/CBC/NoPadding");
+		hmac = Mac.getInstance("HmacSHA256");
+		hmac.init(new SecretKeySpec(macSecret, "HmacSHA256"));
+		ccm = new CcmCipher(key, 8);
+		gcm = new GcmCipher(key, 16);
+
+		cbcCiphertext = new byte[cbcEncrypt(buffer)];
+		System.arraycopy(buffer, 0, cbcCiphertext, 0, cbcCiphertext.length);
+		ccmCiphertext = new byte[recordSize + ccm.getMacLength()];
+		ccm.encrypt(nonce, additionalData, plaintext, 0, recordSize, ccmCiphertext, 0);
+		gcmCiphertext = new byte[recordSize + gcm.getMacLength()];
+		gcm.encrypt(nonce, additionalData, plaintext, 0, recordSize, gcmCiphertext, 0);
+	}
+
+	private int cbcEncrypt(byte[] output) throws GeneralSecurityException {
+		// content, MAC, padding, padding length
+		int length = recordSize + hmac.getMacLength() + 1;
+		int paddingLength = (BLOCK_SIZE - length % BLOCK_SIZE) % BLOCK_SIZE;
+		length += paddingLength;
+		System.arraycopy(plaintext, 0, output, 0, recordSize);
+		hmac.update(additionalData);
+		hmac.update(plaintext);
+		hmac.doFinal(output, recordSize);
+		for (int index = recordSize + hmac.getMacLength(); index < length; ++index) {
+			output[index] = (byte) paddingLength;
+		}
+		cbc.init(Cipher.ENCRYPT_MODE, key, iv);
+		return cbc.doFinal(output, 0, length, output, 0);
+	}
+
+	@Benchmark
+	public byte[] cbcSha256Encrypt() throws GeneralSecurityException {
+		cbcEncrypt(buffer);
+		return buffer;
+	}
+
+	@Benchmark
+	public byte[] cbcSha256Decrypt() throws GeneralSecurityException {
+		cbc.init(Cipher.DECRYPT_MODE, key, iv);
+		int length = cbc.doFinal(cbcCiphertext, 0, cbcCiphertext.length, buffer, 0);
+		int contentLength = length - 1 - buffer[length - 1] - hmac.getMacLength();
+		hmac.update(additionalData);
+		hmac.update(buffer, 0, contentLength);
+		hmac.doFinal(buffer, length);
+		return buffer;
+	}
+
+	@Benchmark
+	public byte[] ccm8Encrypt() throws GeneralSecurityException {
+		ccm.encrypt(nonce, additionalData, plaintext, 0, recordSize, buffer, 0);
+		return buffer;
+	}
+
+	@Benchmark
+	public byte[] ccm8Decrypt() throws GeneralSecurityException {
+		ccm.decrypt(nonce, additionalData, ccmCiphertext, 0, ccmCiphertext.length, buffer, 0);
+		return buffer;
+	}
+
+	@Benchmark
+	public byte[] gcmEncrypt() throws GeneralSecurityException {
+		// GCM refuses to reuse a nonce for encryption
+		encryptionNonce[encryptionNonce.length - 1]++;
+		gcm.encrypt(encryptionNonce, additionalData, plaintext, 0, recordSize, buffer, 0);
+		return buffer;
+	}
+
+	@Benchmark
+	public byte[] gcmDecrypt() throws GeneralSecurityException {
+		gcm.decrypt(nonce, additionalData, gcmCiphertext, 0, gcmCiphertext.length, buffer, 0);
+		return buffer;
+	}
+}
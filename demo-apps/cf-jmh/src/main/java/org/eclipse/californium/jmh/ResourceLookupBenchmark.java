@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.jmh;
+
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.core.CoapResource;
+import org.eclipse.californium.core.coap.OptionSet;
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.network.serialization.UdpDataParser;
+import org.eclipse.californium.core.network.serialization.UdpDataSerializer;
+import org.eclipse.californium.core.server.ResourcePathIndex;
+import org.eclipse.californium.core.server.resources.Resource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures looking up the resource of a request for
+ * <code>/3303/57/5700</code> in a LwM2M-style tree of 20 objects with 100
+ * instances of 10 resources each.
+ * <p>
+ * {@link #childWalk()} looks up the resource like the server message
+ * deliverer did before the path index, i.e. copying the decoded Uri-Path
+ * into a new deque and calling {@link Resource#getChild(String)} for each
+ * segment. {@link #pathIndex()} uses the {@link ResourcePathIndex}. The
+ * options are parsed from the encoded request, so both look up the same
+ * received Uri-Path options.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(1)
+@Fork(1)
+public class ResourceLookupBenchmark {
+
+	private Resource root;
+	private ResourcePathIndex index;
+	private OptionSet options;
+
+	@Setup
+	public void setUp() {
+		CoapResource tree = new CoapResource("");
+		for (int object = 3300; object < 3320; object++) {
+			CoapResource objectResource = new CoapResource(Integer.toString(object));
+			for (int instance = 0; instance < 100; instance++) {
+				CoapResource instanceResource = new CoapResource(Integer.toString(instance));
+				for (int resource = 5700; resource < 5710; resource++) {
+					instanceResource.add(new CoapResource(Integer.toString(resource)));
+				}
+				objectResource.add(instanceResource);
+			}
+			tree.add(objectResource);
+		}
+		root = tree;
+		index = new ResourcePathIndex(root);
+
+		Request request = Request.newGet();
+		request.setMID(1);
+		request.setToken(new byte[] { 0x01, 0x02, 0x03, 0x04 });
+		request.getOptions().setUriPath("/3303/57/5700");
+		byte[] encoded = new UdpDataSerializer().getByteArray(request);
+		options = new UdpDataParser().parseMessage(encoded).getOptions();
+	}
+
+	@Benchmark
+	public Resource childWalk() {
+		Deque<String> path = new LinkedList<String>(options.getUriPath());
+		Resource current = root;
+		while (!path.isEmpty() && current != null) {
+			String name = path.removeFirst();
+			current = current.getChild(name);
+		}
+		return current;
+	}
+
+	@Benchmark
+	public Resource pathIndex() {
+		return index.findResource(options);
+	}
+}
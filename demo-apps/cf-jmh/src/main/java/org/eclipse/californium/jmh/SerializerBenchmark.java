@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.jmh;
+
+import static org.eclipse.californium.core.coap.CoAP.MessageFormat.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.core.coap.CoAP.ResponseCode;
+import org.eclipse.californium.core.coap.CoAP.Type;
+import org.eclipse.californium.core.coap.MediaTypeRegistry;
+import org.eclipse.californium.core.coap.Option;
+import org.eclipse.californium.core.coap.Response;
+import org.eclipse.californium.core.network.serialization.UdpDataSerializer;
+import org.eclipse.californium.elements.util.DatagramWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the serialization of a typical 60 byte piggy-backed response
+ * carrying a token, an observe option, a content format option, an ETag
+ * and a small JSON payload.
+ * <p>
+ * {@link #bitwise()} encodes the response like the serializer did before
+ * writing messages in a single pass, i.e. encoding options and payload
+ * bit by bit into one {@link DatagramWriter}, followed by the header
+ * into a second one. {@link #singlePass()} uses the
+ * {@link UdpDataSerializer}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(1)
+@Fork(1)
+public class SerializerBenchmark {
+
+	private final UdpDataSerializer serializer = new UdpDataSerializer();
+	private Response response;
+
+	@Setup
+	public void setUp() {
+		response = new Response(ResponseCode.CONTENT);
+		response.setType(Type.ACK);
+		response.setMID(0x1234);
+		response.setToken(new byte[]{0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08});
+		response.getOptions().setObserve(42);
+		response.getOptions().addETag(new byte[]{0x0A, 0x0B, 0x0C, 0x0D});
+		response.getOptions().setContentFormat(MediaTypeRegistry.APPLICATION_JSON);
+		response.getOptions().setMaxAge(30);
+		response.setPayload("{\"temp\":21.5,\"unit\":\"C\",\"ts\":1514764800}");
+	}
+
+	@Benchmark
+	public byte[] bitwise() {
+		DatagramWriter writer = new DatagramWriter();
+		int lastOptionNumber = 0;
+		for (Option option : response.getOptions().asSortedList()) {
+			int optionDelta = option.getNumber() - lastOptionNumber;
+			int optionLength = option.getLength();
+			writer.write(getOptionNibble(optionDelta), OPTION_DELTA_BITS);
+			writer.write(getOptionNibble(optionLength), OPTION_LENGTH_BITS);
+			writeExtension(writer, optionDelta);
+			writeExtension(writer, optionLength);
+			writer.writeBytes(option.getValue());
+			lastOptionNumber = option.getNumber();
+		}
+		writer.writeByte(PAYLOAD_MARKER);
+		writer.writeBytes(response.getPayload());
+		byte[] body = writer.toByteArray();
+
+		writer = new DatagramWriter();
+		writer.write(VERSION, VERSION_BITS);
+		writer.write(response.getType().value, TYPE_BITS);
+		writer.write(response.getToken().length, TOKEN_LENGTH_BITS);
+		writer.write(response.getCode().value, CODE_BITS);
+		writer.write(response.getMID(), MESSAGE_ID_BITS);
+		writer.writeBytes(response.getToken());
+		writer.writeBytes(body);
+		return writer.toByteArray();
+	}
+
+	@Benchmark
+	public byte[] singlePass() {
+		response.setBytes(null);
+		return serializer.serializeResponse(response).getBytes();
+	}
+
+	private static int getOptionNibble(final int optionValue) {
+		if (optionValue <= 12) {
+			return optionValue;
+		} else if (optionValue <= 255 + 13) {
+			return 13;
+		} else {
+			return 14;
+		}
+	}
+
+	private static void writeExtension(final DatagramWriter writer, final int optionValue) {
+		if (optionValue > 255 + 13) {
+			writer.write(optionValue - 269, 2 * Byte.SIZE);
+		} else if (optionValue > 12) {
+			writer.write(optionValue - 13, Byte.SIZE);
+		}
+	}
+}
@@ -18,6 +18,11 @@
  *    Achim Kraus (Bosch Software Innovations GmbH) - fix error stopping an connector,
  *                                                    when socket failed to open.
  *                                                    issue #345
+ *    Bosch Software Innovations GmbH - add DatagramChannel mode with pooled
+ *                                      receive buffers
+ *    Bosch Software Innovations GmbH - add batching sender and bounded
+ *                                      outbound queue
+ *    Bosch Software Innovations GmbH - add SO_REUSEPORT multi-socket mode
  ******************************************************************************/
 package org.eclipse.californium.elements;
 
@@ -25,14 +30,25 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.eclipse.californium.elements.util.ByteBufferPool;
+import org.eclipse.californium.elements.util.ReusePortChannels;
+
 /**
  * A {@link Connector} employing UDP as the transport protocol for exchanging
  * data between networked clients and a server application. It implements the
@@ -48,6 +64,25 @@ import java.util.logging.Logger;
  * 
  * The number of threads can be set through {@link #setReceiverThreadCount(int)}
  * and {@link #setSenderThreadCount(int)} before the connector is started.
+ * 
+ * By default a blocking {@link DatagramSocket} is used. With
+ * {@link #setUseDatagramChannel(boolean)} the connector uses a NIO
+ * {@link DatagramChannel} instead and receives datagrams into a pool of
+ * reusable direct {@link ByteBuffer}s, which saves the intermediate receive
+ * buffer copy.
+ * 
+ * Sender threads drain up to {@link #setSenderBatchSize(int)} pending messages
+ * at once from the outbound queue and send them back-to-back. The capacity of
+ * the outbound queue can be limited with {@link #setOutboundCapacity(int)}.
+ * The {@link OverflowPolicy} determines, whether messages sent to a full queue
+ * are dropped or the sending thread is blocked.
+ * 
+ * With {@link #setReusePortSocketCount(int)} the connector opens several
+ * {@link DatagramChannel}s bound to the same port using {@code SO_REUSEPORT}
+ * (requires Java 9 and an OS supporting it). The kernel then distributes the
+ * inbound flows across the channels, each served by its own receiver thread.
+ * Messages to a peer are sent using the channel the peer's last message was
+ * received on.
  */
 public class UDPConnector implements Connector {
 
@@ -55,11 +90,57 @@ public class UDPConnector implements Connector {
 	
 	public static final int UNDEFINED = 0;
 
+	/**
+	 * The default maximum number of messages sent per batch.
+	 */
+	public static final int DEFAULT_SENDER_BATCH_SIZE = 32;
+
+	/**
+	 * The maximum number of peers, for which the receiving channel is
+	 * remembered in {@code SO_REUSEPORT} mode. If exceeded, an arbitrary
+	 * eighth of the peers is forgotten and learned again with their next
+	 * message. All channels are bound to the same local address, so sending
+	 * to a forgotten peer on another channel still reaches it.
+	 */
+	private static final int MAX_PEER_CHANNELS = 64 * 1024;
+
+	/**
+	 * Interval in milliseconds, in which a sending thread blocked on a full
+	 * outbound queue checks, if the connector has been stopped.
+	 */
+	private static final long BLOCKED_SEND_CHECK_INTERVAL_MILLIS = 100;
+
+	/**
+	 * Policy for messages sent, when the outbound queue is full.
+	 */
+	public enum OverflowPolicy {
+
+		/**
+		 * Drop the message.
+		 */
+		DROP,
+		/**
+		 * Block the sending thread until the queue has space. The message is
+		 * dropped, if the connector is not running while the queue is full.
+		 */
+		BLOCK
+	}
+
 	static final ThreadGroup ELEMENTS_THREAD_GROUP = new ThreadGroup("Californium/Elements"); //$NON-NLS-1$
 
 	private volatile boolean running;
 
 	private DatagramSocket socket;
+
+	private DatagramChannel channel;
+
+	/** The channels bound to the same port in SO_REUSEPORT mode. */
+	private DatagramChannel[] channels;
+
+	/** The channels, peers were last received on, in SO_REUSEPORT mode. */
+	private ConcurrentMap<InetSocketAddress, DatagramChannel> peerChannels;
+
+	private ByteBufferPool receiveBufferPool;
 	
 	private final InetSocketAddress localAddr;
 	
@@ -67,7 +148,10 @@ public class UDPConnector implements Connector {
 	private List<Thread> senderThreads;
 
 	/** The outbound message queue. */
-	private final BlockingQueue<RawData> outgoing;
+	private volatile BlockingQueue<RawData> outgoing;
+
+	/** The number of outbound messages dropped because of a full queue. */
+	private final AtomicLong droppedMessages = new AtomicLong();
 	
 	/** The receiver of incoming messages. */
 	private RawDataChannel receiver;
@@ -79,6 +163,14 @@ public class UDPConnector implements Connector {
 	private int receiverCount = 1;
 	
 	private int receiverPacketSize = 2048;
+
+	private int senderBatchSize = DEFAULT_SENDER_BATCH_SIZE;
+
+	private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+
+	private boolean useDatagramChannel = false;
+
+	private int reusePortSocketCount = 1;
 	
 	/**
 	 * Creates a connector on the wildcard address listening on an
@@ -104,8 +196,8 @@ public class UDPConnector implements Connector {
 			this.localAddr = address;
 		}
 		this.running = false;
-		
-		//TODO: think about restricting the outbound queue's capacity
+
+		// unbounded, use setOutboundCapacity to restrict it
 		this.outgoing = new LinkedBlockingQueue<RawData>();
 	}
 	
@@ -115,28 +207,61 @@ public class UDPConnector implements Connector {
 			return;
 		}
 
-		// if localAddr is null or port is 0, the system decides
-		socket = new DatagramSocket(localAddr.getPort(), localAddr.getAddress());
+		if (reusePortSocketCount > 1) {
+			channels = openReusePortChannels(reusePortSocketCount);
+			channel = channels[0];
+			socket = channel.socket();
+			peerChannels = createPeerChannels();
+			receiveBufferPool = new ByteBufferPool(channels.length, receiverPacketSize, true);
+		} else if (useDatagramChannel) {
+			channel = DatagramChannel.open();
+			try {
+				// if port is 0, the system decides
+				channel.bind(localAddr);
+			} catch (IOException ex) {
+				channel.close();
+				channel = null;
+				throw ex;
+			}
+			socket = channel.socket();
+			socket.setBroadcast(true);
+			receiveBufferPool = new ByteBufferPool(receiverCount, receiverPacketSize, true);
+		} else {
+			// if localAddr is null or port is 0, the system decides
+			socket = new DatagramSocket(localAddr.getPort(), localAddr.getAddress());
+		}
 		// running only, if the socket could be opened
 		running = true;
 
-		if (receiveBufferSize != UNDEFINED) {
-			socket.setReceiveBufferSize(receiveBufferSize);
+		if (channels != null) {
+			for (int i = 1; i < channels.length; ++i) {
+				configureBufferSizes(channels[i].socket());
+			}
 		}
+		configureBufferSizes(socket);
 		receiveBufferSize = socket.getReceiveBufferSize();
-		
-		if (sendBufferSize != UNDEFINED) {
-			socket.setSendBufferSize(sendBufferSize);
-		}
 		sendBufferSize = socket.getSendBufferSize();
 		
 		// start receiver and sender threads
 		LOGGER.log(Level.CONFIG, "UDPConnector starts up {0} sender threads and {1} receiver threads",
-				new Object[]{senderCount, receiverCount});
+				new Object[]{senderCount, channels != null ? channels.length : receiverCount});
 		
 		receiverThreads = new LinkedList<Thread>();
-		for (int i=0;i<receiverCount;i++) {
-			receiverThreads.add(new Receiver("UDP-Receiver-"+localAddr+"["+i+"]"));
+		if (channels != null) {
+			// one receiver per channel
+			for (int i = 0; i < channels.length; ++i) {
+				String name = "UDP-Receiver-"+localAddr+"["+i+"]";
+				receiverThreads.add(new ChannelReceiver(name, channels[i], receiveBufferPool, peerChannels));
+			}
+		} else {
+			for (int i=0;i<receiverCount;i++) {
+				String name = "UDP-Receiver-"+localAddr+"["+i+"]";
+				if (useDatagramChannel) {
+					receiverThreads.add(new ChannelReceiver(name, channel, receiveBufferPool, null));
+				} else {
+					receiverThreads.add(new Receiver(name));
+				}
+			}
 		}
 		
 		senderThreads = new LinkedList<Thread>();
@@ -160,7 +285,8 @@ public class UDPConnector implements Connector {
 			String startupMsg = new StringBuilder("UDPConnector listening on ")
 				.append(socket.getLocalSocketAddress()).append(", recv buf = ")
 				.append(receiveBufferSize).append(", send buf = ").append(sendBufferSize)
-				.append(", recv packet size = ").append(receiverPacketSize).toString();
+				.append(", recv packet size = ").append(receiverPacketSize)
+				.append(channels != null ? ", " + channels.length + " reuse port channels" : (useDatagramChannel ? ", channel" : ", socket")).toString();
 			LOGGER.log(Level.CONFIG, startupMsg);
 		}
 	}
@@ -171,6 +297,11 @@ public class UDPConnector implements Connector {
 			return;
 		}
 		running = false;
+		String address = localAddr.toString();
+		if (socket != null) {
+			// interrupting a channel receiver closes the channel
+			address = socket.getLocalSocketAddress().toString();
+		}
 		// stop all threads
 		if (senderThreads != null) {
 			for (Thread t : senderThreads) {
@@ -188,15 +319,103 @@ public class UDPConnector implements Connector {
 		}
 		outgoing.clear();
 		
-		String address = localAddr.toString();
 		if (socket != null) {
-			address = socket.getLocalSocketAddress().toString();
 			socket.close();
 			socket = null;
 		}
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException ex) {
+				LOGGER.log(Level.FINER, "closing channel failed:", ex);
+			}
+			channel = null;
+		}
+		if (channels != null) {
+			for (DatagramChannel reusePortChannel : channels) {
+				try {
+					reusePortChannel.close();
+				} catch (IOException ex) {
+					LOGGER.log(Level.FINER, "closing channel failed:", ex);
+				}
+			}
+			channels = null;
+			peerChannels = null;
+		}
+		receiveBufferPool = null;
 		LOGGER.log(Level.CONFIG, "UDPConnector on [{0}] has stopped.", address);
 	}
 
+	private void configureBufferSizes(DatagramSocket socket) throws IOException {
+		if (receiveBufferSize != UNDEFINED) {
+			socket.setReceiveBufferSize(receiveBufferSize);
+		}
+		if (sendBufferSize != UNDEFINED) {
+			socket.setSendBufferSize(sendBufferSize);
+		}
+	}
+
+	/**
+	 * Opens channels bound to the same local address using
+	 * {@code SO_REUSEPORT}.
+	 * 
+	 * @param count the number of channels
+	 * @return the bound channels
+	 * @throws IOException if {@code SO_REUSEPORT} is not supported or a
+	 *             channel could not be bound.
+	 */
+	private DatagramChannel[] openReusePortChannels(int count) throws IOException {
+		DatagramChannel[] result = ReusePortChannels.open(localAddr, count);
+		try {
+			for (DatagramChannel opened : result) {
+				opened.socket().setBroadcast(true);
+			}
+		} catch (IOException ex) {
+			for (DatagramChannel opened : result) {
+				opened.close();
+			}
+			throw ex;
+		}
+		return result;
+	}
+
+	/**
+	 * Creates the map of the channels receiving from peers.
+	 * <p>
+	 * The map is not ordered, so receivers and senders look up peers without
+	 * locking. It is bounded by {@link #rememberPeerChannel(ConcurrentMap,
+	 * InetSocketAddress, DatagramChannel)}.
+	 * 
+	 * @return the concurrent map
+	 */
+	private static ConcurrentMap<InetSocketAddress, DatagramChannel> createPeerChannels() {
+		return new ConcurrentHashMap<InetSocketAddress, DatagramChannel>();
+	}
+
+	/**
+	 * Remembers the channel a peer was received on.
+	 * <p>
+	 * Only if a new peer exceeds {@link #MAX_PEER_CHANNELS}, an eighth of
+	 * the peers is removed, so the size check is not done for every datagram
+	 * and the removal is amortized over many new peers.
+	 * 
+	 * @param peerChannels the map of the channels receiving from peers
+	 * @param peer the peer
+	 * @param channel the channel the peer was received on
+	 */
+	private static void rememberPeerChannel(final ConcurrentMap<InetSocketAddress, DatagramChannel> peerChannels,
+			final InetSocketAddress peer, final DatagramChannel channel) {
+		if (peerChannels.put(peer, channel) == null && peerChannels.size() > MAX_PEER_CHANNELS) {
+			Iterator<InetSocketAddress> iterator = peerChannels.keySet().iterator();
+			int remove = MAX_PEER_CHANNELS / 8;
+			while (remove-- > 0 && iterator.hasNext()) {
+				iterator.next();
+				iterator.remove();
+			}
+		}
+	}
+
+
 	@Override
 	public void destroy() {
 		stop();
@@ -206,8 +425,29 @@ public class UDPConnector implements Connector {
 	public void send(RawData msg) {
 		if (msg == null) {
 			throw new NullPointerException("Message must not be null");
-		} else {
-			outgoing.add(msg);
+		} else if (overflowPolicy == OverflowPolicy.BLOCK) {
+			try {
+				while (!outgoing.offer(msg, BLOCKED_SEND_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+					if (!running) {
+						// no sender will ever drain the queue
+						drop(msg);
+						return;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				drop(msg);
+			}
+		} else if (!outgoing.offer(msg)) {
+			drop(msg);
+		}
+	}
+
+	private void drop(RawData msg) {
+		long dropped = droppedMessages.incrementAndGet();
+		if (LOGGER.isLoggable(Level.FINE)) {
+			LOGGER.log(Level.FINE, "UDPConnector ({0}) dropped message to {1}, {2} dropped messages in total",
+					new Object[]{localAddr, msg.getInetSocketAddress(), dropped});
 		}
 	}
 
@@ -287,20 +527,108 @@ public class UDPConnector implements Connector {
 		
 	}
 	
+	/**
+	 * Receiver for {@link DatagramChannel} mode.
+	 * 
+	 * Receives each datagram into a direct buffer taken from the pool and
+	 * copies only the received bytes into the {@link RawData} handed to the
+	 * {@link RawDataChannel}. In {@code SO_REUSEPORT} mode the channel is
+	 * remembered for the peer.
+	 */
+	private class ChannelReceiver extends NetworkStageThread {
+
+		private final DatagramChannel channel;
+		private final ByteBufferPool pool;
+		private final ConcurrentMap<InetSocketAddress, DatagramChannel> peerChannels;
+
+		private ChannelReceiver(String name, DatagramChannel channel, ByteBufferPool pool,
+				ConcurrentMap<InetSocketAddress, DatagramChannel> peerChannels) {
+			super(name);
+			this.channel = channel;
+			this.pool = pool;
+			this.peerChannels = peerChannels;
+		}
+
+		protected void work() throws IOException {
+			ByteBuffer buffer = pool.acquire();
+			try {
+				InetSocketAddress peer = (InetSocketAddress) channel.receive(buffer);
+				buffer.flip();
+				if (peerChannels != null && peerChannels.get(peer) != channel) {
+					rememberPeerChannel(peerChannels, peer, channel);
+				}
+				if (LOGGER.isLoggable(Level.FINER)) {
+					LOGGER.log(Level.FINER, "UDPConnector ({0}) received {1} bytes from {2}",
+							new Object[]{channel.getLocalAddress(), buffer.remaining(), peer});
+				}
+				byte[] bytes = new byte[buffer.remaining()];
+				buffer.get(bytes);
+				RawData msg = new RawData(bytes, peer);
+
+				receiver.receiveData(msg);
+			} finally {
+				pool.release(buffer);
+			}
+		}
+	}
+
 	private class Sender extends NetworkStageThread {
 		
 		private DatagramPacket datagram;
+
+		private final List<RawData> batch;
+		private final int batchSize;
+		private final DatagramChannel[] channels;
+		private final ConcurrentMap<InetSocketAddress, DatagramChannel> peerChannels;
 		
 		private Sender(String name) {
 			super(name);
 			this.datagram = new DatagramPacket(new byte[0], 0);
+			this.batchSize = senderBatchSize;
+			this.channels = UDPConnector.this.channels;
+			this.peerChannels = UDPConnector.this.peerChannels;
+			this.batch = new ArrayList<RawData>(batchSize);
 		}
 		
 		protected void work() throws InterruptedException, IOException {
-			RawData raw = outgoing.take(); // Blocking
-			datagram.setData(raw.getBytes());
-			datagram.setAddress(raw.getAddress());
-			datagram.setPort(raw.getPort());
+			BlockingQueue<RawData> queue = outgoing;
+			batch.add(queue.take()); // Blocking
+			if (batchSize > 1) {
+				queue.drainTo(batch, batchSize - 1);
+			}
+			try {
+				for (RawData raw : batch) {
+					try {
+						send(raw);
+					} catch (IOException ex) {
+						if (!running) {
+							throw ex;
+						}
+						LOGGER.log(Level.WARNING, "UDPConnector ({0}) failed to send to {1}: {2}",
+								new Object[]{localAddr, raw.getInetSocketAddress(), ex.getMessage()});
+					}
+				}
+			} finally {
+				batch.clear();
+			}
+		}
+
+		private void send(RawData raw) throws IOException {
+			if (channels != null) {
+				InetSocketAddress destination = raw.getInetSocketAddress();
+				DatagramChannel out = peerChannels.get(destination);
+				if (out == null) {
+					out = channels[(destination.hashCode() & Integer.MAX_VALUE) % channels.length];
+				}
+				if (LOGGER.isLoggable(Level.FINER)) {
+					LOGGER.log(Level.FINER, "UDPConnector ({0}) sends {1} bytes to {2}",
+							new Object[]{out.getLocalAddress(), raw.getSize(), destination});
+				}
+				out.send(ByteBuffer.wrap(raw.bytes), destination);
+				return;
+			}
+			datagram.setData(raw.bytes);
+			datagram.setSocketAddress(raw.getInetSocketAddress());
 			if (LOGGER.isLoggable(Level.FINER)) {
 				LOGGER.log(Level.FINER, "UDPConnector ({0}) sends {1} bytes to {2}:{3}",
 						new Object[]{socket.getLocalSocketAddress(), datagram.getLength(),
@@ -349,4 +677,111 @@ public class UDPConnector implements Connector {
 	public int getReceiverPacketSize() {
 		return receiverPacketSize;
 	}
+
+	/**
+	 * Sets whether a NIO {@link DatagramChannel} is used instead of a
+	 * {@link DatagramSocket}.
+	 * 
+	 * Must be set before the connector is started.
+	 * 
+	 * @param useDatagramChannel {@code true}, to use a channel with pooled
+	 *            direct receive buffers, {@code false}, to use a socket.
+	 */
+	public void setUseDatagramChannel(boolean useDatagramChannel) {
+		this.useDatagramChannel = useDatagramChannel;
+	}
+
+	public boolean isUseDatagramChannel() {
+		return useDatagramChannel;
+	}
+
+	/**
+	 * Sets the number of channels bound to the same port using
+	 * {@code SO_REUSEPORT}.
+	 * 
+	 * Must be set before the connector is started. A value larger than
+	 * {@code 1} implies the {@link DatagramChannel} mode and overrides the
+	 * receiver thread count with one receiver thread per channel.
+	 * 
+	 * @param count the number of channels. {@code 1} disables the
+	 *            {@code SO_REUSEPORT} mode.
+	 * @throws IllegalArgumentException if count is less than 1.
+	 */
+	public void setReusePortSocketCount(int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("socket count must be at least 1");
+		}
+		this.reusePortSocketCount = count;
+	}
+
+	public int getReusePortSocketCount() {
+		return reusePortSocketCount;
+	}
+
+	/**
+	 * Sets the maximum number of messages a sender thread sends in one batch.
+	 * 
+	 * Must be set before the connector is started.
+	 * 
+	 * @param size the maximum batch size. {@code 1} disables batching.
+	 * @throws IllegalArgumentException if size is less than 1.
+	 */
+	public void setSenderBatchSize(int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("batch size must be at least 1");
+		}
+		this.senderBatchSize = size;
+	}
+
+	public int getSenderBatchSize() {
+		return senderBatchSize;
+	}
+
+	/**
+	 * Sets the capacity of the outbound message queue.
+	 * 
+	 * Must be set before the connector is started. Messages already queued
+	 * are discarded.
+	 * 
+	 * @param capacity the maximum number of queued outbound messages.
+	 * @throws IllegalArgumentException if capacity is less than 1.
+	 * @throws IllegalStateException if the connector is running.
+	 */
+	public synchronized void setOutboundCapacity(int capacity) {
+		if (running) {
+			throw new IllegalStateException("connector is running");
+		}
+		this.outgoing = new LinkedBlockingQueue<RawData>(capacity);
+	}
+
+	public int getOutboundCapacity() {
+		return outgoing.size() + outgoing.remainingCapacity();
+	}
+
+	/**
+	 * Sets the policy for messages sent, when the outbound queue is full.
+	 * 
+	 * @param policy the overflow policy
+	 * @throws NullPointerException if policy is {@code null}.
+	 */
+	public void setOverflowPolicy(OverflowPolicy policy) {
+		if (policy == null) {
+			throw new NullPointerException("overflow policy must not be null");
+		}
+		this.overflowPolicy = policy;
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * Gets the number of outbound messages dropped because the outbound queue
+	 * was full.
+	 * 
+	 * @return the number of dropped messages.
+	 */
+	public long getDroppedMessageCount() {
+		return droppedMessages.get();
+	}
 }
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.elements.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded pool of equally sized, reusable {@link ByteBuffer}s.
+ * <p>
+ * Buffers are created lazily on {@link #acquire()}, if the pool is empty, and
+ * are kept for reuse on {@link #release(ByteBuffer)}, as long as the pool has
+ * not reached its capacity. Buffers released to a full pool are left to the
+ * garbage collector.
+ * <p>
+ * This class is thread safe.
+ */
+public final class ByteBufferPool {
+
+	private final BlockingQueue<ByteBuffer> buffers;
+	private final int bufferSize;
+	private final boolean direct;
+
+	/**
+	 * Creates a new pool.
+	 *
+	 * @param capacity the maximum number of buffers kept for reuse.
+	 * @param bufferSize the size of the buffers in bytes.
+	 * @param direct {@code true}, if direct buffers should be used,
+	 *            {@code false}, if heap buffers should be used.
+	 * @throws IllegalArgumentException if capacity or buffer size is less than
+	 *             1.
+	 */
+	public ByteBufferPool(int capacity, int bufferSize, boolean direct) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be at least 1");
+		}
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("buffer size must be at least 1");
+		}
+		this.buffers = new ArrayBlockingQueue<ByteBuffer>(capacity);
+		this.bufferSize = bufferSize;
+		this.direct = direct;
+	}
+
+	/**
+	 * Takes a buffer from the pool.
+	 *
+	 * @return a cleared buffer. If the pool is empty, a new buffer is created.
+	 */
+	public ByteBuffer acquire() {
+		ByteBuffer buffer = buffers.poll();
+		if (buffer == null) {
+			buffer = direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Returns a buffer to the pool.
+	 * <p>
+	 * The buffer must not be used by the caller afterwards.
+	 *
+	 * @param buffer the buffer previously obtained by {@link #acquire()}.
+	 *            Buffers of a different size or type are ignored.
+	 */
+	public void release(ByteBuffer buffer) {
+		if (buffer != null && buffer.capacity() == bufferSize && buffer.isDirect() == direct) {
+			buffer.clear();
+			buffers.offer(buffer);
+		}
+	}
+
+	/**
+	 * Gets the size of the buffers provided by this pool.
+	 *
+	 * @return the size in bytes.
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Gets the number of buffers currently available for reuse.
+	 *
+	 * @return the number of pooled buffers.
+	 */
+	public int available() {
+		return buffers.size();
+	}
+}
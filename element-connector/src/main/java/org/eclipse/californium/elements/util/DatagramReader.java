@@ -13,6 +13,8 @@
  * Contributors:
  *    Matthias Kovatsch - creator and main architect
  *    Stefan Jucker - DTLS implementation
+ *    Bosch Software Innovations GmbH - add constructor without copy
+ *    Bosch Software Innovations GmbH - add constructor for range of array
  ******************************************************************************/
 package org.eclipse.californium.elements.util;
 
@@ -41,15 +43,55 @@ public final class DatagramReader {
 	 *            The byte array to read from.
 	 */
 	public DatagramReader(final byte[] byteArray) {
+		this(byteArray, true);
+	}
+
+	/**
+	 * Creates a new reader for an array of bytes.
+	 * 
+	 * @param byteArray
+	 *            The byte array to read from.
+	 * @param copy
+	 *            {@code true}, to read from a copy of the array,
+	 *            {@code false}, to read from the array directly. The latter
+	 *            requires, that the array is not modified while reading.
+	 */
+	public DatagramReader(final byte[] byteArray, final boolean copy) {
 
 		// initialize underlying byte stream
-		byteStream = new ByteArrayInputStream(Arrays.copyOf(byteArray, byteArray.length));
+		byteStream = new ByteArrayInputStream(copy ? Arrays.copyOf(byteArray, byteArray.length) : byteArray);
 
 		// initialize bit buffer
 		currentByte = 0;
 		currentBitIndex = -1; // indicates that no byte read yet
 	}
 
+	/**
+	 * Creates a new reader for a range of an array of bytes.
+	 * <p>
+	 * The reader reads from the array directly. This requires, that the range
+	 * is not modified while reading.
+	 * 
+	 * @param byteArray
+	 *            The byte array to read from.
+	 * @param offset
+	 *            The offset of the first byte to read.
+	 * @param length
+	 *            The number of bytes to read.
+	 * @throws IndexOutOfBoundsException if the range exceeds the array.
+	 */
+	public DatagramReader(final byte[] byteArray, final int offset, final int length) {
+		if (offset < 0 || length < 0 || offset + length > byteArray.length) {
+			throw new IndexOutOfBoundsException("range [" + offset + ", " + (offset + length)
+					+ ") exceeds array of length " + byteArray.length);
+		}
+		// initialize underlying byte stream
+		byteStream = new ByteArrayInputStream(byteArray, offset, length);
+		// initialize bit buffer
+		currentByte = 0;
+		currentBitIndex = -1; // indicates that no byte read yet
+	}
+
 	// Methods /////////////////////////////////////////////////////////////////
 
 	/**
@@ -0,0 +1,562 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.elements.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link ScheduledExecutorService} based on a hashed timing wheel.
+ * <p>
+ * Scheduling and cancelling a task are O(1) operations without locks, which
+ * makes this timer suitable for a large number of short-lived timeouts, e.g.
+ * retransmissions, which are mostly cancelled before they expire. The price is
+ * a precision limited to the tick duration.
+ * <p>
+ * Scheduled tasks are first put into a lock-free queue and moved into the
+ * buckets of the wheel by a single worker thread on each tick. Cancelled tasks
+ * are only marked and removed, when the worker visits their bucket the next
+ * time.
+ * <p>
+ * Expired tasks and tasks passed to {@link #execute(Runnable)} are executed
+ * by the task executor provided to the constructor. If no task executor is
+ * provided, they are executed by the worker thread and must therefore be
+ * short.
+ * <p>
+ * {@link #shutdown()} discards all delayed tasks. The task executor is not
+ * owned by the timer and is therefore not shut down.
+ */
+public final class HashedWheelTimer extends AbstractExecutorService implements ScheduledExecutorService {
+
+	private static final Logger LOGGER = Logger.getLogger(HashedWheelTimer.class.getName());
+
+	/**
+	 * Maximum number of newly scheduled tasks moved into the wheel per tick.
+	 */
+	private static final int MAX_TRANSFER_PER_TICK = 100000;
+
+	private static final int STATE_RUNNING = 0;
+	private static final int STATE_SHUTDOWN = 1;
+
+	private static final int TIMEOUT_PENDING = 0;
+	private static final int TIMEOUT_CANCELLED = 1;
+	private static final int TIMEOUT_RUNNING = 2;
+	private static final int TIMEOUT_DONE = 3;
+
+	private final long tickNanos;
+	private final Bucket[] wheel;
+	private final int mask;
+	private final long startTime;
+	private final ExecutorService taskExecutor;
+	private final Thread worker;
+
+	/** Newly scheduled tasks, not yet moved into the wheel. */
+	private final Queue<Timeout<?>> scheduled = new ConcurrentLinkedQueue<Timeout<?>>();
+
+	/** Number of scheduled tasks, neither expired nor cancelled. */
+	private final AtomicInteger pending = new AtomicInteger();
+
+	/** Tasks left in the wheel, when the worker stopped. */
+	private final List<Runnable> unprocessed = new ArrayList<Runnable>();
+
+	private volatile int state = STATE_RUNNING;
+
+	/**
+	 * Creates a new timer.
+	 *
+	 * @param name the name of the worker thread.
+	 * @param tickDuration the duration of a tick. Determines the precision of
+	 *            the timer.
+	 * @param unit the time unit of the tick duration.
+	 * @param ticksPerWheel the number of buckets of the wheel. Rounded up to the
+	 *            next power of two.
+	 * @param taskExecutor the executor to run the expired tasks. If
+	 *            {@code null}, the tasks are run by the worker thread. The
+	 *            caller remains responsible for shutting it down.
+	 * @throws IllegalArgumentException if the tick duration or the number of
+	 *             ticks is less than 1.
+	 */
+	public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel,
+			ExecutorService taskExecutor) {
+		if (tickDuration < 1) {
+			throw new IllegalArgumentException("tick duration must be at least 1");
+		}
+		if (ticksPerWheel < 1 || ticksPerWheel > (1 << 30)) {
+			throw new IllegalArgumentException("ticks per wheel must be in range [1, 2^30]");
+		}
+		int size = 1;
+		while (size < ticksPerWheel) {
+			size <<= 1;
+		}
+		this.wheel = new Bucket[size];
+		for (int index = 0; index < size; ++index) {
+			wheel[index] = new Bucket();
+		}
+		this.mask = size - 1;
+		this.tickNanos = unit.toNanos(tickDuration);
+		this.taskExecutor = taskExecutor;
+		this.startTime = System.nanoTime();
+		this.worker = new DaemonThreadFactory(name + '#').newThread(new Worker());
+		this.worker.start();
+	}
+
+	/**
+	 * Gets the number of scheduled tasks, which are neither expired nor
+	 * cancelled.
+	 *
+	 * @return the number of pending timeouts
+	 */
+	public int getPendingTimeouts() {
+		return pending.get();
+	}
+
+	/**
+	 * Checks, if this timer hands expired tasks and tasks passed to
+	 * {@link #execute(Runnable)} to a task executor.
+	 * <p>
+	 * Without a task executor, {@link #execute(Runnable)} delays a task up to
+	 * one tick and all tasks are run by the single worker thread. Such a
+	 * timer is therefore not suitable as general purpose executor.
+	 *
+	 * @return {@code true}, if a task executor is used
+	 */
+	public boolean hasTaskExecutor() {
+		return taskExecutor != null;
+	}
+
+	@Override
+	public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+		if (command == null) {
+			throw new NullPointerException("command must not be null");
+		}
+		return add(new Timeout<Object>(Executors.callable(command), deadline(delay, unit), 0));
+	}
+
+	@Override
+	public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+		if (callable == null) {
+			throw new NullPointerException("callable must not be null");
+		}
+		return add(new Timeout<V>(callable, deadline(delay, unit), 0));
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+		if (command == null) {
+			throw new NullPointerException("command must not be null");
+		}
+		if (period <= 0) {
+			throw new IllegalArgumentException("period must be positive");
+		}
+		return add(new Timeout<Object>(Executors.callable(command), deadline(initialDelay, unit),
+				unit.toNanos(period)));
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay,
+			TimeUnit unit) {
+		if (command == null) {
+			throw new NullPointerException("command must not be null");
+		}
+		if (delay <= 0) {
+			throw new IllegalArgumentException("delay must be positive");
+		}
+		return add(new Timeout<Object>(Executors.callable(command), deadline(initialDelay, unit),
+				-unit.toNanos(delay)));
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		if (command == null) {
+			throw new NullPointerException("command must not be null");
+		}
+		if (taskExecutor != null) {
+			if (state != STATE_RUNNING) {
+				throw new RejectedExecutionException("timer is shut down");
+			}
+			taskExecutor.execute(command);
+		} else {
+			schedule(command, 0, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		state = STATE_SHUTDOWN;
+		worker.interrupt();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		shutdown();
+		List<Runnable> result = new ArrayList<Runnable>();
+		try {
+			worker.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (unprocessed) {
+			result.addAll(unprocessed);
+			unprocessed.clear();
+		}
+		return result;
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return state != STATE_RUNNING;
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return isShutdown() && !worker.isAlive();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		long end = System.nanoTime() + unit.toNanos(timeout);
+		TimeUnit.NANOSECONDS.timedJoin(worker, Math.max(1, end - System.nanoTime()));
+		return !worker.isAlive();
+	}
+
+	private long now() {
+		return System.nanoTime() - startTime;
+	}
+
+	private long deadline(long delay, TimeUnit unit) {
+		return add(now(), Math.max(0, unit.toNanos(delay)));
+	}
+
+	/**
+	 * Adds a non-negative number of nanoseconds to a non-negative time,
+	 * saturating at {@link Long#MAX_VALUE} instead of overflowing.
+	 */
+	private static long add(long time, long nanos) {
+		return nanos >= Long.MAX_VALUE - time ? Long.MAX_VALUE : time + nanos;
+	}
+
+	private <V> Timeout<V> add(Timeout<V> timeout) {
+		if (state != STATE_RUNNING) {
+			throw new RejectedExecutionException("timer is shut down");
+		}
+		pending.incrementAndGet();
+		scheduled.add(timeout);
+		return timeout;
+	}
+
+	private void expire(Timeout<?> timeout) {
+		if (taskExecutor != null) {
+			try {
+				taskExecutor.execute(timeout);
+			} catch (RejectedExecutionException ex) {
+				LOGGER.log(Level.FINE, "timer task rejected, executor is shut down");
+			}
+		} else {
+			timeout.run();
+		}
+	}
+
+	/**
+	 * The worker moving the scheduled tasks into the wheel and expiring them.
+	 */
+	private final class Worker implements Runnable {
+
+		private long tick;
+
+		@Override
+		public void run() {
+			while (state == STATE_RUNNING) {
+				if (!waitForNextTick()) {
+					break;
+				}
+				transferScheduled();
+				wheel[(int) (tick & mask)].expire(tick * tickNanos);
+				++tick;
+			}
+			synchronized (unprocessed) {
+				for (Bucket bucket : wheel) {
+					bucket.drainTo(unprocessed);
+				}
+				Timeout<?> timeout;
+				while ((timeout = scheduled.poll()) != null) {
+					if (timeout.state.get() == TIMEOUT_PENDING) {
+						unprocessed.add(timeout);
+					}
+				}
+			}
+		}
+
+		private boolean waitForNextTick() {
+			long deadline = (tick + 1) * tickNanos;
+			long sleep = deadline - now();
+			while (sleep > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(sleep);
+				} catch (InterruptedException e) {
+					if (state != STATE_RUNNING) {
+						return false;
+					}
+				}
+				sleep = deadline - now();
+			}
+			return true;
+		}
+
+		private void transferScheduled() {
+			for (int count = 0; count < MAX_TRANSFER_PER_TICK; ++count) {
+				Timeout<?> timeout = scheduled.poll();
+				if (timeout == null) {
+					break;
+				}
+				if (timeout.state.get() != TIMEOUT_PENDING) {
+					continue;
+				}
+				long calculated = timeout.deadline / tickNanos;
+				timeout.remainingRounds = (calculated - tick) / wheel.length;
+				// already expired tasks are put into the current bucket
+				long ticks = Math.max(calculated, tick);
+				wheel[(int) (ticks & mask)].add(timeout);
+			}
+		}
+	}
+
+	/**
+	 * A bucket of the wheel. Only accessed by the worker thread.
+	 */
+	private final class Bucket {
+
+		private Timeout<?> head;
+		private Timeout<?> tail;
+
+		private void add(Timeout<?> timeout) {
+			if (head == null) {
+				head = tail = timeout;
+			} else {
+				tail.next = timeout;
+				timeout.prev = tail;
+				tail = timeout;
+			}
+		}
+
+		private void expire(long tickDeadline) {
+			Timeout<?> timeout = head;
+			while (timeout != null) {
+				Timeout<?> next = timeout.next;
+				if (timeout.state.get() != TIMEOUT_PENDING) {
+					remove(timeout);
+				} else if (timeout.remainingRounds <= 0 && timeout.deadline <= tickDeadline + tickNanos) {
+					remove(timeout);
+					HashedWheelTimer.this.expire(timeout);
+				} else {
+					--timeout.remainingRounds;
+				}
+				timeout = next;
+			}
+		}
+
+		private void remove(Timeout<?> timeout) {
+			Timeout<?> next = timeout.next;
+			if (timeout.prev != null) {
+				timeout.prev.next = next;
+			}
+			if (next != null) {
+				next.prev = timeout.prev;
+			}
+			if (timeout == head) {
+				head = next;
+			}
+			if (timeout == tail) {
+				tail = timeout.prev;
+			}
+			timeout.prev = null;
+			timeout.next = null;
+		}
+
+		private void drainTo(List<Runnable> tasks) {
+			Timeout<?> timeout;
+			while ((timeout = head) != null) {
+				remove(timeout);
+				if (timeout.state.get() == TIMEOUT_PENDING) {
+					tasks.add(timeout);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A scheduled task.
+	 *
+	 * @param <V> result type
+	 */
+	private final class Timeout<V> implements ScheduledFuture<V>, Runnable {
+
+		private final Callable<V> task;
+		/**
+		 * Period in nanoseconds. Positive for fixed rate, negative for fixed
+		 * delay, {@code 0} for one-shot tasks.
+		 */
+		private final long period;
+		private final AtomicInteger state = new AtomicInteger(TIMEOUT_PENDING);
+		/** Deadline in nanoseconds relative to the timer's start. */
+		private volatile long deadline;
+
+		// accessed by the worker thread only
+		private long remainingRounds;
+		private Timeout<?> prev;
+		private Timeout<?> next;
+
+		private V result;
+		private Throwable failure;
+
+		private Timeout(Callable<V> task, long deadline, long period) {
+			this.task = task;
+			this.deadline = deadline;
+			this.period = period;
+		}
+
+		@Override
+		public void run() {
+			if (!state.compareAndSet(TIMEOUT_PENDING, TIMEOUT_RUNNING)) {
+				return;
+			}
+			pending.decrementAndGet();
+			try {
+				V value = task.call();
+				if (period != 0) {
+					reschedule();
+				} else {
+					done(value, null);
+				}
+			} catch (Throwable t) {
+				LOGGER.log(Level.WARNING, "timer task failed:", t);
+				done(null, t);
+			}
+		}
+
+		private void reschedule() {
+			deadline = period > 0 ? add(deadline, period) : add(now(), -period);
+			if (state.compareAndSet(TIMEOUT_RUNNING, TIMEOUT_PENDING)) {
+				try {
+					add(this);
+				} catch (RejectedExecutionException ex) {
+					state.set(TIMEOUT_CANCELLED);
+				}
+			}
+		}
+
+		private synchronized void done(V value, Throwable t) {
+			result = value;
+			failure = t;
+			state.set(TIMEOUT_DONE);
+			notifyAll();
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			if (state.compareAndSet(TIMEOUT_PENDING, TIMEOUT_CANCELLED)) {
+				pending.decrementAndGet();
+				synchronized (this) {
+					notifyAll();
+				}
+				return true;
+			} else if (period != 0 && state.compareAndSet(TIMEOUT_RUNNING, TIMEOUT_CANCELLED)) {
+				// prevent a running periodic task from being rescheduled
+				synchronized (this) {
+					notifyAll();
+				}
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return state.get() == TIMEOUT_CANCELLED;
+		}
+
+		@Override
+		public boolean isDone() {
+			int current = state.get();
+			return current == TIMEOUT_CANCELLED || current == TIMEOUT_DONE;
+		}
+
+		@Override
+		public V get() throws InterruptedException, ExecutionException {
+			synchronized (this) {
+				while (!isDone()) {
+					wait();
+				}
+			}
+			return report();
+		}
+
+		@Override
+		public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+			long end = System.nanoTime() + unit.toNanos(timeout);
+			synchronized (this) {
+				while (!isDone()) {
+					long left = end - System.nanoTime();
+					if (left <= 0) {
+						throw new TimeoutException();
+					}
+					TimeUnit.NANOSECONDS.timedWait(this, left);
+				}
+			}
+			return report();
+		}
+
+		private synchronized V report() throws ExecutionException {
+			if (isCancelled()) {
+				throw new CancellationException();
+			}
+			if (failure != null) {
+				throw new ExecutionException(failure);
+			}
+			return result;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(deadline - now(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			if (other == this) {
+				return 0;
+			}
+			long diff = getDelay(TimeUnit.NANOSECONDS) - other.getDelay(TimeUnit.NANOSECONDS);
+			return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+		}
+	}
+}
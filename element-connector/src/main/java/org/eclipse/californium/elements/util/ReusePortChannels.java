@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.elements.util;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * A helper for binding several {@link DatagramChannel}s to the same local
+ * address using {@code SO_REUSEPORT}.
+ * <p>
+ * The kernel distributes the datagrams received on the address between the
+ * channels by the peer's address, so each channel may be read by its own
+ * thread without locking against the others. {@code SO_REUSEPORT} is
+ * available from Java 9 on and is looked up reflectively, so the helper can be
+ * used on the Java 7 target.
+ */
+public final class ReusePortChannels {
+
+	/**
+	 * {@code StandardSocketOptions.SO_REUSEPORT}, if supported by the JVM.
+	 */
+	private static final SocketOption<Boolean> SO_REUSEPORT = getReusePortOption();
+
+	private ReusePortChannels() {
+	}
+
+	/**
+	 * Checks, if the JVM supports {@code SO_REUSEPORT}.
+	 * <p>
+	 * The operating system may still not support it, which is reported by
+	 * {@link #open(InetSocketAddress, int)}.
+	 *
+	 * @return {@code true}, if the option is available
+	 */
+	public static boolean isSupported() {
+		return SO_REUSEPORT != null;
+	}
+
+	/**
+	 * Opens channels bound to the same address using {@code SO_REUSEPORT}.
+	 *
+	 * @param bindAddress the address to bind to. If its port is 0, the
+	 *            channels are bound to the port the system has chosen for the
+	 *            first channel.
+	 * @param count the number of channels
+	 * @return the bound channels in blocking mode
+	 * @throws IOException if {@code SO_REUSEPORT} is not supported or a
+	 *             channel could not be bound. The channels opened so far are
+	 *             closed then.
+	 */
+	public static DatagramChannel[] open(final InetSocketAddress bindAddress, final int count) throws IOException {
+		DatagramChannel[] result = new DatagramChannel[count];
+		InetSocketAddress address = bindAddress;
+		try {
+			for (int i = 0; i < count; ++i) {
+				result[i] = DatagramChannel.open();
+				if (SO_REUSEPORT == null || !result[i].supportedOptions().contains(SO_REUSEPORT)) {
+					throw new IOException("SO_REUSEPORT is not supported!");
+				}
+				result[i].setOption(SO_REUSEPORT, true);
+				result[i].bind(address);
+				if (i == 0) {
+					// if port is 0, bind the others to the port the system has chosen
+					address = new InetSocketAddress(bindAddress.getAddress(), result[0].socket().getLocalPort());
+				}
+			}
+		} catch (IOException ex) {
+			for (DatagramChannel opened : result) {
+				if (opened != null) {
+					opened.close();
+				}
+			}
+			throw ex;
+		}
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static SocketOption<Boolean> getReusePortOption() {
+		try {
+			return (SocketOption<Boolean>) StandardSocketOptions.class.getField("SO_REUSEPORT").get(null);
+		} catch (Exception ex) {
+			// not available before Java 9
+			return null;
+		}
+	}
+}
@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ * 
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ * 
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.elements;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies behavior of {@code UDPConnector}.
+ */
+public class UDPConnectorTest {
+
+	private static final int TIMEOUT_MILLIS = 2000;
+
+	private final LinkedBlockingQueue<RawData> incoming = new LinkedBlockingQueue<RawData>();
+
+	private UDPConnector connector;
+	private DatagramSocket peer;
+
+	@Before
+	public void setUp() throws Exception {
+		peer = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+		peer.setSoTimeout(TIMEOUT_MILLIS);
+	}
+
+	@After
+	public void tearDown() {
+		if (connector != null) {
+			connector.destroy();
+		}
+		peer.close();
+	}
+
+	@Test
+	public void testSocketModeExchangesData() throws Exception {
+		givenAStartedConnector(false);
+		assertExchangeData();
+	}
+
+	@Test
+	public void testDatagramChannelModeExchangesData() throws Exception {
+		givenAStartedConnector(true);
+		assertExchangeData();
+		// pooled buffers are reused for subsequent datagrams
+		assertExchangeData();
+	}
+
+	@Test
+	public void testReusePortModeRepliesToAllPeers() throws Exception {
+		UDPConnector connector = new UDPConnector(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		connector.setReusePortSocketCount(4);
+		try {
+			givenAStartedConnector(connector);
+		} catch (IOException ex) {
+			assumeTrue("SO_REUSEPORT not supported: " + ex.getMessage(), false);
+		}
+		assertExchangeData();
+
+		DatagramSocket otherPeer = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+		try {
+			otherPeer.setSoTimeout(TIMEOUT_MILLIS);
+			peer.close();
+			peer = otherPeer;
+			assertExchangeData();
+		} finally {
+			otherPeer.close();
+		}
+	}
+
+	@Test
+	public void testSendDropsMessagesExceedingOutboundCapacity() throws Exception {
+		connector = new UDPConnector(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		connector.setOutboundCapacity(2);
+		InetSocketAddress destination = (InetSocketAddress) peer.getLocalSocketAddress();
+		for (int i = 0; i < 5; i++) {
+			connector.send(new RawData(new byte[] { (byte) i }, destination));
+		}
+		assertThat(connector.getDroppedMessageCount(), is(3L));
+	}
+
+	@Test
+	public void testBlockingSendDropsMessagesWhenNotRunning() throws Exception {
+		connector = new UDPConnector(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		connector.setOutboundCapacity(1);
+		connector.setOverflowPolicy(UDPConnector.OverflowPolicy.BLOCK);
+		InetSocketAddress destination = (InetSocketAddress) peer.getLocalSocketAddress();
+		// the connector is not started, so the second message must not block forever
+		connector.send(new RawData(new byte[] { 0 }, destination));
+		connector.send(new RawData(new byte[] { 1 }, destination));
+		assertThat(connector.getDroppedMessageCount(), is(1L));
+	}
+
+	@Test
+	public void testSenderBatchesSendAllMessages() throws Exception {
+		int count = 20;
+		connector = new UDPConnector(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		connector.setSenderBatchSize(8);
+		// queue messages before start, so that the sender drains full batches
+		InetSocketAddress destination = (InetSocketAddress) peer.getLocalSocketAddress();
+		for (int i = 0; i < count; i++) {
+			connector.send(new RawData(new byte[] { (byte) i }, destination));
+		}
+		givenAStartedConnector(connector);
+
+		DatagramPacket packet = new DatagramPacket(new byte[64], 64);
+		for (int i = 0; i < count; i++) {
+			peer.receive(packet);
+			assertThat(packet.getLength(), is(1));
+			assertThat(packet.getData()[0], is((byte) i));
+		}
+		assertThat(connector.getDroppedMessageCount(), is(0L));
+	}
+
+	private void givenAStartedConnector(boolean useDatagramChannel) throws Exception {
+		UDPConnector connector = new UDPConnector(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		connector.setUseDatagramChannel(useDatagramChannel);
+		givenAStartedConnector(connector);
+	}
+
+	private void givenAStartedConnector(UDPConnector connector) throws Exception {
+		this.connector = connector;
+		connector.setRawDataReceiver(new RawDataChannel() {
+
+			@Override
+			public void receiveData(RawData raw) {
+				incoming.add(raw);
+			}
+		});
+		connector.start();
+	}
+
+	private void assertExchangeData() throws Exception {
+		byte[] request = "request".getBytes();
+		peer.send(new DatagramPacket(request, request.length, connector.getAddress()));
+
+		RawData received = incoming.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		assertThat(received, is(notNullValue()));
+		assertThat(received.bytes, is(request));
+		assertThat(received.getInetSocketAddress(), is(peer.getLocalSocketAddress()));
+
+		byte[] response = "response".getBytes();
+		connector.send(new RawData(response, received.getInetSocketAddress()));
+
+		DatagramPacket packet = new DatagramPacket(new byte[64], 64);
+		peer.receive(packet);
+		assertThat(Arrays.copyOf(packet.getData(), packet.getLength()), is(response));
+	}
+}
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ * 
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ * 
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.elements.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Verifies behavior of {@code ByteBufferPool}.
+ *
+ */
+public class ByteBufferPoolTest {
+
+	@Test
+	public void testAcquireReusesReleasedBuffer() {
+		ByteBufferPool pool = new ByteBufferPool(2, 64, true);
+		ByteBuffer buffer = pool.acquire();
+		assertTrue(buffer.isDirect());
+		assertThat(buffer.capacity(), is(64));
+		buffer.put((byte) 1);
+		pool.release(buffer);
+		assertThat(pool.available(), is(1));
+
+		ByteBuffer reused = pool.acquire();
+		assertThat(reused, is(sameInstance(buffer)));
+		assertThat(reused.position(), is(0));
+		assertThat(reused.remaining(), is(64));
+	}
+
+	@Test
+	public void testReleaseDropsBuffersExceedingCapacity() {
+		ByteBufferPool pool = new ByteBufferPool(1, 64, false);
+		ByteBuffer first = pool.acquire();
+		ByteBuffer second = pool.acquire();
+		assertThat(first, is(not(sameInstance(second))));
+		pool.release(first);
+		pool.release(second);
+		assertThat(pool.available(), is(1));
+	}
+
+	@Test
+	public void testReleaseIgnoresForeignBuffers() {
+		ByteBufferPool pool = new ByteBufferPool(2, 64, false);
+		pool.release(ByteBuffer.allocate(32));
+		pool.release(ByteBuffer.allocateDirect(64));
+		assertThat(pool.available(), is(0));
+	}
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ * 
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ * 
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.elements.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies behavior of {@code HashedWheelTimer}.
+ *
+ */
+public class HashedWheelTimerTest {
+
+	HashedWheelTimer timer;
+	ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newSingleThreadExecutor();
+		// small wheel, so that longer delays require several rounds
+		timer = new HashedWheelTimer("test", 5, TimeUnit.MILLISECONDS, 8, executor);
+	}
+
+	@After
+	public void tearDown() {
+		timer.shutdownNow();
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testScheduledTaskExpiresAfterDelay() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(1);
+		long start = System.nanoTime();
+		timer.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				latch.countDown();
+			}
+		}, 100, TimeUnit.MILLISECONDS);
+		assertThat(timer.getPendingTimeouts(), is(1));
+		assertTrue(latch.await(1, TimeUnit.SECONDS));
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+		assertThat(timer.getPendingTimeouts(), is(0));
+	}
+
+	@Test
+	public void testScheduledCallableProvidesResult() throws Exception {
+		ScheduledFuture<String> future = timer.schedule(new Callable<String>() {
+
+			@Override
+			public String call() throws Exception {
+				return "done";
+			}
+		}, 10, TimeUnit.MILLISECONDS);
+		assertThat(future.get(1, TimeUnit.SECONDS), is("done"));
+		assertTrue(future.isDone());
+	}
+
+	@Test
+	public void testCancelledTaskIsNotExecuted() throws Exception {
+		final AtomicInteger counter = new AtomicInteger();
+		ScheduledFuture<?> future = timer.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				counter.incrementAndGet();
+			}
+		}, 50, TimeUnit.MILLISECONDS);
+		assertTrue(future.cancel(false));
+		assertTrue(future.isCancelled());
+		assertFalse(future.cancel(false));
+		assertThat(timer.getPendingTimeouts(), is(0));
+		Thread.sleep(150);
+		assertThat(counter.get(), is(0));
+	}
+
+	@Test
+	public void testFixedRateTaskIsRepeated() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(3);
+		ScheduledFuture<?> future = timer.scheduleAtFixedRate(new Runnable() {
+
+			@Override
+			public void run() {
+				latch.countDown();
+			}
+		}, 10, 20, TimeUnit.MILLISECONDS);
+		assertTrue(latch.await(1, TimeUnit.SECONDS));
+		assertTrue(future.cancel(false));
+	}
+
+	@Test
+	public void testShutdownNowReturnsPendingTasks() throws Exception {
+		timer.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+			}
+		}, 1, TimeUnit.HOURS);
+		assertThat(timer.shutdownNow().size(), is(1));
+		assertTrue(timer.isShutdown());
+		assertTrue(timer.awaitTermination(1, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testShutdownKeepsTaskExecutorRunning() throws Exception {
+		timer.shutdown();
+		assertTrue(timer.awaitTermination(1, TimeUnit.SECONDS));
+		assertFalse(executor.isShutdown());
+	}
+
+	@Test
+	public void testHugeDelaysDoNotExpire() throws Exception {
+		final AtomicInteger counter = new AtomicInteger();
+		Runnable task = new Runnable() {
+
+			@Override
+			public void run() {
+				counter.incrementAndGet();
+			}
+		};
+		ScheduledFuture<?> maxNanos = timer.schedule(task, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		ScheduledFuture<?> maxDays = timer.schedule(task, Long.MAX_VALUE, TimeUnit.DAYS);
+		ScheduledFuture<?> maxDelay = timer.scheduleWithFixedDelay(task, 1, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		Thread.sleep(100);
+		assertThat(counter.get(), is(1));
+		assertFalse(maxNanos.isDone());
+		assertFalse(maxDays.isDone());
+		assertFalse(maxDelay.isDone());
+		assertTrue(maxNanos.getDelay(TimeUnit.DAYS) > 0);
+		assertTrue(maxDays.getDelay(TimeUnit.DAYS) > 0);
+	}
+}
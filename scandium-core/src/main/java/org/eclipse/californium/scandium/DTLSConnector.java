@@ -53,6 +53,18 @@
  *                                                    if bindAddress determines a port
  *    Achim Kraus (Bosch Software Innovations GmbH) - change receiver thread to
  *                                                    daemon
+ *    Bosch Software Innovations GmbH - support shared retransmission timer
+ *    Bosch Software Innovations GmbH - use multiple receiver threads with
+ *                                      reusable datagram buffers
+ *    Bosch Software Innovations GmbH - resume handshakes suspended by asynchronous
+ *                                      PSK lookups
+ *    Bosch Software Innovations GmbH - generate HELLO_VERIFY_REQUEST cookies using
+ *                                      CookieGenerator
+ *    Bosch Software Innovations GmbH - limit concurrent handshakes by means of a
+ *                                      HandshakeAdmissionController
+ *    Bosch Software Innovations GmbH - take ephemeral ECDH keys from a pool
+ *    Bosch Software Innovations GmbH - use SecureRandom provider from config
+ *    Bosch Software Innovations GmbH - cache validated certificate chains
  ******************************************************************************/
 package org.eclipse.californium.scandium;
 
@@ -62,12 +74,12 @@ import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
 import java.net.NetworkInterface;
 import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.DatagramChannel;
 import java.security.GeneralSecurityException;
-import java.security.SecureRandom;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -76,9 +88,6 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.crypto.Mac;
-import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.californium.elements.Connector;
@@ -88,21 +97,23 @@ import org.eclipse.californium.elements.RawData;
 import org.eclipse.californium.elements.RawDataChannel;
 import org.eclipse.californium.elements.util.DaemonThreadFactory;
 import org.eclipse.californium.elements.util.NamedThreadFactory;
+import org.eclipse.californium.elements.util.ReusePortChannels;
 import org.eclipse.californium.scandium.config.DtlsConnectorConfig;
 import org.eclipse.californium.scandium.dtls.AlertMessage;
 import org.eclipse.californium.scandium.dtls.AlertMessage.AlertDescription;
 import org.eclipse.californium.scandium.dtls.AlertMessage.AlertLevel;
 import org.eclipse.californium.scandium.dtls.ApplicationMessage;
+import org.eclipse.californium.scandium.dtls.CachingCertPathValidator;
 import org.eclipse.californium.scandium.dtls.ClientHandshaker;
 import org.eclipse.californium.scandium.dtls.ClientHello;
-import org.eclipse.californium.scandium.dtls.CompressionMethod;
+import org.eclipse.californium.scandium.dtls.CookieGenerator;
 import org.eclipse.californium.scandium.dtls.Connection;
 import org.eclipse.californium.scandium.dtls.ContentType;
 import org.eclipse.californium.scandium.dtls.DTLSFlight;
 import org.eclipse.californium.scandium.dtls.DTLSSession;
-import org.eclipse.californium.scandium.dtls.DtlsHandshakeException;
 import org.eclipse.californium.scandium.dtls.HandshakeException;
 import org.eclipse.californium.scandium.dtls.HandshakeMessage;
+import org.eclipse.californium.scandium.dtls.HandshakeResumer;
 import org.eclipse.californium.scandium.dtls.HandshakeType;
 import org.eclipse.californium.scandium.dtls.Handshaker;
 import org.eclipse.californium.scandium.dtls.HelloRequest;
@@ -121,6 +132,11 @@ import org.eclipse.californium.scandium.dtls.SessionCache;
 import org.eclipse.californium.scandium.dtls.SessionListener;
 import org.eclipse.californium.scandium.dtls.SessionTicket;
 import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
+import org.eclipse.californium.scandium.dtls.cipher.CipherSuite.KeyExchangeAlgorithm;
+import org.eclipse.californium.scandium.dtls.cipher.ECDHECryptography.SupportedGroup;
+import org.eclipse.californium.scandium.dtls.cipher.EphemeralKeyPool;
+import org.eclipse.californium.scandium.dtls.pskstore.AsyncPskStore;
+import org.eclipse.californium.scandium.dtls.pskstore.BoundedPskStore;
 import org.eclipse.californium.scandium.util.ByteArrayUtils;
 
 import eu.javaspecialists.tjsn.concurrency.stripedexecutor.StripedExecutorService;
@@ -166,20 +182,28 @@ public class DTLSConnector implements Connector {
 	private int maximumTransmissionUnit = 1280; // min. IPv6 MTU
 	private int inboundDatagramBufferSize = MAX_DATAGRAM_BUFFER_SIZE;
 
-	// guard access to cookieMacKey
-	private Object cookieMacKeyLock = new Object();
-	// last time when the master key was generated
-	private long lastGenerationDate = System.currentTimeMillis();
-	private SecretKey cookieMacKey = new SecretKeySpec(randomBytes(), "MAC");
+	// guard access to errorHandler
+	private Object errorHandlerLock = new Object();
+	private final CookieGenerator cookieGenerator;
+	private final HandshakeAdmissionController admissionController;
+	private final CachingCertPathValidator certPathValidator;
+	private EphemeralKeyPool ephemeralKeyPool;
 
 	private DatagramSocket socket;
 
+	/**
+	 * The channels bound to the same port using {@code SO_REUSEPORT}, one per
+	 * receiver thread, or {@code null}, if all receivers share the socket.
+	 */
+	private DatagramChannel[] channels;
+
 	/** The timer daemon to schedule retransmissions. */
 	//private Timer timer;
 	private ScheduledExecutorService timer;
+	private boolean hasInternalTimer;
 
-	/** The thread that receives messages */
-	private Worker receiver;
+	/** The threads that receive messages */
+	private final List<Worker> receivers = new ArrayList<>();
 
 	/** Indicates whether the connector has started and not stopped yet */
 	private AtomicBoolean running = new AtomicBoolean(false);
@@ -190,6 +214,18 @@ public class DTLSConnector implements Connector {
 	private StripedExecutorService executor;
 	private boolean hasInternalExecutor;
 
+	/** The store to look up PSKs asynchronously, limited by the configuration. */
+	private AsyncPskStore asyncPskStore;
+
+	/** Continues handshakes suspended by asynchronous operations on the striped executor. */
+	private final HandshakeResumer handshakeResumer = new HandshakeResumer() {
+
+		@Override
+		public void resume(final Handshaker handshaker) {
+			resumeHandshake(handshaker);
+		}
+	};
+
 	/**
 	 * Creates a DTLS connector from a given configuration object
 	 * using the standard in-memory <code>ConnectionStore</code>. 
@@ -239,9 +275,26 @@ public class DTLSConnector implements Connector {
 			this.pendingOutboundMessages.set(config.getOutboundMessageBufferSize());
 			this.connectionStore = connectionStore;
 			this.sessionCacheSynchronization = (SessionListener) this.connectionStore;
+			this.cookieGenerator = new CookieGenerator(CookieGenerator.DEFAULT_SECRET_LIFETIME_MILLIS,
+					TimeUnit.MILLISECONDS, config.getSecureRandomProvider());
+			this.admissionController = new HandshakeAdmissionController(config.getMaxConcurrentHandshakes(),
+					config.getMaxConcurrentFullHandshakes(), config.getMaxQueuedHandshakes(),
+					config.getHandshakeRateLimit(), getHandshakeLeaseMillis(config));
+			this.certPathValidator = new CachingCertPathValidator(config.getTrustStore(),
+					config.getCertificateValidationCacheSize(), config.getCertificateValidationCacheTtl(),
+					TimeUnit.MILLISECONDS);
 		}
 	}
 
+	/**
+	 * Gets the time a handshake may take before its peer is considered gone,
+	 * i.e. the time needed for all retransmissions of a flight.
+	 */
+	private static long getHandshakeLeaseMillis(final DtlsConnectorConfig config) {
+		int retransmissions = Math.min(config.getMaxRetransmissions(), 16);
+		return config.getRetransmissionTimeout() * ((2L << retransmissions) - 1);
+	}
+
 	/**
 	 * Sets the executor to use for processing records.
 	 * <p>
@@ -267,6 +320,30 @@ public class DTLSConnector implements Connector {
 		}
 	}
 
+	/**
+	 * Sets the timer to schedule retransmissions of flights.
+	 * <p>
+	 * If this property is not set before invoking the {@linkplain #start() start method},
+	 * a new single threaded {@link ScheduledExecutorService} is created.
+	 * <p>
+	 * This allows to share a timer, e.g. a
+	 * {@link org.eclipse.californium.elements.util.HashedWheelTimer}, with the
+	 * layers of a CoAP endpoint. If this method is used to set a timer, the timer
+	 * will <em>not</em> be shut down by the {@linkplain #stop() stop method}.
+	 * 
+	 * @param timer The timer.
+	 * @throws IllegalStateException if his connector is already running.
+	 */
+	public final synchronized void setTimer(ScheduledExecutorService timer) {
+
+		if (running.get()) {
+			throw new IllegalStateException("cannot set timer while connector is running");
+		} else {
+			this.timer = timer;
+			this.hasInternalTimer = false;
+		}
+	}
+
 	/**
 	 * Closes a connection with a given peer.
 	 * 
@@ -309,6 +386,15 @@ public class DTLSConnector implements Connector {
 		}
 	}
 
+	private boolean isEcdheSupported() {
+		for (CipherSuite cipherSuite : config.getSupportedCipherSuites()) {
+			if (cipherSuite.getKeyExchange() == KeyExchangeAlgorithm.EC_DIFFIE_HELLMAN) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private void start(final InetSocketAddress bindAddress) throws IOException {
 
 		if (running.get()) {
@@ -317,25 +403,46 @@ public class DTLSConnector implements Connector {
 
 		pendingOutboundMessages.set(config.getOutboundMessageBufferSize());
 
-		timer = Executors.newSingleThreadScheduledExecutor(
-				new DaemonThreadFactory("DTLS RetransmitTask-", NamedThreadFactory.SCANDIUM_THREAD_GROUP));
+		if (timer == null) {
+			// create a new one, the internal timer is shut down on stop
+			timer = Executors.newSingleThreadScheduledExecutor(
+					new DaemonThreadFactory("DTLS RetransmitTask-", NamedThreadFactory.SCANDIUM_THREAD_GROUP));
+			this.hasInternalTimer = true;
+		}
 
 		if (executor == null) {
 			// use a decently sized thread pool
 			executor = new StripedExecutorService(DEFAULT_EXECUTOR_THREAD_POOL_SIZE);
 			this.hasInternalExecutor = true;
 		}
-		socket = new DatagramSocket(null);
-		if (bindAddress.getPort() != 0 && config.isAddressReuseEnabled()) {
-			// make it easier to stop/start a server consecutively without delays
-			LOGGER.config("Enable address reuse for socket!");
-			socket.setReuseAddress(true);
-			if (!socket.getReuseAddress()) {
-				LOGGER.warning("Enable address reuse for socket failed!");
+		if (config.getAsyncPskStore() != null) {
+			asyncPskStore = new BoundedPskStore(config.getAsyncPskStore(), timer, config.getPskLookupTimeout(),
+					config.getMaxPendingPskLookups());
+		}
+		if (config.getEphemeralKeyPoolDepth() > 0 && isEcdheSupported()) {
+			ephemeralKeyPool = new EphemeralKeyPool(SupportedGroup.getPreferredGroups(),
+					config.getEphemeralKeyPoolDepth(), config.getEphemeralKeyPoolThreads(),
+					config.getSecureRandomProvider());
+			ephemeralKeyPool.start();
+		}
+		int receiverThreadCount = config.getReceiverThreadCount();
+		if (receiverThreadCount > 1 && ReusePortChannels.isSupported()) {
+			// a socket per receiver, so the receivers don't lock each other
+			channels = ReusePortChannels.open(bindAddress, receiverThreadCount);
+			socket = channels[0].socket();
+		} else {
+			socket = new DatagramSocket(null);
+			if (bindAddress.getPort() != 0 && config.isAddressReuseEnabled()) {
+				// make it easier to stop/start a server consecutively without delays
+				LOGGER.config("Enable address reuse for socket!");
+				socket.setReuseAddress(true);
+				if (!socket.getReuseAddress()) {
+					LOGGER.warning("Enable address reuse for socket failed!");
+				}
 			}
+
+			socket.bind(bindAddress);
 		}
-		
-		socket.bind(bindAddress);
 		if (lastBindAddress != null && (!socket.getLocalAddress().equals(lastBindAddress.getAddress()) || socket.getLocalPort() != lastBindAddress.getPort())){
 			if (connectionStore instanceof ResumptionSupportingConnectionStore) {
 				((ResumptionSupportingConnectionStore) connectionStore).markAllAsResumptionRequired();
@@ -363,18 +470,29 @@ public class DTLSConnector implements Connector {
 		lastBindAddress = new InetSocketAddress(socket.getLocalAddress(), socket.getLocalPort());
 		running.set(true);
 
-		receiver = new Worker("DTLS-Receiver-" + lastBindAddress) {
+		for (int i = 0; i < receiverThreadCount; i++) {
+			final DatagramSocket receiverSocket = channels == null ? socket : channels[i].socket();
+			Worker receiver = new Worker("DTLS-Receiver-" + i + "-" + lastBindAddress) {
+
+				private final byte[] buffer = new byte[inboundDatagramBufferSize];
+				private final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+
 				@Override
 				public void doWork() throws Exception {
-					receiveNextDatagramFromNetwork();
+					// reset the length, receive shrinks it to the length of the datagram
+					packet.setLength(buffer.length);
+					receiveNextDatagramFromNetwork(receiverSocket, packet);
 				}
 			};
-		receiver.setDaemon(true);
-		receiver.start();
+			receiver.setDaemon(true);
+			receiver.start();
+			receivers.add(receiver);
+		}
 		LOGGER.log(
 				Level.INFO,
-				"DTLS connector listening on [{0}] with MTU [{1}] using (inbound) datagram buffer size [{2} bytes]",
-				new Object[]{lastBindAddress, maximumTransmissionUnit, inboundDatagramBufferSize});
+				"DTLS connector listening on [{0}] with MTU [{1}] using (inbound) datagram buffer size [{2} bytes] and [{3}] receiver threads on [{4}] sockets",
+				new Object[]{lastBindAddress, maximumTransmissionUnit, inboundDatagramBufferSize, receiverThreadCount,
+						channels == null ? 1 : channels.length});
 	}
 
 	/**
@@ -420,6 +538,22 @@ public class DTLSConnector implements Connector {
 			socket.close();
 			socket = null;
 		}
+		if (channels != null) {
+			for (DatagramChannel channel : channels) {
+				try {
+					channel.close();
+				} catch (IOException ex) {
+					LOGGER.log(Level.FINE, "Closing channel failed: {0}", ex.getMessage());
+				}
+			}
+			channels = null;
+		}
+		// the receivers terminate, when the sockets are closed
+		for (Worker receiver : receivers) {
+			// don't let a receiver of a closed socket survive a restart
+			receiver.interrupt();
+		}
+		receivers.clear();
 		maximumTransmissionUnit = 0;
 	}
 
@@ -431,12 +565,20 @@ public class DTLSConnector implements Connector {
 	public final synchronized void stop() {
 		if (running.get()) {
 			LOGGER.log(Level.INFO, "Stopping DTLS connector on [{0}]", lastBindAddress);
-			timer.shutdownNow();
+			if (hasInternalTimer) {
+				timer.shutdownNow();
+				timer = null;
+				hasInternalTimer = false;
+			}
 			if (hasInternalExecutor) {
 				executor.shutdownNow();
 				executor = null;
 				hasInternalExecutor = false;
 			}
+			if (ephemeralKeyPool != null) {
+				ephemeralKeyPool.stop();
+				ephemeralKeyPool = null;
+			}
 			releaseSocket();
 		}
 	}
@@ -457,19 +599,25 @@ public class DTLSConnector implements Connector {
 		connectionStore.clear();
 	}
 
-	private void receiveNextDatagramFromNetwork() throws IOException {
+	/**
+	 * Receives the next datagram and dispatches its records.
+	 * 
+	 * @param socket the receiving thread's socket. Shared by all receivers,
+	 *            if {@code SO_REUSEPORT} is not used.
+	 * @param packet the receiving thread's packet. Its buffer is reused for
+	 *            the next datagram, when this method returns.
+	 * @throws IOException if receiving fails
+	 */
+	private void receiveNextDatagramFromNetwork(final DatagramSocket socket, final DatagramPacket packet)
+			throws IOException {
 
-		byte[] buffer = new byte[inboundDatagramBufferSize];
-		DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-		DatagramSocket socket = getSocket();
-		if (socket == null) {
+		if (getSocket() == null) {
 			// very unlikely race condition.
 			return;
 		}
-		
-		synchronized(socket) {
-			socket.receive(packet);
-		}
+
+		// a shared socket serializes concurrent receivers itself
+		socket.receive(packet);
 
 		if (packet.getLength() == 0) {
 			// nothing to do
@@ -477,8 +625,8 @@ public class DTLSConnector implements Connector {
 		}
 		InetSocketAddress peerAddress = new InetSocketAddress(packet.getAddress(), packet.getPort());
 
-		byte[] data = Arrays.copyOfRange(packet.getData(), packet.getOffset(), packet.getLength());
-		List<Record> records = Record.fromByteArray(data, peerAddress);
+		// the records copy their fragments, so the buffer may be reused
+		List<Record> records = Record.fromByteArray(packet.getData(), packet.getOffset(), packet.getLength(), peerAddress);
 		LOGGER.log(Level.FINER, "Received {0} DTLS records using a {1} byte datagram buffer",
 				new Object[]{records.size(), inboundDatagramBufferSize});
 
@@ -582,6 +730,7 @@ public class DTLSConnector implements Connector {
 					"Aborting handshake with peer [{0}]: {1}",
 					new Object[]{peerAddress, cause.getMessage()});
 			}
+			admissionController.release(connection.getOngoingHandshake());
 			DTLSSession session = connection.getOngoingHandshake().getSession();
 			AlertMessage alert = new AlertMessage(AlertLevel.FATAL, description, peerAddress);
 			if (!connection.hasEstablishedSession()) {
@@ -602,6 +751,9 @@ public class DTLSConnector implements Connector {
 
 	private void terminateConnection(Connection connection) {
 		if (connection != null) {
+			if (connection.hasOngoingHandshake()) {
+				admissionController.release(connection.getOngoingHandshake());
+			}
 			connection.cancelPendingFlight();
 			// clear session & (pending) handshaker
 			connectionClosed(connection.getPeerAddress());
@@ -772,7 +924,7 @@ public class DTLSConnector implements Connector {
 				// non-fatal alerts do not require any special handling
 			}
 
-			synchronized (cookieMacKeyLock) {
+			synchronized (errorHandlerLock) {
 				if (errorHandler != null) {
 					errorHandler.onError(alert.getPeer(), alert.getLevel(), alert.getDescription());
 				}
@@ -939,6 +1091,7 @@ public class DTLSConnector implements Connector {
 			}
 			Handshaker handshaker = new ClientHandshaker(session, getRecordLayerForPeer(connection), connection,
 					config, maximumTransmissionUnit);
+			handshaker.setCertPathValidator(certPathValidator);
 			addSessionCacheSynchronization(handshaker);
 			handshaker.startHandshake();
 		}
@@ -969,7 +1122,7 @@ public class DTLSConnector implements Connector {
 			} else {
 				// At this point the client has demonstrated reachability by completing a cookie exchange
 				// so we start a new handshake (see section 4.2.8 of RFC 6347 (DTLS 1.2))
-				startNewHandshake(clientHello, record);
+				startNewHandshake(clientHello, record, null);
 			}
 		}
 	}
@@ -1006,8 +1159,7 @@ public class DTLSConnector implements Connector {
 				// At this point the client has demonstrated reachability by completing a cookie exchange
 				// so we terminate the previous connection and start a new handshake
 				// (see section 4.2.8 of RFC 6347 (DTLS 1.2))
-				terminateConnection(connection);
-				startNewHandshake(clientHello, record);
+				startNewHandshake(clientHello, record, connection);
 			}
 		}
 	}
@@ -1022,8 +1174,7 @@ public class DTLSConnector implements Connector {
 	 * in its client hello message.
 	 * <p>
 	 * The check is done by means of comparing the cookie contained in the client hello
-	 * message with the cookie computed for the request using the <code>generateCookie</code>
-	 * method.
+	 * message with the cookie computed for the request by the {@link CookieGenerator}.
 	 * </p>
 	 * <p>This method sends a <em>HELLO_VERIFY_REQUEST</em> to the peer if the cookie contained
 	 * in <code>clientHello</code> does not match the expected cookie.
@@ -1038,11 +1189,10 @@ public class DTLSConnector implements Connector {
 		// verify client's ability to respond on given IP address
 		// by exchanging a cookie as described in section 4.2.1 of the DTLS 1.2 spec
 		// see http://tools.ietf.org/html/rfc6347#section-4.2.1
-		byte[] expectedCookie = generateCookie(clientHello);
-		if (Arrays.equals(expectedCookie, clientHello.getCookie())) {
+		if (cookieGenerator.isValidCookie(clientHello)) {
 			return true;
 		} else {
-			sendHelloVerify(clientHello, record, expectedCookie);
+			sendHelloVerify(clientHello, record, cookieGenerator.generateCookie(clientHello));
 			return false;
 		}
 	}
@@ -1051,24 +1201,157 @@ public class DTLSConnector implements Connector {
 	 * 
 	 * @param clientHello
 	 * @param record
+	 * @param previousConnection the connection to terminate once the handshake
+	 *           has been admitted, may be {@code null}
 	 * @throws HandshakeException if the parameters provided in the client hello message
 	 *           cannot be used to start a handshake with the peer
 	 */
-	private void startNewHandshake(final ClientHello clientHello, final Record record) throws HandshakeException {
+	private void startNewHandshake(final ClientHello clientHello, final Record record,
+			final Connection previousConnection) throws HandshakeException {
 		Connection peerConnection = new Connection(record.getPeerAddress());
-		connectionStore.put(peerConnection);
 
 		// use the record sequence number from CLIENT_HELLO as initial sequence number
 		// for records sent to the client (see section 4.2.1 of RFC 6347 (DTLS 1.2))
 		DTLSSession newSession = new DTLSSession(record.getPeerAddress(), false, record.getSequenceNumber());
 		// initialize handshaker based on CLIENT_HELLO (this accounts
 		// for the case that multiple cookie exchanges have taken place)
-		Handshaker handshaker = new ServerHandshaker(clientHello.getMessageSeq(), newSession,
+		ServerHandshaker handshaker = new ServerHandshaker(clientHello.getMessageSeq(), newSession,
 				getRecordLayerForPeer(peerConnection), peerConnection, config, maximumTransmissionUnit);
+		if (!admissionController.admit(handshaker, false, newClientHelloRetry(clientHello, record))) {
+			LOGGER.log(Level.FINE, "Deferring handshake with peer [{0}], too many handshakes in progress",
+					record.getPeerAddress());
+			return;
+		}
+		if (previousConnection != null) {
+			terminateConnection(previousConnection);
+		}
+		connectionStore.put(peerConnection);
+
+		if (asyncPskStore != null) {
+			handshaker.setAsyncPskStore(asyncPskStore, handshakeResumer);
+		}
+		handshaker.setEphemeralKeyPool(ephemeralKeyPool);
+		handshaker.setCertPathValidator(certPathValidator);
 		addSessionCacheSynchronization(handshaker);
 		handshaker.processMessage(record);
 	}
 
+	/**
+	 * Schedules the resumption of a suspended handshake on the executor
+	 * processing the records of the handshake's peer.
+	 * 
+	 * @param handshaker the suspended handshaker
+	 */
+	private void resumeHandshake(final Handshaker handshaker) {
+		StripedExecutorService currentExecutor = executor;
+		if (currentExecutor == null || !running.get()) {
+			LOGGER.log(Level.FINE, "Connector stopped, dropping suspended handshake with peer [{0}]",
+					handshaker.getPeerAddress());
+			return;
+		}
+		try {
+			currentExecutor.execute(new StripedRunnable() {
+
+				@Override
+				public Object getStripe() {
+					return handshaker.getPeerAddress();
+				}
+
+				@Override
+				public void run() {
+					processResumedHandshake(handshaker);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			LOGGER.log(Level.FINE, "Executor shut down, dropping suspended handshake with peer [{0}]",
+					handshaker.getPeerAddress());
+		}
+	}
+
+	private void processResumedHandshake(final Handshaker handshaker) {
+		InetSocketAddress peerAddress = handshaker.getPeerAddress();
+		Connection connection = connectionStore.get(peerAddress);
+		if (connection == null || connection.getOngoingHandshake() != handshaker) {
+			LOGGER.log(Level.FINE, "Discarding resumption of abandoned handshake with peer [{0}]", peerAddress);
+			return;
+		}
+		try {
+			handshaker.resume();
+		} catch (HandshakeException e) {
+			if (AlertLevel.FATAL.equals(e.getAlert().getLevel())) {
+				terminateOngoingHandshake(peerAddress, e, e.getAlert().getDescription());
+			} else {
+				LOGGER.log(Level.FINE, "Error resuming handshake with peer [{0}]: {1}",
+						new Object[]{peerAddress, e.getMessage()});
+			}
+		} catch (RuntimeException e) {
+			LOGGER.log(
+				Level.INFO,
+				String.format("Unexpected error occurred while resuming handshake with peer [%s]", peerAddress),
+				e);
+			terminateConnection(peerAddress, e, AlertLevel.FATAL, AlertDescription.INTERNAL_ERROR);
+		}
+	}
+
+	/**
+	 * Creates the task to retry a handshake queued by the admission controller.
+	 * <p>
+	 * The task processes the client hello again on the executor processing the
+	 * records of the client.
+	 * 
+	 * @param clientHello the client hello to process
+	 * @param record the record containing the client hello
+	 * @return the task
+	 */
+	private Runnable newClientHelloRetry(final ClientHello clientHello, final Record record) {
+		return new Runnable() {
+
+			@Override
+			public void run() {
+				final InetSocketAddress peerAddress = record.getPeerAddress();
+				StripedExecutorService currentExecutor = executor;
+				if (currentExecutor == null || !running.get()) {
+					admissionController.cancelReservation(peerAddress);
+					return;
+				}
+				try {
+					currentExecutor.execute(new StripedRunnable() {
+
+						@Override
+						public Object getStripe() {
+							return peerAddress;
+						}
+
+						@Override
+						public void run() {
+							processQueuedClientHello(clientHello, record);
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					admissionController.cancelReservation(peerAddress);
+				}
+			}
+		};
+	}
+
+	private void processQueuedClientHello(final ClientHello clientHello, final Record record) {
+		InetSocketAddress peerAddress = record.getPeerAddress();
+		LOGGER.log(Level.FINE, "Retrying deferred handshake with peer [{0}]", peerAddress);
+		try {
+			Connection connection = connectionStore.get(peerAddress);
+			if (connection == null) {
+				processClientHello(clientHello, record);
+			} else {
+				processClientHello(clientHello, record, connection);
+			}
+		} catch (HandshakeException e) {
+			handleExceptionDuringHandshake(e, e.getAlert().getLevel(), e.getAlert().getDescription(), record);
+		} finally {
+			// release the slot, if the handshake has not been started after all
+			admissionController.cancelReservation(peerAddress);
+		}
+	}
+
 	/**
 	 * 
 	 * @param clientHello
@@ -1097,6 +1380,11 @@ public class DTLSConnector implements Connector {
 
 			final Handshaker handshaker = new ResumingServerHandshaker(clientHello.getMessageSeq(), sessionToResume,
 					getRecordLayerForPeer(peerConnection), peerConnection, config, maximumTransmissionUnit);
+			if (!admissionController.admit(handshaker, true, newClientHelloRetry(clientHello, record))) {
+				LOGGER.log(Level.FINE, "Deferring session resumption by peer [{0}], too many handshakes in progress",
+						record.getPeerAddress());
+				return;
+			}
 			addSessionCacheSynchronization(handshaker);
 
 			if (previousConnection.hasEstablishedSession()) {
@@ -1136,8 +1424,7 @@ public class DTLSConnector implements Connector {
 				Level.FINER,
 				"Client [{0}] tries to resume non-existing session [ID={1}], performing full handshake instead ...",
 				new Object[]{clientHello.getPeer(), clientHello.getSessionId()});
-			terminateConnection(clientHello.getPeer());
-			startNewHandshake(clientHello, record);
+			startNewHandshake(clientHello, record, connectionStore.get(clientHello.getPeer()));
 		}
 	}
 
@@ -1158,60 +1445,6 @@ public class DTLSConnector implements Connector {
 		sendRecord(helloVerify);
 	}
 
-	private SecretKey getMacKeyForCookies() {
-		synchronized (cookieMacKeyLock) {
-			// if the last generation was more than 5 minute ago, let's generate
-			// a new key
-			if (System.currentTimeMillis() - lastGenerationDate > TimeUnit.MINUTES.toMillis(5)) {
-				cookieMacKey = new SecretKeySpec(randomBytes(), "MAC");
-				lastGenerationDate = System.currentTimeMillis();
-			}
-			return cookieMacKey;
-		}
-
-	}
-
-	/**
-	 * Generates a cookie in such a way that they can be verified without
-	 * retaining any per-client state on the server.
-	 * 
-	 * <pre>
-	 * Cookie = HMAC(Secret, Client - IP, Client - Parameters)
-	 * </pre>
-	 * 
-	 * as suggested <a
-	 * href="http://tools.ietf.org/html/rfc6347#section-4.2.1">here</a>.
-	 * 
-	 * @return the cookie generated from the client's parameters
-	 * @throws DtlsHandshakeException if the cookie cannot be computed
-	 */
-	private byte[] generateCookie(ClientHello clientHello) {
-
-		try {
-			// Cookie = HMAC(Secret, Client-IP, Client-Parameters)
-			Mac hmac = Mac.getInstance("HmacSHA256");
-			hmac.init(getMacKeyForCookies());
-			// Client-IP
-			hmac.update(clientHello.getPeer().toString().getBytes());
-
-			// Client-Parameters
-			hmac.update((byte) clientHello.getClientVersion().getMajor());
-			hmac.update((byte) clientHello.getClientVersion().getMinor());
-			hmac.update(clientHello.getRandom().getRandomBytes());
-			hmac.update(clientHello.getSessionId().getId());
-			hmac.update(CipherSuite.listToByteArray(clientHello.getCipherSuites()));
-			hmac.update(CompressionMethod.listToByteArray(clientHello.getCompressionMethods()));
-			return hmac.doFinal();
-		} catch (GeneralSecurityException e) {
-			throw new DtlsHandshakeException(
-					"Cannot compute cookie for peer",
-					AlertDescription.INTERNAL_ERROR,
-					AlertLevel.FATAL,
-					clientHello.getPeer(),
-					e);
-		}
-	}
-
 	void send(AlertMessage alert, DTLSSession session) {
 		if (alert == null) {
 			throw new IllegalArgumentException("Alert must not be NULL");
@@ -1306,6 +1539,7 @@ public class DTLSConnector implements Connector {
 			// start handshake
 			Handshaker handshaker = new ClientHandshaker(new DTLSSession(peerAddress, true),
 					getRecordLayerForPeer(connection), connection, config, maximumTransmissionUnit);
+			handshaker.setCertPathValidator(certPathValidator);
 			addSessionCacheSynchronization(handshaker);
 			handshaker.addSessionListener(newDeferredMessageSender(message));
 			handshaker.startHandshake();
@@ -1331,6 +1565,7 @@ public class DTLSConnector implements Connector {
 				handshaker = new ResumingClientHandshaker(resumableSession, getRecordLayerForPeer(newConnection),
 						newConnection, config, maximumTransmissionUnit);
 			}
+			handshaker.setCertPathValidator(certPathValidator);
 			addSessionCacheSynchronization(handshaker);
 			handshaker.addSessionListener(newDeferredMessageSender(message));
 			handshaker.startHandshake();
@@ -1601,6 +1836,30 @@ public class DTLSConnector implements Connector {
 		}
 	}
 
+	/**
+	 * Gets the controller limiting the handshakes with clients.
+	 * <p>
+	 * The controller provides statistics about the handshakes in progress,
+	 * queued and rejected.
+	 * 
+	 * @return the controller
+	 */
+	public final HandshakeAdmissionController getHandshakeAdmissionController() {
+		return admissionController;
+	}
+
+	/**
+	 * Gets the validator of the X.509 certificate chains presented by peers.
+	 * <p>
+	 * The validator provides statistics about the chains accepted from its
+	 * cache and the chains validated during the handshake.
+	 * 
+	 * @return the validator
+	 */
+	public final CachingCertPathValidator getCertPathValidator() {
+		return certPathValidator;
+	}
+
 	/**
 	 * Checks if this connector is running.
 	 * 
@@ -1670,7 +1929,7 @@ public class DTLSConnector implements Connector {
 		public void run() {
 			try {
 				LOGGER.log(Level.CONFIG, "Starting worker thread [{0}]", getName());
-				while (running.get()) {
+				while (running.get() && !isInterrupted()) {
 					try {
 						doWork();
 					} catch (ClosedByInterruptException e) {
@@ -1710,7 +1969,7 @@ public class DTLSConnector implements Connector {
 	 * @param errorHandler the handler to invoke
 	 */
 	public final void setErrorHandler(final ErrorHandler errorHandler) {
-		synchronized (cookieMacKeyLock) {
+		synchronized (errorHandlerLock) {
 			this.errorHandler = errorHandler;
 		}
 	}
@@ -1721,14 +1980,6 @@ public class DTLSConnector implements Connector {
 		}
 	}
 
-	/** generate a random byte[] of length 32 **/
-	private static byte[] randomBytes() {
-		SecureRandom rng = new SecureRandom();
-		byte[] result = new byte[32];
-		rng.nextBytes(result);
-		return result;
-	}
-
 	private void handleExceptionDuringHandshake(Throwable cause, AlertLevel level, AlertDescription description, Record record) {
 		if (AlertLevel.FATAL.equals(level)) {
 			terminateOngoingHandshake(record.getPeerAddress(), cause, description);
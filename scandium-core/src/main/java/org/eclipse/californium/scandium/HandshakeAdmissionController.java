@@ -0,0 +1,454 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.californium.scandium.dtls.DTLSSession;
+import org.eclipse.californium.scandium.dtls.Handshaker;
+import org.eclipse.californium.scandium.dtls.SessionAdapter;
+
+/**
+ * Limits the handshakes a {@link DTLSConnector} performs concurrently as a server.
+ * <p>
+ * An admitted handshake occupies a slot until the session is established,
+ * the handshake is terminated or its lease expires. The lease covers peers
+ * which silently abandon a handshake.
+ * <p>
+ * Abbreviated handshakes, i.e. session resumptions, are preferred over full
+ * handshakes, which require expensive public key operations. They may use up
+ * to <em>maxHandshakes</em> slots, while full handshakes are limited to
+ * <em>maxFullHandshakes</em> slots. Handshakes exceeding these limits are
+ * queued, if possible, and started as soon as a slot becomes available.
+ * Queued abbreviated handshakes are started first.
+ * <p>
+ * Optionally, the rate at which handshakes are started with a single IP
+ * address is limited by means of a token bucket. Handshakes exceeding this
+ * rate are rejected.
+ */
+public final class HandshakeAdmissionController {
+
+	/**
+	 * The maximum number of IP addresses the handshake rate is tracked for.
+	 */
+	static final int MAX_TRACKED_ADDRESSES = 100000;
+
+	private static final long MAX_SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final int maxHandshakes;
+	private final int maxFullHandshakes;
+	private final int maxQueuedHandshakes;
+	private final int handshakesPerSecond;
+	private final long leaseNanos;
+	private final long sweepIntervalNanos;
+	private final AtomicLong rejectedHandshakes = new AtomicLong();
+	private final AtomicLong queuedHandshakes = new AtomicLong();
+
+	// all following fields are guarded by "this"
+	private final Map<Handshaker, Lease> leases = new IdentityHashMap<>();
+	private final Map<InetSocketAddress, Lease> reservations = new HashMap<>();
+	private final Map<InetSocketAddress, Queued> queuedAbbreviated = new LinkedHashMap<>();
+	private final Map<InetSocketAddress, Queued> queuedFull = new LinkedHashMap<>();
+	private final Map<InetAddress, TokenBucket> buckets = new HashMap<>();
+	private int activeHandshakes;
+	private int activeFullHandshakes;
+	private long lastLeaseSweep;
+	private long lastBucketSweep;
+
+	/**
+	 * Creates a controller.
+	 * 
+	 * @param maxHandshakes The maximum number of concurrent handshakes.
+	 * @param maxFullHandshakes The maximum number of concurrent full handshakes.
+	 * @param maxQueuedHandshakes The maximum number of handshakes waiting for a
+	 *            free slot. {@code 0} disables queuing.
+	 * @param handshakesPerSecond The maximum number of handshakes to start per
+	 *            second with a single IP address. {@code 0} disables rate
+	 *            limiting.
+	 * @param leaseMillis The time in milliseconds after which the slot of a
+	 *            handshake is released, if it has neither been completed nor
+	 *            terminated. Handshakes queued for longer are discarded.
+	 * @throws IllegalArgumentException if maxHandshakes or leaseMillis is
+	 *             less than 1, if maxFullHandshakes is less than 1 or exceeds
+	 *             maxHandshakes, or if maxQueuedHandshakes or
+	 *             handshakesPerSecond is negative.
+	 */
+	public HandshakeAdmissionController(final int maxHandshakes, final int maxFullHandshakes,
+			final int maxQueuedHandshakes, final int handshakesPerSecond, final long leaseMillis) {
+		if (maxHandshakes < 1) {
+			throw new IllegalArgumentException("max handshakes must be at least 1");
+		} else if (maxFullHandshakes < 1 || maxFullHandshakes > maxHandshakes) {
+			throw new IllegalArgumentException("max full handshakes must be in range [1, max handshakes]");
+		} else if (maxQueuedHandshakes < 0) {
+			throw new IllegalArgumentException("max queued handshakes must not be negative");
+		} else if (handshakesPerSecond < 0) {
+			throw new IllegalArgumentException("handshakes per second must not be negative");
+		} else if (leaseMillis < 1) {
+			throw new IllegalArgumentException("lease must be at least 1 ms");
+		}
+		this.maxHandshakes = maxHandshakes;
+		this.maxFullHandshakes = maxFullHandshakes;
+		this.maxQueuedHandshakes = maxQueuedHandshakes;
+		this.handshakesPerSecond = handshakesPerSecond;
+		this.leaseNanos = TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+		this.sweepIntervalNanos = Math.min(leaseNanos, MAX_SWEEP_INTERVAL_NANOS);
+		long now = System.nanoTime();
+		this.lastLeaseSweep = now;
+		this.lastBucketSweep = now;
+	}
+
+	/**
+	 * Checks whether a handshake may be started.
+	 * <p>
+	 * If the handshake is admitted, its slot is released automatically once
+	 * the handshaker has established the session. Otherwise, the handshake is
+	 * either queued or rejected. A queued handshake is retried by running the
+	 * given task once a slot is available. The slot is then reserved for the
+	 * peer until the retried handshake is admitted or
+	 * {@link #cancelReservation(InetSocketAddress)} is called.
+	 * 
+	 * @param handshaker The handshaker to start.
+	 * @param abbreviated {@code true}, if the handshaker resumes a session.
+	 * @param retry The task to run for retrying a queued handshake.
+	 * @return {@code true}, if the handshake may be started.
+	 */
+	boolean admit(final Handshaker handshaker, final boolean abbreviated, final Runnable retry) {
+		InetSocketAddress peer = handshaker.getPeerAddress();
+		List<Runnable> ready = Collections.emptyList();
+		boolean admitted = false;
+		synchronized (this) {
+			long now = System.nanoTime();
+			Lease reservation = reservations.remove(peer);
+			if (reservation != null) {
+				// slot has been reserved for a queued handshake
+				leases.put(handshaker, reservation);
+				admitted = true;
+			} else if (!isWithinRate(peer.getAddress(), now)) {
+				rejectedHandshakes.incrementAndGet();
+			} else {
+				if (!hasFreeSlot(abbreviated) && now - lastLeaseSweep >= sweepIntervalNanos) {
+					ready = sweepLeases(now);
+				}
+				if (hasFreeSlot(abbreviated)) {
+					occupySlot(abbreviated);
+					leases.put(handshaker, new Lease(abbreviated, now + leaseNanos));
+					admitted = true;
+				} else if (enqueue(peer, abbreviated, retry, now)) {
+					queuedHandshakes.incrementAndGet();
+				} else {
+					rejectedHandshakes.incrementAndGet();
+				}
+			}
+		}
+		if (admitted) {
+			handshaker.addSessionListener(new SessionAdapter() {
+
+				@Override
+				public void sessionEstablished(Handshaker currentHandshaker, DTLSSession establishedSession) {
+					release(currentHandshaker);
+				}
+			});
+		}
+		runAll(ready);
+		return admitted;
+	}
+
+	/**
+	 * Releases the slot of a handshake.
+	 * <p>
+	 * Does nothing, if the handshake has not been admitted or its slot has
+	 * already been released.
+	 * 
+	 * @param handshaker The handshaker.
+	 */
+	void release(final Handshaker handshaker) {
+		List<Runnable> ready;
+		synchronized (this) {
+			Lease lease = leases.remove(handshaker);
+			if (lease == null) {
+				return;
+			}
+			freeSlot(lease);
+			ready = dequeue(System.nanoTime());
+		}
+		runAll(ready);
+	}
+
+	/**
+	 * Releases the slot reserved for a retried handshake, if it hasn't been
+	 * admitted.
+	 * 
+	 * @param peer The peer the slot has been reserved for.
+	 */
+	void cancelReservation(final InetSocketAddress peer) {
+		List<Runnable> ready;
+		synchronized (this) {
+			Lease reservation = reservations.remove(peer);
+			if (reservation == null) {
+				return;
+			}
+			freeSlot(reservation);
+			ready = dequeue(System.nanoTime());
+		}
+		runAll(ready);
+	}
+
+	/**
+	 * Gets the number of handshakes currently occupying a slot.
+	 * 
+	 * @return the number of handshakes
+	 */
+	public synchronized int getActiveHandshakes() {
+		return activeHandshakes;
+	}
+
+	/**
+	 * Gets the number of full handshakes currently occupying a slot.
+	 * 
+	 * @return the number of handshakes
+	 */
+	public synchronized int getActiveFullHandshakes() {
+		return activeFullHandshakes;
+	}
+
+	/**
+	 * Gets the number of handshakes currently waiting for a slot.
+	 * 
+	 * @return the number of handshakes
+	 */
+	public synchronized int getQueueLength() {
+		return queuedAbbreviated.size() + queuedFull.size();
+	}
+
+	/**
+	 * Gets the number of handshakes rejected since this controller has been
+	 * created.
+	 * 
+	 * @return the number of handshakes
+	 */
+	public long getRejectedHandshakes() {
+		return rejectedHandshakes.get();
+	}
+
+	/**
+	 * Gets the number of handshakes queued since this controller has been
+	 * created.
+	 * 
+	 * @return the number of handshakes
+	 */
+	public long getQueuedHandshakes() {
+		return queuedHandshakes.get();
+	}
+
+	private boolean hasFreeSlot(final boolean abbreviated) {
+		return activeHandshakes < maxHandshakes && (abbreviated || activeFullHandshakes < maxFullHandshakes);
+	}
+
+	private void occupySlot(final boolean abbreviated) {
+		activeHandshakes++;
+		if (!abbreviated) {
+			activeFullHandshakes++;
+		}
+	}
+
+	private void freeSlot(final Lease lease) {
+		activeHandshakes--;
+		if (!lease.abbreviated) {
+			activeFullHandshakes--;
+		}
+	}
+
+	private boolean enqueue(final InetSocketAddress peer, final boolean abbreviated, final Runnable retry,
+			final long now) {
+		if (retry == null) {
+			return false;
+		}
+		Map<InetSocketAddress, Queued> queue = abbreviated ? queuedAbbreviated : queuedFull;
+		if (!queue.containsKey(peer) && queuedAbbreviated.size() + queuedFull.size() >= maxQueuedHandshakes) {
+			return false;
+		}
+		// a retransmitted CLIENT_HELLO replaces the queued one
+		queue.put(peer, new Queued(peer, abbreviated, retry, now + leaseNanos));
+		return true;
+	}
+
+	private List<Runnable> dequeue(final long now) {
+		List<Runnable> ready = null;
+		Queued next;
+		while ((next = pollQueued(now)) != null) {
+			occupySlot(next.abbreviated);
+			reservations.put(next.peer, new Lease(next.abbreviated, now + leaseNanos));
+			if (ready == null) {
+				ready = new ArrayList<>();
+			}
+			ready.add(next.retry);
+		}
+		return ready == null ? Collections.<Runnable> emptyList() : ready;
+	}
+
+	private Queued pollQueued(final long now) {
+		if (hasFreeSlot(true)) {
+			Queued next = pollUnexpired(queuedAbbreviated, now);
+			if (next != null) {
+				return next;
+			}
+		}
+		if (hasFreeSlot(false)) {
+			return pollUnexpired(queuedFull, now);
+		}
+		return null;
+	}
+
+	private static Queued pollUnexpired(final Map<InetSocketAddress, Queued> queue, final long now) {
+		Iterator<Queued> iterator = queue.values().iterator();
+		while (iterator.hasNext()) {
+			Queued queued = iterator.next();
+			iterator.remove();
+			if (now - queued.expires < 0) {
+				return queued;
+			}
+		}
+		return null;
+	}
+
+	private List<Runnable> sweepLeases(final long now) {
+		lastLeaseSweep = now;
+		sweepExpired(leases.values().iterator(), now);
+		sweepExpired(reservations.values().iterator(), now);
+		return dequeue(now);
+	}
+
+	private void sweepExpired(final Iterator<Lease> iterator, final long now) {
+		while (iterator.hasNext()) {
+			Lease lease = iterator.next();
+			if (now - lease.expires >= 0) {
+				iterator.remove();
+				freeSlot(lease);
+			}
+		}
+	}
+
+	private boolean isWithinRate(final InetAddress address, final long now) {
+		if (handshakesPerSecond == 0) {
+			return true;
+		}
+		TokenBucket bucket = buckets.get(address);
+		if (bucket == null) {
+			if (buckets.size() >= MAX_TRACKED_ADDRESSES) {
+				if (now - lastBucketSweep < sweepIntervalNanos) {
+					// cannot track any more addresses for now
+					return true;
+				}
+				sweepBuckets(now);
+				if (buckets.size() >= MAX_TRACKED_ADDRESSES) {
+					return true;
+				}
+			}
+			bucket = new TokenBucket(handshakesPerSecond, now);
+			buckets.put(address, bucket);
+		}
+		return bucket.tryTake(handshakesPerSecond, now);
+	}
+
+	private void sweepBuckets(final long now) {
+		lastBucketSweep = now;
+		Iterator<TokenBucket> iterator = buckets.values().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().isFull(handshakesPerSecond, now)) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private static void runAll(final List<Runnable> tasks) {
+		for (Runnable task : tasks) {
+			task.run();
+		}
+	}
+
+	private static final class Lease {
+
+		private final boolean abbreviated;
+		private final long expires;
+
+		private Lease(final boolean abbreviated, final long expires) {
+			this.abbreviated = abbreviated;
+			this.expires = expires;
+		}
+	}
+
+	private static final class Queued {
+
+		private final InetSocketAddress peer;
+		private final boolean abbreviated;
+		private final Runnable retry;
+		private final long expires;
+
+		private Queued(final InetSocketAddress peer, final boolean abbreviated, final Runnable retry,
+				final long expires) {
+			this.peer = peer;
+			this.abbreviated = abbreviated;
+			this.retry = retry;
+			this.expires = expires;
+		}
+	}
+
+	/**
+	 * A token bucket holding up to one second's worth of handshakes.
+	 */
+	private static final class TokenBucket {
+
+		private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+		private double tokens;
+		private long lastRefill;
+
+		private TokenBucket(final int capacity, final long now) {
+			this.tokens = capacity;
+			this.lastRefill = now;
+		}
+
+		private boolean tryTake(final int ratePerSecond, final long now) {
+			refill(ratePerSecond, now);
+			if (tokens >= 1) {
+				tokens -= 1;
+				return true;
+			}
+			return false;
+		}
+
+		private boolean isFull(final int ratePerSecond, final long now) {
+			refill(ratePerSecond, now);
+			return tokens >= ratePerSecond;
+		}
+
+		private void refill(final int ratePerSecond, final long now) {
+			tokens = Math.min(ratePerSecond, tokens + (now - lastRefill) * ratePerSecond / NANOS_PER_SECOND);
+			lastRefill = now;
+		}
+	}
+}
@@ -21,7 +21,9 @@ public final class PrincipalSerializer {
 	 * <p>
 	 * RFC 5077 does not explicitly define support for RawPublicKey based client authentication.
 	 * However, it supports the addition of arbitrary authentication mechanisms by extending
-	 * the <em>ClientAuthenticationType</em> which we do as follows: 
+	 * the <em>ClientAuthenticationType</em> which we do as follows. Deviating from RFC 5077,
+	 * the certificate chain and the subject public key info are prefixed with a 16 bit length,
+	 * which limits them to 65535 bytes:
 	 * <pre>
 	 * enum {
 	 *   anonymous(0),
@@ -35,11 +37,11 @@ public final class PrincipalSerializer {
 	 *   select (ClientAuthenticationType) {
 	 *     case anonymous: struct {};
 	 *     case certificate_based:
-	 *       ASN.1Cert certificate_list<0..2^24-1>;
+	 *       ASN.1Cert certificate_list<0..2^16-1>;
 	 *     case psk:
 	 *       opaque psk_identity<0..2^16-1>;
 	 *     case raw_public_key:
-	 *       opaque ASN.1_subjectPublicKeyInfo<1..2^24-1>; // as defined in RFC 7250
+	 *       opaque ASN.1_subjectPublicKeyInfo<1..2^16-1>; // as defined in RFC 7250
 	 *   };
 	 * }
 	 * </pre>
@@ -112,7 +114,7 @@ public final class PrincipalSerializer {
 	}
 
 	private static X509CertPath deserializeCertChain(final DatagramReader reader) {
-		return X509CertPath.fromBytes(readBytes(reader, 24));
+		return X509CertPath.fromBytes(readBytes(reader, 16));
 	};
 
 	private static PreSharedKeyIdentity deserializeIdentity(final DatagramReader reader) {
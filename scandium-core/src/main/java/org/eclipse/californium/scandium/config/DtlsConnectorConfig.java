@@ -19,6 +19,13 @@
  *    Kai Hudalla (Bosch Software Innovations GmbH) - fix bug 483559
  *    Achim Kraus (Bosch Software Innovations GmbH) - add enable address reuse
  *    Ludwig Seitz (RISE SICS) - Added support for raw public key validation
+ *    Bosch Software Innovations GmbH - add number of receiver threads
+ *    Bosch Software Innovations GmbH - add AES-GCM cipher suites
+ *    Bosch Software Innovations GmbH - add asynchronous PSK store
+ *    Bosch Software Innovations GmbH - add handshake admission control
+ *    Bosch Software Innovations GmbH - add pool of ephemeral ECDH keys
+ *    Bosch Software Innovations GmbH - add SecureRandom provider
+ *    Bosch Software Innovations GmbH - add certificate validation cache
  *******************************************************************************/
 
 package org.eclipse.californium.scandium.config;
@@ -34,9 +41,12 @@ import java.util.List;
 
 import org.eclipse.californium.scandium.dtls.ServerNameResolver;
 import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
+import org.eclipse.californium.scandium.dtls.pskstore.AsyncPskStore;
 import org.eclipse.californium.scandium.dtls.pskstore.PskStore;
 import org.eclipse.californium.scandium.dtls.rpkstore.TrustAllRpks;
 import org.eclipse.californium.scandium.dtls.rpkstore.TrustedRpkStore;
+import org.eclipse.californium.scandium.util.SecureRandomProvider;
+import org.eclipse.californium.scandium.util.ThreadLocalSecureRandomProvider;
 
 /**
  * A container for all configuration options of a <code>DTLSConnector</code>.
@@ -66,6 +76,46 @@ public final class DtlsConnectorConfig {
 	 * The default value for the <em>staleConnectionThreshold</em> property.
 	 */
 	public static final long DEFAULT_STALE_CONNECTION_TRESHOLD = 30 * 60; // 30 minutes
+	/**
+	 * The default value for the <em>receiverThreadCount</em> property.
+	 */
+	public static final int DEFAULT_RECEIVER_THREAD_COUNT = Runtime.getRuntime().availableProcessors() > 3 ? 2 : 1;
+	/**
+	 * The default value for the <em>pskLookupTimeout</em> property in milliseconds.
+	 */
+	public static final long DEFAULT_PSK_LOOKUP_TIMEOUT_MILLIS = 5000;
+	/**
+	 * The default value for the <em>maxPendingPskLookups</em> property.
+	 */
+	public static final int DEFAULT_MAX_PENDING_PSK_LOOKUPS = 1000;
+	/**
+	 * The default value for the <em>maxConcurrentHandshakes</em> property.
+	 */
+	public static final int DEFAULT_MAX_CONCURRENT_HANDSHAKES = 10000;
+	/**
+	 * The default value for the <em>maxQueuedHandshakes</em> property.
+	 */
+	public static final int DEFAULT_MAX_QUEUED_HANDSHAKES = 1000;
+	/**
+	 * The default value for the <em>handshakeRateLimit</em> property.
+	 */
+	public static final int DEFAULT_HANDSHAKE_RATE_LIMIT = 0;
+	/**
+	 * The default value for the <em>ephemeralKeyPoolDepth</em> property.
+	 */
+	public static final int DEFAULT_EPHEMERAL_KEY_POOL_DEPTH = 0;
+	/**
+	 * The default value for the <em>ephemeralKeyPoolThreads</em> property.
+	 */
+	public static final int DEFAULT_EPHEMERAL_KEY_POOL_THREADS = 1;
+	/**
+	 * The default value for the <em>certificateValidationCacheSize</em> property.
+	 */
+	public static final int DEFAULT_CERTIFICATE_VALIDATION_CACHE_SIZE = 1000;
+	/**
+	 * The default value for the <em>certificateValidationCacheTtl</em> property in milliseconds.
+	 */
+	public static final long DEFAULT_CERTIFICATE_VALIDATION_CACHE_TTL_MILLIS = 60 * 60 * 1000L;
 	private static final String EC_ALGORITHM_NAME = "EC";
 
 	private boolean enableReuseAddress;
@@ -96,6 +146,13 @@ public final class DtlsConnectorConfig {
 	/** store of the PSK */
 	private PskStore pskStore = null;
 
+	/** store to look up PSKs asynchronously */
+	private AsyncPskStore asyncPskStore = null;
+
+	private long pskLookupTimeout = DEFAULT_PSK_LOOKUP_TIMEOUT_MILLIS;
+
+	private int maxPendingPskLookups = DEFAULT_MAX_PENDING_PSK_LOOKUPS;
+
 	/** the private key for RPK and X509 mode */
 	private PrivateKey privateKey = null;
 
@@ -116,6 +173,23 @@ public final class DtlsConnectorConfig {
 	private int maxConnections = DEFAULT_MAX_CONNECTIONS;
 	private long staleConnectionThreshold = DEFAULT_STALE_CONNECTION_TRESHOLD;
 
+	private int receiverThreadCount = DEFAULT_RECEIVER_THREAD_COUNT;
+
+	private int maxConcurrentHandshakes = DEFAULT_MAX_CONCURRENT_HANDSHAKES;
+	/** defaults to three quarters of maxConcurrentHandshakes if not set */
+	private Integer maxConcurrentFullHandshakes;
+	private int maxQueuedHandshakes = DEFAULT_MAX_QUEUED_HANDSHAKES;
+	private int handshakeRateLimit = DEFAULT_HANDSHAKE_RATE_LIMIT;
+
+	private int ephemeralKeyPoolDepth = DEFAULT_EPHEMERAL_KEY_POOL_DEPTH;
+	private int ephemeralKeyPoolThreads = DEFAULT_EPHEMERAL_KEY_POOL_THREADS;
+
+	private int certificateValidationCacheSize = DEFAULT_CERTIFICATE_VALIDATION_CACHE_SIZE;
+	private long certificateValidationCacheTtl = DEFAULT_CERTIFICATE_VALIDATION_CACHE_TTL_MILLIS;
+
+	/** source of the random values used during handshakes */
+	private SecureRandomProvider secureRandomProvider = ThreadLocalSecureRandomProvider.getDefault();
+
 	private ServerNameResolver serverNameResolver;
 
 	private DtlsConnectorConfig() {
@@ -173,6 +247,21 @@ public final class DtlsConnectorConfig {
 		return outboundMessageBufferSize;
 	}
 
+	/**
+	 * Gets the number of threads receiving datagrams.
+	 * <p>
+	 * Each thread uses its own datagram buffer, which is reused for all
+	 * datagrams received by that thread. If more than one thread is used and
+	 * {@code SO_REUSEPORT} is supported, each thread receives from its own
+	 * socket bound to the connector's address. Otherwise the threads share
+	 * the socket.
+	 * 
+	 * @return the number of threads
+	 */
+	public int getReceiverThreadCount() {
+		return receiverThreadCount;
+	}
+
 	/**
 	 * Gets the IP address and port the connector is bound to.
 	 * 
@@ -231,6 +320,134 @@ public final class DtlsConnectorConfig {
 		return pskStore;
 	}
 
+	/**
+	 * Gets the registry of <em>shared secrets</em> used for authenticating
+	 * clients asynchronously during a DTLS handshake.
+	 * 
+	 * @return the registry or {@code null}, if the keys are looked up
+	 *         synchronously using the {@link #getPskStore()}
+	 */
+	public AsyncPskStore getAsyncPskStore() {
+		return asyncPskStore;
+	}
+
+	/**
+	 * Gets the time to wait for the result of an asynchronous PSK lookup.
+	 * 
+	 * @return the timeout in milliseconds
+	 */
+	public long getPskLookupTimeout() {
+		return pskLookupTimeout;
+	}
+
+	/**
+	 * Gets the maximum number of pending asynchronous PSK lookups.
+	 * <p>
+	 * Handshakes requiring a lookup beyond that fail immediately.
+	 * 
+	 * @return the number of lookups
+	 */
+	public int getMaxPendingPskLookups() {
+		return maxPendingPskLookups;
+	}
+
+	/**
+	 * Gets the maximum number of handshakes with clients to perform concurrently.
+	 * 
+	 * @return the number of handshakes
+	 */
+	public int getMaxConcurrentHandshakes() {
+		return maxConcurrentHandshakes;
+	}
+
+	/**
+	 * Gets the maximum number of full handshakes with clients to perform concurrently.
+	 * <p>
+	 * The remaining handshake slots are reserved for abbreviated handshakes
+	 * resuming a session.
+	 * 
+	 * @return the number of handshakes
+	 */
+	public int getMaxConcurrentFullHandshakes() {
+		if (maxConcurrentFullHandshakes == null) {
+			return Math.max(1, maxConcurrentHandshakes / 4 * 3);
+		} else {
+			return maxConcurrentFullHandshakes;
+		}
+	}
+
+	/**
+	 * Gets the maximum number of handshakes waiting for a free handshake slot.
+	 * 
+	 * @return the number of handshakes
+	 */
+	public int getMaxQueuedHandshakes() {
+		return maxQueuedHandshakes;
+	}
+
+	/**
+	 * Gets the maximum number of handshakes to start per second with a
+	 * single IP address.
+	 * 
+	 * @return the number of handshakes or {@code 0}, if the rate is not limited
+	 */
+	public int getHandshakeRateLimit() {
+		return handshakeRateLimit;
+	}
+
+	/**
+	 * Gets the number of pre-computed ephemeral ECDH key pairs to keep per
+	 * supported group.
+	 * 
+	 * @return the number of key pairs or {@code 0}, if the key pairs are
+	 *         generated during the handshake
+	 */
+	public int getEphemeralKeyPoolDepth() {
+		return ephemeralKeyPoolDepth;
+	}
+
+	/**
+	 * Gets the number of threads generating the pre-computed ephemeral ECDH
+	 * key pairs.
+	 * 
+	 * @return the number of threads
+	 */
+	public int getEphemeralKeyPoolThreads() {
+		return ephemeralKeyPoolThreads;
+	}
+
+	/**
+	 * Gets the maximum number of successfully validated X.509 certificate
+	 * chains to remember.
+	 * 
+	 * @return the number of chains or {@code 0}, if each chain is validated
+	 *         during the handshake
+	 */
+	public int getCertificateValidationCacheSize() {
+		return certificateValidationCacheSize;
+	}
+
+	/**
+	 * Gets the time to remember a successfully validated X.509 certificate
+	 * chain.
+	 * 
+	 * @return the time in milliseconds
+	 */
+	public long getCertificateValidationCacheTtl() {
+		return certificateValidationCacheTtl;
+	}
+
+	/**
+	 * Gets the provider of the random number generators used for the
+	 * random values of a handshake, e.g. the <em>Random</em>, the session
+	 * identifiers, the cookie secrets and the ephemeral ECDH keys.
+	 * 
+	 * @return the provider
+	 */
+	public SecureRandomProvider getSecureRandomProvider() {
+		return secureRandomProvider;
+	}
+
 	/**
 	 * Gets the resolver to use for determining the server names to include
 	 * in a <em>Server Name Indication</em> extension when initiating a handshake
@@ -360,6 +577,21 @@ public final class DtlsConnectorConfig {
 		 * <li><em>retransmissionTimeout</em>: 1000ms</li>
 		 * <li><em>clientAuthenticationRequired</em>: <code>true</code></li>
 		 * <li><em>outboundMessageBufferSize</em>: 100.000</li>
+		 * <li><em>receiverThreadCount</em>: 2, if more than 3 processors are
+		 * available, 1 otherwise</li>
+		 * <li><em>pskLookupTimeout</em>: 5000ms</li>
+		 * <li><em>maxPendingPskLookups</em>: 1000</li>
+		 * <li><em>maxConcurrentHandshakes</em>: 10.000</li>
+		 * <li><em>maxConcurrentFullHandshakes</em>: three quarters of
+		 * <em>maxConcurrentHandshakes</em></li>
+		 * <li><em>maxQueuedHandshakes</em>: 1000</li>
+		 * <li><em>handshakeRateLimit</em>: 0 (not limited)</li>
+		 * <li><em>ephemeralKeyPoolDepth</em>: 0 (no pool)</li>
+		 * <li><em>ephemeralKeyPoolThreads</em>: 1</li>
+		 * <li><em>certificateValidationCacheSize</em>: 1000</li>
+		 * <li><em>certificateValidationCacheTtl</em>: 1h</li>
+		 * <li><em>secureRandomProvider</em>: one <code>SecureRandom</code> per thread,
+		 * shared by all connectors</li>
 		 * <li><em>trustStore</em>: empty array</li>
 		 * </ul>
 		 * 
@@ -467,6 +699,29 @@ public final class DtlsConnectorConfig {
 			}
 		}
 
+		/**
+		 * Sets the number of threads receiving datagrams.
+		 * <p>
+		 * If more than one thread is used and {@code SO_REUSEPORT} is
+		 * supported (Java 9 and later), a socket is bound per thread, so the
+		 * datagrams are received in parallel. The kernel distributes the peers
+		 * between the sockets. Otherwise the threads share the socket and only
+		 * parsing and dispatching the records of a datagram is done in
+		 * parallel to receiving the next one.
+		 * 
+		 * @param threadCount the number of threads
+		 * @return this builder for command chaining
+		 * @throws IllegalArgumentException if threadCount &lt; 1
+		 */
+		public Builder setReceiverThreadCount(int threadCount) {
+			if (threadCount < 1) {
+				throw new IllegalArgumentException("Receiver thread count must be at least 1");
+			} else {
+				config.receiverThreadCount = threadCount;
+				return this;
+			}
+		}
+
 		/**
 		 * Sets the maximum number of times a flight of handshake messages gets re-transmitted
 		 * to a peer.
@@ -505,7 +760,8 @@ public final class DtlsConnectorConfig {
 		 * @param cipherSuites the supported cipher suites in the order of preference
 		 * @return this builder for command chaining
 		 * @throws IllegalArgumentException if the given array is <code>null</code>, is
-		 *           empty or contains {@link CipherSuite#TLS_NULL_WITH_NULL_NULL}
+		 *           empty, contains {@link CipherSuite#TLS_NULL_WITH_NULL_NULL}
+		 *           or contains a cipher suite not supported by the JVM
 		 */
 		public Builder setSupportedCipherSuites(CipherSuite[] cipherSuites) {
 			if (cipherSuites == null || cipherSuites.length == 0) {
@@ -514,6 +770,9 @@ public final class DtlsConnectorConfig {
 				for (CipherSuite suite : cipherSuites) {
 					if (CipherSuite.TLS_NULL_WITH_NULL_NULL.equals(suite)) {
 						throw new IllegalArgumentException("NULL Cipher Suite is not supported by connector");
+					} else if (!suite.isSupported()) {
+						throw new IllegalArgumentException(
+								String.format("Cipher suite [%s] is not supported by the JVM", suite.name()));
 					}
 				}
 				config.supportedCipherSuites = Arrays.copyOf(cipherSuites, cipherSuites.length);
@@ -532,7 +791,7 @@ public final class DtlsConnectorConfig {
 		 *     IANA registry</a> for a list of cipher suite names)
 		 * @return this builder for command chaining
 		 * @throws IllegalArgumentException if the given array contains <em>TLS_NULL_WITH_NULL_NULL</em>
-		 *     or if a name from the given list is unsupported (yet)  
+		 *     or if a name from the given list is unsupported (yet) or by the JVM
 		 */
 		public Builder setSupportedCipherSuites(String[] cipherSuites) {
 			CipherSuite[] suites = new CipherSuite[cipherSuites.length];
@@ -541,7 +800,10 @@ public final class DtlsConnectorConfig {
 					throw new IllegalArgumentException("NULL Cipher Suite is not supported by connector");
 				} else {
 					CipherSuite knownSuite = CipherSuite.getTypeByName(cipherSuites[i]);
-					if (knownSuite != null) {
+					if (knownSuite != null && !knownSuite.isSupported()) {
+						throw new IllegalArgumentException(
+								String.format("Cipher suite [%s] is not supported by the JVM", cipherSuites[i]));
+					} else if (knownSuite != null) {
 						suites[i] = knownSuite;
 					} else {
 						throw new IllegalArgumentException(
@@ -582,6 +844,63 @@ public final class DtlsConnectorConfig {
 			return this;
 		}
 
+		/**
+		 * Sets the key store to use for authenticating clients based
+		 * on a pre-shared key looked up asynchronously.
+		 * <p>
+		 * If set, a server side handshake is suspended while the key of the
+		 * client's identity is looked up, so a slow key store doesn't block
+		 * the processing of records of other peers. The store is used instead
+		 * of the <em>pskStore</em> for authenticating clients. A connector
+		 * acting as client still requires the <em>pskStore</em>.
+		 * 
+		 * @param pskStore
+		 *            the key store
+		 * @return this builder for command chaining
+		 */
+		public Builder setAsyncPskStore(AsyncPskStore pskStore) {
+			config.asyncPskStore = pskStore;
+			return this;
+		}
+
+		/**
+		 * Sets the time to wait for the result of an asynchronous PSK lookup.
+		 * <p>
+		 * The handshake fails, if the lookup isn't completed in time.
+		 * The default value is {@link DtlsConnectorConfig#DEFAULT_PSK_LOOKUP_TIMEOUT_MILLIS}.
+		 * 
+		 * @param timeout the timeout in milliseconds
+		 * @return this builder for command chaining
+		 * @throws IllegalArgumentException if timeout &lt; 1
+		 */
+		public Builder setPskLookupTimeout(long timeout) {
+			if (timeout < 1) {
+				throw new IllegalArgumentException("PSK lookup timeout must be at least 1 ms");
+			} else {
+				config.pskLookupTimeout = timeout;
+				return this;
+			}
+		}
+
+		/**
+		 * Sets the maximum number of pending asynchronous PSK lookups.
+		 * <p>
+		 * Handshakes requiring a lookup beyond that fail immediately.
+		 * The default value is {@link DtlsConnectorConfig#DEFAULT_MAX_PENDING_PSK_LOOKUPS}.
+		 * 
+		 * @param maxPendingLookups the maximum number of lookups
+		 * @return this builder for command chaining
+		 * @throws IllegalArgumentException if maxPendingLookups &lt; 1
+		 */
+		public Builder setMaxPendingPskLookups(int maxPendingLookups) {
+			if (maxPendingLookups < 1) {
+				throw new IllegalArgumentException("Max. pending PSK lookups must be at least 1");
+			} else {
+				config.maxPendingPskLookups = maxPendingLookups;
+				return this;
+			}
+		}
+
 		/**
 		 * Sets the resolver to use for determining the server names to include
 		 * in a <em>Server Name Indication</em> extension when initiating a handshake
@@ -743,6 +1062,191 @@ public final class DtlsConnectorConfig {
 			}
 		}
 
+		/**
+		 * Sets the maximum number of handshakes with clients to perform concurrently.
+		 * <p>
+		 * Further handshakes are queued until a handshake has been completed,
+		 * has failed or has been abandoned by the client for the duration of
+		 * all retransmissions.
+		 * The default value is {@link DtlsConnectorConfig#DEFAULT_MAX_CONCURRENT_HANDSHAKES}.
+		 * 
+		 * @param maxHandshakes the maximum number of handshakes
+		 * @return this builder for command chaining
+		 * @throws IllegalArgumentException if maxHandshakes &lt; 1
+		 * @see #setMaxConcurrentFullHandshakes(int)
+		 */
+		public Builder setMaxConcurrentHandshakes(int maxHandshakes) {
+			if (maxHandshakes < 1) {
+				throw new IllegalArgumentException("Max. concurrent handshakes must be at least 1");
+			} else {
+				config.maxConcurrentHandshakes = maxHandshakes;
+				return this;
+			}
+		}
+
+		/**
+		 * Sets the maximum number of full handshakes with clients to perform concurrently.
+		 * <p>
+		 * Limiting the full handshakes to less than <em>maxConcurrentHandshakes</em>
+		 * keeps slots available for abbreviated handshakes, which resume a session
+		 * without any public key operations.
+		 * The default value is three quarters of <em>maxConcurrentHandshakes</em>.
+		 * 
+		 * @param maxFullHandshakes the maximum number of full handshakes
+		 * @return this builder for command chaining
+		 * @throws IllegalArgumentException if maxFullHandshakes &lt; 1
+		 */
+		public Builder setMaxConcurrentFullHandshakes(int maxFullHandshakes) {
+			if (maxFullHandshakes < 1) {
+				throw new IllegalArgumentException("Max. concurrent full handshakes must be at least 1");
+			} else {
+				config.maxConcurrentFullHandshakes = maxFullHandshakes;
+				return this;
+			}
+		}
+
+		/**
+		 * Sets the maximum number of handshakes waiting for a free handshake slot.
+		 * <p>
+		 * Handshakes beyond that are rejected by silently discarding the
+		 * client's <em>CLIENT_HELLO</em>.
+		 * The default value is {@link DtlsConnectorConfig#DEFAULT_MAX_QUEUED_HANDSHAKES}.
+		 * 
+		 * @param maxQueuedHandshakes the maximum number of handshakes, {@code 0}
+		 *            disables queuing
+		 * @return this builder for command chaining
+		 * @throws IllegalArgumentException if maxQueuedHandshakes &lt; 0
+		 */
+		public Builder setMaxQueuedHandshakes(int maxQueuedHandshakes) {
+			if (maxQueuedHandshakes < 0) {
+				throw new IllegalArgumentException("Max. queued handshakes must not be negative");
+			} else {
+				config.maxQueuedHandshakes = maxQueuedHandshakes;
+				return this;
+			}
+		}
+
+		/**
+		 * Sets the maximum number of handshakes to start per second with a
+		 * single IP address.
+		 * <p>
+		 * Handshakes exceeding this rate are rejected. Note that many clients
+		 * may share a single IP address when located behind a NAT.
+		 * The default value is {@link DtlsConnectorConfig#DEFAULT_HANDSHAKE_RATE_LIMIT}.
+		 * 
+		 * @param handshakesPerSecond the maximum number of handshakes, {@code 0}
+		 *            disables rate limiting
+		 * @return this builder for command chaining
+		 * @throws IllegalArgumentException if handshakesPerSecond &lt; 0
+		 */
+		public Builder setHandshakeRateLimit(int handshakesPerSecond) {
+			if (handshakesPerSecond < 0) {
+				throw new IllegalArgumentException("Handshake rate limit must not be negative");
+			} else {
+				config.handshakeRateLimit = handshakesPerSecond;
+				return this;
+			}
+		}
+
+		/**
+		 * Sets the number of pre-computed ephemeral ECDH key pairs to keep per
+		 * supported group.
+		 * <p>
+		 * A server taking the ephemeral key pair from the pool saves the key
+		 * generation during a full ECDHE handshake. The key pairs are generated
+		 * in the background and each key pair is used for a single handshake only.
+		 * If the pool runs empty, the key pair is generated during the handshake.
+		 * The default value is {@link DtlsConnectorConfig#DEFAULT_EPHEMERAL_KEY_POOL_DEPTH}.
+		 * 
+		 * @param depth the number of key pairs, {@code 0} disables the pool
+		 * @return this builder for command chaining
+		 * @throws IllegalArgumentException if depth &lt; 0
+		 */
+		public Builder setEphemeralKeyPoolDepth(int depth) {
+			if (depth < 0) {
+				throw new IllegalArgumentException("Ephemeral key pool depth must not be negative");
+			} else {
+				config.ephemeralKeyPoolDepth = depth;
+				return this;
+			}
+		}
+
+		/**
+		 * Sets the number of threads generating the pre-computed ephemeral ECDH
+		 * key pairs.
+		 * The default value is {@link DtlsConnectorConfig#DEFAULT_EPHEMERAL_KEY_POOL_THREADS}.
+		 * 
+		 * @param threads the number of threads
+		 * @return this builder for command chaining
+		 * @throws IllegalArgumentException if threads &lt; 1
+		 */
+		public Builder setEphemeralKeyPoolThreads(int threads) {
+			if (threads < 1) {
+				throw new IllegalArgumentException("Ephemeral key pool threads must be at least 1");
+			} else {
+				config.ephemeralKeyPoolThreads = threads;
+				return this;
+			}
+		}
+
+		/**
+		 * Sets the maximum number of successfully validated X.509 certificate
+		 * chains to remember.
+		 * <p>
+		 * A peer presenting a remembered chain is accepted without validating
+		 * the chain again, until the time to live of the chain or the validity
+		 * period of one of its certificates has expired.
+		 * The default value is {@link DtlsConnectorConfig#DEFAULT_CERTIFICATE_VALIDATION_CACHE_SIZE}.
+		 * 
+		 * @param size the number of chains, {@code 0} disables the cache
+		 * @return this builder for command chaining
+		 * @throws IllegalArgumentException if size &lt; 0
+		 */
+		public Builder setCertificateValidationCacheSize(int size) {
+			if (size < 0) {
+				throw new IllegalArgumentException("Certificate validation cache size must not be negative");
+			} else {
+				config.certificateValidationCacheSize = size;
+				return this;
+			}
+		}
+
+		/**
+		 * Sets the time to remember a successfully validated X.509 certificate
+		 * chain.
+		 * The default value is {@link DtlsConnectorConfig#DEFAULT_CERTIFICATE_VALIDATION_CACHE_TTL_MILLIS}.
+		 * 
+		 * @param ttl the time in milliseconds
+		 * @return this builder for command chaining
+		 * @throws IllegalArgumentException if ttl &lt; 1
+		 */
+		public Builder setCertificateValidationCacheTtl(long ttl) {
+			if (ttl < 1) {
+				throw new IllegalArgumentException("Certificate validation cache TTL must be at least 1 ms");
+			} else {
+				config.certificateValidationCacheTtl = ttl;
+				return this;
+			}
+		}
+
+		/**
+		 * Sets the provider of the random number generators used for the
+		 * random values of a handshake.
+		 * <p>
+		 * The default provider is {@link ThreadLocalSecureRandomProvider#getDefault()}.
+		 * 
+		 * @param provider the provider
+		 * @return this builder for command chaining
+		 * @throws NullPointerException if the provider is <code>null</code>
+		 */
+		public Builder setSecureRandomProvider(SecureRandomProvider provider) {
+			if (provider == null) {
+				throw new NullPointerException("SecureRandom provider must not be null");
+			}
+			config.secureRandomProvider = provider;
+			return this;
+		}
+
 		private boolean isConfiguredWithKeyPair() {
 			return config.privateKey != null && config.publicKey != null;
 		}
@@ -755,7 +1259,7 @@ public final class DtlsConnectorConfig {
 		 * builder tries to derive a reasonable set of cipher suites from the
 		 * <em>pskStore</em> and <em>identity</em> properties as follows:
 		 * <ol>
-		 * <li>If only the <em>pskStore</em> is set: <code>{TLS_PSK_WITH_AES_128_CCM_8,
+		 * <li>If only the <em>pskStore</em> or <em>asyncPskStore</em> is set: <code>{TLS_PSK_WITH_AES_128_CCM_8,
 		 * TLS_PSK_WITH_AES_128_CBC_SHA256}</code></li>
 		 * <li>If only the <em>identity</em> is set: <code>{TLS_ECDHE_ECDSA_WITH_AES_128_CCM_8,
 		 * TLS_ECDHE_ECDSA_WITH_AES_128_CBC_SHA256}</code></li>
@@ -768,6 +1272,11 @@ public final class DtlsConnectorConfig {
 		 * @throws IllegalStateException if the configuration is inconsistent
 		 */
 		public DtlsConnectorConfig build() {
+			if (config.getMaxConcurrentFullHandshakes() > config.maxConcurrentHandshakes) {
+				throw new IllegalStateException("Max. concurrent full handshakes must not exceed " +
+						"max. concurrent handshakes");
+			}
+
 			if (config.getSupportedCipherSuites().length == 0) {
 				determineCipherSuitesFromConfig();
 			}
@@ -781,10 +1290,12 @@ public final class DtlsConnectorConfig {
 				switch (suite) {
 				case TLS_PSK_WITH_AES_128_CCM_8:
 				case TLS_PSK_WITH_AES_128_CBC_SHA256:
+				case TLS_PSK_WITH_AES_128_GCM_SHA256:
 					verifyPskBasedCipherConfig();
 					break;
 				case TLS_ECDHE_ECDSA_WITH_AES_128_CCM_8:
 				case TLS_ECDHE_ECDSA_WITH_AES_128_CBC_SHA256:
+				case TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256:
 					verifyEcBasedCipherConfig();
 					break;
 				default:
@@ -796,7 +1307,7 @@ public final class DtlsConnectorConfig {
 		}
 
 		private void verifyPskBasedCipherConfig() {
-			if (config.pskStore == null) {
+			if (config.pskStore == null && config.asyncPskStore == null) {
 				throw new IllegalStateException("PSK store must be set when support for " +
 						CipherSuite.TLS_PSK_WITH_AES_128_CCM_8.name() + " is configured");
 			}
@@ -824,7 +1335,7 @@ public final class DtlsConnectorConfig {
 				ciphers.add(CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_CBC_SHA256);
 			}
 
-			if (config.pskStore != null) {
+			if (config.pskStore != null || config.asyncPskStore != null) {
 				ciphers.add(CipherSuite.TLS_PSK_WITH_AES_128_CCM_8);
 				ciphers.add(CipherSuite.TLS_PSK_WITH_AES_128_CBC_SHA256);
 			}
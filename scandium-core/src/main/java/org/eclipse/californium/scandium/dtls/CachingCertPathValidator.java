@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.cert.CertPath;
+import java.security.cert.CertPathValidator;
+import java.security.cert.Certificate;
+import java.security.cert.PKIXParameters;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Validates X.509 certificate chains presented by peers against a fixed set
+ * of trusted certificates, remembering the chains that have been validated
+ * successfully.
+ * <p>
+ * The trust anchors are created once from the trusted certificates when the
+ * validator is created. Successfully validated chains are kept in a bounded
+ * LRU cache keyed by the SHA-256 fingerprint of the encoded chain. A chain
+ * found in the cache is accepted without PKIX validation until its entry
+ * expires, which happens after the configured time to live or when the first
+ * certificate of the chain expires, whatever comes first. Failed
+ * validations are never cached.
+ * <p>
+ * Revocation checking is disabled, as it is for uncached validation.
+ */
+public final class CachingCertPathValidator {
+
+	private static final String VALIDATOR_ALGORITHM = "PKIX";
+	private static final String FINGERPRINT_ALGORITHM = "SHA-256";
+
+	private final Set<TrustAnchor> trustAnchors;
+	private final int maxEntries;
+	private final long timeToLiveMillis;
+	// guarded by itself, ordered by last access
+	private final Map<Fingerprint, Long> validated;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Creates a validator without cache.
+	 * 
+	 * @param trustedCertificates the certificates to use as trust anchors, may
+	 *            be {@code null}.
+	 */
+	public CachingCertPathValidator(X509Certificate[] trustedCertificates) {
+		this(trustedCertificates, 0, 0, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Creates a validator.
+	 * 
+	 * @param trustedCertificates the certificates to use as trust anchors, may
+	 *            be {@code null}.
+	 * @param maxEntries the maximum number of validated chains to remember,
+	 *            {@code 0} disables the cache.
+	 * @param timeToLive the time to remember a validated chain.
+	 * @param unit the unit of the time to live.
+	 * @throws IllegalArgumentException if maxEntries or timeToLive is negative.
+	 * @throws NullPointerException if the unit is {@code null}.
+	 */
+	public CachingCertPathValidator(X509Certificate[] trustedCertificates, final int maxEntries, long timeToLive,
+			TimeUnit unit) {
+		if (maxEntries < 0) {
+			throw new IllegalArgumentException("Max. entries must not be negative");
+		} else if (timeToLive < 0) {
+			throw new IllegalArgumentException("Time to live must not be negative");
+		}
+		Set<TrustAnchor> anchors = new HashSet<>();
+		if (trustedCertificates != null) {
+			for (X509Certificate cert : trustedCertificates) {
+				anchors.add(new TrustAnchor(cert, null));
+			}
+		}
+		this.trustAnchors = Collections.unmodifiableSet(anchors);
+		this.maxEntries = maxEntries;
+		this.timeToLiveMillis = unit.toMillis(timeToLive);
+		this.validated = new LinkedHashMap<Fingerprint, Long>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Fingerprint, Long> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Validates a certificate chain.
+	 * 
+	 * @param chain the chain, starting with the peer's certificate.
+	 * @throws GeneralSecurityException if the chain is not valid or not
+	 *             rooted at one of the trusted certificates.
+	 */
+	public void validate(CertPath chain) throws GeneralSecurityException {
+		if (maxEntries == 0 || timeToLiveMillis == 0) {
+			misses.incrementAndGet();
+			validateChain(chain);
+			return;
+		}
+		Fingerprint fingerprint = new Fingerprint(chain);
+		long now = System.currentTimeMillis();
+		synchronized (validated) {
+			Long expires = validated.get(fingerprint);
+			if (expires != null) {
+				if (now < expires) {
+					hits.incrementAndGet();
+					return;
+				}
+				validated.remove(fingerprint);
+			}
+		}
+		misses.incrementAndGet();
+		validateChain(chain);
+		long expires = getExpiration(chain, now);
+		synchronized (validated) {
+			validated.put(fingerprint, expires);
+		}
+	}
+
+	/**
+	 * Gets the number of chains accepted without PKIX validation.
+	 * 
+	 * @return the number of cache hits.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Gets the number of chains passed to PKIX validation.
+	 * 
+	 * @return the number of cache misses.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Gets the number of validated chains currently remembered.
+	 * 
+	 * @return the number of chains, including expired ones not yet removed.
+	 */
+	public int size() {
+		synchronized (validated) {
+			return validated.size();
+		}
+	}
+
+	private void validateChain(CertPath chain) throws GeneralSecurityException {
+		// fails with an InvalidAlgorithmParameterException for empty trust anchors
+		PKIXParameters params = new PKIXParameters(trustAnchors);
+		// TODO: implement alternative means of revocation checking
+		params.setRevocationEnabled(false);
+		CertPathValidator.getInstance(VALIDATOR_ALGORITHM).validate(chain, params);
+	}
+
+	private long getExpiration(CertPath chain, long now) {
+		long expires = timeToLiveMillis > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + timeToLiveMillis;
+		for (Certificate cert : chain.getCertificates()) {
+			if (cert instanceof X509Certificate) {
+				expires = Math.min(expires, ((X509Certificate) cert).getNotAfter().getTime());
+			}
+		}
+		return expires;
+	}
+
+	private static final class Fingerprint {
+
+		private final byte[] hash;
+		private final int hashCode;
+
+		private Fingerprint(CertPath chain) throws GeneralSecurityException {
+			MessageDigest md = MessageDigest.getInstance(FINGERPRINT_ALGORITHM);
+			for (Certificate cert : chain.getCertificates()) {
+				md.update(cert.getEncoded());
+			}
+			this.hash = md.digest();
+			this.hashCode = Arrays.hashCode(hash);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (!(obj instanceof Fingerprint)) {
+				return false;
+			}
+			return Arrays.equals(hash, ((Fingerprint) obj).hash);
+		}
+	}
+}
@@ -29,13 +29,13 @@
  *    Achim Kraus (Bosch Software Innovations GmbH) - use isSendRawKey also for 
  *                                                    supportedServerCertificateTypes
  *    Ludwig Seitz (RISE SICS) - Updated calls to verifyCertificate() after refactoring
+ *    Bosch Software Innovations GmbH - use SecureRandom provider from config
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
 import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.PublicKey;
-import java.security.SecureRandom;
 import java.security.cert.CertPath;
 import java.security.cert.X509Certificate;
 import java.security.interfaces.ECPublicKey;
@@ -55,6 +55,7 @@ import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
 import org.eclipse.californium.scandium.dtls.cipher.ECDHECryptography;
 import org.eclipse.californium.scandium.dtls.pskstore.PskStore;
 import org.eclipse.californium.scandium.util.ByteArrayUtils;
+import org.eclipse.californium.scandium.util.SecureRandomProvider;
 import org.eclipse.californium.scandium.util.ServerNames;
 
 /**
@@ -121,6 +122,8 @@ public class ClientHandshaker extends Handshaker {
 	protected final ServerNameResolver serverNameResolver;
 	protected ServerNames indicatedServerNames;
 	protected SignatureAndHashAlgorithm negotiatedSignatureAndHashAlgorithm;
+	/** Provides the random number generators for the client random and the ephemeral keys */
+	protected final SecureRandomProvider secureRandomProvider;
     
 	// Constructors ///////////////////////////////////////////////////
 
@@ -151,6 +154,7 @@ public class ClientHandshaker extends Handshaker {
 		this.publicKey = config.getPublicKey();
 		this.pskStore = config.getPskStore();
 		this.serverNameResolver = config.getServerNameResolver();
+		this.secureRandomProvider = config.getSecureRandomProvider();
 		this.preferredCipherSuites = config.getSupportedCipherSuites();
 		this.maxFragmentLengthCode = config.getMaxFragmentLengthCode();
 		this.supportedServerCertificateTypes = new ArrayList<>();
@@ -422,7 +426,8 @@ public class ClientHandshaker extends Handshaker {
 		}
 		ephemeralServerPublicKey = message.getPublicKey();
 		try {
-			ecdhe = new ECDHECryptography(ephemeralServerPublicKey.getParams());
+			ecdhe = new ECDHECryptography(ephemeralServerPublicKey.getParams(),
+					secureRandomProvider.getSecureRandom());
 		} catch (GeneralSecurityException e) {
 			throw new HandshakeException(
 				String.format(
@@ -649,7 +654,7 @@ public class ClientHandshaker extends Handshaker {
 	@Override
 	public void startHandshake() throws HandshakeException {
 		handshakeStarted();
-		ClientHello startMessage = new ClientHello(maxProtocolVersion, new SecureRandom(),
+		ClientHello startMessage = new ClientHello(maxProtocolVersion, secureRandomProvider.getSecureRandom(),
 				supportedClientCertificateTypes, supportedServerCertificateTypes, session.getPeer());
 
 		// store client random for later calculations
@@ -0,0 +1,414 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An in-memory <code>ConnectionStore</code> for concurrent access with a
+ * configurable maximum capacity and support for evicting stale connections.
+ * <p>
+ * The store offers the same capacity and expiration semantics as the
+ * {@link InMemoryConnectionStore}: a connection can be added, if the store's
+ * remaining capacity is greater than zero, or if the store contains at least
+ * one <em>stale</em> connection, which has not been accessed for at least the
+ * store's <em>connection expiration threshold</em>. In that case, the least
+ * recently accessed stale connection gets evicted.
+ * </p>
+ * <p>
+ * The connections are kept in a <code>ConcurrentHashMap</code> with the peer
+ * address as key. Each connection records the time of its last access, so
+ * lookups by peer address or session ID are lock-free and don't serialize the
+ * threads processing records. Only operations modifying the store are
+ * synchronized.
+ * </p>
+ * <p>
+ * Instead of keeping all connections in access-time order, stale connections
+ * are determined by scanning the store, when it is exhausted. The stale
+ * connections found are remembered in access-time order and evicted one after
+ * the other by subsequent puts, unless they have been accessed in the
+ * meantime. A new scan is only done, when all remembered connections have
+ * been used up and another connection may have become stale since the last
+ * scan. Remembered connections, which have been accessed after the scan, are
+ * skipped, so the eviction order stays exact.
+ * </p>
+ */
+public final class ConcurrentInMemoryConnectionStore implements ResumptionSupportingConnectionStore, SessionListener {
+
+	private static final Logger LOG = Logger.getLogger(ConcurrentInMemoryConnectionStore.class.getName());
+	private static final int DEFAULT_CACHE_SIZE = 150000;
+	private static final long DEFAULT_EXPIRATION_THRESHOLD = 36 * 60 * 60; // 36h
+	private static final Comparator<Candidate> ACCESS_ORDER = new Comparator<Candidate>() {
+
+		@Override
+		public int compare(final Candidate candidate1, final Candidate candidate2) {
+			return Long.compare(candidate1.lastAccess, candidate2.lastAccess);
+		}
+	};
+
+	private final ConcurrentMap<InetSocketAddress, Entry> connections;
+	/**
+	 * Connections with established session by session ID.
+	 */
+	private final ConcurrentMap<SessionId, Connection> connectionsBySessionId = new ConcurrentHashMap<>();
+	/**
+	 * The session IDs the connections are indexed by. Guarded by the store.
+	 */
+	private final Map<Connection, SessionId> sessionIdsByConnection = new HashMap<>();
+	private final int capacity;
+	/**
+	 * Expiration threshold in milliseconds.
+	 */
+	private final long threshold;
+	private final SessionCache sessionCache;
+	/**
+	 * Stale connections of the last scan in access-time order. Guarded by the
+	 * store.
+	 */
+	private final ArrayDeque<Candidate> evictionCandidates = new ArrayDeque<>();
+	/**
+	 * Time in milliseconds, before which no other connection than the
+	 * eviction candidates can become stale. Guarded by the store.
+	 */
+	private long nextScan;
+
+	/**
+	 * Creates a store with a capacity of 150000 connections and
+	 * a connection expiration threshold of 36 hours.
+	 */
+	public ConcurrentInMemoryConnectionStore() {
+		this(DEFAULT_CACHE_SIZE, DEFAULT_EXPIRATION_THRESHOLD);
+	}
+
+	/**
+	 * Creates a store based on given configuration parameters.
+	 *
+	 * @param capacity the maximum number of connections the store can manage
+	 * @param threshold the period of time of inactivity (in seconds) after which a
+	 *            connection is considered stale and can be evicted from the store if
+	 *            a new connection is to be added to the store
+	 */
+	public ConcurrentInMemoryConnectionStore(final int capacity, final long threshold) {
+		this(capacity, threshold, null);
+	}
+
+	/**
+	 * Creates a store based on given configuration parameters.
+	 *
+	 * @param capacity the maximum number of connections the store can manage
+	 * @param threshold the period of time of inactivity (in seconds) after which a
+	 *            connection is considered stale and can be evicted from the store if
+	 *            a new connection is to be added to the store
+	 * @param sessionCache a second level cache to use for <em>current</em>
+	 *                     connection state of established DTLS sessions.
+	 * @throws IllegalArgumentException if capacity is less than 1 or the
+	 *             threshold is negative.
+	 */
+	public ConcurrentInMemoryConnectionStore(final int capacity, final long threshold, final SessionCache sessionCache) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be at least 1");
+		} else if (threshold < 0) {
+			throw new IllegalArgumentException("Threshold must not be negative");
+		}
+		this.connections = new ConcurrentHashMap<>(Math.min(capacity, 1024));
+		this.capacity = capacity;
+		this.threshold = threshold * 1000;
+		this.sessionCache = sessionCache;
+		LOG.log(Level.CONFIG, "Created new ConcurrentInMemoryConnectionStore [capacity: {0}, connection expiration threshold: {1}s]",
+				new Object[]{capacity, threshold});
+	}
+
+	/**
+	 * Puts a connection to the store.
+	 * <p>
+	 * The connection's peer address is used as the key. A connection already
+	 * stored for that address is replaced.
+	 *
+	 * @return <code>true</code> if the connection could be added to the
+	 *         store, <code>false</code> otherwise, e.g. because the store's
+	 *         remaining capacity is zero and no stale connection can be evicted
+	 */
+	@Override
+	public synchronized boolean put(final Connection connection) {
+
+		if (connection == null) {
+			return false;
+		}
+		long now = System.currentTimeMillis();
+		InetSocketAddress peerAddress = connection.getPeerAddress();
+		Entry previous = connections.get(peerAddress);
+		if (previous == null && connections.size() >= capacity && !evictStaleConnection(now)) {
+			return false;
+		}
+		connections.put(peerAddress, new Entry(connection, now));
+		if (previous != null && previous.connection != connection) {
+			removeFromIndex(previous.connection);
+		}
+		addToIndex(connection, connection.getEstablishedSession());
+		return true;
+	}
+
+	/**
+	 * Evicts the least recently accessed stale connection.
+	 *
+	 * @param now the current time in milliseconds.
+	 * @return <code>true</code>, if a connection has been evicted,
+	 *         <code>false</code>, if the store contains no stale connection.
+	 */
+	private boolean evictStaleConnection(final long now) {
+		long staleBefore = now - threshold;
+		if (evictCandidate()) {
+			return true;
+		} else if (now < nextScan) {
+			return false;
+		}
+		List<Candidate> candidates = new ArrayList<>();
+		long oldestAccess = Long.MAX_VALUE;
+		for (Entry entry : connections.values()) {
+			long lastAccess = entry.lastAccess;
+			if (lastAccess <= staleBefore) {
+				candidates.add(new Candidate(entry, lastAccess));
+			} else if (lastAccess < oldestAccess) {
+				oldestAccess = lastAccess;
+			}
+		}
+		Collections.sort(candidates, ACCESS_ORDER);
+		evictionCandidates.addAll(candidates);
+		nextScan = oldestAccess == Long.MAX_VALUE ? now : oldestAccess + threshold;
+		LOG.log(Level.FINER, "Scanned connection store, found {0} stale connections", candidates.size());
+		return evictCandidate();
+	}
+
+	private boolean evictCandidate() {
+		Candidate candidate;
+		while ((candidate = evictionCandidates.poll()) != null) {
+			Entry entry = candidate.entry;
+			// skip connections accessed or removed since the scan. Accessed
+			// ones may be stale again, but not less recently accessed than
+			// connections added after the scan
+			if (entry.lastAccess == candidate.lastAccess && connections.remove(entry.connection.getPeerAddress(), entry)) {
+				removeFromIndex(entry.connection);
+				// make sure that session state for stale (evicted) connections is removed from second level cache
+				removeSessionFromCache(entry.connection);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Connection find(final SessionId id) {
+
+		if (id == null) {
+			return null;
+		} else {
+			Connection conFromLocalCache = findLocally(id);
+
+			if (sessionCache == null) {
+
+				return conFromLocalCache;
+
+			} else {
+
+				// make sure a stale session cannot be resumed
+				SessionTicket ticket = sessionCache.get(id);
+				if (ticket == null) {
+					// either a session with the given ID has never been established (on other nodes)
+					// or another node has removed the session from the cache, e.g. because it became
+					// stale
+
+					if (conFromLocalCache != null) {
+						// remove corresponding connection from this store
+						remove(conFromLocalCache.getPeerAddress());
+					}
+
+					return null;
+
+				} else if (conFromLocalCache == null) {
+					// this probably means that we are taking over the session from a failed node
+					return new Connection(ticket);
+					// connection will be put to first level cache as part of
+					// the abbreviated handshake
+				} else {
+					// resume connection found in local cache (i.e. this store)
+					return conFromLocalCache;
+				}
+			}
+		}
+	}
+
+	private Connection findLocally(final SessionId id) {
+
+		// the index is updated, when connections are replaced, removed or
+		// evicted, so the connection is not looked up by its peer address,
+		// which would update its last-access time
+		Connection connection = connectionsBySessionId.get(id);
+		if (connection != null) {
+			DTLSSession session = connection.getEstablishedSession();
+			if (session == null || !id.equals(session.getSessionIdentifier())) {
+				// the connection has established a newer session in the
+				// meantime
+				connectionsBySessionId.remove(id, connection);
+				return null;
+			}
+		}
+		return connection;
+	}
+
+	private void addToIndex(final Connection connection, final DTLSSession session) {
+		if (session != null) {
+			SessionId id = session.getSessionIdentifier();
+			SessionId previousId = sessionIdsByConnection.put(connection, id);
+			if (previousId != null && !previousId.equals(id)) {
+				// the connection's previous session is no longer resumable by
+				// this connection
+				connectionsBySessionId.remove(previousId, connection);
+			}
+			connectionsBySessionId.put(id, connection);
+		}
+	}
+
+	private void removeFromIndex(final Connection connection) {
+		SessionId id = sessionIdsByConnection.remove(connection);
+		if (id != null) {
+			connectionsBySessionId.remove(id, connection);
+		}
+	}
+
+	@Override
+	public void markAllAsResumptionRequired() {
+		for (Entry entry : connections.values()) {
+			entry.connection.setResumptionRequired(true);
+		}
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return Math.max(0, capacity - connections.size());
+	}
+
+	/**
+	 * Gets a connection by its peer address.
+	 * <p>
+	 * The connection's last-access time is updated without locking the store.
+	 */
+	@Override
+	public Connection get(final InetSocketAddress peerAddress) {
+		if (peerAddress == null) {
+			return null;
+		}
+		Entry entry = connections.get(peerAddress);
+		if (entry == null) {
+			return null;
+		}
+		entry.lastAccess = System.currentTimeMillis();
+		return entry.connection;
+	}
+
+	@Override
+	public synchronized Connection remove(final InetSocketAddress peerAddress) {
+		if (peerAddress == null) {
+			return null;
+		}
+		Entry removedEntry = connections.remove(peerAddress);
+		if (removedEntry == null) {
+			return null;
+		}
+		removeFromIndex(removedEntry.connection);
+		removeSessionFromCache(removedEntry.connection);
+		return removedEntry.connection;
+	}
+
+	private void removeSessionFromCache(final Connection connection) {
+		if (sessionCache != null && connection.hasEstablishedSession()) {
+			sessionCache.remove(connection.getEstablishedSession().getSessionIdentifier());
+		}
+	}
+
+	@Override
+	public synchronized void clear() {
+		connections.clear();
+		connectionsBySessionId.clear();
+		sessionIdsByConnection.clear();
+		evictionCandidates.clear();
+		nextScan = 0;
+	}
+
+	@Override
+	public void handshakeStarted(final Handshaker handshaker) throws HandshakeException {
+		// nothing to do
+	}
+
+	@Override
+	public void sessionEstablished(final Handshaker handshaker, final DTLSSession establishedSession) throws HandshakeException {
+		indexEstablishedSession(establishedSession);
+		if (sessionCache != null) {
+			// put current connection state to second level cache
+			sessionCache.put(establishedSession);
+		}
+	}
+
+	private synchronized void indexEstablishedSession(final DTLSSession establishedSession) {
+		Connection connection = get(establishedSession.getPeer());
+		if (connection != null) {
+			addToIndex(connection, establishedSession);
+		}
+	}
+
+	@Override
+	public void handshakeCompleted(final InetSocketAddress peer) {
+		// nothing to do
+	}
+
+	/**
+	 * A stored connection with its last-access time.
+	 */
+	private static final class Entry {
+
+		private final Connection connection;
+		private volatile long lastAccess;
+
+		private Entry(final Connection connection, final long lastAccess) {
+			this.connection = connection;
+			this.lastAccess = lastAccess;
+		}
+	}
+
+	/**
+	 * A stale connection with the last-access time at the scan.
+	 */
+	private static final class Candidate {
+
+		private final Entry entry;
+		private final long lastAccess;
+
+		private Candidate(final Entry entry, final long lastAccess) {
+			this.entry = entry;
+			this.lastAccess = lastAccess;
+		}
+	}
+}
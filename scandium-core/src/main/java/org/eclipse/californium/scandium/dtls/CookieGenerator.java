@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import java.net.InetSocketAddress;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.eclipse.californium.scandium.dtls.AlertMessage.AlertDescription;
+import org.eclipse.californium.scandium.dtls.AlertMessage.AlertLevel;
+import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
+import org.eclipse.californium.scandium.util.SecureRandomProvider;
+import org.eclipse.californium.scandium.util.ThreadLocalSecureRandomProvider;
+
+/**
+ * A generator for the stateless cookies exchanged by means of a
+ * <em>HELLO_VERIFY_REQUEST</em>.
+ * <p>
+ * Cookies are computed as
+ * 
+ * <pre>
+ * Cookie = HMAC(Secret, Client-IP, Client-Parameters)
+ * </pre>
+ * 
+ * as suggested in
+ * <a href="http://tools.ietf.org/html/rfc6347#section-4.2.1">section 4.2.1
+ * of RFC 6347</a>.
+ * <p>
+ * The secret is replaced periodically. The previous secret is kept so that
+ * cookies handed out shortly before a rotation are still accepted.
+ * <p>
+ * Each thread keeps its own {@link Mac} instances for the current and the
+ * previous secret, which are only re-initialized when the secret changes. This avoids looking up the JCE provider and
+ * initializing the MAC for every <em>CLIENT_HELLO</em> received.
+ */
+public final class CookieGenerator {
+
+	/**
+	 * The default period of time after which the secret is replaced (5 minutes).
+	 */
+	public static final long DEFAULT_SECRET_LIFETIME_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+	private static final String MAC_ALGORITHM = "HmacSHA256";
+	private static final int SECRET_LENGTH = 32;
+	private static final int COOKIE_LENGTH = 32;
+
+	private final ThreadLocal<ThreadMac> threadMac = new ThreadLocal<>();
+	private final SecureRandomProvider randomProvider;
+	private final long secretLifetimeNanos;
+	// guards rotation of the secrets
+	private final Object rotationLock = new Object();
+	private volatile Secrets secrets;
+
+	/**
+	 * Creates a generator replacing its secret every
+	 * {@link #DEFAULT_SECRET_LIFETIME_MILLIS} milliseconds.
+	 */
+	public CookieGenerator() {
+		this(DEFAULT_SECRET_LIFETIME_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Creates a generator replacing its secret periodically.
+	 * 
+	 * @param secretLifetime the period of time after which the secret is replaced.
+	 * @param unit the unit of the lifetime.
+	 * @throws IllegalArgumentException if the lifetime is not positive.
+	 * @throws NullPointerException if the unit is {@code null}.
+	 */
+	public CookieGenerator(long secretLifetime, TimeUnit unit) {
+		this(secretLifetime, unit, ThreadLocalSecureRandomProvider.getDefault());
+	}
+
+	/**
+	 * Creates a generator replacing its secret periodically.
+	 * 
+	 * @param secretLifetime the period of time after which the secret is replaced.
+	 * @param unit the unit of the lifetime.
+	 * @param randomProvider the provider to create the secrets with.
+	 * @throws IllegalArgumentException if the lifetime is not positive.
+	 * @throws NullPointerException if the unit or provider is {@code null}.
+	 */
+	public CookieGenerator(long secretLifetime, TimeUnit unit, SecureRandomProvider randomProvider) {
+		if (secretLifetime <= 0) {
+			throw new IllegalArgumentException("Secret lifetime must be positive");
+		} else if (randomProvider == null) {
+			throw new NullPointerException("Random provider must not be null");
+		}
+		this.randomProvider = randomProvider;
+		this.secretLifetimeNanos = unit.toNanos(secretLifetime);
+		this.secrets = new Secrets(newSecret(), null, System.nanoTime() + secretLifetimeNanos);
+	}
+
+	/**
+	 * Generates the cookie a client is expected to include in its
+	 * <em>CLIENT_HELLO</em>.
+	 * 
+	 * @param clientHello the client's hello message.
+	 * @return the cookie computed with the current secret.
+	 * @throws DtlsHandshakeException if the cookie cannot be computed.
+	 */
+	public byte[] generateCookie(ClientHello clientHello) {
+		return computeCookie(getSecrets().current, clientHello);
+	}
+
+	/**
+	 * Checks whether a client hello contains a cookie generated by this
+	 * generator.
+	 * <p>
+	 * Cookies computed with either the current or the previous secret are
+	 * accepted. Empty cookies and cookies of the wrong length are rejected
+	 * without computing any MAC.
+	 * 
+	 * @param clientHello the client's hello message.
+	 * @return {@code true} if the cookie is valid.
+	 * @throws DtlsHandshakeException if the expected cookie cannot be computed.
+	 */
+	public boolean isValidCookie(ClientHello clientHello) {
+		byte[] cookie = clientHello.getCookie();
+		if (cookie == null || cookie.length != COOKIE_LENGTH) {
+			return false;
+		}
+		Secrets current = getSecrets();
+		if (MessageDigest.isEqual(cookie, computeCookie(current.current, clientHello))) {
+			return true;
+		}
+		return current.previous != null
+				&& MessageDigest.isEqual(cookie, computeCookie(current.previous, clientHello));
+	}
+
+	/**
+	 * Replaces the current secret with a new one.
+	 * <p>
+	 * The current secret becomes the previous one.
+	 */
+	void rotateSecret() {
+		synchronized (rotationLock) {
+			secrets = new Secrets(newSecret(), secrets.current, System.nanoTime() + secretLifetimeNanos);
+		}
+	}
+
+	private Secrets getSecrets() {
+		Secrets result = secrets;
+		long now = System.nanoTime();
+		if (now - result.expires >= 0) {
+			synchronized (rotationLock) {
+				result = secrets;
+				if (now - result.expires >= 0) {
+					// drop the previous secret as well if the current one
+					// has not been used during a whole period
+					SecretKey previous = now - result.expires < secretLifetimeNanos ? result.current : null;
+					result = new Secrets(newSecret(), previous, now + secretLifetimeNanos);
+					secrets = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	private SecretKey newSecret() {
+		byte[] secret = new byte[SECRET_LENGTH];
+		randomProvider.getSecureRandom().nextBytes(secret);
+		return new SecretKeySpec(secret, "MAC");
+	}
+
+	private byte[] computeCookie(SecretKey secret, ClientHello clientHello) {
+		try {
+			Mac hmac = getMac(secret);
+			// Client-IP
+			InetSocketAddress peer = clientHello.getPeer();
+			hmac.update(peer.getAddress().getAddress());
+			int port = peer.getPort();
+			hmac.update((byte) (port >>> 8));
+			hmac.update((byte) port);
+
+			// Client-Parameters
+			hmac.update((byte) clientHello.getClientVersion().getMajor());
+			hmac.update((byte) clientHello.getClientVersion().getMinor());
+			hmac.update(clientHello.getRandom().getRandomBytes());
+			hmac.update(clientHello.getSessionId().getId());
+			for (CipherSuite cipherSuite : clientHello.getCipherSuites()) {
+				int code = cipherSuite.getCode();
+				hmac.update((byte) (code >>> 8));
+				hmac.update((byte) code);
+			}
+			for (CompressionMethod compressionMethod : clientHello.getCompressionMethods()) {
+				hmac.update((byte) compressionMethod.getCode());
+			}
+			return hmac.doFinal();
+		} catch (GeneralSecurityException e) {
+			throw new DtlsHandshakeException(
+					"Cannot compute cookie for peer",
+					AlertDescription.INTERNAL_ERROR,
+					AlertLevel.FATAL,
+					clientHello.getPeer(),
+					e);
+		}
+	}
+
+	private Mac getMac(SecretKey secret) throws GeneralSecurityException {
+		ThreadMac cached = threadMac.get();
+		if (cached == null) {
+			cached = new ThreadMac(Mac.getInstance(MAC_ALGORITHM), Mac.getInstance(MAC_ALGORITHM));
+			threadMac.set(cached);
+		}
+		return cached.getMac(secret);
+	}
+
+	private static final class Secrets {
+
+		private final SecretKey current;
+		private final SecretKey previous;
+		private final long expires;
+
+		private Secrets(SecretKey current, SecretKey previous, long expires) {
+			this.current = current;
+			this.previous = previous;
+			this.expires = expires;
+		}
+	}
+
+	/**
+	 * The MACs of a thread, one for each secret in use.
+	 */
+	private static final class ThreadMac {
+
+		private final Mac[] macs;
+		private final SecretKey[] secrets = new SecretKey[2];
+		private int lastUsed;
+
+		private ThreadMac(Mac first, Mac second) {
+			this.macs = new Mac[] { first, second };
+		}
+
+		private Mac getMac(SecretKey secret) throws GeneralSecurityException {
+			int slot;
+			if (secrets[0] == secret) {
+				slot = 0;
+			} else if (secrets[1] == secret) {
+				slot = 1;
+			} else {
+				// replace the secret which has not been used most recently
+				slot = 1 - lastUsed;
+				macs[slot].init(secret);
+				secrets[slot] = secret;
+			}
+			lastUsed = slot;
+			// discard any state left by an aborted computation
+			macs[slot].reset();
+			return macs[slot];
+		}
+	}
+}
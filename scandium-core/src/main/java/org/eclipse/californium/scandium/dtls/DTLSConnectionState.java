@@ -18,12 +18,16 @@
  *    Kai Hudalla (Bosch Software Innovations GmbH) - add toString()
  *    Kai Hudalla (Bosch Software Innovations GmbH) - improve JavaDocs, add method for retrieving
  *                                                    maximum ciphertext expansion of cipher suite
+ *    Bosch Software Innovations GmbH - keep AEAD cipher engine with state
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
+import java.security.GeneralSecurityException;
+
 import javax.crypto.SecretKey;
 import javax.crypto.spec.IvParameterSpec;
 
+import org.eclipse.californium.scandium.dtls.cipher.AeadCipher;
 import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
 
 /**
@@ -48,6 +52,10 @@ class DTLSConnectionState {
 	private SecretKey encryptionKey;
 	private IvParameterSpec iv;
 	private SecretKey macKey;
+	/**
+	 * The AEAD cipher engine for the encryption key, created on first use.
+	 */
+	private AeadCipher aeadCipher;
 
 	// Constructors ///////////////////////////////////////////////////
 
@@ -140,6 +148,24 @@ class DTLSConnectionState {
 		return macKey;
 	}
 
+	/**
+	 * Gets the engine of the cipher suite's AEAD cipher for the encryption key.
+	 * <p>
+	 * The engine is created on first use and reused for all records protected
+	 * with this state.
+	 * 
+	 * @return the engine
+	 * @throws GeneralSecurityException if the engine could not be created
+	 * @throws IllegalStateException if the cipher suite doesn't use an AEAD
+	 *             cipher
+	 */
+	synchronized AeadCipher getAeadCipher() throws GeneralSecurityException {
+		if (aeadCipher == null) {
+			aeadCipher = cipherSuite.createAeadCipher(encryptionKey);
+		}
+		return aeadCipher;
+	}
+
 	/**
 	 * Gets the output length of the MAC algorithm.
 	 *  
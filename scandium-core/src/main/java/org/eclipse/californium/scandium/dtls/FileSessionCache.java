@@ -0,0 +1,506 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.californium.elements.util.DatagramReader;
+import org.eclipse.californium.elements.util.DatagramWriter;
+
+/**
+ * A session cache keeping the session tickets in a memory-mapped file, so
+ * that clients can resume their sessions after the node has been restarted.
+ * <p>
+ * The file consists of <em>capacity</em> slots of a fixed size. Each slot
+ * holds the session identifier, the time the ticket has been added and the
+ * ticket encoded by means of {@link SessionTicket#encode(DatagramWriter)}.
+ * Tickets not fitting into a slot, e.g. because of a long X.509 certificate
+ * chain of the client, are kept in memory only. If the cache is full, the
+ * oldest ticket is replaced.
+ * <p>
+ * The slots are read when the cache is accessed for the first time, tickets
+ * are decoded only when they are looked up. Tickets older than
+ * <em>maxAge</em> are not returned anymore and are dropped.
+ * <p>
+ * The tickets contain the sessions' master secrets. The file should
+ * therefore be readable by the owner only, which this cache tries to ensure
+ * when it creates the file on a POSIX file system.
+ * <p>
+ * Several nodes can share their tickets by means of a
+ * {@link SessionTicketReplicator}.
+ */
+public final class FileSessionCache implements SessionCache, Closeable {
+
+	/**
+	 * The default size of a slot in bytes.
+	 * <p>
+	 * Sufficient for tickets of sessions authenticated by pre-shared keys or
+	 * raw public keys.
+	 */
+	public static final int DEFAULT_SLOT_SIZE = 512;
+
+	private static final Logger LOGGER = Logger.getLogger(FileSessionCache.class.getName());
+
+	private static final int MAGIC = 0x44534331; // "DSC1"
+	// magic, slot size, capacity, reserved
+	private static final int HEADER_SIZE = 16;
+	private static final int MAX_ID_LENGTH = 32;
+	// flag, id length, id, timestamp, ticket length
+	private static final int SLOT_HEADER_SIZE = 1 + 1 + MAX_ID_LENGTH + 8 + 2;
+	private static final int OFFSET_ID_LENGTH = 1;
+	private static final int OFFSET_ID = 2;
+	private static final int OFFSET_TIMESTAMP = OFFSET_ID + MAX_ID_LENGTH;
+	private static final int OFFSET_TICKET_LENGTH = OFFSET_TIMESTAMP + 8;
+	private static final byte SLOT_FREE = 0;
+	private static final byte SLOT_USED = 1;
+
+	private final File file;
+	private final RandomAccessFile randomAccessFile;
+	private final MappedByteBuffer buffer;
+	private final int capacity;
+	private final int slotSize;
+	private final long maxAgeMillis;
+	// guarded by this, oldest first
+	private final Map<SessionId, Entry> index = new LinkedHashMap<>();
+	// guarded by this
+	private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+	// guarded by this
+	private boolean loaded;
+	// guarded by this
+	private boolean closed;
+	private volatile SessionTicketReplicator replicator;
+
+	/**
+	 * Creates a cache using slots of {@link #DEFAULT_SLOT_SIZE} bytes.
+	 * 
+	 * @param file the file to keep the tickets in.
+	 * @param capacity the maximum number of tickets.
+	 * @param maxAge the time after which a ticket expires.
+	 * @param unit the unit of the maximum age.
+	 * @throws IOException if the file cannot be opened or created.
+	 * @throws NullPointerException if file or unit is {@code null}.
+	 * @throws IllegalArgumentException if capacity or maxAge is less than 1.
+	 */
+	public FileSessionCache(File file, int capacity, long maxAge, TimeUnit unit) throws IOException {
+		this(file, capacity, DEFAULT_SLOT_SIZE, maxAge, unit);
+	}
+
+	/**
+	 * Creates a cache.
+	 * <p>
+	 * An existing file is used, if it has been created with the same capacity
+	 * and slot size. Otherwise its contents are discarded.
+	 * 
+	 * @param file the file to keep the tickets in.
+	 * @param capacity the maximum number of tickets.
+	 * @param slotSize the number of bytes reserved for each ticket including
+	 *            the session identifier and timestamp.
+	 * @param maxAge the time after which a ticket expires.
+	 * @param unit the unit of the maximum age.
+	 * @throws IOException if the file cannot be opened or created.
+	 * @throws NullPointerException if file or unit is {@code null}.
+	 * @throws IllegalArgumentException if capacity or maxAge is less than 1,
+	 *             the slot size cannot hold a ticket or the resulting file
+	 *             exceeds 2 GB.
+	 */
+	public FileSessionCache(File file, int capacity, int slotSize, long maxAge, TimeUnit unit) throws IOException {
+		if (file == null) {
+			throw new NullPointerException("File must not be null");
+		} else if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be at least 1");
+		} else if (slotSize <= SLOT_HEADER_SIZE) {
+			throw new IllegalArgumentException("Slot size must be larger than " + SLOT_HEADER_SIZE);
+		} else if (maxAge < 1) {
+			throw new IllegalArgumentException("Max. age must be at least 1");
+		}
+		long size = HEADER_SIZE + (long) capacity * slotSize;
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Capacity and slot size exceed max. file size");
+		}
+		this.file = file;
+		this.capacity = capacity;
+		this.slotSize = slotSize;
+		this.maxAgeMillis = unit.toMillis(maxAge);
+
+		boolean created = !file.exists();
+		randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			if (created) {
+				restrictPermissions(file);
+			}
+			boolean compatible = isCompatible(size);
+			if (!compatible) {
+				randomAccessFile.setLength(0);
+				randomAccessFile.setLength(size);
+			}
+			buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+			if (!compatible) {
+				format();
+				if (!created) {
+					LOGGER.log(Level.INFO, "Discarded session tickets in {0}, capacity or slot size changed", file);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			randomAccessFile.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Sets the replicator to notify about tickets added to or removed from
+	 * this cache.
+	 * 
+	 * @param replicator the replicator, {@code null} disables replication.
+	 */
+	public void setReplicator(SessionTicketReplicator replicator) {
+		this.replicator = replicator;
+	}
+
+	@Override
+	public void put(final DTLSSession session) {
+		if (session != null) {
+			SessionId id = session.getSessionIdentifier();
+			DatagramWriter writer = new DatagramWriter();
+			session.getSessionTicket().encode(writer);
+			byte[] ticket = writer.toByteArray();
+			long timestamp = System.currentTimeMillis();
+			if (store(id, ticket, timestamp, false)) {
+				SessionTicketReplicator currentReplicator = replicator;
+				if (currentReplicator != null) {
+					currentReplicator.ticketAdded(id, ticket, timestamp);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds a ticket received from another node.
+	 * <p>
+	 * The ticket is ignored, if it has already expired or if this cache
+	 * contains a newer ticket for the session. The replicator is not notified.
+	 * 
+	 * @param id the identifier of the session.
+	 * @param ticket the encoded ticket as passed to
+	 *            {@link SessionTicketReplicator#ticketAdded(SessionId, byte[], long)}.
+	 * @param timestamp the time the ticket has been added on the other node.
+	 * @throws NullPointerException if id or ticket is {@code null}.
+	 */
+	public void putReplicated(SessionId id, byte[] ticket, long timestamp) {
+		if (id == null) {
+			throw new NullPointerException("Session ID must not be null");
+		} else if (ticket == null) {
+			throw new NullPointerException("Ticket must not be null");
+		}
+		store(id, ticket, timestamp, true);
+	}
+
+	@Override
+	public SessionTicket get(final SessionId id) {
+		byte[] ticket;
+		synchronized (this) {
+			Entry entry = getEntry(id);
+			if (entry == null) {
+				return null;
+			}
+			ticket = entry.ticket == null ? readTicket(entry.slot) : entry.ticket;
+		}
+		return SessionTicket.decode(new DatagramReader(ticket));
+	}
+
+	@Override
+	public void remove(final SessionId id) {
+		boolean removed;
+		synchronized (this) {
+			removed = getEntry(id) != null && removeEntry(id);
+		}
+		if (removed) {
+			SessionTicketReplicator currentReplicator = replicator;
+			if (currentReplicator != null) {
+				currentReplicator.ticketRemoved(id);
+			}
+		}
+	}
+
+	/**
+	 * Removes a ticket on behalf of another node.
+	 * <p>
+	 * The replicator is not notified.
+	 * 
+	 * @param id the identifier of the session.
+	 */
+	public synchronized void removeReplicated(SessionId id) {
+		if (id != null && open()) {
+			removeEntry(id);
+		}
+	}
+
+	/**
+	 * Gets the number of tickets in this cache.
+	 * 
+	 * @return the number of tickets, including expired ones not yet dropped.
+	 */
+	public synchronized int size() {
+		return open() ? index.size() : 0;
+	}
+
+	/**
+	 * Writes pending changes to the file and closes it.
+	 * <p>
+	 * Afterwards, this cache is empty and ignores new tickets.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			index.clear();
+			freeSlots.clear();
+			try {
+				buffer.force();
+			} finally {
+				randomAccessFile.close();
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "FileSessionCache [" + file + "]";
+	}
+
+	private synchronized boolean store(SessionId id, byte[] ticket, long timestamp, boolean replicated) {
+		if (id.isEmpty() || id.length() > MAX_ID_LENGTH || !open()) {
+			return false;
+		}
+		long now = System.currentTimeMillis();
+		if (now - timestamp >= maxAgeMillis) {
+			return false;
+		}
+		Entry previous = index.remove(id);
+		if (previous != null && replicated && previous.timestamp > timestamp) {
+			// keep the newer ticket at its position
+			index.put(id, previous);
+			return false;
+		}
+		int slot = previous == null ? -1 : previous.slot;
+		if (slot < 0 && ticket.length <= slotSize - SLOT_HEADER_SIZE) {
+			while (freeSlots.isEmpty() || index.size() >= capacity) {
+				removeEntry(index.keySet().iterator().next());
+			}
+			slot = freeSlots.poll();
+		} else if (slot >= 0 && ticket.length > slotSize - SLOT_HEADER_SIZE) {
+			clearSlot(slot);
+			slot = -1;
+		}
+		if (slot < 0) {
+			while (index.size() >= capacity) {
+				removeEntry(index.keySet().iterator().next());
+			}
+			index.put(id, new Entry(-1, timestamp, ticket));
+		} else {
+			writeSlot(slot, id, ticket, timestamp);
+			index.put(id, new Entry(slot, timestamp, null));
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the entry for a session, dropping it if it has expired.
+	 */
+	private Entry getEntry(SessionId id) {
+		if (id == null || !open()) {
+			return null;
+		}
+		Entry entry = index.get(id);
+		if (entry != null && System.currentTimeMillis() - entry.timestamp >= maxAgeMillis) {
+			removeEntry(id);
+			return null;
+		}
+		return entry;
+	}
+
+	private boolean removeEntry(SessionId id) {
+		Entry entry = index.remove(id);
+		if (entry == null) {
+			return false;
+		}
+		if (entry.slot >= 0) {
+			clearSlot(entry.slot);
+		}
+		return true;
+	}
+
+	/**
+	 * Checks, whether this cache is still open and reads the slots on first use.
+	 */
+	private boolean open() {
+		if (closed) {
+			return false;
+		} else if (!loaded) {
+			load();
+			loaded = true;
+		}
+		return true;
+	}
+
+	private void load() {
+		long now = System.currentTimeMillis();
+		List<Loaded> tickets = new ArrayList<>();
+		int dropped = 0;
+		for (int slot = 0; slot < capacity; ++slot) {
+			int position = getPosition(slot);
+			if (buffer.get(position) == SLOT_USED) {
+				int idLength = buffer.get(position + OFFSET_ID_LENGTH) & 0xff;
+				int ticketLength = buffer.getShort(position + OFFSET_TICKET_LENGTH) & 0xffff;
+				long timestamp = buffer.getLong(position + OFFSET_TIMESTAMP);
+				if (idLength > 0 && idLength <= MAX_ID_LENGTH && ticketLength <= slotSize - SLOT_HEADER_SIZE
+						&& now - timestamp < maxAgeMillis) {
+					byte[] id = new byte[idLength];
+					ByteBuffer view = buffer.duplicate();
+					view.position(position + OFFSET_ID);
+					view.get(id);
+					tickets.add(new Loaded(new SessionId(id), slot, timestamp));
+					continue;
+				}
+				buffer.put(position, SLOT_FREE);
+				++dropped;
+			}
+			freeSlots.add(slot);
+		}
+		Collections.sort(tickets, new Comparator<Loaded>() {
+
+			@Override
+			public int compare(Loaded o1, Loaded o2) {
+				return o1.timestamp < o2.timestamp ? -1 : (o1.timestamp == o2.timestamp ? 0 : 1);
+			}
+		});
+		for (Loaded ticket : tickets) {
+			Entry previous = index.put(ticket.id, new Entry(ticket.slot, ticket.timestamp, null));
+			if (previous != null) {
+				// keep the newer ticket only
+				clearSlot(previous.slot);
+			}
+		}
+		LOGGER.log(Level.FINE, "Loaded {0} session tickets from {1}, dropped {2} expired ones",
+				new Object[] { index.size(), file, dropped });
+	}
+
+	private void writeSlot(int slot, SessionId id, byte[] ticket, long timestamp) {
+		int position = getPosition(slot);
+		// mark free while writing, so that an interrupted write is not taken for a ticket
+		buffer.put(position, SLOT_FREE);
+		buffer.put(position + OFFSET_ID_LENGTH, (byte) id.length());
+		ByteBuffer view = buffer.duplicate();
+		view.position(position + OFFSET_ID);
+		view.put(id.getId());
+		buffer.putLong(position + OFFSET_TIMESTAMP, timestamp);
+		buffer.putShort(position + OFFSET_TICKET_LENGTH, (short) ticket.length);
+		view.position(position + SLOT_HEADER_SIZE);
+		view.put(ticket);
+		buffer.put(position, SLOT_USED);
+	}
+
+	private byte[] readTicket(int slot) {
+		int position = getPosition(slot);
+		byte[] ticket = new byte[buffer.getShort(position + OFFSET_TICKET_LENGTH) & 0xffff];
+		ByteBuffer view = buffer.duplicate();
+		view.position(position + SLOT_HEADER_SIZE);
+		view.get(ticket);
+		return ticket;
+	}
+
+	private void clearSlot(int slot) {
+		buffer.put(getPosition(slot), SLOT_FREE);
+		freeSlots.add(slot);
+	}
+
+	private int getPosition(int slot) {
+		return HEADER_SIZE + slot * slotSize;
+	}
+
+	private boolean isCompatible(long size) throws IOException {
+		if (randomAccessFile.length() != size) {
+			return false;
+		}
+		randomAccessFile.seek(0);
+		return randomAccessFile.readInt() == MAGIC && randomAccessFile.readInt() == slotSize
+				&& randomAccessFile.readInt() == capacity;
+	}
+
+	private void format() {
+		for (int slot = 0; slot < capacity; ++slot) {
+			buffer.put(getPosition(slot), SLOT_FREE);
+		}
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, slotSize);
+		buffer.putInt(8, capacity);
+		buffer.force();
+	}
+
+	private static void restrictPermissions(File file) {
+		try {
+			Files.setPosixFilePermissions(file.toPath(),
+					EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE));
+		} catch (UnsupportedOperationException | IOException e) {
+			LOGGER.log(Level.FINE, "Cannot restrict access to {0}: {1}", new Object[] { file, e.getMessage() });
+		}
+	}
+
+	private static final class Entry {
+
+		private final int slot;
+		private final long timestamp;
+		// tickets not fitting into a slot only
+		private final byte[] ticket;
+
+		private Entry(int slot, long timestamp, byte[] ticket) {
+			this.slot = slot;
+			this.timestamp = timestamp;
+			this.ticket = ticket;
+		}
+	}
+
+	private static final class Loaded {
+
+		private final SessionId id;
+		private final int slot;
+		private final long timestamp;
+
+		private Loaded(SessionId id, int slot, long timestamp) {
+			this.id = id;
+			this.slot = slot;
+			this.timestamp = timestamp;
+		}
+	}
+}
@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+/**
+ * Resumes suspended handshakes.
+ * <p>
+ * A handshaker suspends the processing of messages while waiting for the
+ * result of an asynchronous operation, e.g. the lookup of a pre-shared key.
+ * When the result is available, the handshaker uses the resumer to continue
+ * the handshake in the execution context, which processes the records of the
+ * peer.
+ */
+public interface HandshakeResumer {
+
+	/**
+	 * Schedules the call of {@link Handshaker#resume()}.
+	 * <p>
+	 * May be called from any thread.
+	 * 
+	 * @param handshaker The handshaker to resume.
+	 */
+	void resume(Handshaker handshaker);
+}
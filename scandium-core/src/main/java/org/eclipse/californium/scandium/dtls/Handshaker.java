@@ -32,6 +32,10 @@
  *                                                    see issue #406
  *    Ludwig Seitz (RISE SICS) - Moved certificate validation here from CertificateMessage
  *    Ludwig Seitz (RISE SICS) - Added support for raw public key validation
+ *    Bosch Software Innovations GmbH - add suspending and resuming the processing
+ *                                      of messages
+ *    Bosch Software Innovations GmbH - validate certificate chains using a
+ *                                      CachingCertPathValidator
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
@@ -41,14 +45,10 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.cert.CertPathValidator;
-import java.security.cert.PKIXParameters;
-import java.security.cert.TrustAnchor;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -81,6 +81,11 @@ import org.eclipse.californium.scandium.util.ByteArrayUtils;
 public abstract class Handshaker {
 
 	private static final String MESSAGE_DIGEST_ALGORITHM_NAME = "SHA-256";
+	/**
+	 * The maximum number of records deferred while the processing is
+	 * suspended. The peer retransmits records dropped beyond that.
+	 */
+	private static final int MAX_DEFERRED_RECORDS = 16;
 	private static final Logger LOGGER = Logger.getLogger(Handshaker.class.getName());
 
 	/**
@@ -117,6 +122,9 @@ public abstract class Handshaker {
 	/** The trusted raw public keys */
 	protected final TrustedRpkStore rpkStore;
 
+	/** Validates X.509 certificate chains, created from rootCertificates if not set */
+	private CachingCertPathValidator certPathValidator;
+
 	/**
 	 * The current sequence number (in the handshake message called message_seq)
 	 * for this handshake.
@@ -154,6 +162,15 @@ public abstract class Handshaker {
 
 	private boolean changeCipherSuiteMessageExpected = false;
 
+	/**
+	 * Indicates, that the processing of messages is suspended until
+	 * {@link #resume()} is called.
+	 */
+	private boolean suspended = false;
+
+	/** Records received while the processing was suspended. */
+	private final List<Record> deferredRecords = new ArrayList<>();
+
 	// Constructor ////////////////////////////////////////////////////
 
 	/**
@@ -407,25 +424,18 @@ public abstract class Handshaker {
 		// The DTLS 1.2 spec (section 4.1.2.6) advises to do replay detection
 		// before MAC validation based on the record's sequence numbers
 		// see http://tools.ietf.org/html/rfc6347#section-4.1.2.6
-		if (!session.isDuplicate(record.getSequenceNumber())) {
+		if (suspended) {
+			// the record is processed, when the handshake is resumed
+			if (deferredRecords.size() < MAX_DEFERRED_RECORDS) {
+				deferredRecords.add(record);
+			} else {
+				LOGGER.log(Level.FINER, "Discarding record from peer [{0}], handshake is suspended",
+						record.getPeerAddress());
+			}
+		} else if (!session.isDuplicate(record.getSequenceNumber())) {
 			try {
 				record.setSession(session);
-				DTLSMessage messageToProcess = inboundMessageBuffer.getNextMessage(record);
-				while (messageToProcess != null) {
-					if (messageToProcess instanceof FragmentedHandshakeMessage) {
-						messageToProcess = handleFragmentation((FragmentedHandshakeMessage) messageToProcess);
-					}
-
-					if (messageToProcess == null) {
-						// messageToProcess is fragmented and not all parts have been received yet
-					} else {
-						// continue with the now fully re-assembled message
-						doProcessMessage(messageToProcess);
-					}
-
-					// process next expected message (if available yet)
-					messageToProcess = inboundMessageBuffer.getNextMessage();
-				}
+				processMessages(inboundMessageBuffer.getNextMessage(record));
 				session.markRecordAsRead(record.getEpoch(), record.getSequenceNumber());
 			} catch (GeneralSecurityException e) {
 				LOGGER.log(Level.WARNING,
@@ -442,6 +452,107 @@ public abstract class Handshaker {
 		}
 	}
 
+	/**
+	 * Processes a message and all buffered messages following it.
+	 * <p>
+	 * The processing stops, when a message suspends the processing.
+	 * 
+	 * @param message the message to process first. May be {@code null}.
+	 * @throws HandshakeException if a message cannot be processed properly
+	 * @throws GeneralSecurityException if a buffered record cannot be
+	 *             decrypted
+	 */
+	private void processMessages(DTLSMessage message) throws HandshakeException, GeneralSecurityException {
+		DTLSMessage messageToProcess = message;
+		while (messageToProcess != null) {
+			if (messageToProcess instanceof FragmentedHandshakeMessage) {
+				messageToProcess = handleFragmentation((FragmentedHandshakeMessage) messageToProcess);
+			}
+
+			if (messageToProcess == null) {
+				// messageToProcess is fragmented and not all parts have been received yet
+			} else {
+				// continue with the now fully re-assembled message
+				doProcessMessage(messageToProcess);
+			}
+
+			if (suspended) {
+				// continue with buffered messages, when resumed
+				return;
+			}
+			// process next expected message (if available yet)
+			messageToProcess = inboundMessageBuffer.getNextMessage();
+		}
+	}
+
+	/**
+	 * Suspends the processing of messages.
+	 * <p>
+	 * Intended to be called from {@link #doProcessMessage(DTLSMessage)}, if
+	 * the message can only be completed with the result of an asynchronous
+	 * operation, e.g. a key lookup. Records received while suspended are
+	 * deferred until {@link #resume()} is called.
+	 */
+	protected final void suspend() {
+		suspended = true;
+	}
+
+	/**
+	 * Checks, if the processing of messages is suspended.
+	 * 
+	 * @return {@code true}, if suspended, {@code false}, otherwise.
+	 */
+	public final boolean isSuspended() {
+		return suspended;
+	}
+
+	/**
+	 * Resumes the processing of messages.
+	 * <p>
+	 * Completes the processing of the message, which suspended the handshake
+	 * by calling {@link #doResume()}, and then processes the buffered and
+	 * deferred messages. Must be called in the same execution context as
+	 * {@link #processMessage(Record)}.
+	 * 
+	 * @throws HandshakeException if a message cannot be processed properly
+	 */
+	public final void resume() throws HandshakeException {
+		if (!suspended) {
+			return;
+		}
+		suspended = false;
+		try {
+			doResume();
+			processMessages(inboundMessageBuffer.getNextMessage());
+		} catch (GeneralSecurityException e) {
+			LOGGER.log(Level.WARNING,
+					String.format(
+							"Cannot process handshake message from peer [%s] due to [%s]",
+							getSession().getPeer(), e.getMessage()),
+					e);
+			AlertMessage alert = new AlertMessage(AlertLevel.FATAL, AlertDescription.INTERNAL_ERROR, session.getPeer());
+			throw new HandshakeException("Cannot process handshake message", alert);
+		}
+		List<Record> records = new ArrayList<>(deferredRecords);
+		deferredRecords.clear();
+		for (Record record : records) {
+			processMessage(record);
+		}
+	}
+
+	/**
+	 * Completes the processing of the message, which suspended the handshake.
+	 * <p>
+	 * This method does not do anything. Handshakers, which call
+	 * {@link #suspend()}, must override it.
+	 * 
+	 * @throws HandshakeException if the message cannot be processed properly
+	 * @throws GeneralSecurityException if the message cannot be processed due
+	 *             to a failed cryptographic operation
+	 */
+	protected void doResume() throws HandshakeException, GeneralSecurityException {
+	}
+
 	/**
 	 * Does the specific processing of a message received from a peer in
 	 * the course of an ongoing handshake.
@@ -926,16 +1037,19 @@ public abstract class Handshaker {
 		this.changeCipherSuiteMessageExpected = true;
 	}
 	
-	private static Set<TrustAnchor> getTrustAnchors(X509Certificate[] trustedCertificates) {
-		Set<TrustAnchor> result = new HashSet<>();
-		if (trustedCertificates != null) {
-			for (X509Certificate cert : trustedCertificates) {
-				result.add(new TrustAnchor((X509Certificate) cert, null));
-			}
-		}
-		return result;
+	/**
+	 * Sets the validator to use for the peer's X.509 certificate chain.
+	 * <p>
+	 * The validator must use the <em>rootCertificates</em> of this handshaker
+	 * as trust anchors. If not set, the handshaker creates a validator without
+	 * cache.
+	 * 
+	 * @param validator the validator.
+	 */
+	public final void setCertPathValidator(final CachingCertPathValidator validator) {
+		this.certPathValidator = validator;
 	}
-	
+
 	/**
 	 * Validates the X.509 certificate chain provided by the the peer as part of
 	 * this message, or the raw public key.
@@ -958,16 +1072,12 @@ public abstract class Handshaker {
 	public void verifyCertificate(CertificateMessage message) throws HandshakeException {
 		if (message.getCertificateChain() != null) {
 
-			Set<TrustAnchor> trustAnchors = getTrustAnchors(rootCertificates);
+			if (certPathValidator == null) {
+				certPathValidator = new CachingCertPathValidator(rootCertificates);
+			}
 
 			try {
-				PKIXParameters params = new PKIXParameters(trustAnchors);
-				// TODO: implement alternative means of revocation checking
-				params.setRevocationEnabled(false);
-
-				CertPathValidator validator = CertPathValidator.getInstance("PKIX");
-				validator.validate(message.getCertificateChain(), params);
-
+				certPathValidator.validate(message.getCertificateChain());
 			} catch (GeneralSecurityException e) {
 				if (LOGGER.isLoggable(Level.FINEST)) {
 					LOGGER.log(Level.FINEST, "Certificate validation failed", e);
@@ -13,16 +13,18 @@
  * Contributors:
  *    Kai Hudalla (Bosch Software Innovations GmbH) - Initial creation
  *    Achim Kraus (Bosch Software Innovations GmbH) - use final for collections
+ *    Bosch Software Innovations GmbH - index connections by session ID
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
 import java.net.InetSocketAddress;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.eclipse.californium.elements.util.LeastRecentlyUsedCache;
-import org.eclipse.californium.elements.util.LeastRecentlyUsedCache.Predicate;
 
 /**
  * An in-memory <code>ConnectionStore</code> with a configurable maximum capacity
@@ -55,6 +57,13 @@ import org.eclipse.californium.elements.util.LeastRecentlyUsedCache.Predicate;
  * <em>O(log n)</em>.
  * </p>
  * <p>
+ * Connections with an established session are additionally indexed by their
+ * session ID, so that a connection to be resumed is found in <em>O(1)</em>
+ * without iterating over all connections. The index is updated, when a
+ * connection is put to or removed from the store, when it gets evicted, and
+ * when a session is established.
+ * </p>
+ * <p>
  * Storing and reading to/from the store is thread safe.
  * </p>
  */
@@ -64,6 +73,14 @@ public final class InMemoryConnectionStore implements ResumptionSupportingConnec
 	private static final int DEFAULT_CACHE_SIZE = 150000;
 	private static final long DEFAULT_EXPIRATION_THRESHOLD = 36 * 60 * 60; // 36h
 	private final LeastRecentlyUsedCache<InetSocketAddress, Connection> connections;
+	/**
+	 * Connections with established session by session ID. Guarded by the store.
+	 */
+	private final Map<SessionId, Connection> connectionsBySessionId = new HashMap<>();
+	/**
+	 * The session IDs the connections are indexed by. Guarded by the store.
+	 */
+	private final Map<Connection, SessionId> sessionIdsByConnection = new HashMap<>();
 	private final SessionCache sessionCache;
 
 	/**
@@ -111,16 +128,15 @@ public final class InMemoryConnectionStore implements ResumptionSupportingConnec
 		connections = new LeastRecentlyUsedCache<>(capacity, threshold);
 		this.sessionCache = sessionCache;
 
-		if (sessionCache != null) {
-			// make sure that session state for stale (evicted) connections is removed from second level cache
-			connections.addEvictionListener(new LeastRecentlyUsedCache.EvictionListener<Connection>() {
+		connections.addEvictionListener(new LeastRecentlyUsedCache.EvictionListener<Connection>() {
 
-				@Override
-				public void onEviction(Connection staleConnection) {
-					removeSessionFromCache(staleConnection);
-				}
-			});
-		}
+			@Override
+			public void onEviction(Connection staleConnection) {
+				removeFromIndex(staleConnection);
+				// make sure that session state for stale (evicted) connections is removed from second level cache
+				removeSessionFromCache(staleConnection);
+			}
+		});
 		LOG.log(Level.CONFIG, "Created new InMemoryConnectionStore [capacity: {0}, connection expiration threshold: {1}s]",
 				new Object[]{capacity, threshold});
 	}
@@ -149,10 +165,16 @@ public final class InMemoryConnectionStore implements ResumptionSupportingConnec
 	public synchronized boolean put(final Connection connection) {
 
 		if (connection != null) {
-			return connections.put(connection.getPeerAddress(), connection);
-		} else {
-			return false;
+			Connection previous = connections.get(connection.getPeerAddress());
+			if (connections.put(connection.getPeerAddress(), connection)) {
+				if (previous != null && previous != connection) {
+					removeFromIndex(previous);
+				}
+				addToIndex(connection, connection.getEstablishedSession());
+				return true;
+			}
 		}
+		return false;
 	}
 
 	@Override
@@ -199,13 +221,46 @@ public final class InMemoryConnectionStore implements ResumptionSupportingConnec
 
 	private synchronized Connection findLocally(final SessionId id) {
 
-		return connections.find(new Predicate<Connection>() {
-			@Override
-			public boolean accept(final Connection connection) {
-				DTLSSession session = connection.getEstablishedSession();
-				return session != null && id.equals(session.getSessionIdentifier());
+		// the index is updated, when connections are replaced, removed or
+		// evicted, so the connection is not looked up in the LRU cache,
+		// which would update its access order
+		Connection connection = connectionsBySessionId.get(id);
+		if (connection != null) {
+			DTLSSession session = connection.getEstablishedSession();
+			if (session == null || !id.equals(session.getSessionIdentifier())) {
+				// the connection has established a newer session in the
+				// meantime
+				connectionsBySessionId.remove(id);
+				return null;
 			}
-		});
+		}
+		return connection;
+	}
+
+	private synchronized void addToIndex(final Connection connection, final DTLSSession session) {
+		if (session != null) {
+			SessionId id = session.getSessionIdentifier();
+			SessionId previousId = sessionIdsByConnection.put(connection, id);
+			if (previousId != null && !previousId.equals(id)) {
+				// the connection's previous session is no longer resumable by
+				// this connection
+				removeFromIndex(previousId, connection);
+			}
+			connectionsBySessionId.put(id, connection);
+		}
+	}
+
+	private synchronized void removeFromIndex(final Connection connection) {
+		SessionId id = sessionIdsByConnection.remove(connection);
+		if (id != null) {
+			removeFromIndex(id, connection);
+		}
+	}
+
+	private synchronized void removeFromIndex(final SessionId id, final Connection connection) {
+		if (connectionsBySessionId.get(id) == connection) {
+			connectionsBySessionId.remove(id);
+		}
 	}
 
 	@Override
@@ -231,7 +286,10 @@ public final class InMemoryConnectionStore implements ResumptionSupportingConnec
 	@Override
 	public synchronized Connection remove(final InetSocketAddress peerAddress) {
 		Connection removedConnection = connections.remove(peerAddress);
-		removeSessionFromCache(removedConnection);
+		if (removedConnection != null) {
+			removeFromIndex(removedConnection);
+			removeSessionFromCache(removedConnection);
+		}
 		return removedConnection;
 	}
 
@@ -244,6 +302,8 @@ public final class InMemoryConnectionStore implements ResumptionSupportingConnec
 	@Override
 	public final synchronized void clear() {
 		connections.clear();
+		connectionsBySessionId.clear();
+		sessionIdsByConnection.clear();
 		// TODO: does it make sense to clear the SessionCache as well?
 	}
 
@@ -254,12 +314,20 @@ public final class InMemoryConnectionStore implements ResumptionSupportingConnec
 
 	@Override
 	public void sessionEstablished(final Handshaker handshaker, final DTLSSession establishedSession) throws HandshakeException {
+		indexEstablishedSession(establishedSession);
 		if (sessionCache != null) {
 			// put current connection state to second level cache
 			sessionCache.put(establishedSession);
 		}
 	}
 
+	private synchronized void indexEstablishedSession(final DTLSSession establishedSession) {
+		Connection connection = connections.get(establishedSession.getPeer());
+		if (connection != null) {
+			addToIndex(connection, establishedSession);
+		}
+	}
+
 	@Override
 	public void handshakeCompleted(final InetSocketAddress peer) {
 		// nothing to do
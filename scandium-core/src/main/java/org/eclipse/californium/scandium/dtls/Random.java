@@ -13,6 +13,7 @@
  * Contributors:
  *    Matthias Kovatsch - creator and main architect
  *    Stefan Jucker - DTLS implementation
+ *    Bosch Software Innovations GmbH - use shared SecureRandom provider
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
@@ -21,6 +22,7 @@ import java.util.Arrays;
 import java.util.Date;
 
 import org.eclipse.californium.scandium.util.ByteArrayUtils;
+import org.eclipse.californium.scandium.util.ThreadLocalSecureRandomProvider;
 
 /**
  * A 32-byte value provided by the client and the server in the
@@ -41,10 +43,19 @@ public class Random {
 
 	// Constructor ////////////////////////////////////////////////////
 
+	/**
+	 * Creates a random using the calling thread's generator of the
+	 * {@linkplain ThreadLocalSecureRandomProvider#getDefault() default provider}.
+	 */
 	public Random() {
-		this(new SecureRandom());
+		this(ThreadLocalSecureRandomProvider.getDefault().getSecureRandom());
 	}
 
+	/**
+	 * Creates a random using a given generator.
+	 * 
+	 * @param generator the generator to create the random bytes with
+	 */
 	public Random(SecureRandom generator) {
 		int gmtUnixTime = (int) (System.currentTimeMillis() / 1000);
 
@@ -18,6 +18,8 @@
  *                   in client code
  *    Kai Hudalla (Bosch Software Innovations GmbH) - add initial support for Block Ciphers
  *    Achim Kraus (Bosch Software Innovations GmbH) - add isNewClientHello
+ *    Bosch Software Innovations GmbH - parse records from range of datagram buffer
+ *    Bosch Software Innovations GmbH - use AEAD cipher engine of connection state
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
@@ -35,7 +37,7 @@ import javax.crypto.spec.IvParameterSpec;
 
 import org.eclipse.californium.elements.util.DatagramReader;
 import org.eclipse.californium.elements.util.DatagramWriter;
-import org.eclipse.californium.scandium.dtls.cipher.CCMBlockCipher;
+import org.eclipse.californium.scandium.dtls.cipher.AeadCipher;
 import org.eclipse.californium.scandium.dtls.cipher.CipherManager;
 import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
 import org.eclipse.californium.scandium.dtls.cipher.CipherSuite.KeyExchangeAlgorithm;
@@ -75,6 +77,9 @@ public class Record {
 
 	private static final long MAX_SEQUENCE_NO = 281474976710655L; // 2^48 - 1
 
+	/** Length of the explicit nonce of the AEAD ciphers, epoch and sequence number */
+	private static final int EXPLICIT_NONCE_LENGTH = 8;
+
 	// Members ////////////////////////////////////////////////////////
 
 	/** The higher-level protocol used to process the enclosed fragment */
@@ -243,6 +248,29 @@ public class Record {
 	 * @throws NullPointerException if either one of the byte array or peer address is <code>null</code>
 	 */
 	public static List<Record> fromByteArray(byte[] byteArray, InetSocketAddress peerAddress) {
+		if (byteArray == null) {
+			throw new NullPointerException("Byte array must not be null");
+		}
+		return fromByteArray(byteArray, 0, byteArray.length, peerAddress);
+	}
+
+	/**
+	 * Parses a sequence of <em>DTLSCiphertext</em> structures from a range of
+	 * a byte array into <code>Record</code> instances.
+	 * <p>
+	 * The fragments of the records are copied, so the byte array may be reused
+	 * after this method returns, e.g. as buffer for the next datagram.
+	 * 
+	 * @param byteArray the buffer containing one or more DTLSCiphertext strctures
+	 * @param offset the offset of the first DTLSCiphertext structure
+	 * @param count the number of bytes to parse
+	 * @param peerAddress the IP address and port of the peer from which the bytes have been
+	 *           received
+	 * @return the <code>Record</code> instances
+	 * @throws NullPointerException if either one of the byte array or peer address is <code>null</code>
+	 * @throws IndexOutOfBoundsException if the range exceeds the byte array
+	 */
+	public static List<Record> fromByteArray(byte[] byteArray, int offset, int count, InetSocketAddress peerAddress) {
 		if (byteArray == null) {
 			throw new NullPointerException("Byte array must not be null");
 		} else if (peerAddress == null) {
@@ -251,7 +279,7 @@ public class Record {
 
 		List<Record> records = new ArrayList<Record>();
 
-		DatagramReader reader = new DatagramReader(byteArray);
+		DatagramReader reader = new DatagramReader(byteArray, offset, count);
 
 		while (reader.bytesAvailable()) {
 
@@ -550,20 +578,19 @@ public class Record {
 		 * explanation of additional data or
 		 * http://tools.ietf.org/html/rfc5116#section-2.1
 		 */
-		byte[] iv = session.getWriteState().getIv().getIV();
-		byte[] nonce = generateNonce(iv);
-		byte[] key = session.getWriteState().getEncryptionKey().getEncoded();
+		DTLSConnectionState writeState = session.getWriteState();
+		AeadCipher cipher = writeState.getAeadCipher();
+		byte[] nonce = generateNonce(writeState.getIv().getIV());
 		byte[] additionalData = generateAdditionalData(byteArray.length);
 
-		byte[] encryptedFragment = CCMBlockCipher.encrypt(key, nonce, additionalData, byteArray, 8);
-
 		/*
 		 * Prepend the explicit nonce as specified in
 		 * http://tools.ietf.org/html/rfc5246#section-6.2.3.3 and
 		 * http://tools.ietf.org/html/draft-mcgrew-tls-aes-ccm-04#section-3
 		 */
-		byte[] explicitNonce = generateExplicitNonce();
-		encryptedFragment = ByteArrayUtils.concatenate(explicitNonce, encryptedFragment);
+		byte[] encryptedFragment = new byte[EXPLICIT_NONCE_LENGTH + byteArray.length + cipher.getMacLength()];
+		System.arraycopy(nonce, nonce.length - EXPLICIT_NONCE_LENGTH, encryptedFragment, 0, EXPLICIT_NONCE_LENGTH);
+		cipher.encrypt(nonce, additionalData, byteArray, 0, byteArray.length, encryptedFragment, EXPLICIT_NONCE_LENGTH);
 
 		return encryptedFragment;
 	}
@@ -585,35 +612,44 @@ public class Record {
 		} else if (byteArray == null) {
 			throw new NullPointerException("Ciphertext must not be null");
 		}
+		AeadCipher cipher = currentReadState.getAeadCipher();
+		/*
+		 * The decrypted message is shorter than the cipher by the length of
+		 * the authentication tag and 8 bytes for the explicit nonce.
+		 */
+		int plaintextLength = byteArray.length - EXPLICIT_NONCE_LENGTH - cipher.getMacLength();
+		if (plaintextLength < 0) {
+			throw new GeneralSecurityException("Ciphertext too short for AEAD cipher");
+		}
 		// the "implicit" part of the nonce is the salt as exchanged during the session establishment
 		byte[] iv = currentReadState.getIv().getIV();
-		// the symmetric key exchanged during the DTLS handshake
-		byte[] key = currentReadState.getEncryptionKey().getEncoded();
 		/*
 		 * See http://tools.ietf.org/html/rfc5246#section-6.2.3.3 and
 		 * http://tools.ietf.org/html/rfc5116#section-2.1 for an
 		 * explanation of "additional data" and its structure
-		 * 
-		 * The decrypted message is always 16 bytes shorter than the cipher (8
-		 * for the authentication tag and 8 for the explicit nonce).
 		 */
-		byte[] additionalData = generateAdditionalData(byteArray.length - 16);
-
-		DatagramReader reader = new DatagramReader(byteArray);
-	
-		// create explicit nonce from values provided in DTLS record 
-		byte[] explicitNonce = generateExplicitNonce();
-		// retrieve actual explicit nonce as contained in GenericAEADCipher struct (8 bytes long)
-		byte[] explicitNonceUsed = reader.readBytes(8);
-		if (!Arrays.equals(explicitNonce, explicitNonceUsed) && LOGGER.isLoggable(Level.FINE)) {
-			StringBuilder b = new StringBuilder("The explicit nonce used by the sender does not match the values provided in the DTLS record");
-			b.append(System.lineSeparator()).append("Used    : ").append(ByteArrayUtils.toHexString(explicitNonceUsed));
-			b.append(System.lineSeparator()).append("Expected: ").append(ByteArrayUtils.toHexString(explicitNonce));
-			LOGGER.log(Level.FINE, b.toString());
+		byte[] additionalData = generateAdditionalData(plaintextLength);
+
+		// use actual explicit nonce as contained in GenericAEADCipher struct (8 bytes long)
+		byte[] nonce = new byte[iv.length + EXPLICIT_NONCE_LENGTH];
+		System.arraycopy(iv, 0, nonce, 0, iv.length);
+		System.arraycopy(byteArray, 0, nonce, iv.length, EXPLICIT_NONCE_LENGTH);
+		if (LOGGER.isLoggable(Level.FINE)) {
+			// create explicit nonce from values provided in DTLS record
+			byte[] explicitNonce = generateExplicitNonce();
+			byte[] explicitNonceUsed = Arrays.copyOf(byteArray, EXPLICIT_NONCE_LENGTH);
+			if (!Arrays.equals(explicitNonce, explicitNonceUsed)) {
+				StringBuilder b = new StringBuilder("The explicit nonce used by the sender does not match the values provided in the DTLS record");
+				b.append(System.lineSeparator()).append("Used    : ").append(ByteArrayUtils.toHexString(explicitNonceUsed));
+				b.append(System.lineSeparator()).append("Expected: ").append(ByteArrayUtils.toHexString(explicitNonce));
+				LOGGER.log(Level.FINE, b.toString());
+			}
 		}
 
-		byte[] nonce = getNonce(iv, explicitNonceUsed);
-		return CCMBlockCipher.decrypt(key, nonce, additionalData, reader.readBytesLeft(), 8);
+		byte[] plaintext = new byte[plaintextLength];
+		cipher.decrypt(nonce, additionalData, byteArray, EXPLICIT_NONCE_LENGTH,
+				byteArray.length - EXPLICIT_NONCE_LENGTH, plaintext, 0);
+		return plaintext;
 	}
 
 	// Cryptography Helper Methods ////////////////////////////////////
@@ -636,19 +672,12 @@ public class Record {
 	 * @return the 12 bytes nonce.
 	 */
 	private byte[] generateNonce(byte[] iv) {
-		return getNonce(iv, generateExplicitNonce());
+		byte[] nonce = new byte[iv.length + EXPLICIT_NONCE_LENGTH];
+		System.arraycopy(iv, 0, nonce, 0, iv.length);
+		writeExplicitNonce(nonce, iv.length);
+		return nonce;
 	}
 
-	private byte[] getNonce(byte[] implicitNonce, byte[] explicitNonce) {
-		DatagramWriter writer = new DatagramWriter();
-		
-		writer.writeBytes(implicitNonce);
-		writer.writeBytes(explicitNonce);
-		
-		return writer.toByteArray();
-	}
-
-	
 	/**
 	 * Generates the explicit part of the nonce to be used with the AEAD Cipher.
 	 * 
@@ -659,14 +688,23 @@ public class Record {
 	 * @return the 64-bit explicit nonce constructed from the epoch and sequence number
 	 */
 	private byte[] generateExplicitNonce() {
-		
-		//TODO: re-factor to use simple byte array manipulation instead of using bit-based DatagramWriter
-		DatagramWriter writer = new DatagramWriter();
-		
-		writer.write(epoch, EPOCH_BITS);
-		writer.writeLong(sequenceNumber, SEQUENCE_NUMBER_BITS);
-		
-		return writer.toByteArray();
+		byte[] explicitNonce = new byte[EXPLICIT_NONCE_LENGTH];
+		writeExplicitNonce(explicitNonce, 0);
+		return explicitNonce;
+	}
+
+	/**
+	 * Writes the 16 bit epoch and the 48 bit sequence number big endian.
+	 * 
+	 * @param buffer the buffer to write to
+	 * @param offset the offset of the 8 bytes to write
+	 */
+	private void writeExplicitNonce(byte[] buffer, int offset) {
+		long value = ((long) epoch << SEQUENCE_NUMBER_BITS) | sequenceNumber;
+		for (int index = offset + EXPLICIT_NONCE_LENGTH - 1; index >= offset; --index) {
+			buffer[index] = (byte) value;
+			value >>>= 8;
+		}
 	}
 
 	/**
@@ -683,19 +721,14 @@ public class Record {
 	 * @return the additional authentication data.
 	 */
 	private byte[] generateAdditionalData(int length) {
-		DatagramWriter writer = new DatagramWriter();
-		
-		writer.write(epoch, EPOCH_BITS);
-		writer.writeLong(sequenceNumber, SEQUENCE_NUMBER_BITS);
-
-		writer.write(type.getCode(), CONTENT_TYPE_BITS);
-
-		writer.write(version.getMajor(), VERSION_BITS);
-		writer.write(version.getMinor(), VERSION_BITS);
-		
-		writer.write(length, LENGTH_BITS);
-
-		return writer.toByteArray();
+		byte[] additionalData = new byte[EXPLICIT_NONCE_LENGTH + 5];
+		writeExplicitNonce(additionalData, 0);
+		additionalData[8] = (byte) type.getCode();
+		additionalData[9] = (byte) version.getMajor();
+		additionalData[10] = (byte) version.getMinor();
+		additionalData[11] = (byte) (length >>> 8);
+		additionalData[12] = (byte) length;
+		return additionalData;
 	}
 
 	// Getters and Setters ////////////////////////////////////////////
@@ -27,12 +27,12 @@
  *                                                    before the SERVER_HELLO.
  *                                                    move expectChangeCipherSpecMessage after
  *                                                    receiving SERVER_HELLO.
+ *    Bosch Software Innovations GmbH - use SecureRandom provider from config
 ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
 import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
-import java.security.SecureRandom;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -265,7 +265,7 @@ public class ResumingClientHandshaker extends ClientHandshaker {
 	@Override
 	public void startHandshake() throws HandshakeException {
 		handshakeStarted();
-		ClientHello message = new ClientHello(new ProtocolVersion(), new SecureRandom(), session,
+		ClientHello message = new ClientHello(new ProtocolVersion(), secureRandomProvider.getSecureRandom(), session,
 				supportedClientCertificateTypes, supportedServerCertificateTypes);
 
 		clientRandom = message.getRandom();
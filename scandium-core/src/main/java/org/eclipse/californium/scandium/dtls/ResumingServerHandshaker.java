@@ -22,12 +22,12 @@
  *    Kai Hudalla (Bosch Software Innovations GmbH) - derive max fragment length from network MTU
  *    Kai Hudalla (Bosch Software Innovations GmbH) - use SessionListener to trigger sending of pending
  *                                                    APPLICATION messages
+ *    Bosch Software Innovations GmbH - use SecureRandom provider from config
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
 import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
-import java.security.SecureRandom;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -149,7 +149,7 @@ public class ResumingServerHandshaker extends ServerHandshaker {
 			md.update(clientHello.getRawMessage());
 
 			clientRandom = clientHello.getRandom();
-			serverRandom = new Random(new SecureRandom());
+			serverRandom = new Random(secureRandomProvider.getSecureRandom());
 
 			ServerHello serverHello = new ServerHello(clientHello.getClientVersion(), serverRandom, session.getSessionIdentifier(),
 					session.getCipherSuite(), session.getCompressionMethod(), null, clientHello.getPeer());
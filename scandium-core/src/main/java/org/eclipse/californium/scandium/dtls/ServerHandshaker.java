@@ -34,10 +34,14 @@
  *    Achim Kraus (Bosch Software Innovations GmbH) - use isSendRawKey also for 
  *                                                    supportedClientCertificateTypes
  *    Ludwig Seitz (RISE SICS) - Updated calls to verifyCertificate() after refactoring                                                   
+ *    Bosch Software Innovations GmbH - support asynchronous PSK lookup
+ *    Bosch Software Innovations GmbH - take ephemeral ECDH keys from a pool
+ *    Bosch Software Innovations GmbH - use SecureRandom provider from config
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
 import java.security.GeneralSecurityException;
+import java.security.KeyPair;
 import java.security.MessageDigest;
 import java.security.PublicKey;
 import java.security.cert.CertPath;
@@ -60,8 +64,11 @@ import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
 import org.eclipse.californium.scandium.dtls.cipher.CipherSuite.KeyExchangeAlgorithm;
 import org.eclipse.californium.scandium.dtls.cipher.ECDHECryptography;
 import org.eclipse.californium.scandium.dtls.cipher.ECDHECryptography.SupportedGroup;
+import org.eclipse.californium.scandium.dtls.cipher.EphemeralKeyPool;
+import org.eclipse.californium.scandium.dtls.pskstore.AsyncPskStore;
 import org.eclipse.californium.scandium.dtls.pskstore.PskStore;
 import org.eclipse.californium.scandium.util.ByteArrayUtils;
+import org.eclipse.californium.scandium.util.SecureRandomProvider;
 import org.eclipse.californium.scandium.util.ServerNames;
 
 /**
@@ -129,6 +136,21 @@ public class ServerHandshaker extends Handshaker {
 	/** Used to retrieve pre-shared-key from a given client identity */
 	protected final PskStore pskStore;
 
+	/** Used to retrieve pre-shared-keys asynchronously, if set. */
+	private AsyncPskStore asyncPskStore;
+
+	/** Used to continue the handshake, when an asynchronous lookup completes. */
+	private HandshakeResumer resumer;
+
+	/** Provides the random number generators for the server random, session IDs and ephemeral keys. */
+	protected final SecureRandomProvider secureRandomProvider;
+
+	/** Provides pre-computed ephemeral ECDH keys, if set. */
+	private EphemeralKeyPool ephemeralKeyPool;
+
+	/** The result of the asynchronous PSK lookup. {@code null}, while pending. */
+	private volatile PskLookupResult pskLookupResult;
+
 	// Constructors ///////////////////////////////////////////////////
 
 	/**
@@ -191,6 +213,7 @@ public class ServerHandshaker extends Handshaker {
 		this.supportedCipherSuites = Arrays.asList(config.getSupportedCipherSuites());
 
 		this.pskStore = config.getPskStore();
+		this.secureRandomProvider = config.getSecureRandomProvider();
 
 		this.privateKey = config.getPrivateKey();
 		this.certificateChain = config.getCertificateChain();
@@ -273,8 +296,13 @@ public class ServerHandshaker extends Handshaker {
 				byte[] premasterSecret;
 				switch (getKeyExchangeAlgorithm()) {
 				case PSK:
-					premasterSecret = receivedClientKeyExchange((PSKClientKeyExchange) handshakeMsg);
-					generateKeys(premasterSecret);
+					if (asyncPskStore != null) {
+						// keys are generated, when the handshake is resumed
+						requestPreSharedKey((PSKClientKeyExchange) handshakeMsg);
+					} else {
+						premasterSecret = receivedClientKeyExchange((PSKClientKeyExchange) handshakeMsg);
+						generateKeys(premasterSecret);
+					}
 					break;
 
 				case EC_DIFFIE_HELLMAN:
@@ -504,9 +532,9 @@ public class ServerHandshaker extends Handshaker {
 
 		// store client and server random
 		clientRandom = clientHello.getRandom();
-		serverRandom = new Random();
+		serverRandom = new Random(secureRandomProvider.getSecureRandom());
 
-		SessionId sessionId = new SessionId();
+		SessionId sessionId = new SessionId(secureRandomProvider.getSecureRandom());
 		session.setSessionIdentifier(sessionId);
 
 		// currently only NULL compression supported, no negotiation needed
@@ -583,7 +611,13 @@ public class ServerHandshaker extends Handshaker {
 			// TODO SHA256withECDSA is default but should be configurable
 			signatureAndHashAlgorithm = new SignatureAndHashAlgorithm(SignatureAndHashAlgorithm.HashAlgorithm.SHA256, SignatureAndHashAlgorithm.SignatureAlgorithm.ECDSA);
 			try {
-				ecdhe = new ECDHECryptography(negotiatedSupportedGroup.getEcParams());
+				KeyPair ephemeralKeys = ephemeralKeyPool == null ? null : ephemeralKeyPool.poll(negotiatedSupportedGroup);
+				if (ephemeralKeys == null) {
+					ecdhe = new ECDHECryptography(negotiatedSupportedGroup.getEcParams(),
+							secureRandomProvider.getSecureRandom());
+				} else {
+					ecdhe = new ECDHECryptography(ephemeralKeys);
+				}
 				serverKeyExchange = new ECDHServerKeyExchange(signatureAndHashAlgorithm, ecdhe, privateKey, clientRandom, serverRandom,
 						negotiatedSupportedGroup.getId(), session.getPeer());
 				break;
@@ -674,6 +708,108 @@ public class ServerHandshaker extends Handshaker {
 			psk = pskStore.getKey(getIndicatedServerNames(), identity);
 		}
 
+		return usePreSharedKey(identity, psk);
+	}
+
+	/**
+	 * Requests the preshared key for the identity hint from the asynchronous
+	 * PSK store and suspends the handshake until the result is available.
+	 * 
+	 * @param message
+	 *            the client's key exchange message.
+	 */
+	private void requestPreSharedKey(final PSKClientKeyExchange message) {
+
+		clientKeyExchange = message;
+		final String identity = message.getIdentity();
+
+		LOGGER.log(Level.FINER, "Client [{0}] uses PSK identity [{1}], requesting key",
+				new Object[]{getPeerAddress(), identity});
+
+		pskLookupResult = null;
+		suspend();
+		asyncPskStore.requestKey(getIndicatedServerNames(), identity, new AsyncPskStore.Callback() {
+
+			@Override
+			public void onKey(final String keyIdentity, final byte[] key) {
+				pskLookupResult = new PskLookupResult(identity, key, null);
+				resumer.resume(ServerHandshaker.this);
+			}
+
+			@Override
+			public void onError(final String keyIdentity, final Throwable cause) {
+				pskLookupResult = new PskLookupResult(identity, null, cause);
+				resumer.resume(ServerHandshaker.this);
+			}
+		});
+	}
+
+	/**
+	 * Completes the processing of the client's key exchange message with the
+	 * result of the asynchronous PSK lookup.
+	 * 
+	 * @throws HandshakeException if the lookup failed or the identity is
+	 *             unknown.
+	 */
+	@Override
+	protected void doResume() throws HandshakeException {
+		PskLookupResult result = pskLookupResult;
+		pskLookupResult = null;
+		if (result == null) {
+			throw new IllegalStateException("Handshake resumed without result of PSK lookup");
+		} else if (result.cause != null) {
+			throw new HandshakeException(
+					String.format("Cannot authenticate client, lookup of identity [%s] failed: %s", result.identity,
+							result.cause.getMessage()),
+					new AlertMessage(AlertLevel.FATAL, AlertDescription.INTERNAL_ERROR, session.getPeer()));
+		}
+		generateKeys(usePreSharedKey(result.identity, result.key));
+	}
+
+	/**
+	 * Sets the store to use for looking up preshared keys asynchronously.
+	 * <p>
+	 * If set, the handshaker suspends the handshake after receiving the
+	 * client's key exchange message, and continues it using the resumer, when
+	 * the key is available. Otherwise the configured {@link PskStore} is used
+	 * synchronously.
+	 * 
+	 * @param store the store to look up keys.
+	 * @param resumer the resumer to continue suspended handshakes.
+	 * @throws NullPointerException if any of the parameters is {@code null}.
+	 */
+	public final void setAsyncPskStore(final AsyncPskStore store, final HandshakeResumer resumer) {
+		if (store == null) {
+			throw new NullPointerException("PSK store must not be null");
+		} else if (resumer == null) {
+			throw new NullPointerException("Resumer must not be null");
+		}
+		this.asyncPskStore = store;
+		this.resumer = resumer;
+	}
+
+	/**
+	 * Sets the pool to take the ephemeral ECDH keys from.
+	 * <p>
+	 * If the pool has no key pair available for the negotiated group, the
+	 * handshaker generates the key pair itself.
+	 * 
+	 * @param pool the pool.
+	 */
+	public final void setEphemeralKeyPool(final EphemeralKeyPool pool) {
+		this.ephemeralKeyPool = pool;
+	}
+
+	/**
+	 * Sets the client's identity and generates the premaster secret.
+	 * 
+	 * @param identity the client's identity.
+	 * @param psk the key of the identity, {@code null}, if unknown.
+	 * @return the premaster secret
+	 * @throws HandshakeException if the identity is unknown.
+	 */
+	private byte[] usePreSharedKey(final String identity, final byte[] psk) throws HandshakeException {
+
 		if (psk == null) {
 			throw new HandshakeException(
 					String.format("Cannot authenticate client, identity [%s] is unknown", identity),
@@ -929,4 +1065,17 @@ public class ServerHandshaker extends Handshaker {
 //		}
 //		return result;
 //	}
+
+	private static final class PskLookupResult {
+
+		private final String identity;
+		private final byte[] key;
+		private final Throwable cause;
+
+		private PskLookupResult(final String identity, final byte[] key, final Throwable cause) {
+			this.identity = identity;
+			this.key = key;
+			this.cause = cause;
+		}
+	}
 }
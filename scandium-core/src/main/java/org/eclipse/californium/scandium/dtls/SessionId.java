@@ -15,6 +15,7 @@
  *    Stefan Jucker - DTLS implementation
  *    Kai Hudalla (Bosch Software Innovations GmbH) - add equals() & hashCode()
  *    Kai Hudalla (Bosch Software Innovations GmbH) - add toString()
+ *    Bosch Software Innovations GmbH - use shared SecureRandom provider
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
@@ -22,6 +23,7 @@ import java.security.SecureRandom;
 import java.util.Arrays;
 
 import org.eclipse.californium.scandium.util.ByteArrayUtils;
+import org.eclipse.californium.scandium.util.ThreadLocalSecureRandomProvider;
 
 /**
  * A session identifier is a value generated by a server that identifies a
@@ -35,8 +37,21 @@ public final class SessionId {
 
 	// Constructors ///////////////////////////////////////////////////
 
+	/**
+	 * Creates a random session identifier using the calling thread's generator
+	 * of the {@linkplain ThreadLocalSecureRandomProvider#getDefault() default provider}.
+	 */
 	public SessionId() {
-		id = new Random(new SecureRandom()).getRandomBytes();
+		this(ThreadLocalSecureRandomProvider.getDefault().getSecureRandom());
+	}
+
+	/**
+	 * Creates a random session identifier.
+	 * 
+	 * @param generator the generator to create the identifier with
+	 */
+	public SessionId(SecureRandom generator) {
+		id = new Random(generator).getRandomBytes();
 	}
 
 	/**
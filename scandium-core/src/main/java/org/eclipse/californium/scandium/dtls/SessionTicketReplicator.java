@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+/**
+ * A hook for sharing the session tickets of a {@link FileSessionCache}
+ * with other nodes.
+ * <p>
+ * The cache notifies the replicator about each ticket added or removed
+ * locally. Implementations are expected to forward these events to the
+ * other nodes, where they are applied by means of
+ * {@link FileSessionCache#putReplicated(SessionId, byte[], long)} and
+ * {@link FileSessionCache#removeReplicated(SessionId)}, so that a client can
+ * resume its session with any node behind a load balancer.
+ * <p>
+ * The methods are invoked on the thread modifying the cache, e.g. the
+ * thread completing a handshake, and should therefore not block.
+ * Implementations must be thread safe.
+ */
+public interface SessionTicketReplicator {
+
+	/**
+	 * Notifies this replicator about a ticket added to the local cache.
+	 * 
+	 * @param id the identifier of the session.
+	 * @param ticket the ticket encoded by means of
+	 *            {@link SessionTicket#encode(org.eclipse.californium.elements.util.DatagramWriter)}.
+	 * @param timestamp the time the ticket has been added in milliseconds
+	 *            since the epoch.
+	 */
+	void ticketAdded(SessionId id, byte[] ticket, long timestamp);
+
+	/**
+	 * Notifies this replicator about a ticket removed from the local cache.
+	 * 
+	 * @param id the identifier of the session.
+	 */
+	void ticketRemoved(SessionId id);
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls.cipher;
+
+import java.security.GeneralSecurityException;
+
+/**
+ * An AEAD cipher engine bound to a key. See
+ * <a href="http://tools.ietf.org/html/rfc5116">RFC 5116</a> for details.
+ * <p>
+ * The messages are read from and written to caller supplied buffers at the
+ * provided offsets. The ciphertext consists of the encrypted message followed
+ * by the authentication tag, as required for the <em>GenericAEADCipher</em>
+ * of <a href="http://tools.ietf.org/html/rfc5246#section-6.2.3.3">RFC 5246</a>.
+ */
+public interface AeadCipher {
+
+	/**
+	 * Gets the number of octets in the authentication tag.
+	 *
+	 * @return the number of octets
+	 */
+	int getMacLength();
+
+	/**
+	 * Encrypts and authenticates a message.
+	 *
+	 * @param nonce the nonce.
+	 * @param additionalData the additional authenticated data.
+	 * @param input the buffer containing the message.
+	 * @param inputOffset the offset of the message in the input buffer.
+	 * @param inputLength the length of the message.
+	 * @param output the buffer to write the encrypted message and the
+	 *            authentication tag to.
+	 * @param outputOffset the offset in the output buffer.
+	 * @return the number of written bytes, the message length plus the
+	 *         mac length.
+	 * @throws GeneralSecurityException if the message could not be
+	 *             encrypted.
+	 * @throws IllegalArgumentException if the nonce length is not valid.
+	 * @throws IndexOutOfBoundsException if the output buffer is too small.
+	 */
+	int encrypt(byte[] nonce, byte[] additionalData, byte[] input, int inputOffset, int inputLength, byte[] output,
+			int outputOffset) throws GeneralSecurityException;
+
+	/**
+	 * Decrypts and verifies a message.
+	 * <p>
+	 * If the message could not be authenticated, the content of the output
+	 * range is undefined and must not be used.
+	 *
+	 * @param nonce the nonce.
+	 * @param additionalData the additional authenticated data.
+	 * @param input the buffer containing the encrypted message followed by the
+	 *            authentication tag.
+	 * @param inputOffset the offset of the encrypted message in the input
+	 *            buffer.
+	 * @param inputLength the length of the encrypted message including the
+	 *            authentication tag.
+	 * @param output the buffer to write the decrypted message to.
+	 * @param outputOffset the offset in the output buffer.
+	 * @return the number of written bytes, the input length minus the mac
+	 *         length.
+	 * @throws InvalidMacException if the message could not be authenticated
+	 * @throws GeneralSecurityException if the message could not be
+	 *             decrypted, e.g. because it is shorter than the
+	 *             authentication tag.
+	 * @throws IllegalArgumentException if the nonce length is not valid.
+	 * @throws IndexOutOfBoundsException if the output buffer is too small.
+	 */
+	int decrypt(byte[] nonce, byte[] additionalData, byte[] input, int inputOffset, int inputLength, byte[] output,
+			int outputOffset) throws GeneralSecurityException;
+}
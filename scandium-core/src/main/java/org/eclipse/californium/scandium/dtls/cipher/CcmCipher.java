@@ -0,0 +1,338 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls.cipher;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * An AES-CCM engine bound to a key. See
+ * <a href="http://tools.ietf.org/html/rfc3610">RFC 3610</a> for details.
+ * <p>
+ * Contrary to the {@link CCMBlockCipher}, which processes one block after the
+ * other on an ECB cipher, this engine processes the complete message in bulk
+ * operations of the JCE provider: the CBC-MAC is calculated with
+ * {@code AES/CBC/NoPadding} and the encryption is done with
+ * {@code AES/CTR/NoPadding}. Both ciphers are created once per engine and
+ * reused for all messages, so an engine is intended to be kept with the
+ * connection state it encrypts or decrypts for.
+ * <p>
+ * The messages are read from and written to caller supplied buffers at the
+ * provided offsets. Input and output may be the same buffer, as long as the
+ * output does not start after the input.
+ * <p>
+ * This class is thread safe. The operations are synchronized on the engine.
+ */
+public final class CcmCipher implements AeadCipher {
+
+	/**
+	 * CCM is only defined for use with 128-bit block ciphers, such as AES
+	 * (http://tools.ietf.org/html/rfc3610).
+	 */
+	private static final int BLOCK_SIZE = 16;
+	private static final String MAC_CIPHER_NAME = "AES/CBC/NoPadding";
+	private static final String CTR_CIPHER_NAME = "AES/CTR/NoPadding";
+	private static final String KEY_TYPE = "AES";
+	/**
+	 * Largest length of additional data, which is encoded with 2 bytes.
+	 */
+	private static final int SHORT_ADDITIONAL_DATA_LENGTH = 0xFEFF;
+
+	private final SecretKey key;
+	private final int macLength;
+	private final Cipher macCipher;
+	private final Cipher ctrCipher;
+	/**
+	 * Counter block A_0, prepared for each message.
+	 */
+	private final byte[] counterBlock = new byte[BLOCK_SIZE];
+	/**
+	 * Encrypted tag, including padding to a complete block.
+	 */
+	private final byte[] tagBlock = new byte[BLOCK_SIZE];
+	/**
+	 * The formatted blocks of the CBC-MAC input, which are not part of the
+	 * message.
+	 */
+	private byte[] macBlocks = new byte[BLOCK_SIZE * 3];
+	/**
+	 * The (discarded) output of the CBC-MAC cipher.
+	 */
+	private byte[] macOutput = new byte[BLOCK_SIZE * 8];
+
+	/**
+	 * Creates an engine for a key.
+	 *
+	 * @param key the AES key.
+	 * @param macLength number of octets in authentication field. Valid values
+	 *            are 4, 6, 8, 10, 12, 14, and 16.
+	 * @throws GeneralSecurityException if the JCE provider doesn't support
+	 *             the required ciphers or the key is not valid.
+	 * @throws IllegalArgumentException if the mac length is not valid.
+	 */
+	public CcmCipher(final SecretKey key, final int macLength) throws GeneralSecurityException {
+		if (macLength < 4 || macLength > 16 || (macLength & 1) != 0) {
+			throw new IllegalArgumentException("MAC length " + macLength + " is not valid");
+		}
+		this.key = KEY_TYPE.equals(key.getAlgorithm()) ? key : new SecretKeySpec(key.getEncoded(), KEY_TYPE);
+		this.macLength = macLength;
+		this.macCipher = Cipher.getInstance(MAC_CIPHER_NAME);
+		this.macCipher.init(Cipher.ENCRYPT_MODE, this.key, new IvParameterSpec(new byte[BLOCK_SIZE]));
+		this.ctrCipher = Cipher.getInstance(CTR_CIPHER_NAME);
+	}
+
+	/**
+	 * Gets the number of octets in the authentication field.
+	 *
+	 * @return the number of octets
+	 */
+	@Override
+	public int getMacLength() {
+		return macLength;
+	}
+
+	/**
+	 * Encrypts and authenticates a message. See
+	 * <a href="http://tools.ietf.org/html/rfc3610#section-2.2">RFC 3610</a>
+	 * for details.
+	 *
+	 * @param nonce the nonce N.
+	 * @param additionalData the additional authenticated data a.
+	 * @param input the buffer containing the message m.
+	 * @param inputOffset the offset of the message in the input buffer.
+	 * @param inputLength the length of the message.
+	 * @param output the buffer to write the encrypted message and the
+	 *            authentication field to.
+	 * @param outputOffset the offset in the output buffer.
+	 * @return the number of written bytes, the message length plus the
+	 *         mac length.
+	 * @throws GeneralSecurityException if the message could not be
+	 *             encrypted.
+	 * @throws IllegalArgumentException if the nonce length is not valid.
+	 * @throws IndexOutOfBoundsException if the output buffer is too small.
+	 */
+	@Override
+	public synchronized int encrypt(final byte[] nonce, final byte[] additionalData, final byte[] input,
+			final int inputOffset, final int inputLength, final byte[] output, final int outputOffset)
+			throws GeneralSecurityException {
+		if (output.length - outputOffset < inputLength + macLength) {
+			throw new IndexOutOfBoundsException("Output buffer too small for " + (inputLength + macLength) + " bytes");
+		}
+		// authenticate the message before it may be overwritten by the encryption
+		calculateMac(nonce, additionalData, input, inputOffset, inputLength, tagBlock);
+		startCounter(nonce);
+		// S_0 encrypts the tag, S_1 ... the message
+		ctrCipher.update(tagBlock, 0, BLOCK_SIZE, tagBlock);
+		ctrCipher.doFinal(input, inputOffset, inputLength, output, outputOffset);
+		System.arraycopy(tagBlock, 0, output, outputOffset + inputLength, macLength);
+		return inputLength + macLength;
+	}
+
+	/**
+	 * Decrypts and verifies a message. See
+	 * <a href="http://tools.ietf.org/html/rfc3610#section-2.5">RFC 3610</a>
+	 * for details.
+	 * <p>
+	 * If the message could not be authenticated, the content of the output
+	 * range is undefined and must not be used.
+	 *
+	 * @param nonce the nonce N.
+	 * @param additionalData the additional authenticated data a.
+	 * @param input the buffer containing the encrypted message c followed by
+	 *            the authentication field.
+	 * @param inputOffset the offset of the encrypted message in the input
+	 *            buffer.
+	 * @param inputLength the length of the encrypted message including the
+	 *            authentication field.
+	 * @param output the buffer to write the decrypted message to.
+	 * @param outputOffset the offset in the output buffer.
+	 * @return the number of written bytes, the input length minus the mac
+	 *         length.
+	 * @throws InvalidMacException if the message could not be authenticated
+	 * @throws GeneralSecurityException if the message could not be
+	 *             decrypted, e.g. because it is shorter than the
+	 *             authentication field.
+	 * @throws IllegalArgumentException if the nonce length is not valid.
+	 * @throws IndexOutOfBoundsException if the output buffer is too small.
+	 */
+	@Override
+	public synchronized int decrypt(final byte[] nonce, final byte[] additionalData, final byte[] input,
+			final int inputOffset, final int inputLength, final byte[] output, final int outputOffset)
+			throws GeneralSecurityException {
+		int messageLength = inputLength - macLength;
+		if (messageLength < 0) {
+			throw new GeneralSecurityException("Ciphertext shorter than authentication field");
+		} else if (output.length - outputOffset < messageLength) {
+			throw new IndexOutOfBoundsException("Output buffer too small for " + messageLength + " bytes");
+		}
+		// copy the tag before it may be overwritten by the decryption
+		Arrays.fill(tagBlock, (byte) 0);
+		System.arraycopy(input, inputOffset + messageLength, tagBlock, 0, macLength);
+		startCounter(nonce);
+		ctrCipher.update(tagBlock, 0, BLOCK_SIZE, tagBlock);
+		ctrCipher.doFinal(input, inputOffset, messageLength, output, outputOffset);
+		byte[] receivedMac = Arrays.copyOf(tagBlock, macLength);
+
+		/*
+		 * The message and additional authentication data is then used to
+		 * recompute the CBC-MAC value and check T.
+		 */
+		calculateMac(nonce, additionalData, output, outputOffset, messageLength, tagBlock);
+		byte[] mac = Arrays.copyOf(tagBlock, macLength);
+
+		/*
+		 * If the T value is not correct, the receiver MUST NOT reveal any
+		 * information except for the fact that T is incorrect. The receiver
+		 * MUST NOT reveal the decrypted message, the value T, or any other
+		 * information.
+		 */
+		if (MessageDigest.isEqual(receivedMac, mac)) {
+			return messageLength;
+		} else {
+			throw new InvalidMacException(mac, receivedMac);
+		}
+	}
+
+	/**
+	 * Initializes the CTR cipher with counter block A_0.
+	 *
+	 * @param nonce the nonce N.
+	 * @throws GeneralSecurityException if the cipher could not be initialized
+	 */
+	private void startCounter(final byte[] nonce) throws GeneralSecurityException {
+		int lengthL = getLengthL(nonce);
+		// Octet Number Contents
+		// ------------ ---------
+		// 0 Flags
+		// 1 ... 15-L Nonce N
+		// 16-L ... 15 Counter i
+		Arrays.fill(counterBlock, (byte) 0);
+		counterBlock[0] = (byte) (lengthL - 1);
+		System.arraycopy(nonce, 0, counterBlock, 1, nonce.length);
+		ctrCipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(counterBlock));
+	}
+
+	/**
+	 * Computes the CBC-MAC. See
+	 * <a href="http://tools.ietf.org/html/rfc3610#section-2.2">RFC 3610 -
+	 * Authentication</a> for details.
+	 *
+	 * @param nonce the nonce N.
+	 * @param additionalData the additional authenticated data a.
+	 * @param message the buffer containing the message m.
+	 * @param offset the offset of the message.
+	 * @param length the length of the message.
+	 * @param mac block to write the (not truncated) CBC-MAC to. The
+	 *            remaining bytes are zeroed.
+	 * @throws GeneralSecurityException if the cipher fails
+	 */
+	private void calculateMac(final byte[] nonce, final byte[] additionalData, final byte[] message,
+			final int offset, final int length, final byte[] mac) throws GeneralSecurityException {
+		int lengthL = getLengthL(nonce);
+		int lengthA = additionalData.length;
+		int headerLength = BLOCK_SIZE;
+		if (lengthA > 0) {
+			int encodedLength = lengthA <= SHORT_ADDITIONAL_DATA_LENGTH ? 2 : 6;
+			headerLength += roundUp(encodedLength + lengthA);
+		}
+		int tail = length % BLOCK_SIZE;
+		int fullLength = length - tail;
+		int formattedLength = headerLength + (tail > 0 ? BLOCK_SIZE : 0);
+		if (macBlocks.length < formattedLength) {
+			macBlocks = new byte[formattedLength];
+		} else {
+			Arrays.fill(macBlocks, 0, formattedLength, (byte) 0);
+		}
+		if (macOutput.length < formattedLength + fullLength) {
+			macOutput = new byte[formattedLength + fullLength];
+		}
+
+		// build first block B_0
+		// Flags = 64*Adata + 8*M' + L'
+		macBlocks[0] = (byte) ((lengthA > 0 ? 64 : 0) + 8 * ((macLength - 2) / 2) + (lengthL - 1));
+		System.arraycopy(nonce, 0, macBlocks, 1, nonce.length);
+		if (setIntAtEnd(macBlocks, 1 + nonce.length, BLOCK_SIZE, length) != 0) {
+			throw new IllegalArgumentException("Length " + length + " too large for nonce " + nonce.length);
+		}
+
+		// the blocks encoding l(a) and a, padded with zeros
+		if (lengthA > 0) {
+			int position = BLOCK_SIZE;
+			if (lengthA <= SHORT_ADDITIONAL_DATA_LENGTH) {
+				setIntAtEnd(macBlocks, position, position + 2, lengthA);
+				position += 2;
+			} else {
+				setIntAtEnd(macBlocks, position, position + 2, 0xfffe);
+				setIntAtEnd(macBlocks, position + 2, position + 6, lengthA);
+				position += 6;
+			}
+			System.arraycopy(additionalData, 0, macBlocks, position, lengthA);
+		}
+
+		// the last block of the message, padded with zeros
+		if (tail > 0) {
+			System.arraycopy(message, offset + fullLength, macBlocks, headerLength, tail);
+		}
+
+		int outputLength = macCipher.update(macBlocks, 0, headerLength, macOutput, 0);
+		if (fullLength > 0) {
+			outputLength += macCipher.update(message, offset, fullLength, macOutput, outputLength);
+		}
+		if (tail > 0) {
+			outputLength += macCipher.update(macBlocks, headerLength, BLOCK_SIZE, macOutput, outputLength);
+		}
+		// resets the chaining value to the zero IV
+		outputLength += macCipher.doFinal(macOutput, outputLength);
+		Arrays.fill(mac, (byte) 0);
+		System.arraycopy(macOutput, outputLength - BLOCK_SIZE, mac, 0, macLength);
+	}
+
+	private static int getLengthL(final byte[] nonce) {
+		int lengthL = BLOCK_SIZE - 1 - nonce.length;
+		if (lengthL < 2 || lengthL > 8) {
+			throw new IllegalArgumentException("Nonce length " + nonce.length + " invalid for blocksize " + BLOCK_SIZE
+					+ " (valid length [" + (BLOCK_SIZE - 9) + "-" + (BLOCK_SIZE - 3) + "])");
+		}
+		return lengthL;
+	}
+
+	private static int roundUp(final int length) {
+		return (length + BLOCK_SIZE - 1) & ~(BLOCK_SIZE - 1);
+	}
+
+	/**
+	 * Sets a number big endian into a range of a buffer.
+	 *
+	 * @param buffer the buffer.
+	 * @param offset the first byte of the range.
+	 * @param end the end of the range (exclusive).
+	 * @param number the number.
+	 * @return left bytes of the number, 0, if the complete number could be set.
+	 */
+	private static int setIntAtEnd(final byte[] buffer, final int offset, int end, int number) {
+		while (end > offset) {
+			buffer[--end] = (byte) number;
+			number >>>= 8;
+		}
+		return number;
+	}
+}
@@ -20,14 +20,18 @@
  *               cipher suites mandatory for LW M2M servers
  *    Kai Hudalla (Bosch Software Innovations GmbH) - add method for checking if suite requires
  *               sending of a CERTIFICATE message to the client
+ *    Bosch Software Innovations GmbH - add AES-GCM cipher suites and AEAD cipher engines
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls.cipher;
 
+import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.crypto.SecretKey;
+
 import org.eclipse.californium.elements.util.DatagramReader;
 import org.eclipse.californium.elements.util.DatagramWriter;
 
@@ -50,7 +54,9 @@ public enum CipherSuite {
 	TLS_PSK_WITH_AES_128_CBC_SHA256(0x00AE, KeyExchangeAlgorithm.PSK, Cipher.AES_128_CBC, MACAlgorithm.HMAC_SHA256),
 	TLS_ECDHE_ECDSA_WITH_AES_128_CBC_SHA256(0xC023, KeyExchangeAlgorithm.EC_DIFFIE_HELLMAN, Cipher.AES_128_CBC, MACAlgorithm.HMAC_SHA256),
 	TLS_PSK_WITH_AES_128_CCM_8(0xC0A8, KeyExchangeAlgorithm.PSK, Cipher.AES_128_CCM_8, MACAlgorithm.NULL),
-	TLS_ECDHE_ECDSA_WITH_AES_128_CCM_8(0xC0AE, KeyExchangeAlgorithm.EC_DIFFIE_HELLMAN, Cipher.AES_128_CCM_8, MACAlgorithm.NULL);
+	TLS_ECDHE_ECDSA_WITH_AES_128_CCM_8(0xC0AE, KeyExchangeAlgorithm.EC_DIFFIE_HELLMAN, Cipher.AES_128_CCM_8, MACAlgorithm.NULL),
+	TLS_PSK_WITH_AES_128_GCM_SHA256(0x00A8, KeyExchangeAlgorithm.PSK, Cipher.AES_128_GCM, MACAlgorithm.NULL),
+	TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256(0xC02B, KeyExchangeAlgorithm.EC_DIFFIE_HELLMAN, Cipher.AES_128_GCM, MACAlgorithm.NULL);
 
 	// DTLS-specific constants ////////////////////////////////////////
 
@@ -60,6 +66,8 @@ public enum CipherSuite {
 
 	private static final Logger LOGGER = Logger.getLogger(CipherSuite.class.getCanonicalName());
 
+	private static final boolean GCM_SUPPORTED = GcmCipher.isSupported();
+
 	// Members ////////////////////////////////////////////////////////
 
 	/**
@@ -235,6 +243,40 @@ public enum CipherSuite {
 		return pseudoRandomFunction;
 	}
 
+	/**
+	 * Checks, whether the JVM supports the cipher suite's bulk cipher
+	 * algorithm.
+	 * <p>
+	 * The AES-GCM cipher suites require a JCE provider offering
+	 * {@code AES/GCM/NoPadding}, which is available since Java 8.
+	 * 
+	 * @return <code>true</code> if the cipher suite can be used
+	 */
+	public boolean isSupported() {
+		return cipher.isSupported();
+	}
+
+	/**
+	 * Creates an engine of the cipher suite's AEAD cipher for a key.
+	 * 
+	 * @param key the encryption key
+	 * @return the engine
+	 * @throws GeneralSecurityException if the engine could not be created,
+	 *             e.g. because the JVM does not support the cipher
+	 * @throws IllegalStateException if the cipher suite doesn't use an AEAD
+	 *             cipher
+	 */
+	public AeadCipher createAeadCipher(SecretKey key) throws GeneralSecurityException {
+		switch (cipher) {
+		case AES_128_CCM_8:
+			return new CcmCipher(key, cipher.getCiphertextExpansion());
+		case AES_128_GCM:
+			return new GcmCipher(key, cipher.getCiphertextExpansion());
+		default:
+			throw new IllegalStateException(name() + " doesn't use an AEAD cipher");
+		}
+	}
+
 	/**
 	 * Gets the type of cipher used for encrypting data.
 	 * 
@@ -392,7 +434,8 @@ public enum CipherSuite {
 		B_3DES_EDE_CBC("DESede/CBC/NoPadding", CipherType.BLOCK, 24, 4, 8), // don't know
 		AES_128_CBC("AES/CBC/NoPadding", CipherType.BLOCK, 16, 4, 16), // http://www.ietf.org/mail-archive/web/tls/current/msg08445.html
 		AES_256_CBC("AES/CBC/NoPadding", CipherType.BLOCK, 32, 4, 16),
-		AES_128_CCM_8("CCM", CipherType.AEAD, 16, 4, 8, 8); // explicit nonce (record IV) length = 8
+		AES_128_CCM_8("CCM", CipherType.AEAD, 16, 4, 8, 8), // explicit nonce (record IV) length = 8
+		AES_128_GCM(GcmCipher.CIPHER_NAME, CipherType.AEAD, 16, 4, 8, 16); // http://tools.ietf.org/html/rfc5288#section-3
 
 		/**
 		 * The <em>transformation</em> string of the corresponding Java Cryptography Architecture
@@ -464,6 +507,13 @@ public enum CipherSuite {
 		private int getCiphertextExpansion() {
 			return ciphertextExpansion;
 		}
+
+		private boolean isSupported() {
+			if (this == AES_128_GCM) {
+				return GCM_SUPPORTED;
+			}
+			return true;
+		}
 	}
 
 	public enum KeyExchangeAlgorithm {
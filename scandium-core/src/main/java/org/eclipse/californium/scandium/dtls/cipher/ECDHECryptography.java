@@ -16,6 +16,8 @@
  *    Kai Hudalla (Bosch Software Innovations GmbH) - add latest curves from IANA registry,
  *                                                    add SupportedGroup enum also holding
  *                                                    curve params, add brainpool curve params
+ *    Bosch Software Innovations GmbH - support pre-computed ephemeral keys
+ *    Bosch Software Innovations GmbH - use shared SecureRandom provider
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls.cipher;
 
@@ -47,6 +49,7 @@ import javax.crypto.KeyAgreement;
 import javax.crypto.SecretKey;
 
 import org.eclipse.californium.scandium.util.ByteArrayUtils;
+import org.eclipse.californium.scandium.util.ThreadLocalSecureRandomProvider;
 
 /**
  * A helper class to execute the ECDHE key agreement and key generation.
@@ -101,7 +104,34 @@ public final class ECDHECryptography {
 	 *            given parameters
 	 */
 	public ECDHECryptography(ECParameterSpec params) throws GeneralSecurityException {
-		createKeys(params);
+		this(params, ThreadLocalSecureRandomProvider.getDefault().getSecureRandom());
+	}
+
+	/**
+	 * Creates an ephemeral ECDH key pair for given domain parameters
+	 * using a given random number generator.
+	 * 
+	 * @param params
+	 *            the domain parameters to create the keys for
+	 * @param random
+	 *            the generator to create the keys with
+	 * @throws GeneralSecurityException if the key pair cannot be created from the
+	 *            given parameters
+	 */
+	public ECDHECryptography(ECParameterSpec params, SecureRandom random) throws GeneralSecurityException {
+		createKeys(params, random);
+	}
+
+	/**
+	 * Creates an instance for an already generated ephemeral ECDH key pair.
+	 * 
+	 * @param keyPair the ephemeral key pair, e.g. taken from an
+	 *            {@link EphemeralKeyPool}
+	 * @throws ClassCastException if the key pair does not consist of EC keys
+	 */
+	public ECDHECryptography(KeyPair keyPair) {
+		privateKey = (ECPrivateKey) keyPair.getPrivate();
+		publicKey = (ECPublicKey) keyPair.getPublic();
 	}
 
 	/**
@@ -115,7 +145,7 @@ public final class ECDHECryptography {
 	 *            given name, e.g. because the JRE's crypto provider doesn't support the group
 	 */
 	private ECDHECryptography(String supportedGroup) throws GeneralSecurityException {
-		createKeys(new ECGenParameterSpec(supportedGroup));
+		createKeys(new ECGenParameterSpec(supportedGroup), ThreadLocalSecureRandomProvider.getDefault().getSecureRandom());
 	}
 
 	/**
@@ -144,9 +174,9 @@ public final class ECDHECryptography {
 		}
 	}
 	
-	private void createKeys(AlgorithmParameterSpec params) throws GeneralSecurityException {
+	private void createKeys(AlgorithmParameterSpec params, SecureRandom random) throws GeneralSecurityException {
 		KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(KEYPAIR_GENERATOR_ALGORITHM);
-		keyPairGenerator.initialize(params, new SecureRandom());
+		keyPairGenerator.initialize(params, random);
 
 		KeyPair keyPair = keyPairGenerator.generateKeyPair();
 		privateKey = (ECPrivateKey) keyPair.getPrivate();
@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls.cipher;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.californium.elements.util.DaemonThreadFactory;
+import org.eclipse.californium.elements.util.NamedThreadFactory;
+import org.eclipse.californium.scandium.dtls.cipher.ECDHECryptography.SupportedGroup;
+import org.eclipse.californium.scandium.util.SecureRandomProvider;
+import org.eclipse.californium.scandium.util.ThreadLocalSecureRandomProvider;
+
+/**
+ * A pool of ephemeral EC key pairs generated in the background.
+ * <p>
+ * Generating the ephemeral key pair is one of the most expensive steps of
+ * a full ECDHE handshake. This pool keeps up to <em>depth</em> key pairs per
+ * supported group ready, so that a handshake only needs to take one. Taking a
+ * key pair triggers the generation of a new one by one of the
+ * <em>refillThreads</em> threads.
+ * <p>
+ * Each key pair is handed out only once. If the pool for a group is empty,
+ * {@link #poll(SupportedGroup)} returns {@code null} and the caller is
+ * expected to generate a key pair itself.
+ */
+public final class EphemeralKeyPool {
+
+	private static final Logger LOGGER = Logger.getLogger(EphemeralKeyPool.class.getName());
+	private static final String KEYPAIR_GENERATOR_ALGORITHM = "EC";
+
+	private final Map<SupportedGroup, GroupPool> pools;
+	private final int refillThreads;
+	private final SecureRandomProvider randomProvider;
+	private final AtomicLong misses = new AtomicLong();
+	private volatile ExecutorService refillExecutor;
+
+	/**
+	 * Creates a pool.
+	 * 
+	 * @param groups The groups to keep key pairs for. Groups not being usable
+	 *            on this platform are ignored.
+	 * @param depth The number of key pairs to keep per group.
+	 * @param refillThreads The number of threads generating key pairs.
+	 * @throws NullPointerException if groups is {@code null}.
+	 * @throws IllegalArgumentException if depth or refillThreads is less than 1.
+	 */
+	public EphemeralKeyPool(final Collection<SupportedGroup> groups, final int depth, final int refillThreads) {
+		this(groups, depth, refillThreads, ThreadLocalSecureRandomProvider.getDefault());
+	}
+
+	/**
+	 * Creates a pool.
+	 * 
+	 * @param groups The groups to keep key pairs for. Groups not being usable
+	 *            on this platform are ignored.
+	 * @param depth The number of key pairs to keep per group.
+	 * @param refillThreads The number of threads generating key pairs.
+	 * @param randomProvider The provider to generate the key pairs with.
+	 * @throws NullPointerException if groups or randomProvider is {@code null}.
+	 * @throws IllegalArgumentException if depth or refillThreads is less than 1.
+	 */
+	public EphemeralKeyPool(final Collection<SupportedGroup> groups, final int depth, final int refillThreads,
+			final SecureRandomProvider randomProvider) {
+		if (groups == null) {
+			throw new NullPointerException("groups must not be null");
+		} else if (randomProvider == null) {
+			throw new NullPointerException("random provider must not be null");
+		} else if (depth < 1) {
+			throw new IllegalArgumentException("depth must be at least 1");
+		} else if (refillThreads < 1) {
+			throw new IllegalArgumentException("refill threads must be at least 1");
+		}
+		Map<SupportedGroup, GroupPool> result = new EnumMap<>(SupportedGroup.class);
+		for (SupportedGroup group : groups) {
+			if (group.isUsable()) {
+				result.put(group, new GroupPool(group, depth));
+			}
+		}
+		this.pools = Collections.unmodifiableMap(result);
+		this.refillThreads = refillThreads;
+		this.randomProvider = randomProvider;
+	}
+
+	/**
+	 * Starts generating key pairs.
+	 * <p>
+	 * Does nothing, if the pool has already been started.
+	 */
+	public synchronized void start() {
+		if (refillExecutor == null) {
+			refillExecutor = Executors.newFixedThreadPool(refillThreads,
+					new DaemonThreadFactory("DTLS KeyPool-", NamedThreadFactory.SCANDIUM_THREAD_GROUP));
+			for (GroupPool pool : pools.values()) {
+				for (int i = 0; i < refillThreads; ++i) {
+					refill(pool);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops generating key pairs.
+	 * <p>
+	 * Key pairs already generated remain available.
+	 */
+	public synchronized void stop() {
+		if (refillExecutor != null) {
+			refillExecutor.shutdownNow();
+			refillExecutor = null;
+		}
+	}
+
+	/**
+	 * Takes a key pair from the pool.
+	 * 
+	 * @param group The group to get the key pair for.
+	 * @return The key pair, or {@code null}, if no key pair is available for
+	 *         the group.
+	 */
+	public KeyPair poll(final SupportedGroup group) {
+		GroupPool pool = pools.get(group);
+		if (pool == null) {
+			return null;
+		}
+		KeyPair keyPair = pool.keyPairs.poll();
+		if (keyPair == null) {
+			misses.incrementAndGet();
+		}
+		refill(pool);
+		return keyPair;
+	}
+
+	/**
+	 * Gets the number of key pairs available for a group.
+	 * 
+	 * @param group The group.
+	 * @return The number of key pairs.
+	 */
+	public int size(final SupportedGroup group) {
+		GroupPool pool = pools.get(group);
+		return pool == null ? 0 : pool.keyPairs.size();
+	}
+
+	/**
+	 * Gets the number of times a key pair has been requested for a pooled
+	 * group while none has been available.
+	 * 
+	 * @return The number of requests.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	private void refill(final GroupPool pool) {
+		ExecutorService executor = refillExecutor;
+		if (executor == null) {
+			return;
+		}
+		int tasks;
+		do {
+			tasks = pool.refillTasks.get();
+			if (tasks >= refillThreads || pool.keyPairs.remainingCapacity() == 0) {
+				return;
+			}
+		} while (!pool.refillTasks.compareAndSet(tasks, tasks + 1));
+		try {
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						fill(pool);
+					} finally {
+						pool.refillTasks.decrementAndGet();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// pool has been stopped
+			pool.refillTasks.decrementAndGet();
+		}
+	}
+
+	private void fill(final GroupPool pool) {
+		try {
+			KeyPairGenerator generator = KeyPairGenerator.getInstance(KEYPAIR_GENERATOR_ALGORITHM);
+			generator.initialize(pool.group.getEcParams(), randomProvider.getSecureRandom());
+			while (!Thread.currentThread().isInterrupted() && pool.keyPairs.remainingCapacity() > 0) {
+				if (!pool.keyPairs.offer(generator.generateKeyPair())) {
+					break;
+				}
+			}
+		} catch (GeneralSecurityException e) {
+			LOGGER.log(Level.WARNING, "Cannot create ephemeral keys for group [{0}]: {1}",
+					new Object[] { pool.group.name(), e.getMessage() });
+		}
+	}
+
+	private static final class GroupPool {
+
+		private final SupportedGroup group;
+		private final BlockingQueue<KeyPair> keyPairs;
+		private final AtomicInteger refillTasks = new AtomicInteger();
+
+		private GroupPool(final SupportedGroup group, final int depth) {
+			this.group = group;
+			this.keyPairs = new ArrayBlockingQueue<>(depth);
+		}
+	}
+}
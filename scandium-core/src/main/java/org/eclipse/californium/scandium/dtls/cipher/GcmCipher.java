@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls.cipher;
+
+import java.security.GeneralSecurityException;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * An AES-GCM engine bound to a key. See
+ * <a href="http://tools.ietf.org/html/rfc5288">RFC 5288</a> for the use with
+ * TLS.
+ * <p>
+ * The engine uses the {@code AES/GCM/NoPadding} cipher of the JCE provider,
+ * which is available since Java 8 and uses the AES and carry-less
+ * multiplication instructions of the CPU, if supported. The cipher is created
+ * once per engine and reused for all messages, so an engine is intended to be
+ * kept with the connection state it encrypts or decrypts for.
+ * <p>
+ * Input and output may be the same buffer.
+ * <p>
+ * This class is thread safe. The operations are synchronized on the engine.
+ */
+public final class GcmCipher implements AeadCipher {
+
+	/**
+	 * The transformation of the JCE cipher.
+	 */
+	public static final String CIPHER_NAME = "AES/GCM/NoPadding";
+	private static final String KEY_TYPE = "AES";
+
+	private final SecretKey key;
+	private final int macLength;
+	private final Cipher cipher;
+
+	/**
+	 * Creates an engine for a key.
+	 *
+	 * @param key the AES key.
+	 * @param macLength number of octets in authentication tag. Valid values
+	 *            are 12 to 16.
+	 * @throws GeneralSecurityException if the JCE provider doesn't support
+	 *             AES-GCM.
+	 * @throws IllegalArgumentException if the mac length is not valid.
+	 */
+	public GcmCipher(final SecretKey key, final int macLength) throws GeneralSecurityException {
+		if (macLength < 12 || macLength > 16) {
+			throw new IllegalArgumentException("MAC length " + macLength + " is not valid");
+		}
+		this.key = KEY_TYPE.equals(key.getAlgorithm()) ? key : new SecretKeySpec(key.getEncoded(), KEY_TYPE);
+		this.macLength = macLength;
+		this.cipher = Cipher.getInstance(CIPHER_NAME);
+	}
+
+	@Override
+	public int getMacLength() {
+		return macLength;
+	}
+
+	@Override
+	public synchronized int encrypt(final byte[] nonce, final byte[] additionalData, final byte[] input,
+			final int inputOffset, final int inputLength, final byte[] output, final int outputOffset)
+			throws GeneralSecurityException {
+		if (output.length - outputOffset < inputLength + macLength) {
+			throw new IndexOutOfBoundsException("Output buffer too small for " + (inputLength + macLength) + " bytes");
+		}
+		cipher.init(Cipher.ENCRYPT_MODE, key, getParameter(nonce));
+		cipher.updateAAD(additionalData);
+		return cipher.doFinal(input, inputOffset, inputLength, output, outputOffset);
+	}
+
+	@Override
+	public synchronized int decrypt(final byte[] nonce, final byte[] additionalData, final byte[] input,
+			final int inputOffset, final int inputLength, final byte[] output, final int outputOffset)
+			throws GeneralSecurityException {
+		int messageLength = inputLength - macLength;
+		if (messageLength < 0) {
+			throw new GeneralSecurityException("Ciphertext shorter than authentication tag");
+		} else if (output.length - outputOffset < messageLength) {
+			throw new IndexOutOfBoundsException("Output buffer too small for " + messageLength + " bytes");
+		}
+		cipher.init(Cipher.DECRYPT_MODE, key, getParameter(nonce));
+		cipher.updateAAD(additionalData);
+		try {
+			return cipher.doFinal(input, inputOffset, inputLength, output, outputOffset);
+		} catch (BadPaddingException ex) {
+			// AEADBadTagException, the provider doesn't reveal the tags
+			throw new InvalidMacException(new byte[0], new byte[0]);
+		}
+	}
+
+	private GCMParameterSpec getParameter(final byte[] nonce) {
+		if (nonce.length == 0) {
+			throw new IllegalArgumentException("Nonce must not be empty");
+		}
+		return new GCMParameterSpec(macLength * 8, nonce);
+	}
+
+	/**
+	 * Checks, if the JCE provider supports AES-GCM.
+	 *
+	 * @return {@code true}, if AES-GCM is supported, {@code false}, otherwise.
+	 */
+	public static boolean isSupported() {
+		try {
+			Cipher.getInstance(CIPHER_NAME);
+			return true;
+		} catch (GeneralSecurityException ex) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls.pskstore;
+
+import org.eclipse.californium.scandium.util.ServerNames;
+
+/**
+ * A storage for pre-shared-keys, which resolves keys asynchronously.
+ * <p>
+ * A server side connector uses this store to look up the key of the identity
+ * a client has sent in its <em>CLIENT_KEY_EXCHANGE</em> message. The handshake
+ * with that client is suspended until the store reports the result to the
+ * callback, so a slow key lookup doesn't block the processing of records of
+ * other peers.
+ */
+public interface AsyncPskStore {
+
+	/**
+	 * Callback for the result of a key lookup.
+	 * <p>
+	 * Exactly one of the methods is called exactly once per lookup. The
+	 * methods may be called from any thread, including the thread that
+	 * requested the key.
+	 */
+	interface Callback {
+
+		/**
+		 * Reports the key of an identity.
+		 * 
+		 * @param identity The identity the key has been requested for.
+		 * @param key The key or {@code null} if the identity is unknown.
+		 */
+		void onKey(String identity, byte[] key);
+
+		/**
+		 * Reports that the key of an identity could not be looked up.
+		 * <p>
+		 * Other than an unknown identity, a failure is not a statement about
+		 * the identity, e.g. the backend of the store may not be reachable.
+		 * 
+		 * @param identity The identity the key has been requested for.
+		 * @param cause The reason of the failure.
+		 */
+		void onError(String identity, Throwable cause);
+	}
+
+	/**
+	 * Requests the shared key for a given identity.
+	 * <p>
+	 * The key is used for mutual authentication during a DTLS handshake.
+	 * Implementations must not block the calling thread while waiting for a
+	 * remote key service.
+	 * 
+	 * @param serverNames The names of servers the client provided as part of
+	 *            the <em>Server Name Indication</em> hello extension during the
+	 *            DTLS handshake, or {@code null}, if the client didn't indicate
+	 *            any server names.
+	 * @param identity The identity to look up the key for.
+	 * @param callback The callback to report the result to.
+	 * @throws NullPointerException if identity or callback is {@code null}.
+	 */
+	void requestKey(ServerNames serverNames, String identity, Callback callback);
+
+	/**
+	 * Cancels a request for a key.
+	 * <p>
+	 * If the request is still pending, its callback is not called anymore and
+	 * the store may abandon the lookup. Stores, which don't keep pending
+	 * requests, may ignore the cancellation.
+	 * 
+	 * @param serverNames The server names of the request.
+	 * @param identity The identity of the request.
+	 * @param callback The callback of the request.
+	 */
+	void cancel(ServerNames serverNames, String identity, Callback callback);
+}
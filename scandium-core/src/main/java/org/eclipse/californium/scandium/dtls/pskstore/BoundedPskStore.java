@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls.pskstore;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.californium.scandium.util.ServerNames;
+
+/**
+ * A decorator limiting the lookups at another {@link AsyncPskStore}.
+ * <p>
+ * At most <em>maxPendingLookups</em> lookups are passed to the decorated store
+ * at the same time. Further requests fail immediately with a
+ * {@link RejectedExecutionException}, so a stalled backend doesn't pile up
+ * suspended handshakes. A lookup, which is not answered within the
+ * <em>timeout</em>, fails with a {@link TimeoutException}. A late answer of the
+ * decorated store is then ignored and the timed out request is cancelled at
+ * the decorated store.
+ */
+public final class BoundedPskStore implements AsyncPskStore {
+
+	private final AsyncPskStore store;
+	private final ScheduledExecutorService timer;
+	private final long timeoutMillis;
+	private final int maxPendingLookups;
+	private final AtomicInteger pendingLookups = new AtomicInteger();
+	private final ConcurrentMap<Callback, PendingLookup> lookups = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a decorator for a store.
+	 * 
+	 * @param store The store to limit the lookups of.
+	 * @param timer The timer to schedule the timeouts with.
+	 * @param timeoutMillis The time in milliseconds to wait for the result of a
+	 *            lookup.
+	 * @param maxPendingLookups The maximum number of pending lookups.
+	 * @throws NullPointerException if store or timer is {@code null}.
+	 * @throws IllegalArgumentException if timeoutMillis or maxPendingLookups
+	 *             is less than 1.
+	 */
+	public BoundedPskStore(final AsyncPskStore store, final ScheduledExecutorService timer, final long timeoutMillis,
+			final int maxPendingLookups) {
+		if (store == null) {
+			throw new NullPointerException("store must not be null");
+		} else if (timer == null) {
+			throw new NullPointerException("timer must not be null");
+		} else if (timeoutMillis < 1) {
+			throw new IllegalArgumentException("timeout must be at least 1 ms");
+		} else if (maxPendingLookups < 1) {
+			throw new IllegalArgumentException("max pending lookups must be at least 1");
+		}
+		this.store = store;
+		this.timer = timer;
+		this.timeoutMillis = timeoutMillis;
+		this.maxPendingLookups = maxPendingLookups;
+	}
+
+	@Override
+	public void requestKey(final ServerNames serverNames, final String identity, final Callback callback) {
+
+		if (identity == null) {
+			throw new NullPointerException("identity must not be null");
+		} else if (callback == null) {
+			throw new NullPointerException("callback must not be null");
+		}
+		if (pendingLookups.incrementAndGet() > maxPendingLookups) {
+			pendingLookups.decrementAndGet();
+			callback.onError(identity,
+					new RejectedExecutionException("too many pending lookups, max. " + maxPendingLookups));
+			return;
+		}
+		final PendingLookup lookup = new PendingLookup(callback);
+		lookups.put(callback, lookup);
+		try {
+			lookup.timeout = timer.schedule(new Runnable() {
+
+				@Override
+				public void run() {
+					lookup.onError(identity,
+							new TimeoutException("lookup not completed within " + timeoutMillis + " ms"));
+					store.cancel(serverNames, identity, lookup);
+				}
+			}, timeoutMillis, TimeUnit.MILLISECONDS);
+			store.requestKey(serverNames, identity, lookup);
+		} catch (RuntimeException ex) {
+			lookup.onError(identity, ex);
+		}
+	}
+
+	@Override
+	public void cancel(final ServerNames serverNames, final String identity, final Callback callback) {
+		PendingLookup lookup = lookups.get(callback);
+		if (lookup != null && lookup.complete()) {
+			store.cancel(serverNames, identity, lookup);
+		}
+	}
+
+	/**
+	 * Gets the number of pending lookups.
+	 * 
+	 * @return the number of lookups
+	 */
+	public int getPendingLookups() {
+		return pendingLookups.get();
+	}
+
+	/**
+	 * Reports the first result of a lookup to the callback and releases the
+	 * lookup.
+	 */
+	private final class PendingLookup implements Callback {
+
+		private final AtomicBoolean completed = new AtomicBoolean();
+		private final Callback callback;
+		private volatile ScheduledFuture<?> timeout;
+
+		private PendingLookup(final Callback callback) {
+			this.callback = callback;
+		}
+
+		private boolean complete() {
+			if (completed.compareAndSet(false, true)) {
+				pendingLookups.decrementAndGet();
+				lookups.remove(callback, this);
+				ScheduledFuture<?> future = timeout;
+				if (future != null) {
+					future.cancel(false);
+				}
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public void onKey(final String identity, final byte[] key) {
+			if (complete()) {
+				callback.onKey(identity, key);
+			}
+		}
+
+		@Override
+		public void onError(final String identity, final Throwable cause) {
+			if (complete()) {
+				callback.onError(identity, cause);
+			}
+		}
+	}
+}
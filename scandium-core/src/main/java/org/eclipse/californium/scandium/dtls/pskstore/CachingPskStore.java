@@ -0,0 +1,397 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls.pskstore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.californium.scandium.util.ServerName;
+import org.eclipse.californium.scandium.util.ServerNames;
+
+/**
+ * A decorator caching the results of another {@link AsyncPskStore}.
+ * <p>
+ * Keys are kept for the <em>timeToLive</em>. Unknown identities are kept for
+ * the <em>negativeTimeToLive</em>, so clients retrying with an unknown
+ * identity don't cause a lookup at the backend for each handshake. Failed
+ * lookups are not cached.
+ * <p>
+ * Concurrent requests for the same identity are coalesced into a single lookup
+ * at the decorated store. A lookup, which is not answered within the
+ * <em>lookupTimeout</em>, fails for all waiting requests with a
+ * {@link TimeoutException}, so the next request starts a new lookup. A late
+ * answer of the decorated store is still cached.
+ * <p>
+ * The cache holds at most <em>maxEntries</em> results. If the cache is full,
+ * the result cached first is evicted, which is also the result expiring first
+ * for results of the same kind.
+ */
+public final class CachingPskStore implements AsyncPskStore {
+
+	/**
+	 * The default maximum number of cached results.
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	private final AsyncPskStore store;
+	private final ScheduledExecutorService timer;
+	private final long lookupTimeoutMillis;
+	private final long timeToLiveNanos;
+	private final long negativeTimeToLiveNanos;
+	private final int maxEntries;
+	/**
+	 * Cached results in insertion order. Guarded by itself.
+	 */
+	private final Map<CacheKey, CacheEntry> entries = new LinkedHashMap<CacheKey, CacheEntry>() {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<CacheKey, CacheEntry> eldest) {
+			return size() > maxEntries;
+		}
+	};
+	/**
+	 * Lookups at the decorated store. Guarded by itself.
+	 */
+	private final Map<CacheKey, PendingLookup> pendingLookups = new HashMap<>();
+
+	/**
+	 * Creates a cache for a store holding at most
+	 * {@link #DEFAULT_MAX_ENTRIES} results.
+	 * 
+	 * @param store The store to cache the results of.
+	 * @param timer The timer to schedule the timeouts of the lookups with.
+	 * @param lookupTimeoutMillis The time in milliseconds to wait for the
+	 *            result of a lookup at the store.
+	 * @param timeToLive The time to keep a key.
+	 * @param negativeTimeToLive The time to keep the result for an unknown
+	 *            identity. {@code 0} disables caching of unknown identities.
+	 * @param unit The unit of the times to keep results.
+	 * @throws NullPointerException if store, timer or unit is {@code null}.
+	 * @throws IllegalArgumentException if a time is negative or
+	 *             lookupTimeoutMillis is less than 1.
+	 */
+	public CachingPskStore(final AsyncPskStore store, final ScheduledExecutorService timer,
+			final long lookupTimeoutMillis, final long timeToLive, final long negativeTimeToLive,
+			final TimeUnit unit) {
+		this(store, timer, lookupTimeoutMillis, timeToLive, negativeTimeToLive, unit, DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * Creates a cache for a store.
+	 * 
+	 * @param store The store to cache the results of.
+	 * @param timer The timer to schedule the timeouts of the lookups with.
+	 * @param lookupTimeoutMillis The time in milliseconds to wait for the
+	 *            result of a lookup at the store.
+	 * @param timeToLive The time to keep a key.
+	 * @param negativeTimeToLive The time to keep the result for an unknown
+	 *            identity. {@code 0} disables caching of unknown identities.
+	 * @param unit The unit of the times to keep results.
+	 * @param maxEntries The maximum number of cached results.
+	 * @throws NullPointerException if store, timer or unit is {@code null}.
+	 * @throws IllegalArgumentException if a time is negative,
+	 *             lookupTimeoutMillis or maxEntries is less than 1.
+	 */
+	public CachingPskStore(final AsyncPskStore store, final ScheduledExecutorService timer,
+			final long lookupTimeoutMillis, final long timeToLive, final long negativeTimeToLive,
+			final TimeUnit unit, final int maxEntries) {
+		if (store == null) {
+			throw new NullPointerException("store must not be null");
+		} else if (timer == null) {
+			throw new NullPointerException("timer must not be null");
+		} else if (unit == null) {
+			throw new NullPointerException("unit must not be null");
+		} else if (lookupTimeoutMillis < 1) {
+			throw new IllegalArgumentException("lookup timeout must be at least 1 ms");
+		} else if (timeToLive < 0 || negativeTimeToLive < 0) {
+			throw new IllegalArgumentException("time to live must not be negative");
+		} else if (maxEntries < 1) {
+			throw new IllegalArgumentException("max entries must be at least 1");
+		}
+		this.store = store;
+		this.timer = timer;
+		this.lookupTimeoutMillis = lookupTimeoutMillis;
+		this.timeToLiveNanos = unit.toNanos(timeToLive);
+		this.negativeTimeToLiveNanos = unit.toNanos(negativeTimeToLive);
+		this.maxEntries = maxEntries;
+	}
+
+	@Override
+	public void requestKey(final ServerNames serverNames, final String identity, final Callback callback) {
+
+		if (identity == null) {
+			throw new NullPointerException("identity must not be null");
+		} else if (callback == null) {
+			throw new NullPointerException("callback must not be null");
+		}
+		final CacheKey cacheKey = new CacheKey(serverNames, identity);
+		CacheEntry entry;
+		synchronized (entries) {
+			entry = entries.get(cacheKey);
+			if (entry != null && entry.isExpired(System.nanoTime())) {
+				entries.remove(cacheKey);
+				entry = null;
+			}
+		}
+		if (entry != null) {
+			callback.onKey(identity, copy(entry.key));
+			return;
+		}
+		final PendingLookup lookup;
+		synchronized (pendingLookups) {
+			PendingLookup pending = pendingLookups.get(cacheKey);
+			if (pending != null) {
+				pending.waiting.add(callback);
+				return;
+			}
+			lookup = new PendingLookup(cacheKey, callback);
+			pendingLookups.put(cacheKey, lookup);
+		}
+		try {
+			lookup.timeout = timer.schedule(new Runnable() {
+
+				@Override
+				public void run() {
+					TimeoutException cause = new TimeoutException(
+							"lookup not completed within " + lookupTimeoutMillis + " ms");
+					for (Callback waitingCallback : complete(lookup)) {
+						waitingCallback.onError(identity, cause);
+					}
+				}
+			}, lookupTimeoutMillis, TimeUnit.MILLISECONDS);
+			requestKeyFromStore(lookup, serverNames, identity);
+		} catch (RuntimeException ex) {
+			for (Callback waitingCallback : complete(lookup)) {
+				waitingCallback.onError(identity, ex);
+			}
+		}
+	}
+
+	private void requestKeyFromStore(final PendingLookup lookup, final ServerNames serverNames,
+			final String identity) {
+		store.requestKey(serverNames, identity, new Callback() {
+
+			@Override
+			public void onKey(final String keyIdentity, final byte[] key) {
+				long timeToLive = key == null ? negativeTimeToLiveNanos : timeToLiveNanos;
+				if (timeToLive > 0) {
+					put(lookup.cacheKey, new CacheEntry(copy(key), System.nanoTime() + timeToLive));
+				}
+				for (Callback waitingCallback : complete(lookup)) {
+					waitingCallback.onKey(identity, copy(key));
+				}
+			}
+
+			@Override
+			public void onError(final String keyIdentity, final Throwable cause) {
+				for (Callback waitingCallback : complete(lookup)) {
+					waitingCallback.onError(identity, cause);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Cancels a pending request for a key.
+	 * <p>
+	 * The callback is not called anymore. If no other requests wait for the
+	 * lookup at the decorated store, the lookup is abandoned, so that the next
+	 * request for the identity starts a new lookup. Used by the
+	 * {@link BoundedPskStore}, when a request decorated by it times out.
+	 * 
+	 * @param serverNames The server names the identity is scoped to, or
+	 *            {@code null}, for the unscoped identity.
+	 * @param identity The identity.
+	 * @param callback The callback of the request.
+	 */
+	@Override
+	public void cancel(final ServerNames serverNames, final String identity, final Callback callback) {
+		CacheKey cacheKey = new CacheKey(serverNames, identity);
+		PendingLookup lookup;
+		synchronized (pendingLookups) {
+			lookup = pendingLookups.get(cacheKey);
+			if (lookup == null || !lookup.waiting.remove(callback) || !lookup.waiting.isEmpty()) {
+				return;
+			}
+			pendingLookups.remove(cacheKey);
+		}
+		lookup.cancelTimeout();
+	}
+
+	/**
+	 * Gets the number of pending lookups at the decorated store.
+	 * 
+	 * @return the number of lookups
+	 */
+	public int getPendingLookups() {
+		synchronized (pendingLookups) {
+			return pendingLookups.size();
+		}
+	}
+
+	/**
+	 * Removes the cached result for an identity.
+	 * <p>
+	 * Intended to be used, when the key of an identity has been changed or an
+	 * identity has been added after it was reported as unknown.
+	 * 
+	 * @param serverNames The server names the identity is scoped to, or
+	 *            {@code null}, for the unscoped identity.
+	 * @param identity The identity.
+	 */
+	public void invalidate(final ServerNames serverNames, final String identity) {
+		synchronized (entries) {
+			entries.remove(new CacheKey(serverNames, identity));
+		}
+	}
+
+	/**
+	 * Removes all cached results.
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Gets the number of cached results, including expired ones not purged
+	 * yet.
+	 * 
+	 * @return the number of results
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	private void put(final CacheKey cacheKey, final CacheEntry entry) {
+		synchronized (entries) {
+			// re-insert to keep the insertion order
+			entries.remove(cacheKey);
+			entries.put(cacheKey, entry);
+		}
+	}
+
+	/**
+	 * Completes a lookup.
+	 * 
+	 * @param lookup The lookup.
+	 * @return The callbacks waiting for the lookup. Empty, if the lookup has
+	 *         already been completed or abandoned.
+	 */
+	private List<Callback> complete(final PendingLookup lookup) {
+		synchronized (pendingLookups) {
+			if (pendingLookups.get(lookup.cacheKey) != lookup) {
+				return Collections.emptyList();
+			}
+			pendingLookups.remove(lookup.cacheKey);
+		}
+		lookup.cancelTimeout();
+		return lookup.waiting;
+	}
+
+	private static byte[] copy(final byte[] key) {
+		return key == null ? null : Arrays.copyOf(key, key.length);
+	}
+
+	/**
+	 * A lookup at the decorated store and the callbacks waiting for it.
+	 */
+	private static final class PendingLookup {
+
+		private final CacheKey cacheKey;
+		/**
+		 * Guarded by the pending lookups of the store.
+		 */
+		private final List<Callback> waiting = new ArrayList<>(2);
+		private volatile ScheduledFuture<?> timeout;
+
+		private PendingLookup(final CacheKey cacheKey, final Callback callback) {
+			this.cacheKey = cacheKey;
+			this.waiting.add(callback);
+		}
+
+		private void cancelTimeout() {
+			ScheduledFuture<?> future = timeout;
+			if (future != null) {
+				future.cancel(false);
+			}
+		}
+	}
+
+	private static final class CacheEntry {
+
+		private final byte[] key;
+		private final long expiresNanos;
+
+		private CacheEntry(final byte[] key, final long expiresNanos) {
+			this.key = key;
+			this.expiresNanos = expiresNanos;
+		}
+
+		private boolean isExpired(final long now) {
+			return now - expiresNanos >= 0;
+		}
+	}
+
+	private static final class CacheKey {
+
+		private final List<ServerName> serverNames;
+		private final String identity;
+
+		private CacheKey(final ServerNames serverNames, final String identity) {
+			if (serverNames == null) {
+				this.serverNames = null;
+			} else {
+				this.serverNames = new ArrayList<>(serverNames.size());
+				for (ServerName serverName : serverNames) {
+					this.serverNames.add(serverName);
+				}
+			}
+			this.identity = identity;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(serverNames, identity);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (!(obj instanceof CacheKey)) {
+				return false;
+			}
+			CacheKey other = (CacheKey) obj;
+			return Objects.equals(identity, other.identity) && Objects.equals(serverNames, other.serverNames);
+		}
+	}
+}
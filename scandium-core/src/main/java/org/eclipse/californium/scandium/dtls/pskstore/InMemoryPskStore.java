@@ -13,6 +13,7 @@
  * Contributors:
  * Julien Vermillard - Sierra Wireless
  * Kai Hudalla (Bosch Software Innovations GmbH) - fix formatting
+ * Bosch Software Innovations GmbH - implement AsyncPskStore
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls.pskstore;
 
@@ -35,8 +36,11 @@ import org.eclipse.californium.scandium.util.ServerNames;
  * To be used only for testing and evaluation. 
  * You are supposed to store your key in a secure way: 
  * keeping them in-memory is not a good idea.
+ * 
+ * The store also implements {@link AsyncPskStore} by reporting the key
+ * immediately to the callback.
  */
-public class InMemoryPskStore implements PskStore, ServerNameResolver {
+public class InMemoryPskStore implements PskStore, AsyncPskStore, ServerNameResolver {
 
 	private final Map<ServerName, Map<String, byte[]>> scopedKeys = new ConcurrentHashMap<>();
 	private final Map<String, byte[]> keys = new ConcurrentHashMap<>();
@@ -86,6 +90,23 @@ public class InMemoryPskStore implements PskStore, ServerNameResolver {
 		}
 	}
 
+	@Override
+	public void requestKey(final ServerNames serverNames, final String identity, final Callback callback) {
+
+		if (callback == null) {
+			throw new NullPointerException("callback must not be null");
+		} else if (serverNames == null) {
+			callback.onKey(identity, getKey(identity));
+		} else {
+			callback.onKey(identity, getKey(serverNames, identity));
+		}
+	}
+
+	@Override
+	public void cancel(final ServerNames serverNames, final String identity, final Callback callback) {
+		// keys are reported synchronously, so there are no pending requests
+	}
+
 	/**
 	 * Set a key value for a given identity.
 	 * 
@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.util;
+
+import java.security.SecureRandom;
+
+/**
+ * A connector-wide source of randomness.
+ * <p>
+ * The DTLS connector uses the provider for the random values exchanged
+ * during a handshake, e.g. the client and server <em>Random</em>, the
+ * session identifiers, the secrets of the stateless cookies and the
+ * ephemeral ECDH keys.
+ * <p>
+ * Implementations must be thread safe.
+ */
+public interface SecureRandomProvider {
+
+	/**
+	 * Gets the random number generator to be used by the calling thread.
+	 * <p>
+	 * Callers should not keep the returned instance, but get it again
+	 * when they need more random bytes, so that implementations are free
+	 * to hand out a different generator per thread.
+	 * 
+	 * @return the generator
+	 */
+	SecureRandom getSecureRandom();
+}
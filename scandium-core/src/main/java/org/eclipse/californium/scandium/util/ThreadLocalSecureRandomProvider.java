@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.util;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * A provider handing out a separate {@link SecureRandom} per thread.
+ * <p>
+ * Each generator is created and seeded once, when a thread asks for it
+ * the first time. Afterwards, the threads neither pay for seeding new
+ * generators nor contend for the lock of a shared one.
+ */
+public final class ThreadLocalSecureRandomProvider implements SecureRandomProvider {
+
+	private static final ThreadLocalSecureRandomProvider DEFAULT = new ThreadLocalSecureRandomProvider();
+
+	private final String algorithm;
+	private final ThreadLocal<SecureRandom> generators = new ThreadLocal<SecureRandom>() {
+
+		@Override
+		protected SecureRandom initialValue() {
+			return newSecureRandom();
+		}
+	};
+
+	/**
+	 * Creates a provider using the platform's default <code>SecureRandom</code>
+	 * algorithm.
+	 */
+	public ThreadLocalSecureRandomProvider() {
+		this.algorithm = null;
+	}
+
+	/**
+	 * Creates a provider using a given <code>SecureRandom</code> algorithm.
+	 * 
+	 * @param algorithm the name of the algorithm, e.g. <em>SHA1PRNG</em>
+	 * @throws NullPointerException if the algorithm is <code>null</code>
+	 * @throws NoSuchAlgorithmException if none of the JRE's security providers
+	 *             supports the algorithm
+	 */
+	public ThreadLocalSecureRandomProvider(String algorithm) throws NoSuchAlgorithmException {
+		if (algorithm == null) {
+			throw new NullPointerException("Algorithm must not be null");
+		}
+		// fail early
+		SecureRandom.getInstance(algorithm);
+		this.algorithm = algorithm;
+	}
+
+	/**
+	 * Gets the provider shared by all connectors that are not configured
+	 * with a provider of their own.
+	 * 
+	 * @return the provider
+	 */
+	public static ThreadLocalSecureRandomProvider getDefault() {
+		return DEFAULT;
+	}
+
+	@Override
+	public SecureRandom getSecureRandom() {
+		return generators.get();
+	}
+
+	private SecureRandom newSecureRandom() {
+		if (algorithm == null) {
+			return new SecureRandom();
+		}
+		try {
+			return SecureRandom.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			// already checked by the constructor
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.elements.RawData;
+import org.eclipse.californium.elements.RawDataChannel;
+import org.eclipse.californium.scandium.category.Medium;
+import org.eclipse.californium.scandium.config.DtlsConnectorConfig;
+import org.eclipse.californium.scandium.dtls.InMemoryConnectionStore;
+import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
+import org.eclipse.californium.scandium.dtls.pskstore.AsyncPskStore;
+import org.eclipse.californium.scandium.dtls.pskstore.InMemoryPskStore;
+import org.eclipse.californium.scandium.dtls.pskstore.StaticPskStore;
+import org.eclipse.californium.scandium.rule.DtlsNetworkRule;
+import org.eclipse.californium.scandium.util.ServerNames;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies that a server side connector completes PSK handshakes with keys
+ * looked up asynchronously.
+ */
+@Category(Medium.class)
+public class AsyncPskHandshakeTest {
+	@ClassRule
+	public static DtlsNetworkRule network = new DtlsNetworkRule(DtlsNetworkRule.Mode.DIRECT, DtlsNetworkRule.Mode.NATIVE);
+
+	private static final String CLIENT_IDENTITY = "Client_identity";
+	private static final byte[] CLIENT_IDENTITY_SECRET = "secretPSK".getBytes();
+	private static final int MAX_TIME_TO_WAIT_SECS = 2;
+
+	ScheduledExecutorService backend;
+	DelayedPskStore pskStore;
+	InMemoryConnectionStore serverConnectionStore;
+	DTLSConnector server;
+	DTLSConnector client;
+	CountDownLatch received;
+
+	@Before
+	public void setUp() throws Exception {
+		backend = Executors.newSingleThreadScheduledExecutor();
+		pskStore = new DelayedPskStore(backend);
+		pskStore.keys.setKey(CLIENT_IDENTITY, CLIENT_IDENTITY_SECRET);
+		received = new CountDownLatch(1);
+	}
+
+	@After
+	public void tearDown() {
+		if (client != null) {
+			client.destroy();
+		}
+		if (server != null) {
+			server.destroy();
+		}
+		backend.shutdownNow();
+	}
+
+	@Test
+	public void testHandshakeCompletesWithDelayedKey() throws Exception {
+		givenAServer(DtlsConnectorConfig.DEFAULT_PSK_LOOKUP_TIMEOUT_MILLIS);
+		givenAClient(CLIENT_IDENTITY);
+
+		client.send(new RawData("Hello World".getBytes(), server.getAddress()));
+
+		assertTrue("DTLS handshake timed out", received.await(MAX_TIME_TO_WAIT_SECS, TimeUnit.SECONDS));
+		assertThat(serverConnectionStore.get(client.getAddress()).getEstablishedSession(), is(notNullValue()));
+	}
+
+	@Test
+	public void testHandshakeFailsForUnknownIdentity() throws Exception {
+		givenAServer(DtlsConnectorConfig.DEFAULT_PSK_LOOKUP_TIMEOUT_MILLIS);
+		givenAClient("unknown");
+
+		client.send(new RawData("Hello World".getBytes(), server.getAddress()));
+
+		assertFalse(received.await(1, TimeUnit.SECONDS));
+		assertThat(serverConnectionStore.get(client.getAddress()), is(nullValue()));
+	}
+
+	@Test
+	public void testHandshakeFailsOnLookupTimeout() throws Exception {
+		pskStore.delayMillis = 10000;
+		givenAServer(100);
+		givenAClient(CLIENT_IDENTITY);
+
+		client.send(new RawData("Hello World".getBytes(), server.getAddress()));
+
+		assertFalse(received.await(1, TimeUnit.SECONDS));
+		assertThat(serverConnectionStore.get(client.getAddress()), is(nullValue()));
+	}
+
+	private void givenAServer(long lookupTimeout) throws Exception {
+		DtlsConnectorConfig config = new DtlsConnectorConfig.Builder(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+				.setSupportedCipherSuites(new CipherSuite[]{CipherSuite.TLS_PSK_WITH_AES_128_CCM_8})
+				.setAsyncPskStore(pskStore)
+				.setPskLookupTimeout(lookupTimeout)
+				.build();
+		serverConnectionStore = new InMemoryConnectionStore(5, 60);
+		server = new DTLSConnector(config, serverConnectionStore);
+		server.setRawDataReceiver(new RawDataChannel() {
+
+			@Override
+			public void receiveData(RawData raw) {
+				received.countDown();
+			}
+		});
+		server.start();
+	}
+
+	private void givenAClient(String identity) throws Exception {
+		DtlsConnectorConfig config = new DtlsConnectorConfig.Builder(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+				.setSupportedCipherSuites(new CipherSuite[]{CipherSuite.TLS_PSK_WITH_AES_128_CCM_8})
+				.setPskStore(new StaticPskStore(identity, CLIENT_IDENTITY_SECRET))
+				.build();
+		client = new DTLSConnector(config);
+		client.setRawDataReceiver(new RawDataChannel() {
+
+			@Override
+			public void receiveData(RawData raw) {
+			}
+		});
+		client.start();
+	}
+
+	/**
+	 * A store reporting the keys of an in-memory store delayed from another thread.
+	 */
+	static class DelayedPskStore implements AsyncPskStore {
+
+		final InMemoryPskStore keys = new InMemoryPskStore();
+		final ScheduledExecutorService executor;
+		volatile long delayMillis = 200;
+
+		DelayedPskStore(ScheduledExecutorService executor) {
+			this.executor = executor;
+		}
+
+		@Override
+		public void requestKey(final ServerNames serverNames, final String identity, final Callback callback) {
+			executor.schedule(new Runnable() {
+
+				@Override
+				public void run() {
+					keys.requestKey(serverNames, identity, callback);
+				}
+			}, delayMillis, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public void cancel(ServerNames serverNames, String identity, Callback callback) {
+		}
+	}
+}
@@ -28,6 +28,7 @@
  *    Achim Kraus (Bosch Software Innovations GmbH) - add test for retransmission of FINISHED
  *                                                    add asserts for record sequence numbers
  *                                                    of retransmitted flights
+ *    Bosch Software Innovations GmbH - add test for timer set after restart
  ******************************************************************************/
 package org.eclipse.californium.scandium;
 
@@ -51,8 +52,11 @@ import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.californium.elements.CorrelationContext;
@@ -271,6 +275,36 @@ public class DTLSConnectorTest {
 		givenAnEstablishedSession();
 	}
 
+	@Test
+	public void testRestartedConnectorUsesTimerSetAfterStop() throws Exception {
+		// GIVEN a client that has been started and stopped using its internal timer
+		client.start();
+		client.stop();
+
+		// WHEN a shared timer is set before the client is started again
+		final AtomicInteger scheduledTasks = new AtomicInteger();
+		ScheduledThreadPoolExecutor sharedTimer = new ScheduledThreadPoolExecutor(1) {
+
+			@Override
+			public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+				scheduledTasks.incrementAndGet();
+				return super.schedule(command, delay, unit);
+			}
+		};
+		try {
+			client.setTimer(sharedTimer);
+			givenAnEstablishedSession();
+
+			// THEN the flights of the handshake are scheduled by the shared timer
+			assertThat(scheduledTasks.get(), is(greaterThan(0)));
+			// and the shared timer is not shut down by the client
+			client.stop();
+			assertFalse(sharedTimer.isShutdown());
+		} finally {
+			sharedTimer.shutdownNow();
+		}
+	}
+
 	/**
 	 * Verifies that a DTLSConnector terminates its connection with a peer when receiving
 	 * a CLOSE_NOTIFY alert from the peer (bug #478538).
@@ -1083,6 +1117,36 @@ public class DTLSConnectorTest {
 		assertClientIdentity(RawPublicKeyIdentity.class);
 	}
 
+	@Test
+	public void testStartStopWithSameAddressAndMultipleReceivers() throws Exception {
+		// use a socket per receiver, if SO_REUSEPORT is supported
+		client = new DTLSConnector(newStandardConfigBuilder(clientEndpoint).setReceiverThreadCount(4).build(),
+				clientConnectionStore);
+		client.setExecutor(stripedExecutor);
+		// Do a first handshake
+		givenAnEstablishedSession(false);
+		byte[] sessionId = establishedServerSession.getSessionIdentifier().getId();
+		InetSocketAddress firstAddress = client.getAddress();
+
+		// Stop and restart the client
+		client.stop();
+		client.restart();
+		assertEquals(firstAddress, client.getAddress());
+
+		// Prepare message sending
+		final String msg = "Hello Again";
+		CountDownLatch latch = new CountDownLatch(1);
+		clientRawDataChannel.setLatch(latch);
+
+		// send message
+		client.send(new RawData(msg.getBytes(), serverEndpoint));
+		assertTrue(latch.await(MAX_TIME_TO_WAIT_SECS, TimeUnit.SECONDS));
+
+		// check we use the same session id
+		Connection connection = clientConnectionStore.get(serverEndpoint);
+		assertArrayEquals(sessionId, connection.getEstablishedSession().getSessionIdentifier().getId());
+	}
+
 	@Test
 	public void testConnectorResumesSessionFromSharedSessionTicket() throws Exception {
 		// Do a first handshake
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.californium.scandium.category.Small;
+import org.eclipse.californium.scandium.config.DtlsConnectorConfig;
+import org.eclipse.californium.scandium.dtls.DTLSSession;
+import org.eclipse.californium.scandium.dtls.Handshaker;
+import org.eclipse.californium.scandium.dtls.ServerHandshaker;
+import org.eclipse.californium.scandium.dtls.SimpleRecordLayer;
+import org.eclipse.californium.scandium.dtls.pskstore.StaticPskStore;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies behavior of {@link HandshakeAdmissionController}.
+ */
+@Category(Small.class)
+public class HandshakeAdmissionControllerTest {
+
+	static final long LEASE_MILLIS = 10000;
+
+	DtlsConnectorConfig config;
+	AtomicInteger retries;
+	Runnable retry;
+	int nextPort = 10000;
+
+	@Before
+	public void setUp() {
+		config = new DtlsConnectorConfig.Builder(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+				.setPskStore(new StaticPskStore("ID", "KEY".getBytes())).build();
+		retries = new AtomicInteger();
+		retry = new Runnable() {
+
+			@Override
+			public void run() {
+				retries.incrementAndGet();
+			}
+		};
+	}
+
+	@Test
+	public void testAdmitQueuesFullHandshakesBeyondMax() {
+		HandshakeAdmissionController controller = new HandshakeAdmissionController(2, 1, 1, 0, LEASE_MILLIS);
+		assertTrue(controller.admit(newHandshaker(), false, retry));
+		assertFalse(controller.admit(newHandshaker(), false, retry));
+		assertFalse(controller.admit(newHandshaker(), false, retry));
+
+		assertThat(controller.getActiveFullHandshakes(), is(1));
+		assertThat(controller.getQueueLength(), is(1));
+		assertThat(controller.getQueuedHandshakes(), is(1L));
+		assertThat(controller.getRejectedHandshakes(), is(1L));
+	}
+
+	@Test
+	public void testAdmitPrefersAbbreviatedHandshakes() {
+		HandshakeAdmissionController controller = new HandshakeAdmissionController(2, 1, 0, 0, LEASE_MILLIS);
+		assertTrue(controller.admit(newHandshaker(), false, retry));
+		assertFalse(controller.admit(newHandshaker(), false, retry));
+		assertTrue(controller.admit(newHandshaker(), true, retry));
+		assertFalse(controller.admit(newHandshaker(), true, retry));
+
+		assertThat(controller.getActiveHandshakes(), is(2));
+		assertThat(controller.getRejectedHandshakes(), is(2L));
+	}
+
+	@Test
+	public void testReleaseRetriesQueuedHandshakeWithReservedSlot() {
+		HandshakeAdmissionController controller = new HandshakeAdmissionController(1, 1, 1, 0, LEASE_MILLIS);
+		Handshaker first = newHandshaker();
+		Handshaker queued = newHandshaker();
+		assertTrue(controller.admit(first, false, retry));
+		assertFalse(controller.admit(queued, false, retry));
+
+		controller.release(first);
+		assertThat(retries.get(), is(1));
+		assertThat(controller.getActiveHandshakes(), is(1));
+		assertThat(controller.getQueueLength(), is(0));
+
+		// the slot is reserved for the retried peer
+		assertFalse(controller.admit(newHandshaker(), false, null));
+		assertTrue(controller.admit(newHandshaker(queued.getPeerAddress()), false, null));
+		assertThat(controller.getActiveHandshakes(), is(1));
+	}
+
+	@Test
+	public void testCancelReservationReleasesSlot() {
+		HandshakeAdmissionController controller = new HandshakeAdmissionController(1, 1, 1, 0, LEASE_MILLIS);
+		Handshaker first = newHandshaker();
+		Handshaker queued = newHandshaker();
+		assertTrue(controller.admit(first, false, retry));
+		assertFalse(controller.admit(queued, false, retry));
+		controller.release(first);
+
+		controller.cancelReservation(queued.getPeerAddress());
+		assertThat(controller.getActiveHandshakes(), is(0));
+		assertTrue(controller.admit(newHandshaker(), false, null));
+	}
+
+	@Test
+	public void testReleaseIgnoresUnknownHandshaker() {
+		HandshakeAdmissionController controller = new HandshakeAdmissionController(1, 1, 0, 0, LEASE_MILLIS);
+		Handshaker handshaker = newHandshaker();
+		assertTrue(controller.admit(handshaker, false, null));
+		controller.release(handshaker);
+		controller.release(handshaker);
+		controller.release(newHandshaker());
+		assertThat(controller.getActiveHandshakes(), is(0));
+	}
+
+	@Test
+	public void testAdmitReleasesExpiredLeases() throws Exception {
+		HandshakeAdmissionController controller = new HandshakeAdmissionController(1, 1, 0, 0, 1);
+		assertTrue(controller.admit(newHandshaker(), false, null));
+		Thread.sleep(10);
+		assertTrue(controller.admit(newHandshaker(), false, null));
+		assertThat(controller.getActiveHandshakes(), is(1));
+	}
+
+	@Test
+	public void testAdmitLimitsRatePerAddress() throws Exception {
+		HandshakeAdmissionController controller = new HandshakeAdmissionController(10, 10, 0, 1, LEASE_MILLIS);
+		InetAddress address = InetAddress.getByName("192.168.0.1");
+		assertTrue(controller.admit(newHandshaker(new InetSocketAddress(address, 10000)), false, retry));
+		assertFalse(controller.admit(newHandshaker(new InetSocketAddress(address, 10001)), false, retry));
+		assertTrue(controller.admit(newHandshaker(new InetSocketAddress("192.168.0.2", 10000)), false, retry));
+
+		assertThat(controller.getRejectedHandshakes(), is(1L));
+		assertThat(controller.getQueuedHandshakes(), is(0L));
+	}
+
+	private Handshaker newHandshaker() {
+		return newHandshaker(new InetSocketAddress(InetAddress.getLoopbackAddress(), nextPort++));
+	}
+
+	private Handshaker newHandshaker(InetSocketAddress peer) {
+		return new ServerHandshaker(0, new DTLSSession(peer, false), new SimpleRecordLayer(), null, config, 1500);
+	}
+}
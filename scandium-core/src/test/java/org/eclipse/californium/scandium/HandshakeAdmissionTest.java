@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.elements.RawData;
+import org.eclipse.californium.elements.RawDataChannel;
+import org.eclipse.californium.scandium.AsyncPskHandshakeTest.DelayedPskStore;
+import org.eclipse.californium.scandium.category.Medium;
+import org.eclipse.californium.scandium.config.DtlsConnectorConfig;
+import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
+import org.eclipse.californium.scandium.dtls.pskstore.StaticPskStore;
+import org.eclipse.californium.scandium.rule.DtlsNetworkRule;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies that a server side connector queues handshakes exceeding the
+ * maximum number of concurrent handshakes.
+ */
+@Category(Medium.class)
+public class HandshakeAdmissionTest {
+	@ClassRule
+	public static DtlsNetworkRule network = new DtlsNetworkRule(DtlsNetworkRule.Mode.DIRECT, DtlsNetworkRule.Mode.NATIVE);
+
+	private static final String CLIENT_IDENTITY = "Client_identity";
+	private static final byte[] CLIENT_IDENTITY_SECRET = "secretPSK".getBytes();
+	private static final int MAX_TIME_TO_WAIT_SECS = 3;
+
+	ScheduledExecutorService backend;
+	DelayedPskStore pskStore;
+	DTLSConnector server;
+	DTLSConnector[] clients = new DTLSConnector[2];
+	CountDownLatch received;
+
+	@Before
+	public void setUp() throws Exception {
+		backend = Executors.newSingleThreadScheduledExecutor();
+		pskStore = new DelayedPskStore(backend);
+		pskStore.keys.setKey(CLIENT_IDENTITY, CLIENT_IDENTITY_SECRET);
+		received = new CountDownLatch(clients.length);
+	}
+
+	@After
+	public void tearDown() {
+		for (DTLSConnector client : clients) {
+			if (client != null) {
+				client.destroy();
+			}
+		}
+		if (server != null) {
+			server.destroy();
+		}
+		backend.shutdownNow();
+	}
+
+	@Test
+	public void testQueuedHandshakeCompletesAfterPendingHandshake() throws Exception {
+		givenAServer(1);
+		for (int index = 0; index < clients.length; ++index) {
+			clients[index] = givenAClient();
+		}
+
+		for (DTLSConnector client : clients) {
+			client.send(new RawData("Hello World".getBytes(), server.getAddress()));
+		}
+
+		assertTrue("DTLS handshakes timed out", received.await(MAX_TIME_TO_WAIT_SECS, TimeUnit.SECONDS));
+		HandshakeAdmissionController controller = server.getHandshakeAdmissionController();
+		assertTrue(controller.getQueuedHandshakes() > 0);
+		assertThat(controller.getRejectedHandshakes(), is(0L));
+		assertThat(controller.getActiveHandshakes(), is(0));
+	}
+
+	private void givenAServer(int maxHandshakes) throws Exception {
+		DtlsConnectorConfig config = new DtlsConnectorConfig.Builder(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+				.setSupportedCipherSuites(new CipherSuite[]{CipherSuite.TLS_PSK_WITH_AES_128_CCM_8})
+				.setAsyncPskStore(pskStore)
+				.setMaxConcurrentHandshakes(maxHandshakes)
+				.build();
+		server = new DTLSConnector(config);
+		server.setRawDataReceiver(new RawDataChannel() {
+
+			@Override
+			public void receiveData(RawData raw) {
+				received.countDown();
+			}
+		});
+		server.start();
+	}
+
+	private DTLSConnector givenAClient() throws Exception {
+		DtlsConnectorConfig config = new DtlsConnectorConfig.Builder(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+				.setSupportedCipherSuites(new CipherSuite[]{CipherSuite.TLS_PSK_WITH_AES_128_CCM_8})
+				.setPskStore(new StaticPskStore(CLIENT_IDENTITY, CLIENT_IDENTITY_SECRET))
+				.build();
+		DTLSConnector client = new DTLSConnector(config);
+		client.setRawDataReceiver(new RawDataChannel() {
+
+			@Override
+			public void receiveData(RawData raw) {
+			}
+		});
+		client.start();
+		return client;
+	}
+}
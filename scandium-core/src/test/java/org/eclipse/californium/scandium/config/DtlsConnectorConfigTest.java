@@ -17,6 +17,7 @@
  *    Kai Hudalla (Bosch Software Innovations GmbH) - fix bug 483559
  *    Achim Kraus (Bosch Software Innovations GmbH) - Replace getLocalHost() by
  *                                                    getLoopbackAddress()
+ *    Bosch Software Innovations GmbH - add test for asynchronous PSK store
  ******************************************************************************/
 package org.eclipse.californium.scandium.config;
 
@@ -35,6 +36,7 @@ import org.eclipse.californium.scandium.category.Small;
 import org.eclipse.californium.scandium.dtls.DtlsTestTools;
 import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
 import org.eclipse.californium.scandium.dtls.cipher.CipherSuite.KeyExchangeAlgorithm;
+import org.eclipse.californium.scandium.dtls.pskstore.InMemoryPskStore;
 import org.eclipse.californium.scandium.dtls.pskstore.StaticPskStore;
 import org.junit.Before;
 import org.junit.Test;
@@ -76,6 +78,30 @@ public class DtlsConnectorConfigTest {
 		}
 	}
 
+	@Test
+	public void testBuilderSetsPskCipherSuitesWhenAsyncPskStoreIsSet() {
+		DtlsConnectorConfig config = builder.setAsyncPskStore(new InMemoryPskStore()).build();
+		assertTrue(config.getSupportedCipherSuites().length > 0);
+		for (CipherSuite suite : config.getSupportedCipherSuites()) {
+			assertThat(suite.getKeyExchange(), is(KeyExchangeAlgorithm.PSK));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testBuilderFailsWhenFullHandshakesExceedMaxHandshakes() {
+		builder.setPskStore(new StaticPskStore("ID", "KEY".getBytes()))
+			.setMaxConcurrentHandshakes(10)
+			.setMaxConcurrentFullHandshakes(11)
+			.build();
+	}
+
+	@Test
+	public void testBuilderReservesHandshakesForResumption() {
+		DtlsConnectorConfig config = builder.setPskStore(new StaticPskStore("ID", "KEY".getBytes()))
+				.setMaxConcurrentHandshakes(100).build();
+		assertThat(config.getMaxConcurrentFullHandshakes(), is(75));
+	}
+
 	@Test
 	public void testBuilderSetsEcdhCipherSuiteWhenKeysAreSet() throws Exception {
 		DtlsConnectorConfig config = builder.setIdentity(
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.net.InetSocketAddress;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertPath;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.scandium.category.Small;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies behavior of {@link CachingCertPathValidator}.
+ */
+@Category(Small.class)
+public class CachingCertPathValidatorTest {
+
+	CertPath serverChain;
+	CertPath clientChain;
+
+	@Before
+	public void setUp() throws Exception {
+		InetSocketAddress peer = new InetSocketAddress(5684);
+		serverChain = new CertificateMessage(DtlsTestTools.getServerCertificateChain(), peer).getCertificateChain();
+		clientChain = new CertificateMessage(DtlsTestTools.getClientCertificateChain(), peer).getCertificateChain();
+	}
+
+	@Test
+	public void testValidateAcceptsRepeatedChainFromCache() throws Exception {
+		CachingCertPathValidator validator = newValidator(10, TimeUnit.HOURS.toMillis(1));
+		validator.validate(serverChain);
+		validator.validate(serverChain);
+		assertThat(validator.getMisses(), is(1L));
+		assertThat(validator.getHits(), is(1L));
+		assertThat(validator.size(), is(1));
+	}
+
+	@Test
+	public void testValidateDoesNotCacheRejectedChain() throws Exception {
+		CachingCertPathValidator validator = new CachingCertPathValidator(null, 10, 1, TimeUnit.HOURS);
+		for (int i = 0; i < 2; i++) {
+			try {
+				validator.validate(serverChain);
+				fail("chain without trust anchors should have been rejected");
+			} catch (GeneralSecurityException e) {
+				// expected
+			}
+		}
+		assertThat(validator.getMisses(), is(2L));
+		assertThat(validator.getHits(), is(0L));
+		assertThat(validator.size(), is(0));
+	}
+
+	@Test
+	public void testValidateWithoutCacheValidatesEachChain() throws Exception {
+		CachingCertPathValidator validator = new CachingCertPathValidator(DtlsTestTools.getTrustedCertificates());
+		validator.validate(serverChain);
+		validator.validate(serverChain);
+		assertThat(validator.getMisses(), is(2L));
+		assertThat(validator.getHits(), is(0L));
+	}
+
+	@Test
+	public void testValidateEvictsLeastRecentlyUsedChain() throws Exception {
+		CachingCertPathValidator validator = newValidator(1, TimeUnit.HOURS.toMillis(1));
+		validator.validate(serverChain);
+		validator.validate(clientChain);
+		validator.validate(serverChain);
+		assertThat(validator.getMisses(), is(3L));
+		assertThat(validator.size(), is(1));
+	}
+
+	@Test
+	public void testValidateRevalidatesChainAfterTimeToLive() throws Exception {
+		CachingCertPathValidator validator = newValidator(10, 1);
+		validator.validate(serverChain);
+		Thread.sleep(10);
+		validator.validate(serverChain);
+		assertThat(validator.getMisses(), is(2L));
+		assertThat(validator.getHits(), is(0L));
+	}
+
+	private static CachingCertPathValidator newValidator(int maxEntries, long timeToLiveMillis) {
+		return new CachingCertPathValidator(DtlsTestTools.getTrustedCertificates(), maxEntries, timeToLiveMillis,
+				TimeUnit.MILLISECONDS);
+	}
+}
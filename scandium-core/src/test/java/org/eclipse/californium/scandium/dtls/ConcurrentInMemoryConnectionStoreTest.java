@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ * 
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ * 
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+
+import org.eclipse.californium.scandium.category.Small;
+import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies behavior of the {@link ConcurrentInMemoryConnectionStore}.
+ *
+ */
+@Category(Small.class)
+public class ConcurrentInMemoryConnectionStoreTest {
+
+	private static final int INITIAL_CAPACITY = 10;
+	ConcurrentInMemoryConnectionStore store;
+	Connection con;
+	SessionId sessionId;
+
+	@Before
+	public void setUp() throws Exception {
+		store = new ConcurrentInMemoryConnectionStore(INITIAL_CAPACITY, 1000);
+		con = newConnection(50L);
+		sessionId = con.getEstablishedSession().getSessionIdentifier();
+	}
+
+	@Test
+	public void testPutAddsConnection() {
+		// given an empty connection store
+		assertThat(store.remainingCapacity(), is(INITIAL_CAPACITY));
+
+		// when adding a new connection to the store
+		assertTrue(store.put(con));
+
+		// assert that the store is not empty
+		assertThat(store.remainingCapacity(), is(INITIAL_CAPACITY - 1));
+		assertThat(store.get(con.getPeerAddress()), is(con));
+	}
+
+	@Test
+	public void testPutFailsIfExhaustedWithoutStaleConnections() throws Exception {
+		// given a full connection store without stale connections
+		store = new ConcurrentInMemoryConnectionStore(1, 1000);
+		assertTrue(store.put(con));
+
+		// when adding a further connection
+		Connection newCon = newConnection(51L);
+
+		// assert that the connection is rejected, but may replace the stored one
+		assertFalse(store.put(newCon));
+		assertTrue(store.put(newConnection(50L)));
+	}
+
+	@Test
+	public void testPutEvictsLeastRecentlyAccessedStaleConnection() throws Exception {
+		// given a full connection store with stale connections
+		store = new ConcurrentInMemoryConnectionStore(2, 0);
+		Connection con2 = newConnection(51L);
+		store.put(con);
+		Thread.sleep(5);
+		store.put(con2);
+		Thread.sleep(5);
+		store.get(con.getPeerAddress());
+		Thread.sleep(5);
+
+		// when adding further connections
+		Connection con3 = newConnection(52L);
+		assertTrue(store.put(con3));
+
+		// assert that the least recently accessed connection is evicted first
+		assertThat(store.get(con2.getPeerAddress()), is(nullValue()));
+		assertThat(store.find(con2.getEstablishedSession().getSessionIdentifier()), is(nullValue()));
+		assertThat(store.get(con.getPeerAddress()), is(con));
+		Thread.sleep(5);
+		assertTrue(store.put(newConnection(53L)));
+		assertThat(store.get(con3.getPeerAddress()), is(nullValue()));
+		assertThat(store.get(con.getPeerAddress()), is(con));
+	}
+
+	@Test
+	public void testFindRetrievesLocalConnection() {
+		// given a connection store containing a connection with a peer
+		store.put(con);
+
+		// when retrieving the connection for the given peer
+		Connection connectionWithPeer = store.find(sessionId);
+		assertThat(connectionWithPeer, is(con));
+	}
+
+	@Test
+	public void testFindRetrievesConnectionWithSessionEstablishedAfterPut() throws Exception {
+		// GIVEN a connection store containing a connection without session
+		InetSocketAddress peerAddress = con.getPeerAddress();
+		Connection connection = new Connection(peerAddress);
+		store.put(connection);
+		DTLSSession session = newSession(peerAddress);
+
+		// WHEN a session is established for the connection
+		store.sessionEstablished(null, session);
+		connection.sessionEstablished(null, session);
+
+		// THEN assert that the connection is found by the session ID
+		assertThat(store.find(session.getSessionIdentifier()), is(connection));
+	}
+
+	@Test
+	public void testFindRetrievesConnectionByRenewedSession() throws Exception {
+		// GIVEN a connection store containing a connection with a session
+		store.put(con);
+
+		// WHEN a new session is established for the connection, which is
+		// notified before the store as done by the handshaker
+		DTLSSession renewed = newSession(con.getPeerAddress());
+		con.sessionEstablished(null, renewed);
+		store.sessionEstablished(null, renewed);
+
+		// THEN assert that the connection is only found by the new session ID
+		assertThat(store.find(sessionId), is(nullValue()));
+		assertThat(store.find(renewed.getSessionIdentifier()), is(con));
+
+		// and not after it has been removed
+		store.remove(con.getPeerAddress());
+		assertThat(store.find(renewed.getSessionIdentifier()), is(nullValue()));
+	}
+
+	@Test
+	public void testFindDoesNotUpdateAccessOrder() throws Exception {
+		// GIVEN a full connection store with stale connections
+		store = new ConcurrentInMemoryConnectionStore(2, 0);
+		store.put(con);
+		Thread.sleep(5);
+		Connection otherCon = newConnection(51L);
+		store.put(otherCon);
+		Thread.sleep(10);
+
+		// WHEN looking up the least recently accessed connection by its
+		// session ID and adding a further connection
+		assertThat(store.find(sessionId), is(con));
+		assertTrue(store.put(newConnection(52L)));
+
+		// THEN assert that the least recently accessed connection is evicted
+		assertThat(store.get(con.getPeerAddress()), is(nullValue()));
+		assertThat(store.get(otherCon.getPeerAddress()), is(otherCon));
+	}
+
+	@Test
+	public void testFindDoesNotRetrieveRemovedConnection() {
+		// GIVEN a connection store containing a connection with a session
+		store.put(con);
+
+		// WHEN removing the connection
+		assertThat(store.remove(con.getPeerAddress()), is(con));
+
+		// THEN assert that the connection is not found by the session ID anymore
+		assertThat(store.find(sessionId), is(nullValue()));
+		assertThat(store.remainingCapacity(), is(INITIAL_CAPACITY));
+	}
+
+	@Test
+	public void testFindRemovesStaleConnectionFromStore() {
+
+		// GIVEN a connection store with a cached session shared by another node
+		// and a (local) connection based on this session
+		SessionCache sessionCache = new InMemorySessionCache();
+		sessionCache.put(con.getEstablishedSession());
+		store = new ConcurrentInMemoryConnectionStore(INITIAL_CAPACITY, 1000, sessionCache);
+		store.put(con);
+
+		// WHEN the session is removed from the cache (e.g. because it became stale)
+		sessionCache.remove(con.getEstablishedSession().getSessionIdentifier());
+
+		// THEN assert that the connection has been removed from the local cache
+		Connection connectionToResume = store.find(sessionId);
+		assertThat(connectionToResume, is(nullValue()));
+		assertThat(store.get(con.getPeerAddress()), is(nullValue()));
+	}
+
+	@Test
+	public void testClearRemovesAllConnectionsFromStore() throws Exception {
+		// given a non-empty connection store
+		store.put(con);
+		store.put(newConnection(51L));
+		store.put(newConnection(52L));
+
+		// when clearing the store
+		store.clear();
+
+		// assert that the store is empty
+		assertThat(store.remainingCapacity(), is(INITIAL_CAPACITY));
+		assertThat(store.get(con.getPeerAddress()), is(nullValue()));
+		assertThat(store.find(sessionId), is(nullValue()));
+	}
+
+	private Connection newConnection(long ip) throws HandshakeException, UnknownHostException {
+		InetAddress addr = InetAddress.getByAddress(longToIp(ip));
+		InetSocketAddress peerAddress = new InetSocketAddress(addr, 0);
+		Connection con = new Connection(peerAddress);
+		con.sessionEstablished(null, newSession(peerAddress));
+		return con;
+	}
+
+	private DTLSSession newSession(InetSocketAddress address) {
+		return DTLSSessionTest.newEstablishedServerSession(address, CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_CCM_8, true);
+	}
+
+	private static byte[] longToIp(long ip) {
+		byte[] result = new byte[4];
+		result[0] = 10;
+		for (int i = 3; i >= 1; i--) {
+			result[i] = (byte) (ip & 0xff);
+			ip >>= 8;
+		}
+		return result;
+	}
+}
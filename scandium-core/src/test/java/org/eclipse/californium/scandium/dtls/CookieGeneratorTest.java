@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.SecureRandom;
+import java.util.Collections;
+
+import org.eclipse.californium.scandium.category.Small;
+import org.eclipse.californium.scandium.dtls.CertificateTypeExtension.CertificateType;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies behavior of {@link CookieGenerator}.
+ */
+@Category(Small.class)
+public class CookieGeneratorTest {
+
+	CookieGenerator generator;
+	InetSocketAddress peerAddress;
+	ClientHello clientHello;
+
+	@Before
+	public void setUp() throws Exception {
+		generator = new CookieGenerator();
+		peerAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), 5684);
+		clientHello = newClientHello(peerAddress);
+	}
+
+	@Test
+	public void testGenerateCookieIsStableForSameClientHello() {
+		assertThat(generator.generateCookie(clientHello), is(generator.generateCookie(clientHello)));
+	}
+
+	@Test
+	public void testGenerateCookieDependsOnPeerPort() throws Exception {
+		ClientHello fromOtherPort = (ClientHello) ClientHello.fromByteArray(clientHello.fragmentToByteArray(),
+				new InetSocketAddress(peerAddress.getAddress(), peerAddress.getPort() + 1));
+		assertThat(generator.generateCookie(fromOtherPort), is(not(generator.generateCookie(clientHello))));
+	}
+
+	@Test
+	public void testGenerateCookieDependsOnClientRandom() {
+		ClientHello otherHello = newClientHello(peerAddress);
+		assertThat(generator.generateCookie(otherHello), is(not(generator.generateCookie(clientHello))));
+	}
+
+	@Test
+	public void testIsValidCookieRejectsMissingCookie() {
+		assertFalse(generator.isValidCookie(clientHello));
+	}
+
+	@Test
+	public void testIsValidCookieRejectsCookieOfOtherPeer() throws Exception {
+		clientHello.setCookie(generator.generateCookie(clientHello));
+		ClientHello fromOtherPort = (ClientHello) ClientHello.fromByteArray(clientHello.fragmentToByteArray(),
+				new InetSocketAddress(peerAddress.getAddress(), peerAddress.getPort() + 1));
+		assertFalse(generator.isValidCookie(fromOtherPort));
+	}
+
+	@Test
+	public void testIsValidCookieAcceptsCookieOfPreviousSecret() {
+		clientHello.setCookie(generator.generateCookie(clientHello));
+		assertTrue(generator.isValidCookie(clientHello));
+		generator.rotateSecret();
+		assertTrue(generator.isValidCookie(clientHello));
+		generator.rotateSecret();
+		assertFalse(generator.isValidCookie(clientHello));
+	}
+
+	private static ClientHello newClientHello(InetSocketAddress peer) {
+		return new ClientHello(new ProtocolVersion(), new SecureRandom(), Collections.<CertificateType> emptyList(),
+				Collections.<CertificateType> emptyList(), peer);
+	}
+}
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.scandium.auth.X509CertPath;
+import org.eclipse.californium.scandium.category.Small;
+import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Verifies behavior of {@link FileSessionCache}.
+ */
+@Category(Small.class)
+public class FileSessionCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	File file;
+	FileSessionCache cache;
+	int port = 10000;
+
+	@Before
+	public void setUp() throws IOException {
+		file = new File(folder.getRoot(), "sessions");
+		cache = new FileSessionCache(file, 10, 1, TimeUnit.HOURS);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		cache.close();
+	}
+
+	@Test
+	public void testGetReturnsTicketOfPutSession() {
+		DTLSSession session = newSession();
+		cache.put(session);
+		assertThatCacheContainsTicket(cache, session);
+	}
+
+	@Test
+	public void testGetReturnsTicketAfterRestart() throws IOException {
+		DTLSSession session = newSession();
+		cache.put(session);
+		cache.close();
+
+		cache = new FileSessionCache(file, 10, 1, TimeUnit.HOURS);
+		assertThat(cache.size(), is(1));
+		assertThatCacheContainsTicket(cache, session);
+	}
+
+	@Test
+	public void testGetReturnsX509TicketAfterRestart() throws Exception {
+		cache.close();
+		cache = new FileSessionCache(file, 10, 4096, 1, TimeUnit.HOURS);
+		DTLSSession session = newSession();
+		session.setPeerIdentity(new X509CertPath(new CertificateMessage(DtlsTestTools.getClientCertificateChain(),
+				session.getPeer()).getCertificateChain()));
+		cache.put(session);
+		cache.close();
+
+		cache = new FileSessionCache(file, 10, 4096, 1, TimeUnit.HOURS);
+		assertThatCacheContainsX509Ticket(cache, session);
+	}
+
+	@Test
+	public void testPutKeepsTicketExceedingSlotInMemory() throws Exception {
+		DTLSSession session = newSession();
+		session.setPeerIdentity(new X509CertPath(new CertificateMessage(DtlsTestTools.getClientCertificateChain(),
+				session.getPeer()).getCertificateChain()));
+		cache.put(session);
+		assertThatCacheContainsX509Ticket(cache, session);
+		cache.close();
+
+		cache = new FileSessionCache(file, 10, 1, TimeUnit.HOURS);
+		assertThat(cache.get(session.getSessionIdentifier()), is(nullValue()));
+	}
+
+	@Test
+	public void testGetDropsExpiredTicket() throws Exception {
+		cache.close();
+		cache = new FileSessionCache(file, 10, 50, TimeUnit.MILLISECONDS);
+		DTLSSession session = newSession();
+		cache.put(session);
+		Thread.sleep(100);
+		assertThat(cache.get(session.getSessionIdentifier()), is(nullValue()));
+		assertThat(cache.size(), is(0));
+	}
+
+	@Test
+	public void testPutReplacesOldestTicketIfFull() throws IOException {
+		cache.close();
+		cache = new FileSessionCache(file, 2, 1, TimeUnit.HOURS);
+		DTLSSession first = newSession();
+		DTLSSession second = newSession();
+		DTLSSession third = newSession();
+		cache.put(first);
+		cache.put(second);
+		cache.put(third);
+		assertThat(cache.size(), is(2));
+		assertThat(cache.get(first.getSessionIdentifier()), is(nullValue()));
+		assertThatCacheContainsTicket(cache, second);
+		assertThatCacheContainsTicket(cache, third);
+	}
+
+	@Test
+	public void testRemoveDeletesTicket() {
+		DTLSSession session = newSession();
+		cache.put(session);
+		cache.remove(session.getSessionIdentifier());
+		assertThat(cache.get(session.getSessionIdentifier()), is(nullValue()));
+	}
+
+	@Test
+	public void testChangedCapacityDiscardsTickets() throws IOException {
+		cache.put(newSession());
+		cache.close();
+
+		cache = new FileSessionCache(file, 20, 1, TimeUnit.HOURS);
+		assertThat(cache.size(), is(0));
+	}
+
+	@Test
+	public void testReplicatorSharesTicketsWithOtherCache() throws IOException {
+		FileSessionCache other = new FileSessionCache(new File(folder.getRoot(), "other"), 10, 1, TimeUnit.HOURS);
+		try {
+			LocalSessionTicketReplicator replicator = new LocalSessionTicketReplicator();
+			replicator.add(cache);
+			replicator.add(other);
+
+			DTLSSession session = newSession();
+			cache.put(session);
+			assertThatCacheContainsTicket(other, session);
+
+			other.remove(session.getSessionIdentifier());
+			assertThat(cache.get(session.getSessionIdentifier()), is(nullValue()));
+		} finally {
+			other.close();
+		}
+	}
+
+	private DTLSSession newSession() {
+		InetSocketAddress peer = new InetSocketAddress(InetAddress.getLoopbackAddress(), port++);
+		return DTLSSessionTest.newEstablishedServerSession(peer, CipherSuite.TLS_PSK_WITH_AES_128_CCM_8, false);
+	}
+
+	private static void assertThatCacheContainsTicket(FileSessionCache cache, DTLSSession session) {
+		SessionTicket ticket = cache.get(session.getSessionIdentifier());
+		assertThat(ticket, is(notNullValue()));
+		DTLSSession resumed = new DTLSSession(session.getSessionIdentifier(), session.getPeer(), ticket, 0);
+		DTLSSessionTest.assertThatSessionsHaveSameRelevantPropertiesForResumption(resumed, session);
+	}
+
+	private static void assertThatCacheContainsX509Ticket(FileSessionCache cache, DTLSSession session) {
+		SessionTicket ticket = cache.get(session.getSessionIdentifier());
+		assertThat(ticket, is(notNullValue()));
+		assertThat(ticket.getMasterSecret(), is(session.getMasterSecret()));
+		// X509CertPath does not implement equals
+		assertThat(((X509CertPath) ticket.getClientIdentity()).toByteArray(),
+				is(((X509CertPath) session.getPeerIdentity()).toByteArray()));
+	}
+}
@@ -12,6 +12,7 @@
  * 
  * Contributors:
  *    Kai Hudalla (Bosch Software Innovations GmbH) - initial creation
+ *    Bosch Software Innovations GmbH - add tests for session ID index
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
@@ -117,6 +118,105 @@ public class InMemoryConnectionStoreTest {
 		assertThat(ticketFromCache.getMasterSecret(), is(con.getEstablishedSession().getMasterSecret()));
 	}
 
+	@Test
+	public void testFindRetrievesConnectionWithSessionEstablishedAfterPut() throws Exception {
+		// GIVEN a connection store containing a connection without session
+		InetSocketAddress peerAddress = con.getPeerAddress();
+		Connection connection = new Connection(peerAddress);
+		store.put(connection);
+		DTLSSession session = newSession(peerAddress);
+
+		// WHEN a session is established for the connection
+		store.sessionEstablished(null, session);
+		connection.sessionEstablished(null, session);
+
+		// THEN assert that the connection is found by the session ID
+		assertThat(store.find(session.getSessionIdentifier()), is(connection));
+	}
+
+	@Test
+	public void testFindRetrievesConnectionByRenewedSession() throws Exception {
+		// GIVEN a connection store containing a connection with a session
+		store.put(con);
+
+		// WHEN a new session is established for the connection, which is
+		// notified before the store as done by the handshaker
+		DTLSSession renewed = newSession(con.getPeerAddress());
+		con.sessionEstablished(null, renewed);
+		store.sessionEstablished(null, renewed);
+
+		// THEN assert that the connection is only found by the new session ID
+		assertThat(store.find(sessionId), is(nullValue()));
+		assertThat(store.find(renewed.getSessionIdentifier()), is(con));
+
+		// and not after it has been removed
+		store.remove(con.getPeerAddress());
+		assertThat(store.find(renewed.getSessionIdentifier()), is(nullValue()));
+	}
+
+	@Test
+	public void testFindDoesNotUpdateAccessOrder() throws Exception {
+		// GIVEN a full connection store with stale connections
+		store = new InMemoryConnectionStore(2, 0);
+		store.put(con);
+		Thread.sleep(5);
+		Connection otherCon = newConnection(51L);
+		store.put(otherCon);
+		Thread.sleep(10);
+
+		// WHEN looking up the least recently accessed connection by its
+		// session ID and adding a further connection
+		assertThat(store.find(sessionId), is(con));
+		assertTrue(store.put(newConnection(52L)));
+
+		// THEN assert that the least recently accessed connection is evicted
+		assertThat(store.get(con.getPeerAddress()), is(nullValue()));
+		assertThat(store.get(otherCon.getPeerAddress()), is(otherCon));
+	}
+
+	@Test
+	public void testFindDoesNotRetrieveRemovedConnection() {
+		// GIVEN a connection store containing a connection with a session
+		store.put(con);
+
+		// WHEN removing the connection
+		store.remove(con.getPeerAddress());
+
+		// THEN assert that the connection is not found by the session ID anymore
+		assertThat(store.find(sessionId), is(nullValue()));
+	}
+
+	@Test
+	public void testFindDoesNotRetrieveReplacedConnection() throws Exception {
+		// GIVEN a connection store containing a connection with a session
+		store.put(con);
+
+		// WHEN replacing the connection by a new one with a different session
+		Connection newCon = new Connection(con.getPeerAddress());
+		newCon.sessionEstablished(null, newSession(con.getPeerAddress()));
+		store.put(newCon);
+
+		// THEN assert that only the new connection is found by its session ID
+		assertThat(store.find(sessionId), is(nullValue()));
+		assertThat(store.find(newCon.getEstablishedSession().getSessionIdentifier()), is(newCon));
+	}
+
+	@Test
+	public void testFindDoesNotRetrieveEvictedConnection() throws Exception {
+		// GIVEN a full connection store with stale connections
+		store = new InMemoryConnectionStore(1, 0);
+		store.put(con);
+		Thread.sleep(10);
+
+		// WHEN adding a further connection evicting the stale one
+		Connection newCon = newConnection(51L);
+		assertTrue(store.put(newCon));
+
+		// THEN assert that only the new connection is found by its session ID
+		assertThat(store.find(sessionId), is(nullValue()));
+		assertThat(store.find(newCon.getEstablishedSession().getSessionIdentifier()), is(newCon));
+	}
+
 	@Test
 	public void testClearRemovesAllConnectionsFromStore() throws Exception {
 		// given a non-empty connection store
@@ -130,6 +230,7 @@ public class InMemoryConnectionStoreTest {
 		// assert that the store is empty
 		assertThat(store.remainingCapacity(), is(INITIAL_CAPACITY));
 		assertThat(store.get(con.getPeerAddress()), is(nullValue()));
+		assertThat(store.find(sessionId), is(nullValue()));
 	}
 
 	private Connection newConnection(long ip) throws HandshakeException, UnknownHostException {
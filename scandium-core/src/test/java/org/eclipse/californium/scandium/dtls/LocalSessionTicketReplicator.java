@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A replicator sharing the tickets of several {@link FileSessionCache}s
+ * within the same process.
+ * <p>
+ * This is a stand-in for replicating tickets between nodes, intended for
+ * test cases.
+ */
+public class LocalSessionTicketReplicator {
+
+	private final List<FileSessionCache> caches = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Adds a cache to share tickets with the caches already added.
+	 * 
+	 * @param cache the cache.
+	 */
+	public void add(final FileSessionCache cache) {
+		caches.add(cache);
+		cache.setReplicator(new SessionTicketReplicator() {
+
+			@Override
+			public void ticketAdded(SessionId id, byte[] ticket, long timestamp) {
+				for (FileSessionCache other : caches) {
+					if (other != cache) {
+						other.putReplicated(id, ticket, timestamp);
+					}
+				}
+			}
+
+			@Override
+			public void ticketRemoved(SessionId id) {
+				for (FileSessionCache other : caches) {
+					if (other != cache) {
+						other.removeReplicated(id);
+					}
+				}
+			}
+		});
+	}
+}
@@ -14,6 +14,8 @@
  *    Matthias Kovatsch - creator and main architect
  *    Stefan Jucker - DTLS implementation
  *    Kai Hudalla (Bosch Software Innovations GmbH) - add test cases for verifying sequence number handling
+ *    Bosch Software Innovations GmbH - add test for parsing a range of a buffer
+ *    Bosch Software Innovations GmbH - add test for AES-GCM record protection
  *    Achim Kraus (Bosch Software Innovations GmbH) - Replace getLocalHost() by
  *                                                    getLoopbackAddress()
  ******************************************************************************/
@@ -37,8 +39,10 @@ import org.eclipse.californium.scandium.dtls.ContentType;
 import org.eclipse.californium.scandium.dtls.ProtocolVersion;
 import org.eclipse.californium.scandium.dtls.cipher.CCMBlockCipher;
 import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
+import org.eclipse.californium.scandium.dtls.cipher.GcmCipher;
 import org.eclipse.californium.scandium.util.ByteArrayUtils;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
@@ -127,6 +131,26 @@ public class RecordTest {
 		assertEquals(protocolVer.getMinor(), record.getVersion().getMinor());
 	}
 	
+	@Test
+	public void testFromByteArrayParsesRangeOfReusedBuffer() throws GeneralSecurityException {
+
+		byte[] fragment = newGenericAEADCipherFragment();
+		byte[] application_record = DtlsTestTools.newDTLSRecord(TYPE_APPL_DATA, EPOCH, SEQUENCE_NO, fragment);
+		byte[] buffer = new byte[application_record.length + 20];
+		Arrays.fill(buffer, (byte) 0xff);
+		System.arraycopy(application_record, 0, buffer, 10, application_record.length);
+
+		List<Record> recordList = Record.fromByteArray(buffer, 10, application_record.length, session.getPeer());
+		// reuse buffer
+		Arrays.fill(buffer, (byte) 0);
+
+		assertEquals(1, recordList.size());
+		Record record = recordList.get(0);
+		assertEquals(ContentType.APPLICATION_DATA, record.getType());
+		assertEquals(SEQUENCE_NO, record.getSequenceNumber());
+		assertTrue(Arrays.equals(fragment, record.getFragmentBytes()));
+	}
+
 	@Test
 	public void testFromByteArrayRejectsUnknownTypeCode() throws GeneralSecurityException {
 		
@@ -157,6 +181,28 @@ public class RecordTest {
 		assertTrue(Arrays.equals(decryptedData, payloadData));
 	}
 	
+	@Test
+	public void testGcmProtectedRecordRoundtrip() throws Exception {
+		Assume.assumeTrue(GcmCipher.isSupported());
+		DTLSSession gcmSession = new DTLSSession(new InetSocketAddress(InetAddress.getLoopbackAddress(), 7000), true);
+		gcmSession.setWriteState(new DTLSConnectionState(CipherSuite.TLS_PSK_WITH_AES_128_GCM_SHA256,
+				CompressionMethod.NULL, key, new IvParameterSpec(client_iv), null));
+		gcmSession.setReadState(new DTLSConnectionState(CipherSuite.TLS_PSK_WITH_AES_128_GCM_SHA256,
+				CompressionMethod.NULL, key, new IvParameterSpec(client_iv), null));
+
+		Record record = new Record(ContentType.APPLICATION_DATA, gcmSession.getWriteEpoch(), SEQUENCE_NO,
+				new ApplicationMessage(payloadData, gcmSession.getPeer()), gcmSession);
+		// explicit nonce + payload + 16 bytes authentication tag
+		assertEquals(8 + payloadLength + 16, record.getFragmentBytes().length);
+
+		List<Record> records = Record.fromByteArray(record.toByteArray(), gcmSession.getPeer());
+		assertEquals(1, records.size());
+		Record received = records.get(0);
+		received.setSession(gcmSession);
+		ApplicationMessage message = (ApplicationMessage) received.getFragment();
+		assertTrue(Arrays.equals(payloadData, message.getData()));
+	}
+
 	byte[] newGenericAEADCipherFragment() throws GeneralSecurityException {
 		// 64bit sequence number, consisting of 16bit epoch (0) + 48bit sequence number (5)
 		byte[] seq_num = new byte[]{0x00, (byte) EPOCH, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) SEQUENCE_NO};
@@ -21,6 +21,8 @@
  *                                                    client & server keys and certificate chains
  *    Kai Hudalla (Bosch Software Innovations GmbH) - use SessionListener to trigger sending of pending
  *                                                    APPLICATION messages
+ *    Bosch Software Innovations GmbH - add test case for ephemeral key pool
+ *    Bosch Software Innovations GmbH - add test case for SecureRandom provider
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
@@ -34,11 +36,14 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
+import java.security.SecureRandom;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
+import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.californium.elements.util.DatagramWriter;
 import org.eclipse.californium.scandium.category.Medium;
@@ -46,7 +51,9 @@ import org.eclipse.californium.scandium.config.DtlsConnectorConfig;
 import org.eclipse.californium.scandium.dtls.CertificateTypeExtension.CertificateType;
 import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
 import org.eclipse.californium.scandium.dtls.cipher.ECDHECryptography.SupportedGroup;
+import org.eclipse.californium.scandium.dtls.cipher.EphemeralKeyPool;
 import org.eclipse.californium.scandium.dtls.pskstore.StaticPskStore;
+import org.eclipse.californium.scandium.util.SecureRandomProvider;
 import org.eclipse.californium.scandium.util.ServerNames;
 import org.eclipse.californium.scandium.util.ServerName.NameType;
 import org.junit.Before;
@@ -344,6 +351,56 @@ public class ServerHandshakerTest {
 		assertThat(handshaker.getNegotiatedSupportedGroup(), notNullValue());
 	}
 
+	@Test
+	public void testReceiveClientHelloTakesEphemeralKeysFromPool() throws Exception {
+		SupportedGroup supportedGroup = getArbitrarySupportedGroup();
+		EphemeralKeyPool pool = new EphemeralKeyPool(Collections.singleton(supportedGroup), 1, 1);
+		pool.start();
+		for (int i = 0; i < 100 && pool.size(supportedGroup) == 0; ++i) {
+			Thread.sleep(20);
+		}
+		// prevent refill to detect the key pair being taken
+		pool.stop();
+		assertThat(pool.size(supportedGroup), is(1));
+
+		handshaker.setEphemeralKeyPool(pool);
+		List<byte[]> extensions = new LinkedList<>();
+		extensions.add(DtlsTestTools.newSupportedEllipticCurvesExtension(supportedGroup.getId()));
+		processClientHello(0, extensions);
+		assertThat(handshaker.getNegotiatedSupportedGroup(), is(supportedGroup));
+		assertThat(pool.size(supportedGroup), is(0));
+		assertThat(pool.getMisses(), is(0L));
+	}
+
+	@Test
+	public void testReceiveClientHelloUsesConfiguredSecureRandomProvider() throws Exception {
+		final AtomicInteger calls = new AtomicInteger();
+		final SecureRandom random = new SecureRandom();
+		config = new DtlsConnectorConfig.Builder(endpoint)
+				.setIdentity(privateKey, certificateChain, false)
+				.setTrustStore(trustedCertificates)
+				.setSupportedCipherSuites(new CipherSuite[]{SERVER_CIPHER_SUITE})
+				.setSecureRandomProvider(new SecureRandomProvider() {
+
+					@Override
+					public SecureRandom getSecureRandom() {
+						calls.incrementAndGet();
+						return random;
+					}
+				})
+				.build();
+		handshaker = newHandshaker(config, session);
+
+		List<byte[]> extensions = new LinkedList<>();
+		SupportedGroup supportedGroup = getArbitrarySupportedGroup();
+		extensions.add(DtlsTestTools.newSupportedEllipticCurvesExtension(supportedGroup.getId()));
+		processClientHello(0, extensions);
+
+		// server random, session ID and ephemeral keys
+		assertThat(calls.get(), is(3));
+		assertThat(session.getSessionIdentifier().length(), is(32));
+	}
+
 	@Test
 	public void testDoProcessMessageProcessesQueuedMessages() throws Exception {
 		Record nextRecord = givenAHandshakerWithAQueuedMessage();
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls.cipher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.eclipse.californium.scandium.category.Small;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ * Verifies behavior of the {@link CcmCipher} against the {@link CCMBlockCipher}.
+ *
+ */
+@Category(Small.class)
+@RunWith(Parameterized.class)
+public class CcmCipherTest {
+
+	// byte representation of a 128 bit AES symmetric key
+	static final byte[] aesKey = new byte[]{(byte) 0xC9, 0x0E, 0x6A, (byte) 0xA2, (byte) 0xEF, 0x60, 0x34, (byte) 0x96,
+		(byte) 0x90, 0x54, (byte) 0xC4, (byte) 0x96, 0x65, (byte) 0xBA, 0x03, (byte) 0x9E};
+
+	@Parameterized.Parameters
+	public static List<Object[]> parameters() {
+		List<Object[]> parameters = new ArrayList<>();
+		parameters.add(new Object[] { 0, 0, 7 });
+		parameters.add(new Object[] { 5, 0, 7 });
+		parameters.add(new Object[] { 13, 1, 7 });
+		parameters.add(new Object[] { 15, 13, 8 });
+		parameters.add(new Object[] { 16, 14, 8 });
+		parameters.add(new Object[] { 17, 15, 12 });
+		parameters.add(new Object[] { 31, 30, 13 });
+		parameters.add(new Object[] { 32, 31, 12 });
+		parameters.add(new Object[] { 33, 32, 12 });
+		parameters.add(new Object[] { 64, 13, 12 });
+		parameters.add(new Object[] { 1400, 13, 12 });
+		parameters.add(new Object[] { 65805, 256, 8 });
+		parameters.add(new Object[] { 389805, 65300, 8 });
+
+		return parameters;
+	}
+
+	int payloadLength;
+	int aLength;
+	int nonceLength;
+	byte[] additionalData;
+	byte[] nonce;
+	byte[] payloadData;
+	CcmCipher cipher;
+
+	public CcmCipherTest(int payloadLength, int aLength, int nonceLength) {
+		this.payloadLength = payloadLength;
+		this.aLength = aLength;
+		this.nonceLength = nonceLength;
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		Random random = new Random(payloadLength);
+		payloadData = new byte[payloadLength];
+		random.nextBytes(payloadData);
+		additionalData = new byte[aLength];
+		random.nextBytes(additionalData);
+		nonce = new byte[nonceLength];
+		random.nextBytes(nonce);
+		cipher = new CcmCipher(new SecretKeySpec(aesKey, "AES"), 8);
+	}
+
+	@Test
+	public void testEncryptMatchesBlockCipher() throws Exception {
+		byte[] expected = CCMBlockCipher.encrypt(aesKey, nonce, additionalData, payloadData, 8);
+		byte[] encrypted = new byte[payloadLength + 8 + 5];
+		int length = cipher.encrypt(nonce, additionalData, payloadData, 0, payloadLength, encrypted, 5);
+		assertEquals(payloadLength + 8, length);
+		assertTrue(Arrays.equals(expected, Arrays.copyOfRange(encrypted, 5, 5 + length)));
+	}
+
+	@Test
+	public void testDecryptsBlockCipherInPlace() throws Exception {
+		byte[] encrypted = CCMBlockCipher.encrypt(aesKey, nonce, additionalData, payloadData, 8);
+		byte[] buffer = new byte[encrypted.length + 3];
+		System.arraycopy(encrypted, 0, buffer, 3, encrypted.length);
+		// reuse engine
+		cipher.encrypt(nonce, additionalData, payloadData, 0, payloadLength, new byte[payloadLength + 8], 0);
+		int length = cipher.decrypt(nonce, additionalData, buffer, 3, encrypted.length, buffer, 3);
+		assertEquals(payloadLength, length);
+		assertTrue(Arrays.equals(payloadData, Arrays.copyOfRange(buffer, 3, 3 + length)));
+	}
+
+	@Test(expected = InvalidMacException.class)
+	public void testDifferentNonce() throws Exception {
+		byte[] encrypted = new byte[payloadLength + 8];
+		cipher.encrypt(nonce, additionalData, payloadData, 0, payloadLength, encrypted, 0);
+		nonce[0] ^= 0x55;
+		cipher.decrypt(nonce, additionalData, encrypted, 0, encrypted.length, new byte[payloadLength], 0);
+	}
+
+	@Test(expected = InvalidMacException.class)
+	public void testDifferentAdditionalData() throws Exception {
+		byte[] encrypted = new byte[payloadLength + 8];
+		cipher.encrypt(nonce, additionalData, payloadData, 0, payloadLength, encrypted, 0);
+		byte[] additionalData2 = Arrays.copyOf(additionalData, additionalData.length + 1);
+		cipher.decrypt(nonce, additionalData2, encrypted, 0, encrypted.length, new byte[payloadLength], 0);
+	}
+
+	@Test(expected = InvalidMacException.class)
+	public void testModifiedCiphertext() throws Exception {
+		byte[] encrypted = new byte[payloadLength + 8];
+		cipher.encrypt(nonce, additionalData, payloadData, 0, payloadLength, encrypted, 0);
+		encrypted[encrypted.length / 2] ^= 0x01;
+		cipher.decrypt(nonce, additionalData, encrypted, 0, encrypted.length, new byte[payloadLength], 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooShortNonce() throws Exception {
+		cipher.encrypt(Arrays.copyOf(nonce, 6), additionalData, payloadData, 0, payloadLength,
+				new byte[payloadLength + 8], 0);
+	}
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls.cipher;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.security.KeyPair;
+import java.util.Collections;
+
+import org.eclipse.californium.scandium.category.Small;
+import org.eclipse.californium.scandium.dtls.cipher.ECDHECryptography.SupportedGroup;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies behavior of {@link EphemeralKeyPool}.
+ */
+@Category(Small.class)
+public class EphemeralKeyPoolTest {
+
+	static final SupportedGroup GROUP = SupportedGroup.secp256r1;
+	static final int DEPTH = 3;
+
+	EphemeralKeyPool pool;
+
+	@After
+	public void tearDown() {
+		if (pool != null) {
+			pool.stop();
+		}
+	}
+
+	@Test
+	public void testStartFillsPool() throws Exception {
+		givenAFilledPool();
+		assertThat(pool.size(GROUP), is(DEPTH));
+	}
+
+	@Test
+	public void testPollReturnsDistinctKeyPairsAndRefills() throws Exception {
+		givenAFilledPool();
+		KeyPair first = pool.poll(GROUP);
+		KeyPair second = pool.poll(GROUP);
+		assertThat(first, is(notNullValue()));
+		assertThat(second, is(notNullValue()));
+		assertThat(first.getPublic(), is(not(second.getPublic())));
+
+		waitForSize(DEPTH);
+		assertThat(pool.getMisses(), is(0L));
+	}
+
+	@Test
+	public void testPollReturnsNullForGroupNotPooled() throws Exception {
+		givenAFilledPool();
+		assertThat(pool.poll(SupportedGroup.secp384r1), is(nullValue()));
+		assertThat(pool.getMisses(), is(0L));
+	}
+
+	@Test
+	public void testPollReturnsNullIfPoolIsEmpty() {
+		pool = new EphemeralKeyPool(Collections.singleton(GROUP), DEPTH, 1);
+		assertThat(pool.poll(GROUP), is(nullValue()));
+		assertThat(pool.getMisses(), is(1L));
+	}
+
+	@Test
+	public void testPooledKeysAgreeOnSecret() throws Exception {
+		givenAFilledPool();
+		ECDHECryptography server = new ECDHECryptography(pool.poll(GROUP));
+		ECDHECryptography client = new ECDHECryptography(server.getPublicKey().getParams());
+
+		assertThat(server.getSecret(client.getPublicKey()).getEncoded(),
+				is(client.getSecret(server.getPublicKey()).getEncoded()));
+	}
+
+	private void givenAFilledPool() throws InterruptedException {
+		pool = new EphemeralKeyPool(Collections.singleton(GROUP), DEPTH, 2);
+		pool.start();
+		waitForSize(DEPTH);
+	}
+
+	private void waitForSize(int size) throws InterruptedException {
+		for (int i = 0; i < 100 && pool.size(GROUP) < size; ++i) {
+			Thread.sleep(20);
+		}
+		assertTrue("pool has not been filled in time", pool.size(GROUP) >= size);
+	}
+}
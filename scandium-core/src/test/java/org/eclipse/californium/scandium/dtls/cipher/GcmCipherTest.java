@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls.cipher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.eclipse.californium.scandium.category.Small;
+import org.eclipse.californium.scandium.util.ByteArrayUtils;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies behavior of the {@link GcmCipher}.
+ */
+@Category(Small.class)
+public class GcmCipherTest {
+
+	// test case 4 of the GCM specification (McGrew and Viega)
+	static final byte[] KEY = ByteArrayUtils.hexStreamToByteArray("feffe9928665731c6d6a8f9467308308");
+	static final byte[] IV = ByteArrayUtils.hexStreamToByteArray("cafebabefacedbaddecaf888");
+	static final byte[] PLAINTEXT = ByteArrayUtils.hexStreamToByteArray(
+			"d9313225f88406e5a55909c5aff5269a86a7a9531534f7da2e4c303d8a318a721c3c0c95956809532fcf0e2449a6b525"
+			+ "b16aedf5aa0de657ba637b39");
+	static final byte[] ADDITIONAL_DATA = ByteArrayUtils.hexStreamToByteArray("feedfacedeadbeeffeedfacedeadbeefabaddad2");
+	static final byte[] CIPHERTEXT = ByteArrayUtils.hexStreamToByteArray(
+			"42831ec2217774244b7221b784d0d49ce3aa212f2c02a4e035c17e2329aca12e21d514b25466931c7d8f6a5aac84aa05"
+			+ "1ba30b396a0aac973d58e091" + "5bc94fbc3221a5db94fae95ae7121a47");
+
+	GcmCipher cipher;
+	byte[] payload;
+
+	@BeforeClass
+	public static void checkSupport() {
+		Assume.assumeTrue("AES-GCM not supported by JVM", GcmCipher.isSupported());
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		cipher = new GcmCipher(new SecretKeySpec(KEY, "AES"), 16);
+		payload = new byte[1400];
+		new Random(1400).nextBytes(payload);
+	}
+
+	@Test
+	public void testEncryptMatchesTestVector() throws Exception {
+		byte[] encrypted = new byte[CIPHERTEXT.length + 5];
+		int length = cipher.encrypt(IV, ADDITIONAL_DATA, PLAINTEXT, 0, PLAINTEXT.length, encrypted, 5);
+		assertEquals(CIPHERTEXT.length, length);
+		assertTrue(Arrays.equals(CIPHERTEXT, Arrays.copyOfRange(encrypted, 5, 5 + length)));
+	}
+
+	@Test
+	public void testDecryptsTestVectorInPlace() throws Exception {
+		byte[] buffer = new byte[CIPHERTEXT.length + 3];
+		System.arraycopy(CIPHERTEXT, 0, buffer, 3, CIPHERTEXT.length);
+		int length = cipher.decrypt(IV, ADDITIONAL_DATA, buffer, 3, CIPHERTEXT.length, buffer, 3);
+		assertEquals(PLAINTEXT.length, length);
+		assertTrue(Arrays.equals(PLAINTEXT, Arrays.copyOfRange(buffer, 3, 3 + length)));
+	}
+
+	@Test
+	public void testEngineIsReusedForMultipleRecords() throws Exception {
+		byte[] nonce = Arrays.copyOf(IV, IV.length);
+		for (int i = 0; i < 4; ++i) {
+			nonce[nonce.length - 1] = (byte) i;
+			byte[] encrypted = new byte[payload.length + 16];
+			cipher.encrypt(nonce, ADDITIONAL_DATA, payload, 0, payload.length, encrypted, 0);
+			int length = cipher.decrypt(nonce, ADDITIONAL_DATA, encrypted, 0, encrypted.length, encrypted, 0);
+			assertEquals(payload.length, length);
+			assertTrue(Arrays.equals(payload, Arrays.copyOf(encrypted, length)));
+		}
+	}
+
+	@Test(expected = InvalidMacException.class)
+	public void testDifferentAdditionalData() throws Exception {
+		byte[] additionalData = Arrays.copyOf(ADDITIONAL_DATA, ADDITIONAL_DATA.length);
+		additionalData[0] ^= 0x55;
+		cipher.decrypt(IV, additionalData, CIPHERTEXT, 0, CIPHERTEXT.length, new byte[PLAINTEXT.length], 0);
+	}
+
+	@Test(expected = InvalidMacException.class)
+	public void testModifiedCiphertext() throws Exception {
+		byte[] encrypted = Arrays.copyOf(CIPHERTEXT, CIPHERTEXT.length);
+		encrypted[encrypted.length / 2] ^= 0x01;
+		cipher.decrypt(IV, ADDITIONAL_DATA, encrypted, 0, encrypted.length, new byte[PLAINTEXT.length], 0);
+	}
+}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls.pskstore;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.californium.scandium.category.Small;
+import org.eclipse.californium.scandium.dtls.pskstore.CachingPskStoreTest.ManualPskStore;
+import org.eclipse.californium.scandium.dtls.pskstore.CachingPskStoreTest.RecordingCallback;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies behavior of {@link BoundedPskStore}.
+ */
+@Category(Small.class)
+public class BoundedPskStoreTest {
+
+	static final byte[] KEY = "secret".getBytes();
+
+	ScheduledExecutorService timer;
+	ManualPskStore backend;
+
+	@Before
+	public void setUp() {
+		timer = Executors.newSingleThreadScheduledExecutor();
+		backend = new ManualPskStore();
+	}
+
+	@After
+	public void tearDown() {
+		timer.shutdownNow();
+	}
+
+	@Test
+	public void testRequestKeyRejectsLookupsBeyondMax() {
+		BoundedPskStore store = new BoundedPskStore(backend, timer, 10000, 2);
+		RecordingCallback third = new RecordingCallback();
+		store.requestKey(null, "a", new RecordingCallback());
+		store.requestKey(null, "b", new RecordingCallback());
+		store.requestKey(null, "c", third);
+
+		assertThat(backend.requests.size(), is(2));
+		assertThat(third.errors.size(), is(1));
+		assertThat(third.errors.get(0), is(instanceOf(RejectedExecutionException.class)));
+
+		// completed lookups free their slot
+		backend.complete(0, KEY);
+		store.requestKey(null, "c", new RecordingCallback());
+		assertThat(backend.requests.size(), is(3));
+		assertThat(store.getPendingLookups(), is(2));
+	}
+
+	@Test
+	public void testRequestKeyFailsOnTimeoutAndIgnoresLateResult() throws Exception {
+		BoundedPskStore store = new BoundedPskStore(backend, timer, 20, 2);
+		RecordingCallback callback = new RecordingCallback();
+		store.requestKey(null, "a", callback);
+
+		for (int loop = 0; loop < 100 && !callback.hasResult(); ++loop) {
+			Thread.sleep(10);
+		}
+		backend.complete(0, KEY);
+
+		assertThat(store.getPendingLookups(), is(0));
+		assertThat(callback.errors.size(), is(1));
+		assertThat(callback.errors.get(0), is(instanceOf(TimeoutException.class)));
+		assertTrue(callback.keys.isEmpty());
+	}
+
+	@Test
+	public void testRequestKeyCancelsCachingLookupOnTimeout() throws Exception {
+		// GIVEN a caching store, whose backend never answers
+		CachingPskStore cache = new CachingPskStore(backend, timer, 10000, 1, 1, TimeUnit.HOURS);
+		BoundedPskStore store = new BoundedPskStore(cache, timer, 20, 2);
+		RecordingCallback callback = new RecordingCallback();
+		store.requestKey(null, "a", callback);
+
+		// WHEN the bounded lookup times out
+		for (int loop = 0; loop < 100 && cache.getPendingLookups() > 0; ++loop) {
+			Thread.sleep(10);
+		}
+
+		// THEN the coalesced lookup is abandoned and the next request reaches the backend again
+		assertThat(callback.errors.size(), is(1));
+		assertThat(callback.errors.get(0), is(instanceOf(TimeoutException.class)));
+		assertThat(cache.getPendingLookups(), is(0));
+		store.requestKey(null, "a", new RecordingCallback());
+		assertThat(backend.requests.size(), is(2));
+	}
+
+	@Test
+	public void testRequestKeyCancelsTimedOutLookupAtStore() throws Exception {
+		BoundedPskStore store = new BoundedPskStore(backend, timer, 20, 2);
+		store.requestKey(null, "a", new RecordingCallback());
+
+		for (int loop = 0; loop < 100 && backend.cancelled.isEmpty(); ++loop) {
+			Thread.sleep(10);
+		}
+
+		assertThat(backend.cancelled.size(), is(1));
+		assertThat(backend.cancelled.get(0), is(backend.callbacks.get(0)));
+	}
+
+	@Test
+	public void testCancelReleasesLookup() {
+		BoundedPskStore store = new BoundedPskStore(backend, timer, 10000, 1);
+		RecordingCallback callback = new RecordingCallback();
+		store.requestKey(null, "a", callback);
+
+		store.cancel(null, "a", callback);
+		backend.complete(0, KEY);
+
+		assertThat(store.getPendingLookups(), is(0));
+		assertThat(backend.cancelled.size(), is(1));
+		assertTrue(!callback.hasResult());
+		store.requestKey(null, "b", new RecordingCallback());
+		assertThat(backend.requests.size(), is(2));
+	}
+
+	@Test
+	public void testRequestKeyReportsKeyOnce() {
+		BoundedPskStore store = new BoundedPskStore(backend, timer, 10000, 2);
+		RecordingCallback callback = new RecordingCallback();
+		store.requestKey(null, "a", callback);
+		backend.complete(0, KEY);
+		backend.complete(0, KEY);
+
+		assertThat(callback.keys.size(), is(1));
+		assertThat(store.getPendingLookups(), is(0));
+	}
+}
@@ -0,0 +1,283 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls.pskstore;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.californium.scandium.category.Small;
+import org.eclipse.californium.scandium.util.ServerName;
+import org.eclipse.californium.scandium.util.ServerNames;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies behavior of {@link CachingPskStore}.
+ */
+@Category(Small.class)
+public class CachingPskStoreTest {
+
+	static final String IDENTITY = "device";
+	static final byte[] KEY = "secret".getBytes();
+
+	ScheduledExecutorService timer;
+	ManualPskStore backend;
+	CachingPskStore cache;
+
+	@Before
+	public void setUp() {
+		timer = Executors.newSingleThreadScheduledExecutor();
+		backend = new ManualPskStore();
+		cache = new CachingPskStore(backend, timer, 10000, 1, 1, TimeUnit.HOURS);
+	}
+
+	@After
+	public void tearDown() {
+		timer.shutdownNow();
+	}
+
+	@Test
+	public void testRequestKeyCachesKey() {
+		RecordingCallback first = new RecordingCallback();
+		cache.requestKey(null, IDENTITY, first);
+		backend.complete(0, KEY);
+		RecordingCallback second = new RecordingCallback();
+		cache.requestKey(null, IDENTITY, second);
+
+		assertThat(backend.requests.size(), is(1));
+		assertThat(second.keys.size(), is(1));
+		assertThat(second.keys.get(0), is(KEY));
+	}
+
+	@Test
+	public void testRequestKeyCachesUnknownIdentity() {
+		cache.requestKey(null, IDENTITY, new RecordingCallback());
+		backend.complete(0, null);
+		RecordingCallback second = new RecordingCallback();
+		cache.requestKey(null, IDENTITY, second);
+
+		assertThat(backend.requests.size(), is(1));
+		assertThat(second.keys.size(), is(1));
+		assertThat(second.keys.get(0), is(nullValue()));
+	}
+
+	@Test
+	public void testRequestKeyDoesNotCacheUnknownIdentityWithoutNegativeTimeToLive() {
+		cache = new CachingPskStore(backend, timer, 10000, 1, 0, TimeUnit.HOURS);
+		cache.requestKey(null, IDENTITY, new RecordingCallback());
+		backend.complete(0, null);
+		cache.requestKey(null, IDENTITY, new RecordingCallback());
+
+		assertThat(backend.requests.size(), is(2));
+	}
+
+	@Test
+	public void testRequestKeyDoesNotCacheError() {
+		RecordingCallback first = new RecordingCallback();
+		cache.requestKey(null, IDENTITY, first);
+		backend.fail(0, new IOException("unreachable"));
+		cache.requestKey(null, IDENTITY, new RecordingCallback());
+
+		assertThat(first.errors.size(), is(1));
+		assertThat(backend.requests.size(), is(2));
+	}
+
+	@Test
+	public void testRequestKeyCoalescesPendingLookups() {
+		RecordingCallback first = new RecordingCallback();
+		RecordingCallback second = new RecordingCallback();
+		cache.requestKey(null, IDENTITY, first);
+		cache.requestKey(null, IDENTITY, second);
+		assertThat(backend.requests.size(), is(1));
+
+		backend.complete(0, KEY);
+		assertThat(first.keys.get(0), is(KEY));
+		assertThat(second.keys.get(0), is(KEY));
+	}
+
+	@Test
+	public void testPendingLookupFailsAllWaitersOnTimeout() throws Exception {
+		// GIVEN a lookup, which is never answered by the backend
+		cache = new CachingPskStore(backend, timer, 20, 1, 1, TimeUnit.HOURS);
+		RecordingCallback first = new RecordingCallback();
+		RecordingCallback second = new RecordingCallback();
+		cache.requestKey(null, IDENTITY, first);
+		cache.requestKey(null, IDENTITY, second);
+
+		// WHEN the lookup times out
+		for (int loop = 0; loop < 100 && !(first.hasResult() && second.hasResult()); ++loop) {
+			Thread.sleep(10);
+		}
+
+		// THEN all waiting requests fail and the next request starts a new lookup
+		assertThat(first.errors.size(), is(1));
+		assertThat(first.errors.get(0), is(instanceOf(TimeoutException.class)));
+		assertThat(second.errors.size(), is(1));
+		assertThat(second.errors.get(0), is(instanceOf(TimeoutException.class)));
+		assertThat(cache.getPendingLookups(), is(0));
+		cache.requestKey(null, IDENTITY, new RecordingCallback());
+		assertThat(backend.requests.size(), is(2));
+	}
+
+	@Test
+	public void testCancelAbandonsLookupWithoutWaiters() {
+		RecordingCallback first = new RecordingCallback();
+		RecordingCallback second = new RecordingCallback();
+		cache.requestKey(null, IDENTITY, first);
+		cache.requestKey(null, IDENTITY, second);
+
+		cache.cancel(null, IDENTITY, first);
+		assertThat(cache.getPendingLookups(), is(1));
+		cache.cancel(null, IDENTITY, second);
+		assertThat(cache.getPendingLookups(), is(0));
+
+		// a late answer is cached, but not reported to cancelled requests
+		backend.complete(0, KEY);
+		assertTrue(!first.hasResult());
+		assertTrue(!second.hasResult());
+		RecordingCallback third = new RecordingCallback();
+		cache.requestKey(null, IDENTITY, third);
+		assertThat(third.keys.get(0), is(KEY));
+		assertThat(backend.requests.size(), is(1));
+	}
+
+	@Test
+	public void testRequestKeySeparatesServerNames() {
+		ServerNames serverNames = ServerNames.newInstance(ServerName.fromHostName("iot.eclipse.org"));
+		cache.requestKey(null, IDENTITY, new RecordingCallback());
+		backend.complete(0, KEY);
+		cache.requestKey(serverNames, IDENTITY, new RecordingCallback());
+		cache.requestKey(ServerNames.newInstance(ServerName.fromHostName("iot.eclipse.org")), IDENTITY,
+				new RecordingCallback());
+
+		assertThat(backend.requests.size(), is(2));
+	}
+
+	@Test
+	public void testRequestKeyReloadsExpiredKey() throws Exception {
+		cache = new CachingPskStore(backend, timer, 10000, 10, 10, TimeUnit.MILLISECONDS);
+		cache.requestKey(null, IDENTITY, new RecordingCallback());
+		backend.complete(0, KEY);
+		Thread.sleep(50);
+		cache.requestKey(null, IDENTITY, new RecordingCallback());
+
+		assertThat(backend.requests.size(), is(2));
+	}
+
+	@Test
+	public void testInvalidateRemovesCachedResult() {
+		cache.requestKey(null, IDENTITY, new RecordingCallback());
+		backend.complete(0, null);
+		cache.invalidate(null, IDENTITY);
+		cache.requestKey(null, IDENTITY, new RecordingCallback());
+
+		assertThat(backend.requests.size(), is(2));
+	}
+
+	@Test
+	public void testCacheDoesNotExceedMaxEntries() {
+		cache = new CachingPskStore(backend, timer, 10000, 1, 1, TimeUnit.HOURS, 2);
+		for (int index = 0; index < 3; ++index) {
+			RecordingCallback callback = new RecordingCallback();
+			cache.requestKey(null, IDENTITY + index, callback);
+			backend.complete(index, KEY);
+			assertThat(callback.keys.get(0), is(KEY));
+		}
+
+		assertThat(cache.size(), is(2));
+	}
+
+	@Test
+	public void testFullCacheEvictsOldestResult() {
+		cache = new CachingPskStore(backend, timer, 10000, 1, 1, TimeUnit.HOURS, 2);
+		for (int index = 0; index < 3; ++index) {
+			cache.requestKey(null, IDENTITY + index, new RecordingCallback());
+			backend.complete(index, KEY);
+		}
+
+		// the newest results are cached, the oldest is looked up again
+		cache.requestKey(null, IDENTITY + 1, new RecordingCallback());
+		cache.requestKey(null, IDENTITY + 2, new RecordingCallback());
+		assertThat(backend.requests.size(), is(3));
+		cache.requestKey(null, IDENTITY + 0, new RecordingCallback());
+		assertThat(backend.requests.size(), is(4));
+	}
+
+	/**
+	 * A store recording the requests, which are completed by the test.
+	 */
+	static class ManualPskStore implements AsyncPskStore {
+
+		final List<String> requests = new ArrayList<>();
+		final List<Callback> callbacks = new ArrayList<>();
+		final List<Callback> cancelled = new ArrayList<>();
+
+		@Override
+		public synchronized void requestKey(ServerNames serverNames, String identity, Callback callback) {
+			requests.add(identity);
+			callbacks.add(callback);
+		}
+
+		@Override
+		public synchronized void cancel(ServerNames serverNames, String identity, Callback callback) {
+			cancelled.add(callback);
+		}
+
+		synchronized void complete(int index, byte[] key) {
+			callbacks.get(index).onKey(requests.get(index), key);
+		}
+
+		synchronized void fail(int index, Throwable cause) {
+			callbacks.get(index).onError(requests.get(index), cause);
+		}
+	}
+
+	/**
+	 * A callback recording the results.
+	 */
+	static class RecordingCallback implements AsyncPskStore.Callback {
+
+		final List<byte[]> keys = new ArrayList<>();
+		final List<Throwable> errors = new ArrayList<>();
+
+		@Override
+		public synchronized void onKey(String identity, byte[] key) {
+			keys.add(key);
+		}
+
+		@Override
+		public synchronized void onError(String identity, Throwable cause) {
+			errors.add(cause);
+		}
+
+		synchronized boolean hasResult() {
+			return !keys.isEmpty() || !errors.isEmpty();
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Bosch Software Innovations GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch Software Innovations GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.californium.scandium.category.Small;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies behavior of {@link ThreadLocalSecureRandomProvider}.
+ */
+@Category(Small.class)
+public class ThreadLocalSecureRandomProviderTest {
+
+	@Test
+	public void testGetSecureRandomReturnsSameInstanceForSameThread() {
+		SecureRandomProvider provider = new ThreadLocalSecureRandomProvider();
+		assertThat(provider.getSecureRandom(), is(sameInstance(provider.getSecureRandom())));
+	}
+
+	@Test
+	public void testGetSecureRandomReturnsDifferentInstancesForDifferentThreads() throws Exception {
+		final SecureRandomProvider provider = new ThreadLocalSecureRandomProvider();
+		final AtomicReference<SecureRandom> other = new AtomicReference<>();
+		Thread thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				other.set(provider.getSecureRandom());
+			}
+		});
+		thread.start();
+		thread.join();
+		assertThat(other.get(), is(not(sameInstance(provider.getSecureRandom()))));
+	}
+
+	@Test
+	public void testGetSecureRandomUsesGivenAlgorithm() throws Exception {
+		SecureRandomProvider provider = new ThreadLocalSecureRandomProvider("SHA1PRNG");
+		assertThat(provider.getSecureRandom().getAlgorithm(), is("SHA1PRNG"));
+	}
+
+	@Test(expected = NoSuchAlgorithmException.class)
+	public void testConstructorRejectsUnknownAlgorithm() throws Exception {
+		new ThreadLocalSecureRandomProvider("NO-SUCH-PRNG");
+	}
+}